@@ -0,0 +1,42 @@
+package com.krt.mod.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 车辆物理状态更新基准测试
+ * 模拟一列6节编组列车每tick更新所有车辆的物理状态
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainCarPhysicsBenchmark {
+    private static final double TICK_MILLIS = 50.0;
+    
+    private final List<TrainCar> cars = new ArrayList<>();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        cars.add(new TrainCar("bench_1", TrainCar.CarType.HEAD_CAR, 250));
+        for (int i = 2; i <= 5; i++) {
+            cars.add(new TrainCar("bench_" + i, TrainCar.CarType.MIDDLE_CAR, 300));
+        }
+        cars.add(new TrainCar("bench_6", TrainCar.CarType.TAIL_CAR, 250));
+        for (TrainCar car : cars) {
+            car.setSpeed(20.0);
+        }
+    }
+    
+    @Benchmark
+    public void updatePhysicsState() {
+        for (TrainCar car : cars) {
+            car.updatePhysicsState(TICK_MILLIS);
+        }
+    }
+}
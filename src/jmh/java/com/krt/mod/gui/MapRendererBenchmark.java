@@ -0,0 +1,57 @@
+package com.krt.mod.gui;
+
+import com.krt.mod.map.MapTileCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 地图渲染器基准测试
+ * 覆盖像素数据游程压缩/解压以及瓦片版本哈希
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapRendererBenchmark {
+    private static final int TILE_SIZE = 256;
+    
+    private MapRenderer renderer;
+    private int[] pixels;
+    private int[] compressedPixels;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        renderer = new MapRenderer();
+        
+        // 使用固定的条带图案模拟地形瓦片，游程长度在1到32之间变化
+        pixels = new int[TILE_SIZE * TILE_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = ((i / (1 + (i % 32))) & 1) == 0 ? 0xFF00FF00 : 0xFF0080FF;
+        }
+        compressedPixels = MapRenderer.compressPixelData(pixels);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.cleanup();
+    }
+    
+    @Benchmark
+    public int[] compressPixelData() {
+        return MapRenderer.compressPixelData(pixels);
+    }
+    
+    @Benchmark
+    public int[] decompressPixelData() {
+        return MapRenderer.decompressPixelData(compressedPixels);
+    }
+    
+    @Benchmark
+    public long contentHash() {
+        // 服务器为每个生成的瓦片计算版本号
+        return MapTileCodec.contentHash(pixels);
+    }
+}
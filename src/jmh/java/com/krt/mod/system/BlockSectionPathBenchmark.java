@@ -0,0 +1,66 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 闭塞区间路径搜索基准测试
+ * 在网格状的道岔密集区域中从左上角搜索到右下角的可用路径
+ * 71×71网格约5000个区间，用于验证大型线网上的单次搜索耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockSectionPathBenchmark {
+    @Param({"4", "6", "8", "71"})
+    public int gridSize;
+    
+    private BlockSectionManagement management;
+    private String startSectionId;
+    private String endSectionId;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 路径搜索不访问世界，每个分叉进程只创建一个实例
+        management = BlockSectionManagement.getInstance(null);
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                BlockPos start = new BlockPos(col * 200, 64, row * 200);
+                management.createBlockSection("bench", sectionId(row, col), start, start.east(200));
+            }
+        }
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                if (col + 1 < gridSize) {
+                    management.addBlockSectionConnection(sectionId(row, col), sectionId(row, col + 1));
+                }
+                if (row + 1 < gridSize) {
+                    management.addBlockSectionConnection(sectionId(row, col), sectionId(row + 1, col));
+                }
+            }
+        }
+        startSectionId = sectionId(0, 0);
+        endSectionId = sectionId(gridSize - 1, gridSize - 1);
+    }
+    
+    private static String sectionId(int row, int col) {
+        return "bench_block_" + row + "_" + col;
+    }
+    
+    @Benchmark
+    public List<List<BlockSectionManagement.BlockSection>> findAvailablePaths() {
+        return management.findAvailablePaths(startSectionId, endSectionId, "bench_train");
+    }
+    
+    // 不经过缓存的单次最短路搜索
+    @Benchmark
+    public SectionRouter.Route computeShortestRouteUncached() {
+        return management.getRouter().computeShortestRoute(startSectionId, endSectionId, "bench_train");
+    }
+}
@@ -0,0 +1,53 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CBTC信号显示计算基准测试
+ * 测量每个信号机根据移动闭塞区域计算前方空闲分区并确定显示的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CBTCSignalBenchmark {
+    private static final int SIGNAL_COUNT = 200;
+    
+    @Param({"10", "100", "1000"})
+    public int trainCount;
+    
+    private final List<CBTCSystem.MobileBlockInfo> mobileBlocks = new ArrayList<>();
+    private final List<BlockPos> signalPositions = new ArrayList<>();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 固定种子，保证不同提交之间的输入一致
+        Random random = new Random(42);
+        for (int i = 0; i < trainCount; i++) {
+            CBTCSystem.MobileBlockInfo info = new CBTCSystem.MobileBlockInfo("train_" + i);
+            info.update(new BlockPos(random.nextInt(20000), 64, random.nextInt(64)), 120.0, random.nextDouble() * 22.0);
+            mobileBlocks.add(info);
+        }
+        for (int i = 0; i < SIGNAL_COUNT; i++) {
+            signalPositions.add(new BlockPos(i * 100, 64, random.nextInt(64)));
+        }
+    }
+    
+    @Benchmark
+    public void evaluateSignals(Blackhole blackhole) {
+        for (BlockPos signalPos : signalPositions) {
+            int freeSections = CBTCSystem.countMobileBlockFreeSections(signalPos, Direction.EAST, mobileBlocks);
+            blackhole.consume(CBTCSystem.determineSignalDisplayForMain(freeSections));
+        }
+    }
+}
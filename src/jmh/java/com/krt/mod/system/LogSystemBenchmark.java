@@ -0,0 +1,39 @@
+package com.krt.mod.system;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志系统吞吐量基准测试
+ * 分别测量单线程与多线程并发写日志的吞吐量
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LogSystemBenchmark {
+    @Setup(Level.Trial)
+    public void setUp() {
+        LogSystem.init();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LogSystem.close();
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void logSingleThread() {
+        LogSystem.trainLog("bench", "列车位置更新");
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void logContended() {
+        LogSystem.trainLog("bench", "列车位置更新");
+    }
+}
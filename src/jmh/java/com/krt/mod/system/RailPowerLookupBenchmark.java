@@ -0,0 +1,59 @@
+package com.krt.mod.system;
+
+import com.krt.mod.blockentity.power.RailPowerConnectorBlockEntity;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * 轨道供电等级查询基准测试
+ * 模拟每tick所有列车按当前位置查询轨道电力等级
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RailPowerLookupBenchmark {
+    private static final int TRAIN_COUNT = 100;
+    
+    @Param({"10", "100", "1000"})
+    public int connectorCount;
+    
+    private PowerSupplySystem powerSupplySystem;
+    private final List<BlockPos> trainPositions = new ArrayList<>();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        powerSupplySystem = new PowerSupplySystem(null);
+        
+        // 方块实体无法脱离世界创建，使用只读桩对象代替
+        for (int i = 0; i < connectorCount; i++) {
+            BlockPos pos = new BlockPos(i * 32, 64, 0);
+            RailPowerConnectorBlockEntity connector = mock(RailPowerConnectorBlockEntity.class, withSettings().stubOnly());
+            when(connector.getPos()).thenReturn(pos);
+            when(connector.getCoverageRadius()).thenReturn(16);
+            when(connector.getPowerLevel()).thenReturn(10);
+            powerSupplySystem.addRailConnector(connector);
+        }
+        for (int i = 0; i < TRAIN_COUNT; i++) {
+            trainPositions.add(new BlockPos(random.nextInt(connectorCount * 32), 64, random.nextInt(8)));
+        }
+    }
+    
+    @Benchmark
+    public void getRailPowerLevel(Blackhole blackhole) {
+        for (BlockPos pos : trainPositions) {
+            blackhole.consume(powerSupplySystem.getRailPowerLevel(pos));
+        }
+    }
+}
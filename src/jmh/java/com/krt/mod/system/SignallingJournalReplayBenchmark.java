@@ -0,0 +1,79 @@
+package com.krt.mod.system;
+
+import net.minecraft.nbt.NbtCompound;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 信号状态日志重放基准测试
+ * 生成10万条记录的日志（进路办理/取消、警报、临时限速混合），测量启动时重放恢复的耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignallingJournalReplayBenchmark {
+    private static final int RECORD_COUNT = 100_000;
+    // 不同状态项的数量，记录中大部分是对已有项的更新和删除
+    private static final int KEY_COUNT = 2000;
+
+    private File journalFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        journalFile = Files.createTempFile("krt_signalling", ".journal").toFile();
+        Random random = new Random(42);
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile), 64 * 1024))) {
+            for (int i = 0; i < RECORD_COUNT; i++) {
+                SignallingJournal.writeRecord(out, nextRecord(random, i), recordBuffer, crc);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        journalFile.delete();
+    }
+
+    @Benchmark
+    public long[] replay() throws IOException {
+        // 不打开日志文件的实例，只把记录应用到内存状态
+        return new SignallingJournal(null, null).readRecords(journalFile);
+    }
+
+    // 与联锁、警报和限速系统写入的记录大小相近
+    private static SignallingJournal.Record nextRecord(Random random, int index) {
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            String routeId = "route_" + random.nextInt(KEY_COUNT);
+            if (random.nextBoolean()) {
+                return new SignallingJournal.Record(SignallingJournal.OP_REMOVE, SignallingJournal.ROUTES, routeId, null);
+            }
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("trainId", "train_" + random.nextInt(200));
+            return new SignallingJournal.Record(SignallingJournal.OP_PUT, SignallingJournal.ROUTES, routeId, nbt);
+        }
+        if (kind < 8) {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("type", "SIGNAL_FAULT");
+            nbt.putString("message", "信号机故障 #" + index);
+            nbt.putLong("time", index * 20L);
+            return new SignallingJournal.Record(SignallingJournal.OP_PUT, SignallingJournal.ALERTS,
+                    "alert_" + random.nextInt(KEY_COUNT), nbt);
+        }
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("sectionId", "section_" + random.nextInt(KEY_COUNT));
+        nbt.putDouble("speedLimit", 20 + random.nextInt(60));
+        return new SignallingJournal.Record(SignallingJournal.OP_PUT, SignallingJournal.SPEED_LIMITS,
+                "limit_" + random.nextInt(KEY_COUNT), nbt);
+    }
+}
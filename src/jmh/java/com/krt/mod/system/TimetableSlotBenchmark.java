@@ -0,0 +1,46 @@
+package com.krt.mod.system;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 时刻表时段查询基准测试
+ * 对一天中的每一分钟查询一次当前生效时段
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimetableSlotBenchmark {
+    @Param({"0", "50", "500"})
+    public int extraSlotCount;
+    
+    private TimetableSystem.Timetable timetable;
+    private final LocalTime[] queryTimes = new LocalTime[24 * 60];
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        timetable = new TimetableSystem.Timetable("bench_line");
+        for (int i = 0; i < extraSlotCount; i++) {
+            int startMinute = (i * 37) % (24 * 60 - 30);
+            String start = String.format("%02d:%02d", startMinute / 60, startMinute % 60);
+            String end = String.format("%02d:%02d", (startMinute + 30) / 60, (startMinute + 30) % 60);
+            timetable.addTimeSlot(start, end, TimetableSystem.TimeSlotType.OFF_PEAK_HOUR, 1.0, 30, i % 10);
+        }
+        for (int minute = 0; minute < queryTimes.length; minute++) {
+            queryTimes[minute] = LocalTime.of(minute / 60, minute % 60);
+        }
+    }
+    
+    @Benchmark
+    public void lookupWholeDay(Blackhole blackhole) {
+        for (LocalTime time : queryTimes) {
+            blackhole.consume(timetable.getCurrentTimeSlot(time));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 轨道区段自动划分基准测试
+ * 测量并查集划分连通轨道区域的开销（autoDivideSections的核心部分）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrackSectionDivisionBenchmark {
+    private static final int TRACK_LENGTH = 1000;
+    
+    @Param({"1000", "10000", "100000"})
+    public int trackCount;
+    
+    private final PackedPositionSet trackPositions = new PackedPositionSet();
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 生成多条平行直线轨道，每条之间隔开一格，形成多个连通区域
+        for (int i = 0; i < trackCount; i++) {
+            int line = i / TRACK_LENGTH;
+            trackPositions.add(new BlockPos(i % TRACK_LENGTH, 64, line * 2));
+        }
+    }
+    
+    @Benchmark
+    public List<long[]> groupConnectedTracks() {
+        return TrackSectionManager.groupConnectedTracks(trackPositions, pos -> true);
+    }
+}
@@ -0,0 +1,78 @@
+package com.krt.mod.system;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 牵引潮流计算基准测试
+ * 模拟供电系统每次更新：变电所沿线路均匀分布，列车上报负载后求解一次网压
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TractionLoadFlowBenchmark {
+    // 变电所间距（方块）
+    private static final int SUBSTATION_SPACING = 2000;
+    private static final double NOMINAL_VOLTAGE = 1500.0;
+
+    @Param({"4", "16", "64"})
+    public int substationCount;
+
+    @Param({"10", "100", "500"})
+    public int trainCount;
+
+    private TractionLoadFlowSolver solver;
+    private String[] trainIds;
+    private double[] trainX;
+    private double[] trainPower;
+    private double lineLength;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        solver = new TractionLoadFlowSolver();
+        lineLength = (double) (substationCount - 1) * SUBSTATION_SPACING;
+        trainIds = new String[trainCount];
+        trainX = new double[trainCount];
+        trainPower = new double[trainCount];
+        for (int i = 0; i < trainCount; i++) {
+            trainIds[i] = "train_" + i;
+            trainX[i] = random.nextDouble() * lineLength;
+            // 约五分之一的列车处于再生制动
+            trainPower[i] = random.nextInt(5) == 0 ? -1.0e6 * random.nextDouble() : 0.5e6 + 2.5e6 * random.nextDouble();
+        }
+        // 预热一次，使后续求解以上次结果为初值，与实际运行一致
+        update();
+    }
+
+    @Benchmark
+    public void solveUpdate(Blackhole blackhole) {
+        // 列车每次更新前进约2方块（72km/h，2tick）
+        for (int i = 0; i < trainCount; i++) {
+            trainX[i] += 2.0;
+            if (trainX[i] > lineLength) {
+                trainX[i] -= lineLength;
+            }
+        }
+        blackhole.consume(update());
+    }
+
+    // 与供电系统相同的调用顺序：上报列车负载，设置变电所，求解后开始下一轮输入
+    private int update() {
+        for (int i = 0; i < trainCount; i++) {
+            solver.setTrainLoad(trainIds[i], trainX[i], 64, 0.5, trainPower[i]);
+        }
+        for (int i = 0; i < substationCount; i++) {
+            solver.setSubstation(i, i * SUBSTATION_SPACING + 0.5, 64, 0.5, NOMINAL_VOLTAGE);
+        }
+        int iterations = solver.solve();
+        solver.beginUpdate();
+        return iterations;
+    }
+}
@@ -129,7 +129,9 @@ public class Init {
             new Identifier(KRTMod.MOD_ID, "train"),
             FabricEntityTypeBuilder.create(SpawnGroup.MISC, TrainEntity::new)
                     .dimensions(EntityDimensions.fixed(3.0f, 3.0f))
-                    .trackedUpdateRate(20)
+                    // 位置和速度由 TrainMovementSync 航位推算同步，原版跟踪只作低频兜底
+                    .trackedUpdateRate(100)
+                    .forceTrackedVelocityUpdates(false)
                     .build()
     );
 
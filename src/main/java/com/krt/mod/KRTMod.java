@@ -7,12 +7,22 @@ import com.krt.mod.compat.NewModMenuIntegration;
 import com.krt.mod.entity.ModEntities;
 import com.krt.mod.item.KRTItemGroup;
 import com.krt.mod.item.ModItems;
+import com.krt.mod.map.MapTileService;
+import com.krt.mod.network.KRTNetwork;
+import com.krt.mod.network.ModDebuggerNetworking;
+import com.krt.mod.network.TrainDrivingNetworking;
+import com.krt.mod.network.TrainMovementSync;
 import com.krt.mod.screen.ModScreens;
 import com.krt.mod.sound.ModSounds;
 import com.krt.mod.system.AppendPackageSystem;
+import com.krt.mod.system.FleetPersistence;
 import com.krt.mod.system.LanguageSystem;
 import com.krt.mod.system.LogSystem;
 import com.krt.mod.system.PlayerSystem;
+import com.krt.mod.system.PowerNetwork;
+import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.system.SignallingJournal;
+import com.krt.mod.system.TickScheduler;
 import com.krt.mod.texture.SVGTextureLoader;
 import com.krt.mod.command.CommandRegistry;
 import net.fabricmc.api.ModInitializer;
@@ -72,6 +82,36 @@ public class KRTMod implements ModInitializer {
         // 初始化玩家系统
         PlayerSystem.initialize();
 
+        // 初始化延时任务调度器
+        TickScheduler.initialize();
+
+        // 初始化电力网络
+        PowerNetwork.initialize();
+
+        // 注册供电系统的世界更新
+        PowerSupplySystemManager.initialize();
+
+        // 初始化信号运行状态日志
+        SignallingJournal.initialize();
+
+        // 初始化数据包层（批量发送通道）
+        KRTNetwork.initialize();
+
+        // 注册调试器网络处理器（含列车状态订阅流）
+        ModDebuggerNetworking.register();
+
+        // 注册列车运动同步
+        TrainMovementSync.initialize();
+
+        // 注册驾驶台操作处理器
+        TrainDrivingNetworking.initialize();
+
+        // 注册车队存档的读取和保存
+        FleetPersistence.initialize();
+
+        // 注册地图瓦片服务
+        MapTileService.initialize();
+
         // 初始化兼容性管理器
         initializeCompatibilityManager();
 
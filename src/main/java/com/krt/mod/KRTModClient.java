@@ -2,10 +2,17 @@ package com.krt.mod;
 
 import com.krt.mod.block.DepartureTimerBlockEntity;
 import com.krt.mod.block.renderer.DepartureTimerBlockRenderer;
+import com.krt.mod.block.renderer.StationCountdownDisplayBlockRenderer;
 import com.krt.mod.block.KRTBlockEntities;
 import com.krt.mod.entity.TrainEntity;
 import com.krt.mod.entity.renderer.TrainEntityRenderer;
 import com.krt.mod.gui.OperationManualScreen;
+import com.krt.mod.map.MapTileCache;
+import com.krt.mod.network.KRTNetwork;
+import com.krt.mod.network.ModDebuggerNetworking;
+import com.krt.mod.network.TrainDrivingNetworking;
+import com.krt.mod.network.TrainMovementSync;
+import com.krt.mod.sound.TrainSoundManager;
 import com.krt.mod.system.ModDebugger;
 import com.krt.mod.util.TextureReferenceFixer;
 // import net.fabricmc.fabric.api.client.rendereregistry.v1.BlockEntityRendererRegistry;
@@ -66,6 +73,24 @@ public class KRTModClient implements ClientModInitializer {
         // 注册渲染事件
         registerRenderEvents();
         
+        // 初始化客户端数据包层
+        KRTNetwork.initializeClient();
+        
+        // 注册调试器客户端网络处理器
+        ModDebuggerNetworking.registerClient();
+        
+        // 注册列车运动同步客户端处理器
+        TrainMovementSync.registerClient();
+        
+        // 注册驾驶台客户端处理器（手动驾驶预测的状态回传）
+        TrainDrivingNetworking.registerClient();
+        
+        // 注册地图瓦片缓存
+        MapTileCache.registerClient();
+        
+        // 注册列车走行音
+        TrainSoundManager.registerClient();
+        
         KRTMod.LOGGER.info("KRT 昆明轨道交通模组客户端初始化完成!");
     }
     
@@ -82,6 +107,10 @@ public class KRTModClient implements ClientModInitializer {
         BlockEntityRendererRegistry.INSTANCE.register(KRTBlockEntities.DEPARTURE_TIMER, 
                 (BlockEntityRendererFactory.Context context) -> new DepartureTimerBlockRenderer(context));
         
+        // 注册车站倒计时显示屏方块实体渲染器
+        BlockEntityRendererRegistry.INSTANCE.register(KRTBlockEntities.STATION_COUNTDOWN_DISPLAY, 
+                (BlockEntityRendererFactory.Context context) -> new StationCountdownDisplayBlockRenderer(context));
+        
         KRTMod.LOGGER.info("列车实体渲染器和端门计时器方块实体渲染器注册完成");
         */
     }
@@ -135,6 +135,7 @@ public class ATPSignalBlock extends Block implements BlockEntityProvider {
             BlockEntity blockEntity = world.getBlockEntity(pos);
             if (blockEntity instanceof ATPSignalBlockEntity) {
                 ATPSignalBlockEntity atpEntity = (ATPSignalBlockEntity) blockEntity;
+                atpEntity.onSupplyStateChanged(world.getBlockState(pos));
                 if (isPowered) {
                     LogSystem.systemLog("ATP信号方块已激活: " + pos);
                 } else {
@@ -406,9 +406,12 @@ public class ATPSignalBlockEntity extends BlockEntity {
     }
     
     /**
-     * 获取信号亮度
+     * 获取信号亮度（启用天气/时间联动时按当前天气和时间计算）
      */
     public int getSignalBrightness() {
+        if (weatherTimeLinkEnabled && world != null) {
+            return getWeatherTimeBrightness();
+        }
         return signalBrightness;
     }
     
@@ -451,29 +454,31 @@ public class ATPSignalBlockEntity extends BlockEntity {
     private void updateBrightnessBasedOnWeatherAndTime() {
         if (world == null) return;
         
+        int newBrightness = getWeatherTimeBrightness();
+        if (signalBrightness != newBrightness) {
+            setSignalBrightness(newBrightness);
+            LogSystem.debug("ATP信号机 " + pos + " 根据天气/时间调整亮度: " + newBrightness);
+        }
+    }
+    
+    /**
+     * 按当前天气和时间计算的亮度
+     */
+    private int getWeatherTimeBrightness() {
         boolean isNight = world.isNight(); // 检测是否为夜间
         boolean isThunder = world.isThundering(); // 检测是否为雷暴天气
         boolean isRaining = world.isRaining(); // 检测是否为雨天
         
-        int newBrightness = 10; // 默认为中等亮度
-        
         // 雷暴天气时亮度最高
         if (isThunder) {
-            newBrightness = 15;
-        } 
-        // 夜间或雨天时亮度较高
-        else if (isNight || isRaining) {
-            newBrightness = 13;
-        } 
-        // 白天正常亮度
-        else {
-            newBrightness = 10;
+            return 15;
         }
-        
-        if (signalBrightness != newBrightness) {
-            setSignalBrightness(newBrightness);
-            LogSystem.debug("ATP信号机 " + pos + " 根据天气/时间调整亮度: " + newBrightness);
+        // 夜间或雨天时亮度较高
+        if (isNight || isRaining) {
+            return 13;
         }
+        // 白天正常亮度
+        return 10;
     }
 
     /**
@@ -651,15 +656,15 @@ public class ATPSignalBlockEntity extends BlockEntity {
     }
 
     /**
-     * 每刻更新逻辑
+     * 供电或DCS连接状态变化时的安全检查（由方块的邻居更新触发，不再每刻轮询）
      */
-    public static void tick(World world, BlockPos pos, BlockState state, ATPSignalBlockEntity blockEntity) {
-        if (world.isClient) {
+    public void onSupplyStateChanged(BlockState state) {
+        if (world == null || world.isClient) {
             return;
         }
         
         // 更新最后更新时间
-        blockEntity.lastUpdateTime = world.getTime();
+        lastUpdateTime = world.getTime();
         
         // 检查供电状态
         boolean isPowered = false;
@@ -669,8 +674,8 @@ public class ATPSignalBlockEntity extends BlockEntity {
         
         if (!isPowered) {
             // 无电状态下触发紧急制动
-            if (!blockEntity.emergencyBrake) {
-                blockEntity.setEmergencyBrake(true);
+            if (!emergencyBrake) {
+                setEmergencyBrake(true);
                 LogSystem.warningLog("ATP信号机 " + pos + " 断电，触发紧急制动保护！");
             }
         }
@@ -684,33 +689,21 @@ public class ATPSignalBlockEntity extends BlockEntity {
         // DCS连接断开时触发安全措施
         if (!dcsConnected) {
             // 通信中断时，将信号设为红灯并触发紧急制动
-            blockEntity.signalState = 0; // 设置为红灯
-            if (!blockEntity.emergencyBrake) {
-                blockEntity.setEmergencyBrake(true);
+            signalState = 0; // 设置为红灯
+            if (!emergencyBrake) {
+                setEmergencyBrake(true);
                 LogSystem.warning("ATP信号机 " + pos + " DCS连接断开，触发紧急制动保护！");
             }
         }
+        markDirty();
         
-        // 每5秒检查一次天气和时间，更新信号亮度
-        if (world.getTime() % 100 == 0) { // 每5秒
-            if (blockEntity.weatherTimeLinkEnabled) {
-                blockEntity.updateBrightnessBasedOnWeatherAndTime();
-            }
-        }
-        
-        // 定期清理脏标记
-        if (world.getTime() % 20 == 0) { // 每1秒
-            blockEntity.markDirty();
-            
-            // 调试日志
-            if (LogSystem.isDebugEnabled()) {
-                LogSystem.debug("ATP信号机 " + pos + " 状态: "+ 
-                                  getSignalStatusString(blockEntity.signalState) + 
-                                  ", 供电: " + isPowered + ", DCS连接: " + dcsConnected + 
-                                  ", 空闲分区: " + blockEntity.freeBlockSections + 
-                                  ", 亮度: " + blockEntity.signalBrightness + 
-                                  ", 天气联动: " + blockEntity.weatherTimeLinkEnabled);
-            }
+        if (LogSystem.isDebugEnabled()) {
+            LogSystem.debug("ATP信号机 " + pos + " 状态: "+ 
+                              getSignalStatusString(signalState) + 
+                              ", 供电: " + isPowered + ", DCS连接: " + dcsConnected + 
+                              ", 空闲分区: " + freeBlockSections + 
+                              ", 亮度: " + getSignalBrightness() + 
+                              ", 天气联动: " + weatherTimeLinkEnabled);
         }
     }
 }
\ No newline at end of file
@@ -10,14 +10,17 @@ import net.minecraft.util.math.BlockPos;
 /**
  * 端门计时器方块实体类
  * 负责处理地铁端门内侧的发车时间计时器的实际逻辑和显示内容
+ * 不参与每刻更新，显示内容在读取时按需刷新
  */
 public class DepartureTimerBlockEntity extends BlockEntity {
-    private int tickCounter = 0;
+    private static final int REFRESH_INTERVAL = 20; // 刷新间隔（刻）
+    private long lastRefreshTime = -1; // 上次刷新计时信息的世界时间（不持久化）
     private boolean showDetails = false;
     private boolean powered = false;
     private String statusMessage = "未激活";
     private String formattedTime = "00:00";
     private boolean isGreen = true;
+    private int contentVersion = 0; // 显示内容版本，内容变化时递增（不持久化）
     
     public DepartureTimerBlockEntity(BlockPos pos, BlockState state) {
         super(KRTBlockEntities.DEPARTURE_TIMER, pos, state);
@@ -33,7 +36,6 @@ public class DepartureTimerBlockEntity extends BlockEntity {
     @Override
     protected void writeNbt(NbtCompound nbt) {
         // 保存方块实体数据到NBT
-        nbt.putInt("tickCounter", tickCounter);
         nbt.putBoolean("showDetails", showDetails);
         nbt.putBoolean("powered", powered);
         nbt.putString("statusMessage", statusMessage);
@@ -46,9 +48,6 @@ public class DepartureTimerBlockEntity extends BlockEntity {
     public void readNbt(NbtCompound nbt) {
         // 从NBT读取方块实体数据
         super.readNbt(nbt);
-        if (nbt.contains("tickCounter")) {
-            tickCounter = nbt.getInt("tickCounter");
-        }
         if (nbt.contains("showDetails")) {
             showDetails = nbt.getBoolean("showDetails");
         }
@@ -64,21 +63,23 @@ public class DepartureTimerBlockEntity extends BlockEntity {
         if (nbt.contains("isGreen")) {
             isGreen = nbt.getBoolean("isGreen");
         }
+        contentVersion++;
     }
     
     /**
-     * 方块实体的tick方法，每秒更新一次计时器显示
+     * 读取显示内容时按需刷新计时器信息，距上次刷新不足一秒时直接使用已有内容
      */
-    public void tick() {
-        tickCounter++;
-        if (tickCounter >= 20) { // 每秒更新一次
-            tickCounter = 0;
-            
-            // 只有在通电状态下才更新计时器信息
-            if (powered && world != null && !world.isClient()) {
-                updateTimerInfo();
-            }
+    private void refreshIfStale() {
+        // 只有在通电状态下才更新计时器信息
+        if (!powered || world == null || world.isClient()) {
+            return;
         }
+        long now = world.getTime();
+        if (lastRefreshTime >= 0 && now - lastRefreshTime < REFRESH_INTERVAL) {
+            return;
+        }
+        lastRefreshTime = now;
+        updateTimerInfo();
     }
     
     /**
@@ -94,18 +95,24 @@ public class DepartureTimerBlockEntity extends BlockEntity {
             TrainDepartureTimerLogic timerLogic = TrainDepartureTimerLogic.getInstance(world);
             TrainDepartureTimerLogic.TimerInfo timerInfo = timerLogic.getTimerInfo(pos);
             
-            // 更新显示数据
-            formattedTime = timerInfo.getFormattedTime();
-            statusMessage = timerInfo.getStatusMessage();
-            isGreen = timerInfo.isGreen();
+            String newTime = timerInfo.getFormattedTime();
+            String newStatus = timerInfo.getStatusMessage();
+            boolean newGreen = timerInfo.isGreen();
             
-            // 标记方块实体数据已更改
-            markDirty();
+            // 显示内容变化时才更新并标记数据已更改
+            if (!newTime.equals(formattedTime) || !newStatus.equals(statusMessage) || newGreen != isGreen) {
+                formattedTime = newTime;
+                statusMessage = newStatus;
+                isGreen = newGreen;
+                contentVersion++;
+                markDirty();
+            }
         } catch (Exception e) {
             // 处理可能的异常
             statusMessage = "系统错误";
             formattedTime = "--:--";
             isGreen = false;
+            contentVersion++;
         }
     }
     
@@ -113,7 +120,13 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      * 当电源状态改变时调用
      */
     public void onPowerStateChanged(boolean powered) {
+        if (this.powered == powered) {
+            return;
+        }
         this.powered = powered;
+        // 来电后下次读取时立即刷新
+        lastRefreshTime = -1;
+        contentVersion++;
         markDirty();
     }
     
@@ -122,6 +135,7 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      */
     public void setShowDetails(boolean showDetails) {
         this.showDetails = showDetails;
+        contentVersion++;
         markDirty();
     }
     
@@ -134,6 +148,8 @@ public class DepartureTimerBlockEntity extends BlockEntity {
             return Text.of("关闭状态");
         }
         
+        refreshIfStale();
+        
         // 根据是否显示详细信息返回不同的文本
         if (showDetails) {
             // 详细模式显示时间和状态信息
@@ -148,6 +164,7 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      * 获取时间文本颜色
      */
     public int getTimeTextColor() {
+        refreshIfStale();
         // 绿色表示倒计时（早于计划时间），红色表示正计时（晚于计划时间）
         return isGreen ? 0x00FF00 : 0xFF0000;
     }
@@ -156,6 +173,7 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      * 获取状态信息
      */
     public String getStatusMessage() {
+        refreshIfStale();
         return statusMessage;
     }
     
@@ -163,6 +181,7 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      * 获取格式化的时间字符串
      */
     public String getFormattedTime() {
+        refreshIfStale();
         return formattedTime;
     }
     
@@ -170,9 +189,18 @@ public class DepartureTimerBlockEntity extends BlockEntity {
      * 检查计时器是否处于绿色状态（倒计时）
      */
     public boolean isGreen() {
+        refreshIfStale();
         return isGreen;
     }
     
+    /**
+     * 获取显示内容版本，渲染器据此判断是否需要重新排版
+     */
+    public int getContentVersion() {
+        refreshIfStale();
+        return contentVersion;
+    }
+    
     /**
      * 检查是否显示详细信息
      */
@@ -7,8 +7,6 @@ import net.minecraft.block.BlockState;
 import net.minecraft.block.BlockWithEntity;
 import net.minecraft.block.Material;
 import net.minecraft.block.entity.BlockEntity;
-import net.minecraft.block.entity.BlockEntityTicker;
-import net.minecraft.block.entity.BlockEntityType;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.ItemPlacementContext;
 import net.minecraft.state.StateManager;
@@ -57,18 +55,6 @@ public class StationCountdownDisplayBlock extends BlockWithEntity {
         return new StationCountdownDisplayBlockEntity(pos, state);
     }
 
-    @Override
-    public <T extends BlockEntity> BlockEntityTicker<T> getTicker(World world, BlockState state, BlockEntityType<T> type) {
-        if (world.isClient) {
-            return (clientWorld, pos, clientState, blockEntity) -> {
-                if (blockEntity instanceof StationCountdownDisplayBlockEntity) {
-                    ((StationCountdownDisplayBlockEntity) blockEntity).tick();
-                }
-            };
-        }
-        return null;
-    }
-
     @Override
     public ActionResult onUse(BlockState state, World world, BlockPos pos, PlayerEntity player, Hand hand, BlockHitResult hit) {
         if (!world.isClient) {
@@ -6,13 +6,18 @@ import net.minecraft.nbt.NbtCompound;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
+/**
+ * 车站倒计时显示屏方块实体
+ * 不参与每刻更新，剩余时间在读取时按世界时间推算
+ */
 public class StationCountdownDisplayBlockEntity extends BlockEntity {
-    private int countdownTime = 60; // 秒
+    private int countdownTime = 60; // 秒，对应锚点时刻
+    private long countdownAnchorTime = -1; // 倒计时锚点（世界时间），-1表示尚未确定
     private String nextTrainLine = "1号线";
     private String nextStation = "下一站";
     private int displayId = 0;
-    private int tickCounter = 0;
-    private static final int UPDATE_INTERVAL = 10; // 每10tick更新一次
+    private int dataVersion = 0; // 线路、车站等数据的版本，变化时递增（不持久化）
+    private static final int RESET_TIME = 120; // 倒计时结束后重置的秒数
 
     public StationCountdownDisplayBlockEntity(BlockPos pos, BlockState state) {
         super(KRTBlockEntities.STATION_COUNTDOWN_DISPLAY, pos, state);
@@ -20,7 +25,7 @@ public class StationCountdownDisplayBlockEntity extends BlockEntity {
 
     @Override
     protected void writeNbt(NbtCompound nbt) {
-        nbt.putInt("countdownTime", countdownTime);
+        nbt.putInt("countdownTime", getCountdownTime());
         nbt.putString("nextTrainLine", nextTrainLine);
         nbt.putString("nextStation", nextStation);
         nbt.putInt("displayId", displayId);
@@ -42,30 +47,24 @@ public class StationCountdownDisplayBlockEntity extends BlockEntity {
         if (nbt.contains("displayId")) {
             displayId = nbt.getInt("displayId");
         }
+        dataVersion++;
     }
 
-    public void tick() {
-        // 优化更新频率，每10tick才检查一次
-        if (tickCounter % UPDATE_INTERVAL != 0) {
-            tickCounter++;
-            return;
+    /**
+     * 获取剩余秒数（由锚点推算，每秒减一，归零后从120秒重新开始）
+     */
+    public int getCountdownTime() {
+        if (world == null) {
+            return countdownTime;
         }
-        
-        tickCounter++;
-        if (tickCounter >= 20 * UPDATE_INTERVAL) { // 每秒更新一次，但只在特定tick执行
-            tickCounter = 0;
-            if (countdownTime > 0) {
-                countdownTime--;
-            } else {
-                // 倒计时结束，可以设置新的倒计时时间
-                countdownTime = 120; // 重置为120秒
-            }
-            markDirty();
+        if (countdownAnchorTime < 0) {
+            countdownAnchorTime = world.getTime();
         }
-    }
-
-    public int getCountdownTime() {
-        return countdownTime;
+        long elapsed = Math.max(0, (world.getTime() - countdownAnchorTime) / 20);
+        if (elapsed <= countdownTime) {
+            return (int) (countdownTime - elapsed);
+        }
+        return (int) (RESET_TIME - (elapsed - countdownTime - 1) % (RESET_TIME + 1));
     }
 
     public String getNextTrainLine() {
@@ -78,12 +77,22 @@ public class StationCountdownDisplayBlockEntity extends BlockEntity {
 
     public void updateDisplayData(int countdownTime, String nextTrainLine, String nextStation) {
         this.countdownTime = countdownTime;
+        this.countdownAnchorTime = world != null ? world.getTime() : -1;
         this.nextTrainLine = nextTrainLine;
         this.nextStation = nextStation;
+        dataVersion++;
         markDirty();
     }
 
+    /**
+     * 获取显示内容版本：数据版本和当前剩余秒数都相同时显示文本不变
+     */
+    public long getContentVersion() {
+        return ((long) dataVersion << 32) | (getCountdownTime() & 0xFFFFFFFFL);
+    }
+
     public Text getDisplayText() {
+        int countdownTime = getCountdownTime();
         int minutes = countdownTime / 60;
         int seconds = countdownTime % 60;
         String timeString = minutes > 0 ? String.format("%d分%d秒", minutes, seconds) : String.format("%d秒", seconds);
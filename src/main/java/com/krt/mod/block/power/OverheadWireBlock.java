@@ -1,6 +1,7 @@
 package com.krt.mod.block.power;
 
 import com.krt.mod.blockentity.power.OverheadWireBlockEntity;
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -84,6 +85,10 @@ public class OverheadWireBlock extends BlockWithEntity {
                 // 通知相连的支柱移除该接触网
                 wireEntity.notifyPoles();
             }
+            // 从电力网络中移除，受影响的分量重新划分
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
     }
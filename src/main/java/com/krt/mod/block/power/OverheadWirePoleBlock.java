@@ -1,6 +1,7 @@
 package com.krt.mod.block.power;
 
 import com.krt.mod.system.PowerSupplySystem;
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -79,6 +80,10 @@ public class OverheadWirePoleBlock extends BlockWithEntity {
                 // 移除相关的接触网
                 poleEntity.removeConnectedWires();
             }
+            // 从电力网络中移除，受影响的分量重新划分
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
     }
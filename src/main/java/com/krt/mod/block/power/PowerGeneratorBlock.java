@@ -2,6 +2,7 @@ package com.krt.mod.block.power;
 
 import com.krt.mod.blockentity.power.PowerGeneratorBlockEntity;
 import com.krt.mod.system.PowerSupplySystem;
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -72,6 +73,10 @@ public class PowerGeneratorBlock extends BlockWithEntity {
                 }
                 generator.dropInventory(world, pos);
             }
+            // 从电力网络中移除，受影响的分量重新划分
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
     }
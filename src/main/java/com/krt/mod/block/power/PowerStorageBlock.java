@@ -3,6 +3,7 @@ package com.krt.mod.block.power;
 import com.krt.mod.blockentity.power.PowerStorageBlockEntity;
 import com.krt.mod.system.PowerSupplySystem;
 import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.player.PlayerEntity;
@@ -75,8 +76,15 @@ public class PowerStorageBlock extends BlockWithEntity {
                 if (powerSystem != null && storage.isContributingPower()) {
                     powerSystem.removePowerSource(pos);
                 }
+                if (powerSystem != null) {
+                    powerSystem.removeStorageUnit(storage);
+                }
                 storage.dropInventory(world, pos);
             }
+            // 从电力网络中移除，受影响的分量重新划分
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
     }
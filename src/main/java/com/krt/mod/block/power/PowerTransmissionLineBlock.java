@@ -1,5 +1,6 @@
 package com.krt.mod.block.power;
 
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.block.enums.Attachment;
@@ -54,6 +55,26 @@ public class PowerTransmissionLineBlock extends BlockWithEntity {
         return attachedState.isSideSolidFullSquare(world, attachedPos, direction);
     }
     
+    @Override
+    public void onBlockAdded(BlockState state, World world, BlockPos pos, BlockState oldState, boolean notify) {
+        super.onBlockAdded(state, world, pos, oldState, notify);
+        // 传输线没有方块实体，放置时直接加入电力网络
+        if (!world.isClient && !oldState.isOf(state.getBlock())) {
+            PowerNetwork.getInstance(world).registerNode(pos, PowerNetwork.NodeType.TRANSMISSION_LINE);
+        }
+    }
+    
+    @Override
+    public void onStateReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean moved) {
+        if (!state.isOf(newState.getBlock())) {
+            // 从电力网络中移除，受影响的分量重新划分
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
+        }
+        super.onStateReplaced(state, world, pos, newState, moved);
+    }
+    
     @Override
     public BlockEntity createBlockEntity(BlockPos pos, BlockState state) {
         return null; // 暂时不需要方块实体，后续可以扩展为需要方块实体的更复杂传输线
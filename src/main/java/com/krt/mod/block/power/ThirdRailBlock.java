@@ -1,6 +1,7 @@
 package com.krt.mod.block.power;
 
 import com.krt.mod.blockentity.power.ThirdRailBlockEntity;
+import com.krt.mod.system.PowerNetwork;
 import net.minecraft.block.*;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.entity.Entity;
@@ -98,6 +99,9 @@ public class ThirdRailBlock extends BlockWithEntity {
     public void onStateReplaced(BlockState state, World world, BlockPos pos, BlockState newState, boolean moved) {
         if (!state.isOf(newState.getBlock())) {
             // 断开与电力系统的连接
+            if (!world.isClient) {
+                PowerNetwork.getInstance(world).removeNode(pos);
+            }
             super.onStateReplaced(state, world, pos, newState, moved);
         }
     }
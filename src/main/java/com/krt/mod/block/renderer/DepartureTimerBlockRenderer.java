@@ -20,6 +20,9 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Quaternion;
 import net.minecraft.util.math.Vec3f;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * 端门计时器方块渲染器
  * 负责渲染地铁端门内侧的发车时间计时器显示内容
@@ -30,9 +33,15 @@ public class DepartureTimerBlockRenderer implements BlockEntityRenderer<Departur
     private static final Identifier TIMER_TEXTURE = new Identifier(KRTMod.MOD_ID, "textures/block/departure_timer.png");
     private static final float TEXTURE_WIDTH = 16.0f;
     private static final float TEXTURE_HEIGHT = 16.0f;
+    // 时间文本与状态文本的行距
+    private static final int STATUS_LINE_OFFSET = 15;
+    // 每块计时器的排版记录，方块实体卸载后自动回收
+    private final Map<DepartureTimerBlockEntity, TimerLayouts> layouts = new WeakHashMap<>();
     
     public DepartureTimerBlockRenderer(BlockEntityRendererFactory.Context context) {
         this.textRenderer = context.getTextRenderer();
+        // 资源重新加载时会重新创建渲染器，字体可能已变化
+        DisplayTextLayout.clearShared();
     }
     
     @Override
@@ -65,10 +74,11 @@ public class DepartureTimerBlockRenderer implements BlockEntityRenderer<Departur
         // 缩放文本
         matrices.scale(0.01f, 0.01f, 0.01f);
         
-        // 获取显示文本
-        Text displayText = blockEntity.getDisplayText();
-        String timeText = blockEntity.getFormattedTime();
-        String statusText = blockEntity.getStatusMessage();
+        // 获取排版，内容版本未变化时直接使用上次的结果
+        int version = blockEntity.getContentVersion();
+        TimerLayouts cached = layouts.computeIfAbsent(blockEntity, entity -> new TimerLayouts());
+        DisplayTextLayout timeLayout = cached.time.isCurrent(version) ? cached.time.get()
+                : cached.time.update(textRenderer, version, blockEntity.getFormattedTime(), DisplayTextLayout.NO_WRAP);
         
         // 渲染背景（简单的矩形）
         renderBackground(matrices, vertexConsumers, blockEntity.isPowered());
@@ -81,23 +91,17 @@ public class DepartureTimerBlockRenderer implements BlockEntityRenderer<Departur
             textColor = 0x777777; // 灰色文本表示未激活状态
         }
         
-        // 计算文本位置，使其居中显示
-        int textWidth = textRenderer.getWidth(timeText);
-        int x = -textWidth / 2;
+        // 渲染时间文本，水平居中
         int y = -textRenderer.fontHeight / 2;
-        
-        // 渲染时间文本
-        textRenderer.draw(timeText, x, y, textColor, false, matrices.peek().getModel(), 
-                          vertexConsumers, TextRenderer.TextLayerType.NORMAL, 0, light);
+        timeLayout.drawCentered(textRenderer, 0, y, textRenderer.fontHeight, textColor,
+                matrices.peek().getModel(), vertexConsumers, light);
         
         // 如果显示详细信息，渲染状态消息
         if (blockEntity.isShowDetails()) {
-            int statusWidth = textRenderer.getWidth(statusText);
-            int statusX = -statusWidth / 2;
-            int statusY = y + 15;
-            
-            textRenderer.draw(statusText, statusX, statusY, 0xFFFFFF, false, matrices.peek().getModel(),
-                             vertexConsumers, TextRenderer.TextLayerType.NORMAL, 0, light);
+            DisplayTextLayout statusLayout = cached.status.isCurrent(version) ? cached.status.get()
+                    : cached.status.update(textRenderer, version, blockEntity.getStatusMessage(), DisplayTextLayout.NO_WRAP);
+            statusLayout.drawCentered(textRenderer, 0, y + STATUS_LINE_OFFSET, textRenderer.fontHeight, 0xFFFFFF,
+                    matrices.peek().getModel(), vertexConsumers, light);
         }
         
         matrices.pop();
@@ -188,4 +192,12 @@ public class DepartureTimerBlockRenderer implements BlockEntityRenderer<Departur
         // 恢复矩阵状态
         matrices.pop();
     }
+    
+    /**
+     * 单块计时器的时间和状态文本排版
+     */
+    private static class TimerLayouts {
+        private final DisplayTextLayout.Slot time = new DisplayTextLayout.Slot();
+        private final DisplayTextLayout.Slot status = new DisplayTextLayout.Slot();
+    }
 }
\ No newline at end of file
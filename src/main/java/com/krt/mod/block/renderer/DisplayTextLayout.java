@@ -0,0 +1,151 @@
+package com.krt.mod.block.renderer;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.text.OrderedText;
+import net.minecraft.text.StringVisitable;
+import net.minecraft.util.math.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 显示屏文本排版缓存
+ * 文本的分行、字形序列和宽度只在内容变化时计算一次，渲染时直接绘制缓存结果。
+ * 排版按文本内容和最大宽度共享，显示相同内容的多块屏幕共用同一份排版；
+ * 每块屏幕通过 Slot 记录内容版本，版本不变时连文本都不需要重新生成。
+ * 只在渲染线程使用。
+ */
+@Environment(EnvType.CLIENT)
+public class DisplayTextLayout {
+    // 共享排版的最大数量
+    private static final int MAX_SHARED_LAYOUTS = 512;
+    // 不限制宽度（不自动换行）
+    public static final int NO_WRAP = Integer.MAX_VALUE;
+
+    private static final Map<String, DisplayTextLayout> SHARED = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DisplayTextLayout> eldest) {
+            return size() > MAX_SHARED_LAYOUTS;
+        }
+    };
+    // 生成共享排版时使用的文本渲染器，字体重新加载后渲染器变化时清空缓存
+    private static TextRenderer sharedRenderer;
+
+    private final OrderedText[] lines;
+    private final int[] lineWidths;
+    private final int width;
+    private final int lineHeight;
+
+    private DisplayTextLayout(OrderedText[] lines, int[] lineWidths, int lineHeight) {
+        this.lines = lines;
+        this.lineWidths = lineWidths;
+        this.lineHeight = lineHeight;
+        int max = 0;
+        for (int lineWidth : lineWidths) {
+            max = Math.max(max, lineWidth);
+        }
+        this.width = max;
+    }
+
+    /**
+     * 获取文本的排版，相同内容和宽度返回同一个对象
+     * @param text 显示文本，\n 处强制换行
+     * @param maxWidth 每行最大宽度，超出时自动换行；NO_WRAP 表示不换行
+     */
+    public static DisplayTextLayout of(TextRenderer textRenderer, String text, int maxWidth) {
+        if (textRenderer != sharedRenderer) {
+            SHARED.clear();
+            sharedRenderer = textRenderer;
+        }
+        String key = maxWidth + "|" + text;
+        DisplayTextLayout layout = SHARED.get(key);
+        if (layout == null) {
+            layout = build(textRenderer, text, maxWidth);
+            SHARED.put(key, layout);
+        }
+        return layout;
+    }
+
+    // 清空共享排版（资源重新加载后调用）
+    public static void clearShared() {
+        SHARED.clear();
+    }
+
+    private static DisplayTextLayout build(TextRenderer textRenderer, String text, int maxWidth) {
+        List<OrderedText> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n", -1)) {
+            if (paragraph.isEmpty()) {
+                lines.add(OrderedText.EMPTY);
+                continue;
+            }
+            lines.addAll(textRenderer.wrapLines(StringVisitable.plain(paragraph), maxWidth));
+        }
+        // 末尾的换行不产生空行
+        if (lines.size() > 1 && text.endsWith("\n")) {
+            lines.remove(lines.size() - 1);
+        }
+        int[] widths = new int[lines.size()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = textRenderer.getWidth(lines.get(i));
+        }
+        return new DisplayTextLayout(lines.toArray(new OrderedText[0]), widths, textRenderer.fontHeight);
+    }
+
+    public int getLineCount() {
+        return lines.length;
+    }
+
+    public int getLineWidth(int line) {
+        return lineWidths[line];
+    }
+
+    // 最宽一行的宽度
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return lines.length * lineHeight;
+    }
+
+    /**
+     * 以 (centerX, y) 为每行的水平中心和首行顶部绘制
+     * @param lineSpacing 行间距（首行顶部到下一行顶部）
+     */
+    public void drawCentered(TextRenderer textRenderer, float centerX, float y, int lineSpacing, int color,
+                             Matrix4f matrix, VertexConsumerProvider vertexConsumers, int light) {
+        for (int i = 0; i < lines.length; i++) {
+            textRenderer.draw(lines[i], centerX - lineWidths[i] / 2, y + i * lineSpacing, color, false, matrix,
+                    vertexConsumers, TextRenderer.TextLayerType.NORMAL, 0, light);
+        }
+    }
+
+    /**
+     * 单块显示屏的排版记录
+     * 内容版本与上次相同时直接返回上次的排版，不生成文本也不查共享缓存。
+     */
+    public static class Slot {
+        private long version = Long.MIN_VALUE;
+        private DisplayTextLayout layout;
+
+        public boolean isCurrent(long version) {
+            return layout != null && this.version == version;
+        }
+
+        public DisplayTextLayout get() {
+            return layout;
+        }
+
+        // 内容变化后更新排版
+        public DisplayTextLayout update(TextRenderer textRenderer, long version, String text, int maxWidth) {
+            this.version = version;
+            this.layout = of(textRenderer, text, maxWidth);
+            return layout;
+        }
+    }
+}
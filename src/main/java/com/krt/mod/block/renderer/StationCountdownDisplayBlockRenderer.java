@@ -0,0 +1,71 @@
+package com.krt.mod.block.renderer;
+
+import com.krt.mod.block.StationCountdownDisplayBlock;
+import com.krt.mod.block.StationCountdownDisplayBlockEntity;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.block.entity.BlockEntityRenderer;
+import net.minecraft.client.render.block.entity.BlockEntityRendererFactory;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Quaternion;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 车站倒计时显示屏渲染器
+ * 在显示屏正面绘制下一班列车和到达倒计时，文本排版按内容版本缓存，每秒最多重新排版一次
+ */
+@Environment(EnvType.CLIENT)
+public class StationCountdownDisplayBlockRenderer implements BlockEntityRenderer<StationCountdownDisplayBlockEntity> {
+    // 文本可用宽度（缩放后的单位，方块宽度为100）
+    private static final int MAX_TEXT_WIDTH = 90;
+    private static final int TEXT_COLOR = 0xFFAA00;
+    private final TextRenderer textRenderer;
+    // 每块显示屏的排版记录，方块实体卸载后自动回收
+    private final Map<StationCountdownDisplayBlockEntity, DisplayTextLayout.Slot> layouts = new WeakHashMap<>();
+
+    public StationCountdownDisplayBlockRenderer(BlockEntityRendererFactory.Context context) {
+        this.textRenderer = context.getTextRenderer();
+        // 资源重新加载时会重新创建渲染器，字体可能已变化
+        DisplayTextLayout.clearShared();
+    }
+
+    @Override
+    public void render(StationCountdownDisplayBlockEntity blockEntity, float tickDelta, MatrixStack matrices,
+                       VertexConsumerProvider vertexConsumers, int light, int overlay) {
+        if (blockEntity == null) {
+            return;
+        }
+
+        // 获取排版，内容版本未变化时直接使用上次的结果
+        long version = blockEntity.getContentVersion();
+        DisplayTextLayout.Slot slot = layouts.computeIfAbsent(blockEntity, entity -> new DisplayTextLayout.Slot());
+        DisplayTextLayout layout = slot.isCurrent(version) ? slot.get()
+                : slot.update(textRenderer, version, blockEntity.getDisplayText().getString(), MAX_TEXT_WIDTH);
+
+        Direction facing = Direction.NORTH;
+        if (blockEntity.getWorld() != null) {
+            facing = blockEntity.getCachedState().get(StationCountdownDisplayBlock.FACING);
+        }
+
+        matrices.push();
+        // 移动到方块中心并按朝向旋转
+        matrices.translate(0.5, 0.5, 0.5);
+        matrices.multiply(Quaternion.fromEulerXyz(0.0f, -facing.asRotation() * MathHelper.RADIANS_PER_DEGREE, 0.0f));
+        // 显示在方块正面，文本Y轴向下
+        matrices.translate(0.0, 0.0, 0.51);
+        matrices.scale(0.01f, -0.01f, 0.01f);
+
+        // 整段文本垂直居中
+        float y = -layout.getHeight() / 2.0f;
+        layout.drawCentered(textRenderer, 0, y, textRenderer.fontHeight, TEXT_COLOR,
+                matrices.peek().getModel(), vertexConsumers, light);
+
+        matrices.pop();
+    }
+}
@@ -9,6 +9,7 @@ import net.minecraft.util.math.Box;
 import net.minecraft.world.World;
 import com.krt.mod.block.PlatformDoorBlock;
 import com.krt.mod.entity.TrainEntity;
+import com.krt.mod.system.TickScheduler;
 import java.util.List;
 
 public class PlatformDoorBlockEntity extends BlockEntity {
@@ -21,7 +22,7 @@ public class PlatformDoorBlockEntity extends BlockEntity {
     }
     
     private DoorStatus doorStatus = DoorStatus.CLOSED;
-    private int delayTimer = 0; // 延迟关门计时器
+    private TickScheduler.TimerHandle closeTimer; // 延迟关门定时任务
     private static final int DEFAULT_CLOSE_DELAY = 60; // 默认关闭延迟（3秒，60刻）
     private int passengerCount = 0; // 乘客计数
     
@@ -44,26 +45,16 @@ public class PlatformDoorBlockEntity extends BlockEntity {
             if (doorStatus != DoorStatus.OPEN && doorStatus != DoorStatus.OPENING) {
                 openDoors();
             }
-            // 重置延迟计时器
-            delayTimer = 0;
+            // 取消延迟关门
+            cancelCloseTimer();
         } else if (doorStatus == DoorStatus.OPEN) {
-            // 无列车且门开着，检查是否需要关门
+            // 无列车且门开着，无乘客时安排延迟关门，有乘客时取消
             if (passengerCount == 0) {
-                // 如果计时器未启动，启动计时器
-                if (delayTimer == 0) {
-                    delayTimer = DEFAULT_CLOSE_DELAY;
-                }
-                
-                // 计时器倒计时
-                if (delayTimer > 0) {
-                    delayTimer--;
-                } else {
-                    // 计时结束，关闭门
-                    closeDoors();
+                if (closeTimer == null || !closeTimer.isPending()) {
+                    scheduleClose(DEFAULT_CLOSE_DELAY);
                 }
             } else {
-                // 有乘客时重置计时器
-                delayTimer = 0;
+                cancelCloseTimer();
             }
         }
         
@@ -85,6 +76,7 @@ public class PlatformDoorBlockEntity extends BlockEntity {
     public void closeDoors() {
         if (world == null) return;
         
+        cancelCloseTimer();
         doorStatus = DoorStatus.CLOSING;
         PlatformDoorBlock.autoCloseDoor(world, pos);
         doorStatus = DoorStatus.CLOSED;
@@ -93,7 +85,27 @@ public class PlatformDoorBlockEntity extends BlockEntity {
     
     // 延迟关闭门
     public void closeDoorsAfterDelay(int seconds) {
-        this.delayTimer = seconds * 20; // 转换为游戏刻
+        scheduleClose(seconds * 20); // 转换为游戏刻
+    }
+    
+    // 通过时间轮安排关门，到期时门仍开着才关闭
+    private void scheduleClose(int delayTicks) {
+        if (world == null || world.isClient) return;
+        
+        cancelCloseTimer();
+        closeTimer = TickScheduler.getInstance(world).schedule(delayTicks, () -> {
+            closeTimer = null;
+            if (!isRemoved() && doorStatus == DoorStatus.OPEN) {
+                closeDoors();
+            }
+        });
+    }
+    
+    private void cancelCloseTimer() {
+        if (closeTimer != null) {
+            closeTimer.cancel();
+            closeTimer = null;
+        }
     }
     
     // 更新乘客数量
@@ -127,7 +139,6 @@ public class PlatformDoorBlockEntity extends BlockEntity {
     protected void writeNbt(NbtCompound nbt) {
         super.writeNbt(nbt);
         nbt.putInt("doorStatus", doorStatus.ordinal());
-        nbt.putInt("delayTimer", delayTimer);
         nbt.putInt("passengerCount", passengerCount);
     }
     
@@ -135,7 +146,6 @@ public class PlatformDoorBlockEntity extends BlockEntity {
     public void readNbt(NbtCompound nbt) {
         super.readNbt(nbt);
         doorStatus = DoorStatus.values()[nbt.getInt("doorStatus")];
-        delayTimer = nbt.getInt("delayTimer");
         passengerCount = nbt.getInt("passengerCount");
     }
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package com.krt.mod.blockentity.power;
 
 import com.krt.mod.block.power.OverheadWireBlock;
-import com.krt.mod.block.power.OverheadWirePoleBlock;
+import com.krt.mod.blockentity.ModBlockEntities;
+import com.krt.mod.system.PowerNetwork;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.NbtCompound;
@@ -12,12 +14,17 @@ import net.minecraft.world.World;
 
 /**
  * 接触网方块实体 - 管理接触网电力传输和张力
+ * 不参与每刻更新：通断电由电力网络回调，张力由支柱通知，磨损按世界时间推算
  */
 public class OverheadWireBlockEntity extends BlockEntity {
     private int powerLevel = 0;
     private boolean powered = false;
     private int tensionLevel = 50; // 张力等级(0-100)
-    private int wearLevel = 0; // 磨损等级(0-100)
+    private int wearLevel = 0; // 磨损等级(0-100)，对应锚点时刻
+    private long wearAnchorTime = -1; // 磨损锚点（世界时间），-1表示尚未确定
+    private static final int WEAR_INTERVAL = 100; // 磨损间隔（刻）
+    // 电力网络回调（固定实例，便于卸载时移除）
+    private final PowerNetwork.NodeListener networkListener = this::onNetworkPowerChanged;
     
     public OverheadWireBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.OVERHEAD_WIRE, pos, state);
@@ -30,6 +37,8 @@ public class OverheadWireBlockEntity extends BlockEntity {
         powered = nbt.getBoolean("Powered");
         tensionLevel = nbt.getInt("TensionLevel");
         wearLevel = nbt.getInt("WearLevel");
+        // 保存的是结算后的磨损，卸载期间不磨损，锚点从加载时开始
+        wearAnchorTime = world != null ? world.getTime() : -1;
     }
     
     @Override
@@ -38,7 +47,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
         nbt.putInt("PowerLevel", powerLevel);
         nbt.putBoolean("Powered", powered);
         nbt.putInt("TensionLevel", tensionLevel);
-        nbt.putInt("WearLevel", wearLevel);
+        nbt.putInt("WearLevel", getWearLevel());
     }
     
     /**
@@ -50,7 +59,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
         String wearStatus = getWearStatus();
         
         return Text.translatable("krt.gui.overhead_wire.status", 
-                powerStatus, tensionLevel + "%", tensionStatus, wearLevel + "%", wearStatus);
+                powerStatus, tensionLevel + "%", tensionStatus, getWearLevel() + "%", wearStatus);
     }
     
     /**
@@ -66,6 +75,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
      * 获取磨损状态描述
      */
     private String getWearStatus() {
+        int wearLevel = getWearLevel();
         if (wearLevel > 80) return "严重磨损";
         if (wearLevel > 50) return "中度磨损";
         if (wearLevel > 20) return "轻微磨损";
@@ -76,6 +86,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
      * 设置供电状态
      */
     public void setPowered(boolean powered) {
+        settleWear();
         this.powered = powered;
         this.powerLevel = powered ? 100 : 0;
         markDirty();
@@ -107,8 +118,12 @@ public class OverheadWireBlockEntity extends BlockEntity {
      * 设置张力等级
      */
     public void setTensionLevel(int level) {
-        this.tensionLevel = Math.max(0, Math.min(100, level));
-        markDirty();
+        int newLevel = Math.max(0, Math.min(100, level));
+        if (newLevel != tensionLevel) {
+            settleWear();
+            this.tensionLevel = newLevel;
+            markDirty();
+        }
     }
     
     /**
@@ -128,7 +143,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
         if (world == null) return;
         
         // 检查连接的支柱
-        Direction facing = world.getBlockState(pos).get(FACING);
+        Direction facing = world.getBlockState(pos).get(OverheadWireBlock.FACING);
         checkPole(pos.offset(facing));
         checkPole(pos.offset(facing.getOpposite()));
     }
@@ -153,7 +168,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
         int poleCount = 0;
         
         // 检查连接的支柱
-        Direction facing = world.getBlockState(pos).get(FACING);
+        Direction facing = world.getBlockState(pos).get(OverheadWireBlock.FACING);
         BlockEntity entity1 = world.getBlockEntity(pos.offset(facing));
         BlockEntity entity2 = world.getBlockEntity(pos.offset(facing.getOpposite()));
         
@@ -176,6 +191,7 @@ public class OverheadWireBlockEntity extends BlockEntity {
      * 增加磨损
      */
     public void increaseWear(int amount) {
+        settleWear();
         wearLevel = Math.min(100, wearLevel + amount);
         markDirty();
     }
@@ -184,87 +200,89 @@ public class OverheadWireBlockEntity extends BlockEntity {
      * 修复磨损
      */
     public void repair() {
+        settleWear();
         wearLevel = 0;
         markDirty();
     }
     
     /**
-     * 服务器端tick更新
+     * 计算自锚点以来的磨损等级（每100刻按当前速率增加，与世界时间对齐）
      */
-    public static void tick(World world, BlockPos pos, BlockState state, OverheadWireBlockEntity entity) {
-        if (world.isClient) {
-            return;
+    public int getWearLevel() {
+        if (world == null || wearAnchorTime < 0) {
+            return wearLevel;
         }
+        long intervals = world.getTime() / WEAR_INTERVAL - wearAnchorTime / WEAR_INTERVAL;
+        return (int) Math.min(100, wearLevel + Math.max(0, intervals) * getWearRate());
+    }
+    
+    /**
+     * 每个间隔的磨损增量
+     */
+    private int getWearRate() {
+        int wearIncrease = 1;
         
-        // 更新张力（基于支柱）
-        entity.updateTensionFromPoles();
-        
-        // 检查电力传输
-        boolean wasPowered = entity.powered;
-        entity.checkPowerTransfer();
-        
-        // 更新磨损（基于张力和电力负载）
-        entity.updateWear();
+        // 张力异常会加速磨损
+        if (tensionLevel < 30 || tensionLevel > 70) {
+            wearIncrease += 1;
+        }
         
-        if (wasPowered != entity.powered) {
-            entity.updateBlockState();
+        // 通电状态下磨损增加
+        if (powered) {
+            wearIncrease += 1;
         }
+        return wearIncrease;
     }
     
     /**
-     * 检查电力传输
+     * 磨损速率变化前结算已累积的磨损，并以当前时间为新锚点
      */
-    private void checkPowerTransfer() {
-        if (world == null) return;
-        
-        // 检查是否连接到通电的支柱或其他接触网
-        Direction facing = world.getBlockState(pos).get(FACING);
-        
-        // 检查相邻的支柱
-        BlockEntity entity1 = world.getBlockEntity(pos.offset(facing));
-        BlockEntity entity2 = world.getBlockEntity(pos.offset(facing.getOpposite()));
-        
-        if (entity1 instanceof OverheadWirePoleBlockEntity poleEntity1 && poleEntity1.isPowered()) {
-            setPowered(true);
-            return;
+    private void settleWear() {
+        wearLevel = getWearLevel();
+        if (world != null) {
+            wearAnchorTime = world.getTime();
         }
-        if (entity2 instanceof OverheadWirePoleBlockEntity poleEntity2 && poleEntity2.isPowered()) {
-            setPowered(true);
-            return;
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::activate);
         }
-        
-        // 检查相邻的接触网
-        if (entity1 instanceof OverheadWireBlockEntity wireEntity1 && wireEntity1.isPowered()) {
-            setPowered(true);
+    }
+    
+    /**
+     * 加入电力网络并同步张力，之后只在网络通断或支柱张力变化时更新
+     */
+    private void activate() {
+        if (isRemoved() || world == null) {
             return;
         }
-        if (entity2 instanceof OverheadWireBlockEntity wireEntity2 && wireEntity2.isPowered()) {
-            setPowered(true);
-            return;
+        if (wearAnchorTime < 0) {
+            wearAnchorTime = world.getTime();
         }
-        
-        setPowered(false);
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        network.registerNode(pos, PowerNetwork.NodeType.OVERHEAD_WIRE, networkListener);
+        updateTensionFromPoles();
+        onNetworkPowerChanged(network.isPowered(pos));
     }
     
     /**
-     * 更新磨损
+     * 电力网络通断变化回调
      */
-    private void updateWear() {
-        // 每100tick增加一点磨损
-        if (world.getTime() % 100 == 0) {
-            int wearIncrease = 1;
-            
-            // 张力异常会加速磨损
-            if (tensionLevel < 30 || tensionLevel > 70) {
-                wearIncrease += 1;
-            }
-            
-            // 通电状态下磨损增加
-            if (powered) {
-                wearIncrease += 1;
-            }
-            
-            increaseWear(wearIncrease);
+    private void onNetworkPowerChanged(boolean nowPowered) {
+        if (!isRemoved() && nowPowered != powered) {
+            setPowered(nowPowered);
+        }
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (world != null && !world.isClient) {
+            PowerNetwork.getInstance(world).removeNodeListener(pos, networkListener);
         }
     }
-}
\ No newline at end of file
+}
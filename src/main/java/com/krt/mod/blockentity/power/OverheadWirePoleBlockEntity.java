@@ -1,13 +1,15 @@
 package com.krt.mod.blockentity.power;
 
-import com.krt.mod.block.power.OverheadWireBlock;
-import com.krt.mod.system.PowerSupplySystem;
-import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.block.power.OverheadWirePoleBlock;
+import com.krt.mod.blockentity.ModBlockEntities;
+import com.krt.mod.system.PowerNetwork;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
 
 import java.util.ArrayList;
@@ -15,13 +17,20 @@ import java.util.List;
 
 /**
  * 接触网支柱方块实体 - 管理接触网张力和连接
+ * 不参与每刻更新：维护天数和张力衰减按世界日数推算，张力状态变化的日期由定时任务通知
  */
 public class OverheadWirePoleBlockEntity extends BlockEntity {
     private int tensionLevel = 50; // 张力等级(0-100)
     private int powerLevel = 0;    // 电力等级
     private boolean powered = false; // 是否通电
     private List<BlockPos> connectedWires = new ArrayList<>(); // 连接的接触网
-    private int maintenanceDays = 0; // 维护天数
+    private int maintenanceDays = 0; // 维护天数，对应锚点日期
+    private long maintenanceAnchorDay = -1; // 锚点日期（世界时间/24000），-1表示尚未确定
+    private static final long TICKS_PER_DAY = 24000;
+    // 下一次张力状态变化的定时任务（不持久化，加载后重新安排）
+    private TickScheduler.TimerHandle tensionTimer;
+    // 电力网络回调（固定实例，便于卸载时移除）
+    private final PowerNetwork.NodeListener networkListener = this::onNetworkPowerChanged;
     
     public OverheadWirePoleBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.OVERHEAD_WIRE_POLE, pos, state);
@@ -34,6 +43,8 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
         powerLevel = nbt.getInt("PowerLevel");
         powered = nbt.getBoolean("Powered");
         maintenanceDays = nbt.getInt("MaintenanceDays");
+        // 保存的是结算后的天数和张力，卸载期间不计天数，锚点从加载时开始
+        maintenanceAnchorDay = world != null ? getWorldDay() : -1;
         
         // 读取连接的接触网位置
         int count = nbt.getInt("WireCount");
@@ -49,10 +60,10 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
     @Override
     public void writeNbt(NbtCompound nbt) {
         super.writeNbt(nbt);
-        nbt.putInt("TensionLevel", tensionLevel);
+        nbt.putInt("TensionLevel", getTensionLevel());
         nbt.putInt("PowerLevel", powerLevel);
         nbt.putBoolean("Powered", powered);
-        nbt.putInt("MaintenanceDays", maintenanceDays);
+        nbt.putInt("MaintenanceDays", getMaintenanceDays());
         
         // 保存连接的接触网位置
         nbt.putInt("WireCount", connectedWires.size());
@@ -69,15 +80,16 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
      */
     public Text getStatusText() {
         String powerStatus = powered ? "已通电" : "未通电";
-        String tensionStatus = getTensionStatus();
+        int tension = getTensionLevel();
+        String tensionStatus = getTensionStatus(tension);
         return Text.translatable("krt.gui.overhead_wire_pole.status", 
-                powerStatus, tensionLevel + "%", tensionStatus, maintenanceDays);
+                powerStatus, tension + "%", tensionStatus, getMaintenanceDays());
     }
     
     /**
      * 获取张力状态描述
      */
-    private String getTensionStatus() {
+    private static String getTensionStatus(int tensionLevel) {
         if (tensionLevel < 30) return "过松";
         if (tensionLevel > 70) return "过紧";
         return "正常";
@@ -87,18 +99,18 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
      * 调整张力
      */
     public void adjustTension(int amount) {
+        settle();
         tensionLevel = Math.max(0, Math.min(100, tensionLevel + amount));
-        markDirty();
-        updateBlockState();
+        onTensionChanged();
     }
     
     /**
      * 设置张力为特定值
      */
     public void setTension(int level) {
+        settle();
         tensionLevel = Math.max(0, Math.min(100, level));
-        markDirty();
-        updateBlockState();
+        onTensionChanged();
     }
     
     /**
@@ -149,7 +161,7 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
      * 更新方块状态
      */
     private void updateBlockState() {
-        if (world != null && world.getBlockState(pos).getBlock() instanceof BlockWithEntity) {
+        if (world != null && world.getBlockState(pos).getBlock() instanceof OverheadWirePoleBlock) {
             BlockState state = world.getBlockState(pos);
             world.setBlockState(pos, state.with(net.minecraft.state.property.Properties.POWERED, powered));
         }
@@ -159,17 +171,17 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
      * 执行维护
      */
     public void performMaintenance() {
+        settle();
         maintenanceDays = 0;
         tensionLevel = 50; // 重置为正常张力
-        markDirty();
-        updateBlockState();
+        onTensionChanged();
     }
     
     /**
      * 获取当前张力
      */
     public int getTensionLevel() {
-        return tensionLevel;
+        return getTensionAfterDays(getMaintenanceDays());
     }
     
     /**
@@ -187,68 +199,138 @@ public class OverheadWirePoleBlockEntity extends BlockEntity {
     }
     
     /**
-     * 服务器端tick更新
+     * 获取维护天数（按世界日数推算）
+     */
+    public int getMaintenanceDays() {
+        if (world == null || maintenanceAnchorDay < 0) {
+            return maintenanceDays;
+        }
+        return maintenanceDays + (int) Math.max(0, getWorldDay() - maintenanceAnchorDay);
+    }
+    
+    /**
+     * 维护天数超过7天后每天张力下降5点
+     */
+    private int getTensionAfterDays(int days) {
+        int decayDays = Math.max(0, days - Math.max(maintenanceDays, 7));
+        return Math.max(0, tensionLevel - decayDays * 5);
+    }
+    
+    private long getWorldDay() {
+        return world.getTime() / TICKS_PER_DAY;
+    }
+    
+    /**
+     * 结算到当前日期，以当前日期为新锚点
      */
-    public static void tick(World world, BlockPos pos, BlockState state, OverheadWirePoleBlockEntity entity) {
-        if (world.isClient) {
+    private void settle() {
+        if (world == null) {
             return;
         }
-        
-        // 每24000tick(一天)更新维护天数
-        if (world.getTime() % 24000 == 0) {
-            entity.maintenanceDays++;
-            
-            // 维护天数过多会影响张力
-            if (entity.maintenanceDays > 7) {
-                entity.tensionLevel = Math.max(0, entity.tensionLevel - 5);
-            }
-            entity.markDirty();
+        int days = getMaintenanceDays();
+        tensionLevel = getTensionAfterDays(days);
+        maintenanceDays = days;
+        maintenanceAnchorDay = getWorldDay();
+    }
+    
+    /**
+     * 张力状态发生变化（正常/过松/过紧）的那一天安排通知相连接触网
+     */
+    private void scheduleTensionTransition() {
+        if (tensionTimer != null) {
+            tensionTimer.cancel();
+            tensionTimer = null;
+        }
+        if (world == null || world.isClient || maintenanceAnchorDay < 0) {
+            return;
         }
         
-        // 检查电力连接
-        boolean wasPowered = entity.powered;
-        entity.checkPowerConnection();
-        
-        if (wasPowered != entity.powered) {
-            entity.updateBlockState();
+        int days = getMaintenanceDays();
+        String status = getTensionStatus(getTensionAfterDays(days));
+        // 张力每天最多下降5点，最多20天降到0
+        for (int day = days + 1; day <= days + 21; day++) {
+            if (!getTensionStatus(getTensionAfterDays(day)).equals(status)) {
+                long targetTick = (maintenanceAnchorDay + day - maintenanceDays) * TICKS_PER_DAY;
+                tensionTimer = TickScheduler.getInstance(world).schedule(targetTick - world.getTime(), () -> {
+                    tensionTimer = null;
+                    if (!isRemoved()) {
+                        notifyWires();
+                        scheduleTensionTransition();
+                    }
+                });
+                return;
+            }
         }
     }
     
     /**
-     * 检查电力连接
+     * 通知相邻接触网重新计算张力
      */
-    private void checkPowerConnection() {
-        // 检查相邻的电力连接器或接触网
-        for (BlockPos wirePos : connectedWires) {
-            BlockEntity entity = world.getBlockEntity(wirePos);
+    private void notifyWires() {
+        if (world == null || world.isClient) {
+            return;
+        }
+        for (Direction direction : Direction.Type.HORIZONTAL) {
+            BlockEntity entity = world.getBlockEntity(pos.offset(direction));
             if (entity instanceof OverheadWireBlockEntity wireEntity) {
-                if (wireEntity.isPowered()) {
-                    setPowered(true);
-                    return;
-                }
+                wireEntity.updateTensionFromPoles();
             }
         }
-        
-        // 检查相邻的电力连接器
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 3; y++) { // 向上检查更多
-                for (int z = -1; z <= 1; z++) {
-                    if (x == 0 && y == 0 && z == 0) continue;
-                    
-                    BlockPos neighborPos = pos.add(x, y, z);
-                    BlockEntity neighborEntity = world.getBlockEntity(neighborPos);
-                    
-                    if (neighborEntity instanceof RailPowerConnectorBlockEntity connector) {
-                        if (connector.isConnectedToPowerGrid() && 
-                            connector.getPowerType() == PowerSupplySystem.PowerType.OVERHEAD_WIRE) {
-                            setPowered(true);
-                            return;
-                        }
-                    }
-                }
-            }
+    }
+    
+    /**
+     * 张力被修改后通知接触网并重新安排状态变化
+     */
+    private void onTensionChanged() {
+        markDirty();
+        updateBlockState();
+        notifyWires();
+        scheduleTensionTransition();
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::activate);
+        }
+    }
+    
+    /**
+     * 加入电力网络，之后只在网络通断或张力状态变化时更新
+     */
+    private void activate() {
+        if (isRemoved() || world == null) {
+            return;
+        }
+        if (maintenanceAnchorDay < 0) {
+            maintenanceAnchorDay = getWorldDay();
+        }
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        network.registerNode(pos, PowerNetwork.NodeType.OVERHEAD_POLE, networkListener);
+        onNetworkPowerChanged(network.isPowered(pos));
+        scheduleTensionTransition();
+    }
+    
+    /**
+     * 电力网络通断变化回调
+     */
+    private void onNetworkPowerChanged(boolean nowPowered) {
+        if (!isRemoved() && nowPowered != powered) {
+            setPowered(nowPowered);
+        }
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (tensionTimer != null) {
+            tensionTimer.cancel();
+            tensionTimer = null;
+        }
+        if (world != null && !world.isClient) {
+            PowerNetwork.getInstance(world).removeNodeListener(pos, networkListener);
         }
-        
-        setPowered(false);
     }
-}
\ No newline at end of file
+}
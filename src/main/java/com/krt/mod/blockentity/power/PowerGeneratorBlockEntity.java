@@ -2,8 +2,10 @@ package com.krt.mod.blockentity.power;
 
 import com.krt.mod.inventory.InventoryScreens;
 import com.krt.mod.inventory.screen.PowerGeneratorScreenHandler;
+import com.krt.mod.system.PowerNetwork;
 import com.krt.mod.system.PowerSupplySystem;
 import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import com.krt.mod.blockentity.ModBlockEntities;
@@ -25,6 +27,7 @@ import net.minecraft.world.World;
 
 /**
  * 发电机方块实体，负责能源生产和管理
+ * 不参与每刻更新：剩余燃烧时间由锚点推算，燃尽时刻由定时任务处理
  */
 public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory, NamedScreenHandlerFactory {
     private static final int INVENTORY_SIZE = 2;
@@ -36,6 +39,9 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
     private int maxBurnTime = 0;
     private int powerGeneration = 200; // 每tick发电量
     private boolean isActive = false;
+    private long burnAnchorTime = -1; // 燃烧锚点（世界时间），burnTime为该时刻的剩余燃烧时间
+    // 燃料燃尽的定时任务（不持久化，加载后重新安排）
+    private TickScheduler.TimerHandle burnTimer;
     
     public PowerGeneratorBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.POWER_GENERATOR, pos, state);
@@ -49,13 +55,15 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
         maxBurnTime = nbt.getInt("MaxBurnTime");
         isActive = nbt.getBoolean("IsActive");
         powerGeneration = nbt.getInt("PowerGeneration");
+        // 保存的是结算后的剩余燃烧时间，卸载期间不燃烧，锚点从加载时开始
+        burnAnchorTime = world != null ? world.getTime() : -1;
     }
     
     @Override
     public void writeNbt(NbtCompound nbt) {
         super.writeNbt(nbt);
         Inventories.writeNbt(nbt, inventory);
-        nbt.putInt("BurnTime", burnTime);
+        nbt.putInt("BurnTime", getBurnTime());
         nbt.putInt("MaxBurnTime", maxBurnTime);
         nbt.putBoolean("IsActive", isActive);
         nbt.putInt("PowerGeneration", powerGeneration);
@@ -107,6 +115,10 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
         if (stack.getCount() > stack.getMaxCount()) {
             stack.setCount(stack.getMaxCount());
         }
+        // 停机时放入燃料，下一刻尝试点火
+        if (slot == FUEL_SLOT && !isActive && !stack.isEmpty() && world != null && !world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::updateBurning);
+        }
     }
     
     @Override
@@ -126,7 +138,7 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
         if (maxBurnTime == 0) {
             return 0;
         }
-        return (int) (burnTime * 100.0 / maxBurnTime);
+        return (int) (getBurnTime() * 100.0 / maxBurnTime);
     }
     
     /**
@@ -135,7 +147,7 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
     public Text getStatusText() {
         String status = isActive ? "运行中" : "未运行";
         String powerInfo = "发电量: " + powerGeneration + "/tick";
-        String fuelInfo = "燃料: " + burnTime + "/" + maxBurnTime;
+        String fuelInfo = "燃料: " + getBurnTime() + "/" + maxBurnTime;
         return Text.translatable("krt.gui.power_generator.status", status, powerInfo, fuelInfo);
     }
     
@@ -167,47 +179,107 @@ public class PowerGeneratorBlockEntity extends BlockEntity implements Inventory,
     }
     
     /**
-     * 服务器端tick更新
+     * 获取剩余燃烧时间（由锚点推算）
+     */
+    public int getBurnTime() {
+        if (world == null || burnAnchorTime < 0) {
+            return burnTime;
+        }
+        return (int) Math.max(0, burnTime - Math.max(0, world.getTime() - burnAnchorTime));
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::activate);
+        }
+    }
+    
+    /**
+     * 加入电力网络，继续加载前未燃尽的燃料
+     */
+    private void activate() {
+        if (isRemoved() || world == null) {
+            return;
+        }
+        if (burnAnchorTime < 0) {
+            burnAnchorTime = world.getTime();
+        }
+        PowerNetwork.getInstance(world).registerNode(pos, PowerNetwork.NodeType.GENERATOR);
+        updateBurning();
+    }
+    
+    /**
+     * 燃料燃尽时消耗下一份燃料，没有燃料则停机，并安排下一次燃尽的时刻
+     * 只在加载、燃尽和放入燃料时调用
      */
-    public static void tick(World world, BlockPos pos, BlockState state, PowerGeneratorBlockEntity entity) {
-        if (world.isClient) {
+    private void updateBurning() {
+        if (isRemoved() || world == null || world.isClient) {
             return;
         }
+        boolean wasActive = isActive;
         
-        // 检查燃料
-        if (entity.burnTime > 0) {
-            entity.burnTime--;
-            entity.isActive = true;
-            
-            // 向供电系统提供电力
-            PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
-            if (powerSystem != null && powerSystem.addPowerSource(pos, PowerSupplySystem.PowerType.OVERHEAD_WIRE, entity.powerGeneration)) {
-                // 电源已添加到系统
-            }
-        } else {
-            entity.isActive = false;
-            
+        int remaining = getBurnTime();
+        if (remaining <= 0) {
+            remaining = 0;
             // 尝试消耗燃料
-            ItemStack fuelStack = entity.getStack(FUEL_SLOT);
+            ItemStack fuelStack = getStack(FUEL_SLOT);
             if (!fuelStack.isEmpty()) {
-                // 计算燃料值（示例实现）
-                entity.maxBurnTime = calculateFuelValue(fuelStack.getItem());
-                if (entity.maxBurnTime > 0) {
-                    entity.burnTime = entity.maxBurnTime;
+                int fuelValue = calculateFuelValue(fuelStack.getItem());
+                if (fuelValue > 0) {
+                    maxBurnTime = fuelValue;
+                    remaining = fuelValue;
                     fuelStack.decrement(1);
-                    entity.markDirty();
                 }
             }
+            burnTime = remaining;
+            burnAnchorTime = world.getTime();
+            markDirty();
         }
+        isActive = remaining > 0;
+        
+        if (burnTimer != null) {
+            burnTimer.cancel();
+            burnTimer = null;
+        }
+        if (isActive) {
+            burnTimer = TickScheduler.getInstance(world).schedule(remaining, () -> {
+                burnTimer = null;
+                updateBurning();
+            });
+        }
+        
+        // 更新在电力网络中的供电量，仅在启停时引起分量通断变化
+        PowerNetwork.getInstance(world).setSupply(pos, isActive ? powerGeneration : 0);
         
-        // 如果状态改变，通知客户端
-        boolean wasActive = entity.isActive;
-        boolean nowActive = entity.burnTime > 0;
-        if (wasActive != nowActive) {
+        if (wasActive != isActive) {
+            // 向供电系统登记或撤出电源
+            PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+            if (powerSystem != null) {
+                if (isActive) {
+                    powerSystem.addPowerSource(pos, PowerSupplySystem.PowerType.OVERHEAD_WIRE, powerGeneration);
+                } else {
+                    powerSystem.removePowerSource(pos);
+                }
+            }
+            // 状态改变，通知客户端
+            markDirty();
+            BlockState state = getCachedState();
             world.updateListeners(pos, state, state, 3);
         }
     }
     
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (burnTimer != null) {
+            burnTimer.cancel();
+            burnTimer = null;
+        }
+    }
+    
     /**
      * 计算燃料值
      */
@@ -1,13 +1,14 @@
 package com.krt.mod.blockentity.power;
 
+import com.krt.mod.system.PowerNetwork;
 import com.krt.mod.system.PowerSupplySystem;
 import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import com.krt.mod.blockentity.ModBlockEntities;
 import net.minecraft.inventory.Inventories;
 import net.minecraft.item.ItemStack;
-import com.krt.mod.block.power.PowerTransmissionLineBlock;
 import com.krt.mod.block.power.PowerStorageBlock;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.text.Text;
@@ -17,13 +18,24 @@ import net.minecraft.world.World;
 
 /**
  * 电力存储块方块实体，管理电力的存储和释放
+ * 不参与每刻更新：电量由锚点和充放电速率推算，充满、放空及电网通断时才更新状态
  */
 public class PowerStorageBlockEntity extends BlockEntity {
     private static final int MAX_CAPACITY = 100000;
-    private int storedPower = 0;
+    private static final int CHARGE_RATE = 50; // 每刻充电量
+    private static final int DISCHARGE_RATE = 100; // 每刻放电量
+    private int storedPower = 0; // 锚点时刻的存储电量
+    private long chargeAnchorTime = -1; // 充放电锚点（世界时间），-1表示尚未确定
     private boolean isCharging = false;
     private boolean isDischarging = false;
     private boolean isContributingPower = false;
+    // 当前向电力网络提供的电力（不持久化，加载后重新计算）
+    private int suppliedToNetwork = 0;
+    // 下一次充满或放空的定时任务
+    private TickScheduler.TimerHandle modeTimer;
+    // 电力网络回调（固定实例，便于卸载时移除）
+    private final PowerNetwork.NodeListener networkListener = powered -> updateMode();
+    private final PowerNetwork.SupplyListener supplyListener = this::updateMode;
     
     public PowerStorageBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.POWER_STORAGE, pos, state);
@@ -36,12 +48,14 @@ public class PowerStorageBlockEntity extends BlockEntity {
         isCharging = nbt.getBoolean("IsCharging");
         isDischarging = nbt.getBoolean("IsDischarging");
         isContributingPower = nbt.getBoolean("IsContributingPower");
+        // 保存的是结算后的电量，卸载期间不充放电，锚点从加载时开始
+        chargeAnchorTime = world != null ? world.getTime() : -1;
     }
     
     @Override
     public void writeNbt(NbtCompound nbt) {
         super.writeNbt(nbt);
-        nbt.putInt("StoredPower", storedPower);
+        nbt.putInt("StoredPower", getPower());
         nbt.putBoolean("IsCharging", isCharging);
         nbt.putBoolean("IsDischarging", isDischarging);
         nbt.putBoolean("IsContributingPower", isContributingPower);
@@ -51,14 +65,19 @@ public class PowerStorageBlockEntity extends BlockEntity {
      * 获取当前存储的电力百分比
      */
     public int getPowerPercentage() {
-        return (int) ((double) storedPower / MAX_CAPACITY * 100);
+        return (int) ((double) getPower() / MAX_CAPACITY * 100);
     }
     
     /**
-     * 获取当前存储的电力值
+     * 获取当前存储的电力值（由锚点电量和充放电速率推算）
      */
     public int getPower() {
-        return storedPower;
+        if (world == null || chargeAnchorTime < 0) {
+            return storedPower;
+        }
+        long elapsed = Math.max(0, world.getTime() - chargeAnchorTime);
+        long power = storedPower + elapsed * getChargeRate();
+        return (int) Math.max(0, Math.min(MAX_CAPACITY, power));
     }
     
     /**
@@ -78,7 +97,7 @@ public class PowerStorageBlockEntity extends BlockEntity {
         
         return Text.translatable("krt.gui.power_storage.status", 
                 status, 
-                storedPower + "/" + MAX_CAPACITY, 
+                getPower() + "/" + MAX_CAPACITY, 
                 getPowerPercentage() + "%");
     }
     
@@ -86,10 +105,14 @@ public class PowerStorageBlockEntity extends BlockEntity {
      * 存储电力
      */
     public int storePower(int amount) {
+        settle();
         int before = storedPower;
         storedPower = Math.min(storedPower + amount, MAX_CAPACITY);
-        isCharging = storedPower < MAX_CAPACITY;
-        isDischarging = false;
+        if (storedPower != before) {
+            // 电量变化会改变充满/放空的时刻
+            updateMode();
+            markDirty();
+        }
         return storedPower - before;
     }
     
@@ -97,36 +120,21 @@ public class PowerStorageBlockEntity extends BlockEntity {
      * 释放电力
      */
     public int releasePower(int amount) {
+        settle();
         int before = storedPower;
         storedPower = Math.max(storedPower - amount, 0);
-        isDischarging = storedPower > 0;
-        isCharging = false;
+        if (storedPower != before) {
+            updateMode();
+            markDirty();
+        }
         return before - storedPower;
     }
     
     /**
-     * 检查是否连接到电源
+     * 检查是否连接到电源（所在电力网络分量中除自身外还有供电）
      */
-    private boolean isConnectedToPowerSource(World world) {
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 1; y++) {
-                for (int z = -1; z <= 1; z++) {
-                    if (x == 0 && y == 0 && z == 0) continue;
-                    
-                    BlockPos neighborPos = pos.add(x, y, z);
-                    BlockEntity neighborEntity = world.getBlockEntity(neighborPos);
-                    
-                    if (neighborEntity instanceof PowerGeneratorBlockEntity) {
-                        return true;
-                    }
-                    
-                    if (world.getBlockState(neighborPos).getBlock() instanceof PowerTransmissionLineBlock) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    private boolean isConnectedToPowerSource(PowerNetwork network) {
+        return network.getComponentSupply(pos) - suppliedToNetwork > 0;
     }
     
     /**
@@ -137,55 +145,138 @@ public class PowerStorageBlockEntity extends BlockEntity {
     }
     
     /**
-     * 服务器端tick更新
+     * 每刻充放电速率（充电为正）
+     */
+    private int getChargeRate() {
+        if (isCharging) {
+            return CHARGE_RATE;
+        }
+        if (isDischarging) {
+            return -DISCHARGE_RATE;
+        }
+        return 0;
+    }
+    
+    /**
+     * 结算到当前时间，以当前时间为新锚点
+     */
+    private void settle() {
+        storedPower = getPower();
+        if (world != null) {
+            chargeAnchorTime = world.getTime();
+        }
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::activate);
+        }
+    }
+    
+    /**
+     * 加入电力网络并登记到供电系统以接收再生制动剩余能量
      */
-    public static void tick(World world, BlockPos pos, BlockState state, PowerStorageBlockEntity entity) {
-        if (world.isClient) {
+    private void activate() {
+        if (isRemoved() || world == null) {
             return;
         }
+        if (chargeAnchorTime < 0) {
+            chargeAnchorTime = world.getTime();
+        }
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        network.registerNode(pos, PowerNetwork.NodeType.STORAGE, networkListener);
+        network.setSupplyListener(pos, supplyListener);
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem != null) {
+            powerSystem.addStorageUnit(this);
+        }
+        updateMode();
+    }
+    
+    /**
+     * 根据电网连接情况确定充放电模式，并安排充满或放空的时刻
+     * 只在网络通断或供电量变化、充满/放空以及外部存取电力时调用
+     * 储能自身放电也会使分量有电，因此还需在其他电源启停时重新判断
+     */
+    private void updateMode() {
+        if (isRemoved() || world == null || world.isClient) {
+            return;
+        }
+        settle();
+        boolean wasCharging = isCharging;
+        boolean wasDischarging = isDischarging;
         
-        boolean wasContributing = entity.isContributingPower;
-        entity.isContributingPower = false;
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        boolean connectedToPower = isConnectedToPowerSource(network);
+        isCharging = connectedToPower && storedPower < MAX_CAPACITY;
+        isDischarging = !connectedToPower && storedPower > 0;
+        isContributingPower = isDischarging;
         
-        // 检查是否连接到电源
-        boolean connectedToPower = entity.isConnectedToPowerSource(world);
+        // 安排下一次状态变化
+        if (modeTimer != null) {
+            modeTimer.cancel();
+            modeTimer = null;
+        }
+        long ticksUntilChange = 0;
+        if (isCharging) {
+            ticksUntilChange = (MAX_CAPACITY - storedPower + CHARGE_RATE - 1) / CHARGE_RATE;
+        } else if (isDischarging) {
+            ticksUntilChange = (storedPower + DISCHARGE_RATE - 1) / DISCHARGE_RATE;
+        }
+        if (ticksUntilChange > 0) {
+            modeTimer = TickScheduler.getInstance(world).schedule(ticksUntilChange, () -> {
+                modeTimer = null;
+                updateMode();
+            });
+        }
         
-        // 处理充电/放电逻辑
-        if (connectedToPower && entity.storedPower < entity.MAX_CAPACITY) {
-            // 充电状态
-            entity.isCharging = true;
-            entity.isDischarging = false;
-            // 模拟从电源获取电力（实际应从发电系统获取）
-            int chargeAmount = 50; // 每tick充电量
-            entity.storePower(chargeAmount);
-        } else if (!connectedToPower && entity.storedPower > 0) {
-            // 放电状态，向供电系统提供电力
-            entity.isCharging = false;
-            entity.isDischarging = true;
-            entity.isContributingPower = true;
-            
-            PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
-            if (powerSystem != null) {
-                // 计算可提供的电力
-                int powerToSupply = Math.min(entity.storedPower, 100);
-                powerSystem.addPowerSource(pos, PowerSupplySystem.PowerType.OVERHEAD_WIRE, powerToSupply);
-                entity.releasePower(powerToSupply);
+        if (wasCharging == isCharging && wasDischarging == isDischarging) {
+            return;
+        }
+        
+        // 放电时作为电源，电量耗尽或转为充电时撤出
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem != null) {
+            if (isDischarging) {
+                powerSystem.addPowerSource(pos, PowerSupplySystem.PowerType.OVERHEAD_WIRE, DISCHARGE_RATE);
+            } else if (wasDischarging) {
+                powerSystem.removePowerSource(pos);
             }
-        } else {
-            // 待机状态
-            entity.isCharging = false;
-            entity.isDischarging = false;
         }
         
-        // 如果状态改变，通知客户端
-        if (wasContributing != entity.isContributingPower || 
-            state.get(PowerStorageBlock.POWERED) != (entity.isCharging || entity.isDischarging)) {
-            world.setBlockState(pos, state.with(PowerStorageBlock.POWERED, 
-                    entity.isCharging || entity.isDischarging));
-            world.updateListeners(pos, state, state, 3);
+        // 先记录再通知网络，网络回调重入时可看到最新的供电量
+        int supply = isDischarging ? DISCHARGE_RATE : 0;
+        if (supply != suppliedToNetwork) {
+            suppliedToNetwork = supply;
+            network.setSupply(pos, supply);
         }
         
-        entity.markDirty();
+        BlockState state = world.getBlockState(pos);
+        if (state.getBlock() instanceof PowerStorageBlock) {
+            world.setBlockState(pos, state.with(PowerStorageBlock.POWERED, isCharging || isDischarging));
+        }
+        markDirty();
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (modeTimer != null) {
+            modeTimer.cancel();
+            modeTimer = null;
+        }
+        if (world != null && !world.isClient) {
+            PowerNetwork network = PowerNetwork.getInstance(world);
+            network.removeNodeListener(pos, networkListener);
+            network.removeSupplyListener(pos, supplyListener);
+            PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+            if (powerSystem != null) {
+                powerSystem.removeStorageUnit(this);
+            }
+        }
     }
     
     /**
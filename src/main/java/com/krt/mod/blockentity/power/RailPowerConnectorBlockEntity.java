@@ -1,13 +1,14 @@
 package com.krt.mod.blockentity.power;
 
+import com.krt.mod.system.PowerNetwork;
 import com.krt.mod.system.PowerSupplySystem;
 import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import com.krt.mod.blockentity.ModBlockEntities;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.text.Text;
-import com.krt.mod.block.power.PowerTransmissionLineBlock;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
@@ -19,6 +20,8 @@ public class RailPowerConnectorBlockEntity extends BlockEntity {
     private boolean connectedToPowerGrid = false;
     private PowerSupplySystem.PowerType powerType = PowerSupplySystem.PowerType.OVERHEAD_WIRE;
     private int coverageRadius = 16; // 覆盖半径（方块数）
+    // 电力网络回调（固定实例，便于卸载时移除）
+    private final PowerNetwork.NodeListener networkListener = this::onNetworkPowerChanged;
     
     public RailPowerConnectorBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.RAIL_POWER_CONNECTOR, pos, state);
@@ -66,6 +69,19 @@ public class RailPowerConnectorBlockEntity extends BlockEntity {
         return coverageRadius;
     }
     
+    /**
+     * 设置电力覆盖半径
+     */
+    public void setCoverageRadius(int radius) {
+        radius = Math.max(0, radius);
+        if (radius == coverageRadius) {
+            return;
+        }
+        this.coverageRadius = radius;
+        this.markDirty();
+        updateCoverage();
+    }
+    
     /**
      * 获取电力类型
      */
@@ -79,6 +95,19 @@ public class RailPowerConnectorBlockEntity extends BlockEntity {
     public void setPowerType(PowerSupplySystem.PowerType type) {
         this.powerType = type;
         this.markDirty();
+        updateCoverage();
+    }
+    
+    /**
+     * 覆盖范围变化后更新供电系统的覆盖索引
+     */
+    private void updateCoverage() {
+        if (world != null && !world.isClient) {
+            PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+            if (powerSystem != null) {
+                powerSystem.updateRailConnectorCoverage(this);
+            }
+        }
     }
     
     /**
@@ -90,69 +119,75 @@ public class RailPowerConnectorBlockEntity extends BlockEntity {
     }
     
     /**
-     * 获取电力等级
+     * 获取电力等级（服务器端按所在分量的供需实时计算）
      */
     public int getPowerLevel() {
+        if (connectedToPowerGrid && world != null && !world.isClient) {
+            return PowerNetwork.getInstance(world).getPowerLevel(pos);
+        }
         return powerLevel;
     }
     
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::activate);
+        }
+    }
+    
     /**
-     * 检查周围是否有电力传输线或发电机
+     * 加入电力网络，并登记到供电系统供列车查询轨道电力
      */
-    private boolean checkNearbyPowerSources(World world) {
-        // 检查相邻的方块是否有电源
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 1; y++) {
-                for (int z = -1; z <= 1; z++) {
-                    if (x == 0 && y == 0 && z == 0) continue; // 跳过自身
-                    
-                    BlockPos neighborPos = pos.add(x, y, z);
-                    BlockEntity neighborEntity = world.getBlockEntity(neighborPos);
-                    
-                    if (neighborEntity instanceof PowerGeneratorBlockEntity || 
-                        neighborEntity instanceof RailPowerConnectorBlockEntity) {
-                        // 找到电源或其他连接器
-                        return true;
-                    }
-                    
-                    // 检查是否为电力传输线
-                    if (world.getBlockState(neighborPos).getBlock() instanceof PowerTransmissionLineBlock) {
-                        return true;
-                    }
-                }
-            }
+    private void activate() {
+        if (isRemoved() || world == null) {
+            return;
+        }
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        network.registerNode(pos, PowerNetwork.NodeType.RAIL_CONNECTOR, networkListener);
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem != null) {
+            powerSystem.addRailConnector(this);
         }
-        return false;
+        onNetworkPowerChanged(network.isPowered(pos));
     }
     
     /**
-     * 服务器端tick更新
+     * 电力网络通断变化回调：所在分量是否有电源
      */
-    public static void tick(World world, BlockPos pos, BlockState state, RailPowerConnectorBlockEntity entity) {
-        if (world.isClient) {
+    private void onNetworkPowerChanged(boolean powered) {
+        if (isRemoved() || world == null || powered == connectedToPowerGrid) {
             return;
         }
+        connectedToPowerGrid = powered;
+        powerLevel = powered ? PowerNetwork.getInstance(world).getPowerLevel(pos) : 0;
         
-        // 检查连接状态
-        boolean wasConnected = entity.connectedToPowerGrid;
-        entity.connectedToPowerGrid = entity.checkNearbyPowerSources(world);
+        // 连接时向供电系统登记电源，断开时撤出
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem != null) {
+            if (powered) {
+                powerSystem.addPowerSource(pos, powerType, coverageRadius * 50);
+            } else {
+                powerSystem.removePowerSource(pos);
+            }
+        }
         
-        // 更新电力等级
-        if (entity.connectedToPowerGrid) {
-            entity.powerLevel = 100; // 完全电力
-            
-            // 向供电系统注册此连接器
+        // 连接状态改变，通知客户端
+        markDirty();
+        BlockState state = getCachedState();
+        world.updateListeners(pos, state, state, 3);
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (world != null && !world.isClient) {
+            PowerNetwork.getInstance(world).removeNodeListener(pos, networkListener);
             PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
             if (powerSystem != null) {
-                powerSystem.addPowerSource(pos, entity.powerType, entity.coverageRadius * 50);
+                powerSystem.removeRailConnector(this);
             }
-        } else {
-            entity.powerLevel = 0;
-        }
-        
-        // 如果连接状态改变，通知客户端
-        if (wasConnected != entity.connectedToPowerGrid) {
-            world.updateListeners(pos, state, state, 3);
         }
     }
-}
\ No newline at end of file
+}
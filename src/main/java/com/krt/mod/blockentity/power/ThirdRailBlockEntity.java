@@ -1,7 +1,8 @@
 package com.krt.mod.blockentity.power;
 
-import com.krt.mod.system.PowerSupplySystem;
-import com.krt.mod.system.PowerSupplySystemManager;
+import com.krt.mod.blockentity.ModBlockEntities;
+import com.krt.mod.system.PowerNetwork;
+import com.krt.mod.system.TickScheduler;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.nbt.NbtCompound;
@@ -18,6 +19,10 @@ public class ThirdRailBlockEntity extends BlockEntity {
     private int insulationLevel = 100; // 绝缘等级(0-100)
     private boolean shortCircuitRisk = false; // 短路风险
     private int waterDamage = 0; // 水损坏等级
+    // 是否已加入电力网络（不持久化，加入世界后重新加入）
+    private boolean networkRegistered = false;
+    // 电力网络回调（固定实例，便于卸载时移除）
+    private final PowerNetwork.NodeListener networkListener = this::onNetworkPowerChanged;
     
     public ThirdRailBlockEntity(BlockPos pos, BlockState state) {
         super(ModBlockEntities.THIRD_RAIL, pos, state);
@@ -110,6 +115,7 @@ public class ThirdRailBlockEntity extends BlockEntity {
     public void repairInsulation(int amount) {
         insulationLevel = Math.min(100, insulationLevel + amount);
         markDirty();
+        refreshNetworkConnection();
     }
     
     /**
@@ -128,6 +134,7 @@ public class ThirdRailBlockEntity extends BlockEntity {
     public void increaseWaterDamage(int amount) {
         waterDamage = Math.min(100, waterDamage + amount);
         markDirty();
+        refreshNetworkConnection();
     }
     
     /**
@@ -136,6 +143,7 @@ public class ThirdRailBlockEntity extends BlockEntity {
     public void cleanWaterDamage() {
         waterDamage = 0;
         markDirty();
+        refreshNetworkConnection();
     }
     
     /**
@@ -219,40 +227,65 @@ public class ThirdRailBlockEntity extends BlockEntity {
         }
     }
     
+    /**
+     * 绝缘或水损坏变化后重新评估短路风险，并据此接入或断开电力网络
+     * 不依赖方块实体tick：加入世界时及状态变化时各调用一次
+     */
+    private void refreshNetworkConnection() {
+        if (world == null || world.isClient || isRemoved()) {
+            return;
+        }
+        checkShortCircuitRisk();
+        checkPowerConnection();
+    }
+    
     /**
      * 检查电力连接
      */
     private void checkPowerConnection() {
-        // 检查相邻的第三轨或电力连接器
-        for (int x = -1; x <= 1; x++) {
-            for (int y = -1; y <= 1; y++) {
-                for (int z = -1; z <= 1; z++) {
-                    if (x == 0 && y == 0 && z == 0) continue;
-                    
-                    BlockPos neighborPos = pos.add(x, y, z);
-                    BlockEntity neighborEntity = world.getBlockEntity(neighborPos);
-                    
-                    // 连接到其他第三轨
-                    if (neighborEntity instanceof ThirdRailBlockEntity railEntity && railEntity.isPowered()) {
-                        if (!shortCircuitRisk || insulationLevel > 0) { // 短路风险高且无绝缘时不传输电力
-                            setPowered(true);
-                            return;
-                        }
-                    }
-                    
-                    // 连接到电力连接器
-                    if (neighborEntity instanceof RailPowerConnectorBlockEntity connector) {
-                        if (connector.isConnectedToPowerGrid() && 
-                            connector.getPowerType() == PowerSupplySystem.PowerType.THIRD_RAIL) {
-                            setPowered(true);
-                            return;
-                        }
-                    }
-                }
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        
+        // 短路风险高且无绝缘时不传输电力，从电力网络中断开
+        boolean conducting = !shortCircuitRisk || insulationLevel > 0;
+        if (conducting != networkRegistered) {
+            if (conducting) {
+                network.registerNode(pos, PowerNetwork.NodeType.THIRD_RAIL, networkListener);
+            } else {
+                network.removeNode(pos);
             }
+            networkRegistered = conducting;
         }
         
-        setPowered(false);
+        boolean nowPowered = conducting && network.isPowered(pos);
+        if (nowPowered != powered) {
+            setPowered(nowPowered);
+        }
+    }
+    
+    @Override
+    public void setWorld(World world) {
+        super.setWorld(world);
+        // 下一刻再接入电力网络，避免在区块加载过程中访问相邻方块
+        if (!world.isClient) {
+            TickScheduler.getInstance(world).schedule(1, this::refreshNetworkConnection);
+        }
+    }
+    
+    /**
+     * 电力网络通断变化回调
+     */
+    private void onNetworkPowerChanged(boolean nowPowered) {
+        if (!isRemoved() && networkRegistered && nowPowered != powered) {
+            setPowered(nowPowered);
+        }
+    }
+    
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        if (world != null && !world.isClient) {
+            PowerNetwork.getInstance(world).removeNodeListener(pos, networkListener);
+        }
     }
     
     /**
@@ -0,0 +1,141 @@
+package com.krt.mod.entity;
+
+import java.util.List;
+
+/**
+ * 手动驾驶运动模型
+ * 服务器和驾驶员客户端使用同一个确定性的每刻步进：速度按车辆的最大加速度、减速度趋近目标速度，
+ * 位置沿车头朝向前进。给定相同的初始状态和输入序列，两端得到相同的结果，客户端据此预测并回放输入。
+ * 速度单位为 km/h，负数表示后退；1方块按1米计算。
+ */
+public class ManualDrivingModel {
+    // 每刻时长（秒）
+    static final double TICK_SECONDS = 0.05;
+    // 没有编组数据时使用的加速度、减速度（m/s²）
+    public static final double DEFAULT_ACCELERATION = 1.0;
+    public static final double DEFAULT_DECELERATION = 1.2;
+    // 紧急制动减速度（m/s²），与列车控制系统一致
+    public static final double EMERGENCY_DECELERATION = 1.5;
+
+    private double x, y, z;
+    private double speed;
+    private double acceleration = DEFAULT_ACCELERATION;
+    private double deceleration = DEFAULT_DECELERATION;
+
+    /**
+     * 前进一刻
+     * @param targetSpeed 目标速度（km/h，负数表示后退）
+     * @param emergency 是否紧急制动，紧急制动时目标速度为零并使用紧急制动减速度
+     * @param yaw 车头朝向（度，与实体yaw相同）
+     */
+    public void step(double targetSpeed, boolean emergency, float yaw) {
+        double target = emergency ? 0.0 : targetSpeed;
+        // 远离零速为加速，趋近零速或反向为减速
+        boolean accelerating = target * speed >= 0 && Math.abs(target) > Math.abs(speed);
+        double rate = emergency ? EMERGENCY_DECELERATION : accelerating ? acceleration : deceleration;
+        double maxChange = rate * 3.6 * TICK_SECONDS;
+        double diff = target - speed;
+        speed += Math.max(-maxChange, Math.min(maxChange, diff));
+
+        double distance = speed / 3.6 * TICK_SECONDS;
+        double radians = Math.toRadians(yaw);
+        x += -Math.sin(radians) * distance;
+        z += Math.cos(radians) * distance;
+    }
+
+    /**
+     * 由每刻位移（方块/刻）求沿车头朝向的速度（km/h，负数表示后退）
+     * 切换到手动驾驶时，服务器和客户端都用它从当前运动确定模型的初始速度
+     */
+    public static double speedAlongHeading(double deltaX, double deltaZ, float yaw) {
+        double radians = Math.toRadians(yaw);
+        double distance = -Math.sin(radians) * deltaX + Math.cos(radians) * deltaZ;
+        return distance / TICK_SECONDS * 3.6;
+    }
+
+    public void setPosition(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    // 设置加速度、减速度限制（m/s²）
+    public void setLimits(double acceleration, double deceleration) {
+        this.acceleration = acceleration;
+        this.deceleration = deceleration;
+    }
+
+    /**
+     * 按编组中性能最弱的车辆设置加速度、减速度限制
+     */
+    public void setLimits(List<TrainCar> cars) {
+        double minAcceleration = Double.MAX_VALUE;
+        double minDeceleration = Double.MAX_VALUE;
+        for (TrainCar car : cars) {
+            if (car.getMaxAcceleration() > 0) {
+                minAcceleration = Math.min(minAcceleration, car.getMaxAcceleration());
+            }
+            if (car.getMaxDeceleration() > 0) {
+                minDeceleration = Math.min(minDeceleration, car.getMaxDeceleration());
+            }
+        }
+        setLimits(minAcceleration == Double.MAX_VALUE ? DEFAULT_ACCELERATION : minAcceleration,
+                minDeceleration == Double.MAX_VALUE ? DEFAULT_DECELERATION : minDeceleration);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getAcceleration() {
+        return acceleration;
+    }
+
+    public double getDeceleration() {
+        return deceleration;
+    }
+
+    /**
+     * 驾驶输入：每刻一条，按序号递增
+     * 紧急制动状态由服务器决定，不随输入发送，只用于客户端回放时复现当时的预测。
+     */
+    public static class Input {
+        private final int sequence;
+        private final double targetSpeed;
+        private final boolean emergency;
+
+        public Input(int sequence, double targetSpeed, boolean emergency) {
+            this.sequence = sequence;
+            this.targetSpeed = targetSpeed;
+            this.emergency = emergency;
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        public double getTargetSpeed() {
+            return targetSpeed;
+        }
+
+        public boolean isEmergency() {
+            return emergency;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.krt.mod.entity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 手动驾驶的客户端预测
+ * 每刻的驾驶输入带序号，本地立即按 ManualDrivingModel 步进并记录；服务器返回带确认序号的权威状态后，
+ * 从该状态出发回放尚未确认的输入得到新的预测。回放结果与原预测的差值作为显示偏差逐刻消除，避免跳动。
+ */
+public class ManualDrivingPrediction {
+    // 最多保留的未确认输入（刻），超过后丢弃最早的输入
+    static final int MAX_PENDING_INPUTS = 200;
+    // 每刻保留的显示偏差比例
+    private static final double CORRECTION_DECAY = 0.6;
+
+    private final ManualDrivingModel model = new ManualDrivingModel();
+    private final Deque<ManualDrivingModel.Input> pending = new ArrayDeque<>();
+    private int nextSequence;
+    private double correctionX, correctionY, correctionZ;
+
+    /**
+     * @param firstSequence 第一条输入的序号，必须大于之前发送过的序号
+     */
+    public ManualDrivingPrediction(double x, double y, double z, double speed, int firstSequence) {
+        model.setPosition(x, y, z);
+        model.setSpeed(speed);
+        this.nextSequence = firstSequence;
+    }
+
+    /**
+     * 预测一刻：记录输入并立即步进
+     * @return 本次输入，需要发送给服务器
+     */
+    public ManualDrivingModel.Input predict(double targetSpeed, boolean emergency, float yaw) {
+        ManualDrivingModel.Input input = new ManualDrivingModel.Input(nextSequence++, targetSpeed, emergency);
+        if (pending.size() >= MAX_PENDING_INPUTS) {
+            pending.removeFirst();
+        }
+        pending.addLast(input);
+        model.step(targetSpeed, emergency, yaw);
+        correctionX *= CORRECTION_DECAY;
+        correctionY *= CORRECTION_DECAY;
+        correctionZ *= CORRECTION_DECAY;
+        return input;
+    }
+
+    /**
+     * 收到服务器状态：丢弃已确认的输入，从权威状态回放其余输入
+     * @param acknowledged 服务器已处理的最后一个输入序号
+     */
+    public void reconcile(int acknowledged, double x, double y, double z, double speed,
+                          double acceleration, double deceleration, float yaw) {
+        while (!pending.isEmpty() && pending.peekFirst().getSequence() <= acknowledged) {
+            pending.removeFirst();
+        }
+        double previousX = getX(), previousY = getY(), previousZ = getZ();
+
+        model.setPosition(x, y, z);
+        model.setSpeed(speed);
+        model.setLimits(acceleration, deceleration);
+        for (ManualDrivingModel.Input input : pending) {
+            model.step(input.getTargetSpeed(), input.isEmergency(), yaw);
+        }
+
+        // 显示位置保持连续，偏差在之后几刻内消除
+        correctionX = previousX - model.getX();
+        correctionY = previousY - model.getY();
+        correctionZ = previousZ - model.getZ();
+    }
+
+    // 显示位置（含修正偏差）
+    public double getX() {
+        return model.getX() + correctionX;
+    }
+
+    public double getY() {
+        return model.getY() + correctionY;
+    }
+
+    public double getZ() {
+        return model.getZ() + correctionZ;
+    }
+
+    // 预测的速度（km/h，负数表示后退）
+    public double getSpeed() {
+        return model.getSpeed();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    // 未确认的输入达到上限，说明服务器已不再处理输入（如不在手动模式）
+    public boolean isStalled() {
+        return pending.size() >= MAX_PENDING_INPUTS;
+    }
+
+    // 预测状态（不含显示偏差）
+    ManualDrivingModel getModel() {
+        return model;
+    }
+}
@@ -372,7 +372,7 @@ public class TrainCar {
             // 注意：这里暂时不调用applyPower方法，因为缺少PowerSupplySystem参数
             // tractionSystem.applyPower(powerLevel);
             // 直接更新速度
-            double powerOutput = powerLevel * 0.95; // 模拟逆变器效率
+            double powerOutput = powerLevel * 0.95 * tractionSystem.getPowerLimitFactor(); // 模拟逆变器效率及网压限制
             // 简化的速度增量计算
             double weightFactor = 1.0 / (getWeight() / 1000.0);
             double speedIncrement = (powerOutput * 0.01) * weightFactor;
@@ -405,6 +405,11 @@ public class TrainCar {
             // 根据制动级别应用常用制动
             double brakeLevelNormalized = Math.min(1.0, brakeLevel / 100.0);
             brakeSystem.applyServiceBrake(brakeLevelNormalized);
+            
+            // 动力车常用制动与电制动混合，电制动部分的能量回馈供电网
+            if (tractionSystem != null && consist != null && brakeLevelNormalized < 1.0) {
+                consist.addRegeneratedPower(brakeSystem.estimateRegenerativePower(brakeLevelNormalized, tractionSystem));
+            }
         }
         
         // 通过转向架系统传递制动力
@@ -496,54 +501,22 @@ public class TrainCar {
      * 保存到NBT
      */
     public NbtCompound toNbt() {
-        NbtCompound nbt = new NbtCompound();
-        nbt.putString("carId", carId);
-        nbt.putString("carType", carType.name());
-        nbt.putInt("health", health);
-        nbt.putString("status", status.name());
-        nbt.putDouble("speed", speed);
-        nbt.putBoolean("powered", powered);
-        nbt.putBoolean("doorsOpen", doorsOpen);
-        nbt.putInt("passengers", passengers);
-        
-        // 保存新增属性
-        nbt.putDouble("weight", weight);
-        nbt.putInt("operatingHours", operatingHours);
-        nbt.putDouble("cleanliness", cleanliness);
-        
-        // 保存电力属性
-        nbt.putBoolean("hasPantograph", hasPantograph);
-        nbt.putBoolean("hasPowerCollectorShoe", hasPowerCollectorShoe);
-        if (powerType != null) {
-            nbt.putString("powerType", powerType.name());
-        }
-        
-        // 保存子系统数据
-        // 牵引系统
-        if (tractionSystem != null) {
-            nbt.putBoolean("hasTractionSystem", true);
-            // 这里应该保存牵引系统的NBT数据
-        }
-        
-        // 制动系统
-        if (brakeSystem != null) {
-            nbt.putBoolean("hasBrakeSystem", true);
-            // 这里应该保存制动系统的NBT数据
-        }
-        
-        // 转向架系统
-        NbtList bogieList = new NbtList();
+        return snapshot().toNbt();
+    }
+    
+    /**
+     * 复制当前状态的只读快照
+     * 快照只包含基本类型和不可变对象，可以交给后台线程序列化
+     */
+    public Snapshot snapshot() {
+        BogieSystem.BogieType[] bogieTypes = new BogieSystem.BogieType[bogieSystems.size()];
+        int[] bogieHealth = new int[bogieSystems.size()];
         for (int i = 0; i < bogieSystems.size(); i++) {
             BogieSystem bogie = bogieSystems.get(i);
-            NbtCompound bogieNbt = new NbtCompound();
-            bogieNbt.putString("type", bogie.getType().name());
-            bogieNbt.putInt("health", bogie.getHealth());
-            // 保存其他转向架数据
-            bogieList.add(bogieNbt);
+            bogieTypes[i] = bogie.getType();
+            bogieHealth[i] = bogie.getHealth();
         }
-        nbt.put("bogieSystems", bogieList);
-        
-        return nbt;
+        return new Snapshot(this, bogieTypes, bogieHealth);
     }
     
     /**
@@ -552,7 +525,7 @@ public class TrainCar {
     public static TrainCar fromNbt(NbtCompound nbt) {
         String carId = nbt.getString("carId");
         CarType carType = CarType.valueOf(nbt.getString("carType"));
-        int maxPassengers = 10; // 默认值，实际应该从配置中获取
+        int maxPassengers = nbt.contains("maxPassengers") ? nbt.getInt("maxPassengers") : 10; // 旧存档没有记录时使用默认值
         
         TrainCar car = new TrainCar(carId, carType, maxPassengers);
         car.health = nbt.getInt("health");
@@ -1106,4 +1079,100 @@ public class TrainCar {
             ", 牵引系统: " + hasTraction + ", 转向架数: " + bogieCount + ", 动力转向架: " + poweredBogies
         );
     }
+    
+    /**
+     * 车辆状态快照
+     */
+    public static class Snapshot {
+        private final String carId;
+        private final CarType carType;
+        private final int maxPassengers;
+        private final int health;
+        private final CarStatus status;
+        private final double speed;
+        private final boolean powered;
+        private final boolean doorsOpen;
+        private final int passengers;
+        private final double weight;
+        private final int operatingHours;
+        private final double cleanliness;
+        private final boolean hasPantograph;
+        private final boolean hasPowerCollectorShoe;
+        private final PowerSupplySystem.PowerType powerType;
+        private final boolean hasTractionSystem;
+        private final boolean hasBrakeSystem;
+        private final BogieSystem.BogieType[] bogieTypes;
+        private final int[] bogieHealth;
+        
+        private Snapshot(TrainCar car, BogieSystem.BogieType[] bogieTypes, int[] bogieHealth) {
+            this.carId = car.carId;
+            this.carType = car.carType;
+            this.maxPassengers = car.maxPassengers;
+            this.health = car.health;
+            this.status = car.status;
+            this.speed = car.speed;
+            this.powered = car.powered;
+            this.doorsOpen = car.doorsOpen;
+            this.passengers = car.passengers;
+            this.weight = car.weight;
+            this.operatingHours = car.operatingHours;
+            this.cleanliness = car.cleanliness;
+            this.hasPantograph = car.hasPantograph;
+            this.hasPowerCollectorShoe = car.hasPowerCollectorShoe;
+            this.powerType = car.powerType;
+            this.hasTractionSystem = car.tractionSystem != null;
+            this.hasBrakeSystem = car.brakeSystem != null;
+            this.bogieTypes = bogieTypes;
+            this.bogieHealth = bogieHealth;
+        }
+        
+        public String getCarId() {
+            return carId;
+        }
+        
+        public NbtCompound toNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("carId", carId);
+            nbt.putString("carType", carType.name());
+            nbt.putInt("maxPassengers", maxPassengers);
+            nbt.putInt("health", health);
+            nbt.putString("status", status.name());
+            nbt.putDouble("speed", speed);
+            nbt.putBoolean("powered", powered);
+            nbt.putBoolean("doorsOpen", doorsOpen);
+            nbt.putInt("passengers", passengers);
+            
+            // 保存新增属性
+            nbt.putDouble("weight", weight);
+            nbt.putInt("operatingHours", operatingHours);
+            nbt.putDouble("cleanliness", cleanliness);
+            
+            // 保存电力属性
+            nbt.putBoolean("hasPantograph", hasPantograph);
+            nbt.putBoolean("hasPowerCollectorShoe", hasPowerCollectorShoe);
+            if (powerType != null) {
+                nbt.putString("powerType", powerType.name());
+            }
+            
+            // 保存子系统数据
+            if (hasTractionSystem) {
+                nbt.putBoolean("hasTractionSystem", true);
+            }
+            if (hasBrakeSystem) {
+                nbt.putBoolean("hasBrakeSystem", true);
+            }
+            
+            // 转向架系统
+            NbtList bogieList = new NbtList();
+            for (int i = 0; i < bogieTypes.length; i++) {
+                NbtCompound bogieNbt = new NbtCompound();
+                bogieNbt.putString("type", bogieTypes[i].name());
+                bogieNbt.putInt("health", bogieHealth[i]);
+                bogieList.add(bogieNbt);
+            }
+            nbt.put("bogieSystems", bogieList);
+            
+            return nbt;
+        }
+    }
 }
\ No newline at end of file
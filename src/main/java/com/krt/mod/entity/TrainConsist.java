@@ -36,6 +36,11 @@ public class TrainConsist {
     private int maxPowerLevel = 100;
     private boolean usingExternalPower = false; // 是否使用外部电力
     private int externalPowerLevel = 0; // 外部电力等级
+    // 每辆动力车的额定牵引功率（瓦）
+    private static final double RATED_TRACTION_POWER_PER_MOTOR_CAR = 760000;
+    private double tractionDemand = 0; // 本周期牵引功率需求（瓦）
+    private double regeneratedPower = 0; // 本周期再生制动回馈功率（瓦）
+    private double lineVoltageRatio = 1.0; // 网压与额定电压之比
     
     /**
      * 创建列车编组
@@ -110,6 +115,15 @@ public class TrainConsist {
             availablePower = Math.min(availablePower + externalPowerLevel * 10, maxPowerLevel);
         }
         
+        // 记录牵引功率需求，由供电系统计算网压
+        int motorCars = 0;
+        for (TrainCar car : cars) {
+            if (car.getCarType() == TrainCar.CarType.HEAD_CAR || car.getCarType() == TrainCar.CarType.TAIL_CAR) {
+                motorCars++;
+            }
+        }
+        tractionDemand = Math.max(0, Math.min(1, powerLevel)) * motorCars * RATED_TRACTION_POWER_PER_MOTOR_CAR;
+        
         // 检查是否有足够的动力
         int requiredPower = calculateRequiredPower(powerLevel);
         if (availablePower >= requiredPower) {
@@ -191,7 +205,7 @@ public class TrainConsist {
         BlockPos trainPos = new BlockPos(trainEntity.getX(), trainEntity.getY(), trainEntity.getZ());
         
         // 获取供电系统
-        PowerSupplySystem powerSystem = com.krt.mod.system.VehicleSystemInitializer.getPowerSupplySystem();
+        PowerSupplySystem powerSystem = trainEntity.world.isClient ? null : trainEntity.getPowerSupplySystem();
         if (powerSystem != null) {
             // 检查轨道电力等级
             int railPowerLevel = powerSystem.getRailPowerLevel(trainPos);
@@ -203,6 +217,24 @@ public class TrainConsist {
                 
                 // 尝试充电
                 rechargeFromExternal(railPowerLevel);
+                
+                // 上报牵引负载并取回上次潮流计算的网压（尚未求解时按额定电压）
+                powerSystem.reportTractionLoad(consistId, trainEntity.getX(), trainEntity.getY(), trainEntity.getZ(),
+                        tractionDemand, regeneratedPower);
+                double ratio = powerSystem.getTrainVoltageRatio(consistId);
+                lineVoltageRatio = ratio > 0 ? ratio : 1.0;
+            }
+        }
+        tractionDemand = 0;
+        regeneratedPower = 0;
+        
+        // 网压影响牵引性能；使用车载电源时不受限制
+        if (!usingExternalPower) {
+            lineVoltageRatio = 1.0;
+        }
+        for (TrainCar car : cars) {
+            if (car.getTractionSystem() != null) {
+                car.getTractionSystem().setLineVoltageRatio(lineVoltageRatio);
             }
         }
     }
@@ -549,28 +581,18 @@ public class TrainConsist {
      * 保存到NBT
      */
     public NbtCompound toNbt() {
-        NbtCompound nbt = new NbtCompound();
-        nbt.putString("consistId", consistId);
-        nbt.putString("lineId", lineId != null ? lineId : "");
-        nbt.putString("destination", destination != null ? destination : "");
-        nbt.putString("nextStation", nextStation != null ? nextStation : "");
-        nbt.putDouble("maxSpeed", maxSpeed);
-        nbt.putBoolean("atpEnabled", atpEnabled);
-        nbt.putBoolean("atoEnabled", atoEnabled);
-        nbt.putInt("totalPassengers", totalPassengers);
-        nbt.putInt("powerLevel", powerLevel);
-        nbt.putInt("maxPowerLevel", maxPowerLevel);
-        nbt.putBoolean("usingExternalPower", usingExternalPower);
-        nbt.putInt("externalPowerLevel", externalPowerLevel);
-        
-        // 保存车辆列表
-        NbtList carList = new NbtList();
+        return snapshot().toNbt();
+    }
+    
+    /**
+     * 复制编组及其车辆当前状态的只读快照，可以交给后台线程序列化
+     */
+    public Snapshot snapshot() {
+        List<TrainCar.Snapshot> carSnapshots = new ArrayList<>(cars.size());
         for (TrainCar car : cars) {
-            carList.add(car.toNbt());
+            carSnapshots.add(car.snapshot());
         }
-        nbt.put("cars", carList);
-        
-        return nbt;
+        return new Snapshot(this, carSnapshots);
     }
     
     /**
@@ -737,6 +759,22 @@ public class TrainConsist {
         return usingExternalPower;
     }
     
+    /**
+     * 累加本周期的再生制动回馈功率（瓦）
+     */
+    public void addRegeneratedPower(double watts) {
+        if (watts > 0) {
+            regeneratedPower += watts;
+        }
+    }
+    
+    /**
+     * 获取网压与额定电压之比
+     */
+    public double getLineVoltageRatio() {
+        return lineVoltageRatio;
+    }
+    
     public int getExternalPowerLevel() {
         return externalPowerLevel;
     }
@@ -782,4 +820,68 @@ public class TrainConsist {
         // 暂时不执行任何操作，因为我们不能修改TrainCar类
         System.out.println("无法重置运行小时数：TrainCar类没有提供相应方法");
     }
+    
+    /**
+     * 编组状态快照
+     */
+    public static class Snapshot {
+        private final String consistId;
+        private final String lineId;
+        private final String destination;
+        private final String nextStation;
+        private final double maxSpeed;
+        private final boolean atpEnabled;
+        private final boolean atoEnabled;
+        private final int totalPassengers;
+        private final int powerLevel;
+        private final int maxPowerLevel;
+        private final boolean usingExternalPower;
+        private final int externalPowerLevel;
+        private final List<TrainCar.Snapshot> cars;
+        
+        private Snapshot(TrainConsist consist, List<TrainCar.Snapshot> cars) {
+            this.consistId = consist.consistId;
+            this.lineId = consist.lineId;
+            this.destination = consist.destination;
+            this.nextStation = consist.nextStation;
+            this.maxSpeed = consist.maxSpeed;
+            this.atpEnabled = consist.atpEnabled;
+            this.atoEnabled = consist.atoEnabled;
+            this.totalPassengers = consist.totalPassengers;
+            this.powerLevel = consist.powerLevel;
+            this.maxPowerLevel = consist.maxPowerLevel;
+            this.usingExternalPower = consist.usingExternalPower;
+            this.externalPowerLevel = consist.externalPowerLevel;
+            this.cars = cars;
+        }
+        
+        public String getConsistId() {
+            return consistId;
+        }
+        
+        public NbtCompound toNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putString("consistId", consistId);
+            nbt.putString("lineId", lineId != null ? lineId : "");
+            nbt.putString("destination", destination != null ? destination : "");
+            nbt.putString("nextStation", nextStation != null ? nextStation : "");
+            nbt.putDouble("maxSpeed", maxSpeed);
+            nbt.putBoolean("atpEnabled", atpEnabled);
+            nbt.putBoolean("atoEnabled", atoEnabled);
+            nbt.putInt("totalPassengers", totalPassengers);
+            nbt.putInt("powerLevel", powerLevel);
+            nbt.putInt("maxPowerLevel", maxPowerLevel);
+            nbt.putBoolean("usingExternalPower", usingExternalPower);
+            nbt.putInt("externalPowerLevel", externalPowerLevel);
+            
+            // 保存车辆列表
+            NbtList carList = new NbtList();
+            for (TrainCar.Snapshot car : cars) {
+                carList.add(car.toNbt());
+            }
+            nbt.put("cars", carList);
+            
+            return nbt;
+        }
+    }
 }
\ No newline at end of file
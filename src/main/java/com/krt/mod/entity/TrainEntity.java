@@ -34,11 +34,15 @@ import com.krt.mod.KRTMod;
 import com.krt.mod.block.SignalBlock;
 import com.krt.mod.block.ATPSignalBlock;
 import com.krt.mod.gui.TrainControlScreenHandler;
+import com.krt.mod.network.TrainDrivingNetworking;
+import com.krt.mod.network.TrainMovementSync;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import com.krt.mod.entity.TrainConsist;
 import com.krt.mod.entity.TrainCar;
 import com.krt.mod.system.PowerSupplySystem;
+import com.krt.mod.system.PowerSupplySystemManager;
 import com.krt.mod.system.TractionSystem;
 import com.krt.mod.system.BrakeSystem;
 import com.krt.mod.system.VehicleManagementSystem;
@@ -47,14 +51,16 @@ import com.krt.mod.system.TrainSwaySystem;
 public class TrainEntity extends Entity {
     // 数据跟踪器字段
     private static final TrackedData<Boolean> ATO_ENABLED = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.BOOLEAN);
-    private static final TrackedData<Float> CURRENT_SPEED = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.FLOAT);
-    private static final TrackedData<String> DESTINATION = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.STRING);
-    private static final TrackedData<String> NEXT_STATION = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.STRING);
     private static final TrackedData<Integer> HEALTH = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.INTEGER);
     private static final TrackedData<Boolean> EMERGENCY_BRAKE = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.BOOLEAN);
-    private static final TrackedData<String> CURRENT_DEPOT = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.STRING);
-    private static final TrackedData<String> CURRENT_LINE = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.STRING);
-    private static final TrackedData<String> CONSIST_ID = DataTracker.registerData(TrainEntity.class, TrackedDataHandlerRegistry.STRING);
+    // 速度和文本属性不使用数据跟踪器，由 TrainMovementSync 按需同步
+    // 速度大小（不含方向），手动驾驶时的方向保存在运动模型的速度中
+    private float currentSpeed = 0.0F;
+    private String destination = "终点站";
+    private String nextStation = "下一站";
+    private String currentDepot = "";
+    private String currentLine = "";
+    private String consistId = "";
 
     // 列车控制系统
     private TrainControlSystem controlSystem;
@@ -67,80 +73,80 @@ public class TrainEntity extends Entity {
     // 列车编组
     private TrainConsist consist;
     // 供电系统
-    private PowerSupplySystem powerSupplySystem;
     // 车辆管理系统引用
     private VehicleManagementSystem vehicleManagementSystem;
     // 列车摇摆系统
     private TrainSwaySystem swaySystem;
+    // 运动同步（航位推算）
+    private final TrainMovementSync movementSync = new TrainMovementSync(this);
+    // 手动驾驶：运动模型、驾驶员客户端发来的待处理输入和最后处理的输入序号
+    private final ManualDrivingModel manualDriving = new ManualDrivingModel();
+    private final ArrayDeque<ManualDrivingModel.Input> drivingInputs = new ArrayDeque<>();
+    private ServerPlayerEntity drivingPlayer;
+    private int lastDrivingInput;
+    private int ticksSinceDrivingInput;
+    // 运动模型是否正在驱动列车，从其他模式切换到手动时需要重新确定初始状态
+    private boolean manualDrivingActive;
+    // 每刻最多处理的驾驶输入数，服务器卡顿后追赶积压的输入
+    private static final int MAX_DRIVING_STEPS_PER_TICK = 3;
+    // 最多积压的驾驶输入数
+    private static final int MAX_QUEUED_DRIVING_INPUTS = 20;
+    // 驾驶员停止发送输入超过该刻数后，服务器按当前目标速度自行步进
+    private static final int DRIVING_INPUT_GRACE_TICKS = 2;
 
     public TrainEntity(EntityType<?> type, World world) {
         super(type, world);
         this.controlSystem = new TrainControlSystem(this);
         this.selfCheckSystem = new TrainSelfCheckSystem(this);
         this.vehicleManagementSystem = VehicleManagementSystem.getInstance(world);
-        this.powerSupplySystem = new PowerSupplySystem(world);
         this.swaySystem = new TrainSwaySystem(this);
     }
 
     @Override
     protected void initDataTracker() {
         this.dataTracker.startTracking(ATO_ENABLED, true); // 默认启用ATO
-        this.dataTracker.startTracking(CURRENT_SPEED, 0.0F);
-        this.dataTracker.startTracking(DESTINATION, "终点站");
-        this.dataTracker.startTracking(NEXT_STATION, "下一站");
         this.dataTracker.startTracking(HEALTH, 100);
         this.dataTracker.startTracking(EMERGENCY_BRAKE, false);
-        this.dataTracker.startTracking(CURRENT_DEPOT, "");
-        this.dataTracker.startTracking(CURRENT_LINE, "");
-        this.dataTracker.startTracking(CONSIST_ID, "");
     }
 
     @Override
     protected void readCustomDataFromNbt(NbtCompound nbt) {
         this.dataTracker.set(ATO_ENABLED, nbt.getBoolean("ATOEnabled"));
-        this.dataTracker.set(CURRENT_SPEED, (float)nbt.getDouble("CurrentSpeed"));
-        this.dataTracker.set(DESTINATION, nbt.getString("Destination"));
-        this.dataTracker.set(NEXT_STATION, nbt.getString("NextStation"));
+        this.currentSpeed = (float)nbt.getDouble("CurrentSpeed");
+        this.destination = nbt.getString("Destination");
+        this.nextStation = nbt.getString("NextStation");
         this.dataTracker.set(HEALTH, nbt.getInt("Health"));
         this.dataTracker.set(EMERGENCY_BRAKE, nbt.getBoolean("EmergencyBrake"));
-        this.dataTracker.set(CURRENT_DEPOT, nbt.getString("CurrentDepot"));
-        this.dataTracker.set(CURRENT_LINE, nbt.getString("CurrentLine"));
-        this.dataTracker.set(CONSIST_ID, nbt.getString("ConsistId"));
+        this.currentDepot = nbt.getString("CurrentDepot");
+        this.currentLine = nbt.getString("CurrentLine");
+        this.consistId = nbt.getString("ConsistId");
         
         // 从车辆管理系统获取列车编组
-        String consistId = this.dataTracker.get(CONSIST_ID);
         if (!consistId.isEmpty()) {
             this.consist = vehicleManagementSystem.getConsist(consistId);
+            // 旧版本把编组数据保存在实体中，车队存档中没有时从实体数据恢复
+            if (this.consist == null && nbt.contains("Consist")) {
+                this.consist = TrainConsist.fromNbt(nbt.getCompound("Consist"));
+                vehicleManagementSystem.registerConsist(this.consist);
+            }
             if (this.consist != null) {
                 this.consist.setTrainEntity(this);
             }
         }
-        
-        // 加载供电系统状态
-        if (nbt.contains("PowerSupplySystem")) {
-            this.powerSupplySystem.fromNbt(nbt.getCompound("PowerSupplySystem"));
-        }
     }
 
     @Override
     protected void writeCustomDataToNbt(NbtCompound nbt) {
         nbt.putBoolean("ATOEnabled", this.dataTracker.get(ATO_ENABLED));
-        nbt.putDouble("CurrentSpeed", (double)this.dataTracker.get(CURRENT_SPEED));
-        nbt.putString("Destination", this.dataTracker.get(DESTINATION));
-        nbt.putString("NextStation", this.dataTracker.get(NEXT_STATION));
+        nbt.putDouble("CurrentSpeed", (double)this.currentSpeed);
+        nbt.putString("Destination", this.destination);
+        nbt.putString("NextStation", this.nextStation);
         nbt.putInt("Health", this.dataTracker.get(HEALTH));
         nbt.putBoolean("EmergencyBrake", this.dataTracker.get(EMERGENCY_BRAKE));
-        nbt.putString("CurrentDepot", this.dataTracker.get(CURRENT_DEPOT));
-        nbt.putString("CurrentLine", this.dataTracker.get(CURRENT_LINE));
-        nbt.putString("ConsistId", this.dataTracker.get(CONSIST_ID));
-        
-        // 保存编组数据
-        if (this.consist != null) {
-            nbt.put("Consist", this.consist.toNbt());
-        }
-        
-        // 保存供电系统状态
-        nbt.put("PowerSupplySystem", this.powerSupplySystem.toNbt());
+        nbt.putString("CurrentDepot", this.currentDepot);
+        nbt.putString("CurrentLine", this.currentLine);
+        nbt.putString("ConsistId", this.consistId);
+        // 编组数据由车队存档（FleetPersistence）在后台保存，实体只记录编组ID
     }
 
     @Override
@@ -152,23 +158,31 @@ public class TrainEntity extends Entity {
     public void tick() {
         super.tick();
 
-        // 记录位置历史，用于计算速度
-        this.positionHistory.add(this.getPos());
-        if (this.positionHistory.size() > 20) {
-            this.positionHistory.remove(0);
-        }
+        if (this.world.isClient) {
+            // 客户端位置由运动同步外推
+            this.movementSync.clientTick();
+        } else {
+            // 手动驾驶时按运动模型移动列车
+            boolean manual = this.tickManualDriving();
 
-        // 计算当前速度
-        if (this.positionHistory.size() >= 2) {
-            Vec3d pos1 = this.positionHistory.get(0);
-            Vec3d pos2 = this.positionHistory.get(this.positionHistory.size() - 1);
-            double distance = pos1.squaredDistanceTo(pos2);
-            double speed = Math.sqrt(distance) * 20; // 转换为每秒的距离
-            this.dataTracker.set(CURRENT_SPEED, (float)speed);
-        }
+            // 记录位置历史，用于计算速度
+            this.positionHistory.add(this.getPos());
+            if (this.positionHistory.size() > 20) {
+                this.positionHistory.remove(0);
+            }
 
-        // 更新供电系统
-        this.powerSupplySystem.update();
+            // 计算当前速度（手动驾驶时由运动模型给出）
+            if (!manual && this.positionHistory.size() >= 2) {
+                Vec3d pos1 = this.positionHistory.get(0);
+                Vec3d pos2 = this.positionHistory.get(this.positionHistory.size() - 1);
+                double distance = pos1.squaredDistanceTo(pos2);
+                double speed = Math.sqrt(distance) * 20; // 转换为每秒的距离
+                this.currentSpeed = (float)speed;
+            }
+
+            // 外推误差超过容差时向客户端发送运动状态
+            this.movementSync.serverTick();
+        }
 
         // 运行自检系统
         this.selfCheckSystem.tick();
@@ -208,12 +222,7 @@ public class TrainEntity extends Entity {
         // 检查信号机状态，如果前方有红灯，触发紧急制动
         this.checkSignalStatus();
 
-        // 播放列车走行音，根据速度调整音量和音高
-        if (this.dataTracker.get(CURRENT_SPEED) > 0.1 && !this.world.isClient) {
-            float volume = Math.min(0.5F + (float)this.dataTracker.get(CURRENT_SPEED) / 200.0F, 1.0F);
-            float pitch = 0.8F + (float)this.dataTracker.get(CURRENT_SPEED) / 400.0F;
-            this.world.playSound(null, this.getBlockPos(), ModSounds.TRAIN_MOVING_SOUND, SoundCategory.NEUTRAL, volume, pitch);
-        }
+        // 走行音由客户端 TrainSoundManager 按同步的车速循环播放
         
         // 更新列车摇摆效果
         if (this.swaySystem != null) {
@@ -260,6 +269,98 @@ public class TrainEntity extends Entity {
         return ActionResult.PASS;
     }
 
+    /**
+     * 服务器：接收驾驶员客户端的一刻驾驶输入
+     * 只在手动控制模式下接受；换了驾驶员（或重新登录）时重新开始计序号。
+     */
+    public void queueDrivingInput(ServerPlayerEntity player, int sequence, double targetSpeed) {
+        if (this.controlSystem.getControlMode() != TrainControlSystem.TrainControlMode.MANUAL) {
+            return;
+        }
+        if (player != this.drivingPlayer) {
+            this.drivingPlayer = player;
+            this.drivingInputs.clear();
+            this.lastDrivingInput = 0;
+            this.seedManualDriving();
+        }
+        ManualDrivingModel.Input last = this.drivingInputs.peekLast();
+        if (sequence <= (last != null ? last.getSequence() : this.lastDrivingInput)) {
+            return;
+        }
+        if (this.drivingInputs.size() >= MAX_QUEUED_DRIVING_INPUTS) {
+            this.drivingInputs.removeFirst();
+        }
+        this.drivingInputs.addLast(new ManualDrivingModel.Input(sequence, targetSpeed, false));
+    }
+
+    /**
+     * 服务器：手动驾驶步进
+     * 每条驾驶输入对应客户端预测的一刻，按顺序逐条步进并回传确认序号；驾驶员没有发送输入时自行步进。
+     * @return 是否处于手动驾驶
+     */
+    private boolean tickManualDriving() {
+        if (this.controlSystem.getControlMode() != TrainControlSystem.TrainControlMode.MANUAL) {
+            this.drivingInputs.clear();
+            this.manualDrivingActive = false;
+            return false;
+        }
+        if (!this.manualDrivingActive) {
+            this.seedManualDriving();
+        }
+        if (this.consist != null) {
+            this.manualDriving.setLimits(this.consist.getCars());
+        }
+        this.ticksSinceDrivingInput++;
+        int steps = Math.min(this.drivingInputs.size(), MAX_DRIVING_STEPS_PER_TICK);
+        // 输入稍有延迟时等待，避免比客户端多走一刻
+        if (steps == 0 && this.ticksSinceDrivingInput <= DRIVING_INPUT_GRACE_TICKS) {
+            this.currentSpeed = (float) Math.abs(this.manualDriving.getSpeed());
+            return true;
+        }
+
+        boolean emergency = this.isEmergencyBraking();
+        this.manualDriving.setPosition(this.getX(), this.getY(), this.getZ());
+        if (steps == 0) {
+            this.manualDriving.step(this.controlSystem.getTargetSpeed(), emergency, this.getYaw());
+        } else {
+            for (int i = 0; i < steps; i++) {
+                ManualDrivingModel.Input input = this.drivingInputs.removeFirst();
+                this.controlSystem.setTargetSpeed(input.getTargetSpeed());
+                this.manualDriving.step(this.controlSystem.getTargetSpeed(), emergency, this.getYaw());
+                this.lastDrivingInput = input.getSequence();
+            }
+            this.ticksSinceDrivingInput = 0;
+        }
+        this.setPosition(this.manualDriving.getX(), this.manualDriving.getY(), this.manualDriving.getZ());
+        this.currentSpeed = (float) Math.abs(this.manualDriving.getSpeed());
+
+        if (steps > 0 && this.drivingPlayer != null && !this.drivingPlayer.isDisconnected()) {
+            TrainDrivingNetworking.sendDrivingState(this.drivingPlayer, this, this.lastDrivingInput, this.manualDriving);
+        }
+        return true;
+    }
+
+    /**
+     * 服务器：以列车当前的位置和速度作为运动模型的初始状态
+     * 刚切换到手动时按最近一刻的位移求带方向的速度（km/h），不使用只有大小的 currentSpeed，
+     * 后退中切换也不会变成前进；已在手动驾驶时模型速度就是列车的实际速度，换驾驶员时沿用。
+     */
+    private void seedManualDriving() {
+        this.manualDriving.setPosition(this.getX(), this.getY(), this.getZ());
+        if (this.manualDrivingActive) {
+            return;
+        }
+        double speed = 0.0;
+        int size = this.positionHistory.size();
+        if (size >= 2) {
+            Vec3d delta = this.positionHistory.get(size - 1).subtract(this.positionHistory.get(size - 2));
+            speed = ManualDrivingModel.speedAlongHeading(delta.x, delta.z, this.getYaw());
+        }
+        this.manualDriving.setSpeed(speed);
+        this.ticksSinceDrivingInput = 0;
+        this.manualDrivingActive = true;
+    }
+
     // 检查前方信号机状态
     private void checkSignalStatus() {
         // 获取列车前方的位置
@@ -354,14 +455,14 @@ public class TrainEntity extends Entity {
     public void setConsist(TrainConsist consist) {
         this.consist = consist;
         if (consist != null) {
-            this.dataTracker.set(CONSIST_ID, consist.getConsistId());
+            this.setSyncedAttribute(TrainMovementSync.ATTR_CONSIST_ID, consist.getConsistId());
             consist.setTrainEntity(this);
             // 同步信息
             this.setDestination(consist.getDestination());
             this.setNextStation(consist.getNextStation());
             this.setCurrentLine(consist.getLineId());
         } else {
-            this.dataTracker.set(CONSIST_ID, "");
+            this.setSyncedAttribute(TrainMovementSync.ATTR_CONSIST_ID, "");
         }
     }
     
@@ -397,12 +498,12 @@ public class TrainEntity extends Entity {
 
     // 获取当前速度
     public float getCurrentSpeed() {
-        return this.dataTracker.get(CURRENT_SPEED);
+        return this.world.isClient ? this.movementSync.getClientSpeed() : this.currentSpeed;
     }
 
     // 设置目的地
     public void setDestination(String destination) {
-        this.dataTracker.set(DESTINATION, destination);
+        this.setSyncedAttribute(TrainMovementSync.ATTR_DESTINATION, destination);
         if (this.consist != null) {
             this.consist.setDestination(destination);
         }
@@ -410,12 +511,12 @@ public class TrainEntity extends Entity {
 
     // 获取目的地
     public String getDestination() {
-        return this.dataTracker.get(DESTINATION);
+        return this.destination;
     }
 
     // 设置下一站
     public void setNextStation(String nextStation) {
-        this.dataTracker.set(NEXT_STATION, nextStation);
+        this.setSyncedAttribute(TrainMovementSync.ATTR_NEXT_STATION, nextStation);
         if (this.consist != null) {
             this.consist.setNextStation(nextStation);
         }
@@ -423,7 +524,7 @@ public class TrainEntity extends Entity {
 
     // 获取下一站
     public String getNextStation() {
-        return this.dataTracker.get(NEXT_STATION);
+        return this.nextStation;
     }
 
     // 设置健康值
@@ -482,12 +583,12 @@ public class TrainEntity extends Entity {
     
     // 设置当前车厂
     public void setCurrentDepot(String depotId) {
-        this.dataTracker.set(CURRENT_DEPOT, depotId);
+        this.setSyncedAttribute(TrainMovementSync.ATTR_DEPOT, depotId);
     }
 
     // 获取当前车厂
     public String getCurrentDepot() {
-        return this.dataTracker.get(CURRENT_DEPOT);
+        return this.currentDepot;
     }
     
     // 打开所有车门
@@ -534,9 +635,9 @@ public class TrainEntity extends Entity {
         return false;
     }
     
-    // 获取供电系统
+    // 获取所在世界的供电系统（由世界tick统一更新）
     public PowerSupplySystem getPowerSupplySystem() {
-        return this.powerSupplySystem;
+        return PowerSupplySystemManager.getForWorld(this.world);
     }
     
     // 获取列车编组信息
@@ -549,17 +650,65 @@ public class TrainEntity extends Entity {
     
     // 获取当前线路
     public String getCurrentLine() {
-        return this.dataTracker.get(CURRENT_LINE);
+        return this.currentLine;
     }
     
     // 设置当前线路
     public void setCurrentLine(String lineId) {
-        this.dataTracker.set(CURRENT_LINE, lineId);
+        this.setSyncedAttribute(TrainMovementSync.ATTR_LINE, lineId);
         if (this.consist != null) {
             this.consist.setLineId(lineId);
         }
     }
     
+    // 获取运动同步
+    public TrainMovementSync getMovementSync() {
+        return this.movementSync;
+    }
+    
+    // 获取需要同步的文本属性
+    public String getSyncedAttribute(int attribute) {
+        switch (attribute) {
+            case TrainMovementSync.ATTR_DESTINATION: return this.destination;
+            case TrainMovementSync.ATTR_NEXT_STATION: return this.nextStation;
+            case TrainMovementSync.ATTR_DEPOT: return this.currentDepot;
+            case TrainMovementSync.ATTR_LINE: return this.currentLine;
+            case TrainMovementSync.ATTR_CONSIST_ID: return this.consistId;
+            default: return "";
+        }
+    }
+    
+    // 设置文本属性，服务器端值发生变化时标记同步
+    public void setSyncedAttribute(int attribute, String value) {
+        if (value == null) {
+            value = "";
+        }
+        if (value.equals(getSyncedAttribute(attribute))) {
+            return;
+        }
+        switch (attribute) {
+            case TrainMovementSync.ATTR_DESTINATION: this.destination = value; break;
+            case TrainMovementSync.ATTR_NEXT_STATION: this.nextStation = value; break;
+            case TrainMovementSync.ATTR_DEPOT: this.currentDepot = value; break;
+            case TrainMovementSync.ATTR_LINE: this.currentLine = value; break;
+            case TrainMovementSync.ATTR_CONSIST_ID: this.consistId = value; break;
+            default: return;
+        }
+        if (!this.world.isClient) {
+            this.movementSync.markAttributeDirty(attribute);
+        }
+    }
+    
+    // 客户端位置由运动同步接管后，忽略原版实体跟踪发送的位置
+    @Override
+    public void updateTrackedPositionAndAngles(double x, double y, double z, float yaw, float pitch, int interpolationSteps, boolean interpolate) {
+        if (this.movementSync.isClientDriven()) {
+            this.setRotation(yaw, pitch);
+        } else {
+            super.updateTrackedPositionAndAngles(x, y, z, yaw, pitch, interpolationSteps, interpolate);
+        }
+    }
+    
     // 应用停放制动
     public void applyParkingBrake() {
         if (this.consist != null) {
@@ -0,0 +1,166 @@
+package com.krt.mod.entity.renderer;
+
+import com.krt.mod.entity.TrainCar;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 车厢顶点数据缓存
+ * 每种车型、每个细节级别的顶点只生成一次，渲染时直接按矩阵变换输出。
+ * 车厢中心在原点，沿Z轴方向，尺寸与 TrainEntityRenderer 的车厢一致。
+ */
+public class CarMeshCache {
+    private final float width;
+    private final float height;
+    private final float length;
+    private final Map<TrainCar.CarType, EnumMap<TrainLod, CarMesh>> meshes = new EnumMap<>(TrainCar.CarType.class);
+
+    public CarMeshCache(float width, float height, float length) {
+        this.width = width;
+        this.height = height;
+        this.length = length;
+    }
+
+    /**
+     * 获取车型在指定细节级别下的顶点数据，CULLED 返回空网格
+     */
+    public CarMesh get(TrainCar.CarType type, TrainLod lod) {
+        return meshes.computeIfAbsent(type, t -> new EnumMap<>(TrainLod.class))
+                .computeIfAbsent(lod, l -> build(type, l));
+    }
+
+    // 包围球半径
+    public float getRadius() {
+        return (float) Math.sqrt(width * width + height * height + length * length) / 2;
+    }
+
+    private CarMesh build(TrainCar.CarType type, TrainLod lod) {
+        float w = width / 2, h = height / 2, l = length / 2;
+        CarMesh.Builder builder = new CarMesh.Builder();
+        switch (lod) {
+            case FULL -> {
+                int bodyColor = bodyColor(type);
+                // 车体（离地留出转向架高度）
+                float bogieHeight = height * 0.15F;
+                builder.box(-w, -h + bogieHeight, -l, w, h - height * 0.08F, l, bodyColor);
+                // 车窗带
+                float windowBottom = 0.0F;
+                float windowTop = h * 0.55F;
+                builder.box(-w - 0.01F, windowBottom, -l + 0.6F, w + 0.01F, windowTop, l - 0.6F, 0x202830);
+                // 车顶
+                builder.box(-w * 0.85F, h - height * 0.08F, -l + 0.3F, w * 0.85F, h, l - 0.3F, 0xB0B0B0);
+                // 前后转向架
+                float bogieWidth = w * 0.8F;
+                float bogieLength = length * 0.12F;
+                float bogieCenter = l - length * 0.18F;
+                builder.box(-bogieWidth, -h, -bogieCenter - bogieLength, bogieWidth, -h + bogieHeight, -bogieCenter + bogieLength, 0x303030);
+                builder.box(-bogieWidth, -h, bogieCenter - bogieLength, bogieWidth, -h + bogieHeight, bogieCenter + bogieLength, 0x303030);
+                // 车头、车尾的司机室前窗
+                if (type == TrainCar.CarType.HEAD_CAR || type == TrainCar.CarType.DOUBLE_HEADED_CAR) {
+                    builder.box(-w * 0.8F, windowBottom, l, w * 0.8F, windowTop, l + 0.01F, 0x202830);
+                } else if (type == TrainCar.CarType.TAIL_CAR) {
+                    builder.box(-w * 0.8F, windowBottom, -l - 0.01F, w * 0.8F, windowTop, -l, 0x202830);
+                }
+            }
+            case BOX -> builder.box(-w, -h, -l, w, h, l, bodyColor(type));
+            case IMPOSTOR -> {
+                // 纵向竖直面和水平面组成的十字面片，双面
+                int color = bodyColor(type);
+                builder.quad(0, -h, -l, 0, h, -l, 0, h, l, 0, -h, l, 1, 0, 0, color);
+                builder.quad(0, -h, l, 0, h, l, 0, h, -l, 0, -h, -l, -1, 0, 0, color);
+                builder.quad(-w, 0, -l, -w, 0, l, w, 0, l, w, 0, -l, 0, 1, 0, color);
+                builder.quad(w, 0, -l, w, 0, l, -w, 0, l, -w, 0, -l, 0, -1, 0, color);
+            }
+            case CULLED -> {
+            }
+        }
+        return builder.build();
+    }
+
+    // 车型的车体颜色（RGB）
+    private static int bodyColor(TrainCar.CarType type) {
+        return switch (type) {
+            case HEAD_CAR, TAIL_CAR, DOUBLE_HEADED_CAR -> 0xFF0000;
+            case MIDDLE_CAR -> 0xE01010;
+            case SPECIAL_PURPOSE_CAR -> 0xF0C000;
+        };
+    }
+
+    /**
+     * 车厢顶点数据：每个顶点为 [x, y, z, u, v, 法线x, 法线y, 法线z] 和一个 RGB 颜色，每4个顶点一个四边形
+     */
+    public static class CarMesh {
+        public static final int STRIDE = 8;
+        private final float[] vertices;
+        private final int[] colors;
+
+        private CarMesh(float[] vertices, int[] colors) {
+            this.vertices = vertices;
+            this.colors = colors;
+        }
+
+        public float[] getVertices() {
+            return vertices;
+        }
+
+        public int[] getColors() {
+            return colors;
+        }
+
+        public int getVertexCount() {
+            return colors.length;
+        }
+
+        public int getQuadCount() {
+            return colors.length / 4;
+        }
+
+        static class Builder {
+            private float[] vertices = new float[STRIDE * 24];
+            private int[] colors = new int[24];
+            private int count;
+
+            // 长方体的6个面
+            void box(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, int color) {
+                quad(maxX, minY, maxZ, maxX, maxY, maxZ, minX, maxY, maxZ, minX, minY, maxZ, 0, 0, 1, color);
+                quad(minX, minY, minZ, minX, maxY, minZ, maxX, maxY, minZ, maxX, minY, minZ, 0, 0, -1, color);
+                quad(maxX, maxY, minZ, minX, maxY, minZ, minX, maxY, maxZ, maxX, maxY, maxZ, 0, 1, 0, color);
+                quad(maxX, minY, maxZ, minX, minY, maxZ, minX, minY, minZ, maxX, minY, minZ, 0, -1, 0, color);
+                quad(maxX, minY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, maxX, minY, maxZ, 1, 0, 0, color);
+                quad(minX, minY, maxZ, minX, maxY, maxZ, minX, maxY, minZ, minX, minY, minZ, -1, 0, 0, color);
+            }
+
+            void quad(float x1, float y1, float z1, float x2, float y2, float z2,
+                      float x3, float y3, float z3, float x4, float y4, float z4,
+                      float normalX, float normalY, float normalZ, int color) {
+                vertex(x1, y1, z1, 0, 0, normalX, normalY, normalZ, color);
+                vertex(x2, y2, z2, 0, 1, normalX, normalY, normalZ, color);
+                vertex(x3, y3, z3, 1, 1, normalX, normalY, normalZ, color);
+                vertex(x4, y4, z4, 1, 0, normalX, normalY, normalZ, color);
+            }
+
+            private void vertex(float x, float y, float z, float u, float v, float normalX, float normalY, float normalZ, int color) {
+                if (count == colors.length) {
+                    vertices = Arrays.copyOf(vertices, vertices.length * 2);
+                    colors = Arrays.copyOf(colors, colors.length * 2);
+                }
+                int offset = count * STRIDE;
+                vertices[offset] = x;
+                vertices[offset + 1] = y;
+                vertices[offset + 2] = z;
+                vertices[offset + 3] = u;
+                vertices[offset + 4] = v;
+                vertices[offset + 5] = normalX;
+                vertices[offset + 6] = normalY;
+                vertices[offset + 7] = normalZ;
+                colors[count++] = color;
+            }
+
+            CarMesh build() {
+                return new CarMesh(Arrays.copyOf(vertices, count * STRIDE), Arrays.copyOf(colors, count));
+            }
+        }
+    }
+}
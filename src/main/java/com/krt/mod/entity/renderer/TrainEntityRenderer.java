@@ -4,6 +4,8 @@ import com.krt.mod.entity.TrainEntity;
 import com.krt.mod.entity.TrainCar;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Frustum;
 import net.minecraft.client.render.OverlayTexture;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumer;
@@ -12,11 +14,19 @@ import net.minecraft.client.render.entity.EntityRenderer;
 import net.minecraft.client.render.entity.EntityRendererFactory;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Matrix3f;
+import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.Quaternion;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
 import com.krt.mod.KRTMod;
 
+import java.util.List;
+
 /**
  * 列车实体渲染器，负责渲染列车实体并应用摇摆效果
+ * 每节车厢先做视锥剔除，再按屏幕上的大小选择细节级别（TrainLod），顶点数据按车型缓存（CarMeshCache）。
  */
 @Environment(EnvType.CLIENT)
 public class TrainEntityRenderer extends EntityRenderer<TrainEntity> {
@@ -24,7 +34,11 @@ public class TrainEntityRenderer extends EntityRenderer<TrainEntity> {
     private static final float WIDTH = 3.0F;
     private static final float HEIGHT = 3.0F;
     private static final float LENGTH = 7.0F;
-    private static final int TRAIN_COLOR = 0xFF0000; // 红色列车
+
+    // 各车型的顶点数据只生成一次
+    private final CarMeshCache meshCache = new CarMeshCache(WIDTH, HEIGHT, LENGTH);
+    // 本帧的视锥，在 shouldRender 中记录
+    private Frustum frustum;
 
     public TrainEntityRenderer(EntityRendererFactory.Context context) {
         super(context);
@@ -37,46 +51,84 @@ public class TrainEntityRenderer extends EntityRenderer<TrainEntity> {
         return new Identifier(KRTMod.MOD_ID, "textures/entity/train.png");
     }
 
+    @Override
+    public boolean shouldRender(TrainEntity entity, Frustum frustum, double x, double y, double z) {
+        // 记录本帧的视锥，渲染时逐节车厢剔除
+        this.frustum = frustum;
+        if (!entity.shouldRender(x, y, z)) {
+            return false;
+        }
+        // 车厢沿车身方向排开，按整列车的长度扩大包围盒
+        double reach = carCount(entity) * LENGTH * SCALE + meshCache.getRadius() * SCALE;
+        return frustum.isVisible(entity.getBoundingBox().expand(reach));
+    }
+
     @Override
     public void render(TrainEntity entity, float yaw, float tickDelta, MatrixStack matrices, 
                       VertexConsumerProvider vertexConsumers, int light) {
         super.render(entity, yaw, tickDelta, matrices, vertexConsumers, light);
         
+        MinecraftClient client = MinecraftClient.getInstance();
+        Vec3d camera = this.dispatcher.camera.getPos();
+        Vec3d origin = entity.getLerpedPos(tickDelta);
+        double fov = client.options.getFov().getValue();
+        int screenHeight = client.getWindow().getFramebufferHeight();
+        float radius = meshCache.getRadius() * SCALE;
+        Quaternion rotation = Vec3f.POSITIVE_Y.getDegreesQuaternion(-yaw);
+        VertexConsumer vertexConsumer = vertexConsumers.getBuffer(RenderLayer.getSolid());
+        
         // 保存当前矩阵状态
         matrices.push();
         
         // 应用旋转（使列车朝向正确的方向）
-        matrices.multiply(entity.getRotationQuaternion(tickDelta));
+        matrices.multiply(rotation);
         
         // 应用缩放
         matrices.scale(SCALE, SCALE, SCALE);
         
-        // 如果有列车编组，对每个车辆应用摇摆效果
-        if (entity.getConsist() != null) {
-            for (TrainCar car : entity.getConsist().getCars()) {
-                // 为每个车厢创建一个新的矩阵堆栈，以应用独立的摇摆效果
-                MatrixStack carMatrices = new MatrixStack();
-                carMatrices.copyFrom(matrices);
-                
-                // 计算车厢在列车中的位置偏移
-                int carIndex = entity.getConsist().getCars().indexOf(car);
-                carMatrices.translate(0.0, 0.0, carIndex * LENGTH);
-                
-                // 应用摇摆效果
-                applySwayEffect(carMatrices, car);
-                
-                // 渲染车厢
-                renderCar(carMatrices, vertexConsumers, light);
+        List<TrainCar> cars = entity.getConsist() != null ? entity.getConsist().getCars() : null;
+        int count = carCount(entity);
+        for (int carIndex = 0; carIndex < count; carIndex++) {
+            // 车厢中心的世界坐标，视锥外的车厢直接跳过
+            Vec3f offset = new Vec3f(0.0F, 0.0F, carIndex * LENGTH * SCALE);
+            offset.rotate(rotation);
+            double centerX = origin.x + offset.getX();
+            double centerY = origin.y + offset.getY();
+            double centerZ = origin.z + offset.getZ();
+            if (frustum != null && !frustum.isVisible(new Box(centerX - radius, centerY - radius, centerZ - radius,
+                    centerX + radius, centerY + radius, centerZ + radius))) {
+                continue;
             }
-        } else {
-            // 如果没有编组，渲染基本的列车模型
-            renderCar(matrices, vertexConsumers, light);
+            
+            // 按屏幕上的大小选择细节级别
+            double distance = Math.sqrt(camera.squaredDistanceTo(centerX, centerY, centerZ));
+            TrainLod lod = TrainLod.select(TrainLod.projectedPixels(radius, distance, fov, screenHeight));
+            if (lod == TrainLod.CULLED) {
+                continue;
+            }
+            
+            TrainCar car = cars != null ? cars.get(carIndex) : null;
+            matrices.push();
+            // 计算车厢在列车中的位置偏移
+            matrices.translate(0.0, 0.0, carIndex * LENGTH);
+            // 摇摆效果只在完整模型上可见
+            if (car != null && lod == TrainLod.FULL) {
+                applySwayEffect(matrices, car);
+            }
+            TrainCar.CarType type = car != null ? car.getCarType() : TrainCar.CarType.HEAD_CAR;
+            renderMesh(matrices.peek(), vertexConsumer, meshCache.get(type, lod), light);
+            matrices.pop();
         }
         
         // 恢复矩阵状态
         matrices.pop();
     }
     
+    // 没有编组时按单节车厢渲染
+    private static int carCount(TrainEntity entity) {
+        return entity.getConsist() != null ? Math.max(1, entity.getConsist().getCars().size()) : 1;
+    }
+    
     /**
      * 应用摇摆效果到矩阵堆栈
      */
@@ -89,83 +141,26 @@ public class TrainEntityRenderer extends EntityRenderer<TrainEntity> {
         matrices.translate(swayOffset.x, swayOffset.y, swayOffset.z);
         
         // 应用倾斜角度（绕X轴旋转）
-        matrices.multiply(Vec3d.POSITIVE_X.getRadialQuaternion(tiltAngle));
-    }
-    
-    /**
-     * 渲染单个车厢
-     */
-    private void renderCar(MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light) {
-        // 从矩阵获取位置矩阵
-        MatrixStack.Entry entry = matrices.peek();
-        
-        // 创建顶点消费者，使用无纹理的渲染层
-        VertexConsumer vertexConsumer = vertexConsumers.getBuffer(RenderLayer.getSolid());
-        
-        // 渲染一个简单的长方体作为车厢模型
-        // 使用纯色渲染，不依赖纹理文件
-        renderBox(entry, vertexConsumer, -WIDTH/2, -HEIGHT/2, -LENGTH/2, WIDTH/2, HEIGHT/2, LENGTH/2, light);
+        matrices.multiply(Vec3f.POSITIVE_X.getDegreesQuaternion(tiltAngle));
     }
     
     /**
-     * 渲染一个简单的长方体
+     * 输出缓存的车厢顶点
      */
-    private void renderBox(MatrixStack.Entry entry, VertexConsumer vertexConsumer, 
-                           float minX, float minY, float minZ, float maxX, float maxY, float maxZ, 
-                           int light) {
-        // 渲染前面（Z+）
-        vertex(vertexConsumer, entry, maxX, minY, maxZ, 1.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, maxX, maxY, maxZ, 1.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, maxZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, minY, maxZ, 0.0F, 0.0F, light);
-        
-        // 渲染后面（Z-）
-        vertex(vertexConsumer, entry, minX, minY, minZ, 0.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, minZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, maxX, maxY, minZ, 1.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, maxX, minY, minZ, 1.0F, 0.0F, light);
-        
-        // 渲染顶部（Y+）
-        vertex(vertexConsumer, entry, maxX, maxY, minZ, 1.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, minZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, maxZ, 0.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, maxX, maxY, maxZ, 1.0F, 0.0F, light);
-        
-        // 渲染底部（Y-）
-        vertex(vertexConsumer, entry, maxX, minY, maxZ, 1.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, minX, minY, maxZ, 0.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, minX, minY, minZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, maxX, minY, minZ, 1.0F, 1.0F, light);
-        
-        // 渲染右侧（X+）
-        vertex(vertexConsumer, entry, maxX, minY, minZ, 0.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, maxX, maxY, minZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, maxX, maxY, maxZ, 1.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, maxX, minY, maxZ, 1.0F, 0.0F, light);
-        
-        // 渲染左侧（X-）
-        vertex(vertexConsumer, entry, minX, minY, maxZ, 1.0F, 0.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, maxZ, 1.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, maxY, minZ, 0.0F, 1.0F, light);
-        vertex(vertexConsumer, entry, minX, minY, minZ, 0.0F, 0.0F, light);
-    }
-    
-    /**
-     * 添加一个顶点到顶点消费者
-     */
-    private void vertex(VertexConsumer vertexConsumer, MatrixStack.Entry entry, 
-                        float x, float y, float z, float u, float v, int light) {
-        // 从RGB颜色中提取各个分量
-        int red = (TRAIN_COLOR >> 16) & 0xFF;
-        int green = (TRAIN_COLOR >> 8) & 0xFF;
-        int blue = TRAIN_COLOR & 0xFF;
-        
-        vertexConsumer.vertex(entry.getPositionMatrix(), x, y, z)
-            .color(red, green, blue, 255) // 使用列车的颜色
-            .texture(u, v) // 纹理坐标仍然需要，但实际上不会使用
-            .overlay(OverlayTexture.DEFAULT_UV)
-            .light(light)
-            .normal(entry.getNormalMatrix(), 0.0F, 1.0F, 0.0F)
-            .next();
+    private void renderMesh(MatrixStack.Entry entry, VertexConsumer vertexConsumer, CarMeshCache.CarMesh mesh, int light) {
+        float[] vertices = mesh.getVertices();
+        int[] colors = mesh.getColors();
+        Matrix4f position = entry.getPositionMatrix();
+        Matrix3f normal = entry.getNormalMatrix();
+        for (int i = 0, offset = 0; i < colors.length; i++, offset += CarMeshCache.CarMesh.STRIDE) {
+            int color = colors[i];
+            vertexConsumer.vertex(position, vertices[offset], vertices[offset + 1], vertices[offset + 2])
+                .color((color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF, 255)
+                .texture(vertices[offset + 3], vertices[offset + 4])
+                .overlay(OverlayTexture.DEFAULT_UV)
+                .light(light)
+                .normal(normal, vertices[offset + 5], vertices[offset + 6], vertices[offset + 7])
+                .next();
+        }
     }
-}
\ No newline at end of file
+}
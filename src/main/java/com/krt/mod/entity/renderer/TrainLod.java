@@ -0,0 +1,50 @@
+package com.krt.mod.entity.renderer;
+
+/**
+ * 列车车厢的细节级别
+ * 按车厢在屏幕上的投影大小选择：近处完整模型，中距离单个长方体，远处十字面片，过小则不绘制。
+ * 只做数值计算，不依赖渲染环境。
+ */
+public enum TrainLod {
+    FULL,
+    BOX,
+    IMPOSTOR,
+    CULLED;
+
+    // 投影高度（像素）不小于该值时使用对应级别
+    static final double FULL_MIN_PIXELS = 160.0;
+    static final double BOX_MIN_PIXELS = 24.0;
+    static final double IMPOSTOR_MIN_PIXELS = 3.0;
+
+    /**
+     * 按投影大小选择细节级别
+     * @param projectedPixels 车厢包围球在屏幕上的直径（像素）
+     */
+    public static TrainLod select(double projectedPixels) {
+        if (projectedPixels >= FULL_MIN_PIXELS) {
+            return FULL;
+        }
+        if (projectedPixels >= BOX_MIN_PIXELS) {
+            return BOX;
+        }
+        if (projectedPixels >= IMPOSTOR_MIN_PIXELS) {
+            return IMPOSTOR;
+        }
+        return CULLED;
+    }
+
+    /**
+     * 包围球在屏幕上的直径（像素）
+     * @param radius 包围球半径（方块）
+     * @param distance 到相机的距离（方块）
+     * @param fovDegrees 垂直视野角（度）
+     * @param screenHeight 屏幕高度（像素）
+     */
+    public static double projectedPixels(double radius, double distance, double fovDegrees, int screenHeight) {
+        if (distance <= radius) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double halfFov = Math.toRadians(fovDegrees) / 2;
+        return radius / (distance * Math.tan(halfFov)) * screenHeight;
+    }
+}
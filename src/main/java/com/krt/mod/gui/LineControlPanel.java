@@ -78,14 +78,26 @@ public class LineControlPanel extends Screen {
         
         // 添加导出图片按钮
         ButtonWidget exportImageButton = new ButtonWidget(mapX, mapY + MAP_HEIGHT + 10, 120, 20, Text.literal(LanguageSystem.translate("krt.map.export_image")), button -> {
-            if (world != null) {
-                // 使用默认路径导出图片
-                String filePath = MapExporter.exportMapAsImage(mapRenderer, world, null);
-                if (filePath != null) {
-                    client.player.sendMessage(Text.literal("地图已导出为图片: " + filePath), false);
-                } else {
-                    client.player.sendMessage(Text.literal("图片导出失败！"), false);
-                }
+            if (world != null && mapRenderer.getCenterPos() != null) {
+                // 在后台导出当前地图范围，进度显示在快捷栏上方
+                double blocksPerPixel = 1 / mapRenderer.getPixelsPerBlock();
+                MapExporter.ExportRequest request = MapExporter.ExportRequest.centeredOn(world, mapRenderer.getCenterPos(),
+                        MAP_WIDTH, MAP_HEIGHT, blocksPerPixel, MapExporter.newExportFile("png", null));
+                MapExporter.exportRegionAsync(request, (rowsWritten, totalRows) -> client.execute(() -> {
+                    if (client.player != null) {
+                        client.player.sendMessage(Text.literal("正在导出地图: " + rowsWritten * 100 / totalRows + "%"), true);
+                    }
+                })).whenComplete((filePath, error) -> client.execute(() -> {
+                    if (client.player == null) {
+                        return;
+                    }
+                    if (error == null) {
+                        client.player.sendMessage(Text.literal("地图已导出为图片: " + filePath), false);
+                    } else {
+                        KRTMod.LOGGER.error("导出地图图片失败", error);
+                        client.player.sendMessage(Text.literal("图片导出失败！"), false);
+                    }
+                }));
             }
         });
         addDrawableChild(exportImageButton);
@@ -279,7 +291,7 @@ public class LineControlPanel extends Screen {
     
     // 地图缩放功能
     private void zoomIn() {
-        if (currentZoomLevel < 5) { // 最大缩放级别为5
+        if (currentZoomLevel < MapRenderer.MAX_ZOOM_LEVEL) {
             currentZoomLevel++;
             this.mapRenderer.setZoomLevel(currentZoomLevel);
             // 缩放级别改变时，中心区块可能需要重新计算
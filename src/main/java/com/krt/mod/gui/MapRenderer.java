@@ -1,13 +1,19 @@
 package com.krt.mod.gui;
 
+import com.krt.mod.map.MapTileCache;
+import com.krt.mod.map.MapTileCodec;
+import com.krt.mod.map.MapTilePyramid;
+import com.mojang.blaze3d.systems.RenderSystem;
 import com.krt.mod.system.LineControlSystem;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawableHelper;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.Tessellator;
 import net.minecraft.client.render.VertexFormat;
 import net.minecraft.client.render.VertexFormats;
 import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.NativeImageBackedTexture;
 import net.minecraft.client.texture.TextureManager;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.Identifier;
@@ -30,10 +36,10 @@ public class MapRenderer {
     private static final int BORDER_SIZE = 2;
     private static final int TILE_SIZE = 4; // 每个方块在地图上的像素大小
     private static final int CHUNK_SIZE = 16; // 区块大小，与Minecraft保持一致
+    public static final int MAX_ZOOM_LEVEL = 10; // 每级缩小一半，最大级别约每128方块一个像素
     
     // 优化配置
-    private static final int MAX_RENDER_DISTANCE = 5; // 最大渲染距离（区块）
-    private static final int MAX_CACHED_CHUNKS = 100; // 最大缓存区块数
+    private static final int MAX_TILE_TEXTURES = 64; // 最多保留的地形瓦片纹理数
     private static final int MAX_TEXTURE_CACHE_SIZE = 50; // 最大纹理缓存数
     private static final int MIN_RENDER_TILE_SIZE = 2; // 最小渲染瓦片大小，小于此值不渲染细节
     private static final int BATCH_RENDER_THRESHOLD = 10; // 批量渲染阈值
@@ -52,19 +58,23 @@ public class MapRenderer {
     private final int mapHeight;
     private BlockPos centerPos;
     private int zoomLevel = 1;
-    private final Map<Long, MapChunk> chunkCache = new ConcurrentHashMap<>();
-    private final ExecutorService chunkLoader = Executors.newSingleThreadExecutor(r -> {
-        Thread thread = new Thread(r, "MapChunkLoader");
-        thread.setDaemon(true);
-        return thread;
-    });
+    // 地形瓦片由服务器生成，经 MapTileCache 缓存并拼合为 MapTilePyramid 的各级瓦片，按级别上传为纹理
+    private final Map<String, TileTexture> tileTextures = new LinkedHashMap<String, TileTexture>(MAX_TILE_TEXTURES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TileTexture> eldest) {
+            if (size() > MAX_TILE_TEXTURES) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
     private final ExecutorService renderThreadPool = Executors.newFixedThreadPool(2, r -> {
         Thread thread = new Thread(r, "MapRenderThread");
         thread.setDaemon(true);
         return thread;
     });
-    private long seed = 0; // 用于噪声生成的种子
-    
+
     // 轻量级资源缓存
     private final Map<String, LightweightTexture> textureCache = new LinkedHashMap<String, LightweightTexture>(MAX_TEXTURE_CACHE_SIZE, 0.75f, true) {
         @Override
@@ -82,12 +92,6 @@ public class MapRenderer {
     private long lastBatchUpdateTime = 0;
     private static final long BATCH_UPDATE_INTERVAL = 100; // 批量更新间隔（ms）
 
-    // 噪声参数
-    private static final double NOISE_SCALE = 0.01;
-    private static final int NOISE_OCTAVES = 3;
-    private static final double NOISE_PERSISTENCE = 0.5;
-    private static final double NOISE_LACUNARITY = 2.0;
-
     // 层级配置类
     private static class LayerConfig {
         private boolean visible; // 是否可见
@@ -137,6 +141,10 @@ public class MapRenderer {
             // 返回解压后的像素数据
             return decompressPixelData(pixels);
         }
+        
+        private void updateLastUsedTime() {
+            this.lastUsedTime = System.currentTimeMillis();
+        }
     }
     
     // 轻量级区块数据类
@@ -166,55 +174,16 @@ public class MapRenderer {
         public int getChunkZ() {
             return chunkZ;
         }
-        
-        private void updateLastUsedTime() {
-            this.lastUsedTime = System.currentTimeMillis();
-        }
-        
-        private int[] compressPixelData(int[] original) {
-            // 简单的颜色索引压缩，将相同颜色的像素进行编码
-            if (original == null || original.length == 0) return new int[0];
-            
-            List<Integer> compressed = new ArrayList<>();
-            int currentColor = original[0];
-            int count = 1;
-            
-            for (int i = 1; i < original.length; i++) {
-                if (original[i] == currentColor && count < 255) {
-                    count++;
-                } else {
-                    compressed.add(currentColor);
-                    compressed.add(count);
-                    currentColor = original[i];
-                    count = 1;
-                }
-            }
-            
-            // 添加最后一组数据
-            compressed.add(currentColor);
-            compressed.add(count);
-            
-            // 转换为数组
-            return compressed.stream().mapToInt(Integer::intValue).toArray();
-        }
-        
-        private int[] decompressPixelData(int[] compressed) {
-            // 解压像素数据
-            if (compressed == null || compressed.length == 0) return new int[0];
-            
-            List<Integer> decompressed = new ArrayList<>();
-            
-            for (int i = 0; i < compressed.length; i += 2) {
-                int color = compressed[i];
-                int count = compressed[i + 1];
-                
-                for (int j = 0; j < count; j++) {
-                    decompressed.add(color);
-                }
-            }
-            
-            return decompressed.stream().mapToInt(Integer::intValue).toArray();
-        }
+    }
+    
+    // 对像素数据进行游程编码压缩（颜色, 数量）
+    static int[] compressPixelData(int[] original) {
+        return MapTileCodec.compress(original);
+    }
+    
+    // 解压游程编码的像素数据
+    static int[] decompressPixelData(int[] compressed) {
+        return MapTileCodec.decompress(compressed);
     }
     
     // 渲染批次类
@@ -279,89 +248,6 @@ public class MapRenderer {
         public Object getData() { return data; }
     }
     
-    // 区块类定义（优化版）
-    public class MapChunk {
-        private final int chunkX;
-        private final int chunkZ;
-        private final Map<BlockPos, Integer> blocks = new HashMap<>();
-        private boolean loaded = false;
-        private long lastAccessedTime = System.currentTimeMillis();
-        private int[][] simplifiedBlockData; // 简化的区块数据，用于快速渲染
-        private boolean simplifiedDataGenerated = false;
-
-        public MapChunk(int chunkX, int chunkZ) {
-            this.chunkX = chunkX;
-            this.chunkZ = chunkZ;
-            // 预分配简化数据数组
-            this.simplifiedBlockData = new int[CHUNK_SIZE][CHUNK_SIZE];
-        }
-
-        public int getChunkX() {
-            return chunkX;
-        }
-
-        public int getChunkZ() {
-            return chunkZ;
-        }
-
-        public void addBlock(BlockPos pos, int color) {
-            blocks.put(pos, color);
-            // 更新简化数据
-            int relX = pos.getX() - (chunkX * CHUNK_SIZE);
-            int relZ = pos.getZ() - (chunkZ * CHUNK_SIZE);
-            if (relX >= 0 && relX < CHUNK_SIZE && relZ >= 0 && relZ < CHUNK_SIZE) {
-                simplifiedBlockData[relX][relZ] = color;
-            }
-        }
-
-        public Map<BlockPos, Integer> getBlocks() {
-            updateLastAccessed();
-            return blocks;
-        }
-
-        public boolean isLoaded() {
-            return loaded;
-        }
-
-        public void setLoaded(boolean loaded) {
-            this.loaded = loaded;
-            if (loaded) {
-                updateLastAccessed();
-                // 生成简化数据用于快速渲染
-                generateSimplifiedData();
-            }
-        }
-
-        public long getLastAccessedTime() {
-            return lastAccessedTime;
-        }
-
-        private void updateLastAccessed() {
-            this.lastAccessedTime = System.currentTimeMillis();
-        }
-
-        // 获取区块中的区块坐标（相对于区块原点）
-        public BlockPos getChunkBlockPos(int relX, int relZ) {
-            int worldX = chunkX * CHUNK_SIZE + relX;
-            int worldZ = chunkZ * CHUNK_SIZE + relZ;
-            return new BlockPos(worldX, 0, worldZ);
-        }
-        
-        // 生成简化的区块数据，用于低细节级别渲染
-        private void generateSimplifiedData() {
-            if (simplifiedDataGenerated) return;
-            
-            // 这里可以实现更复杂的简化算法，例如将多个小方块合并为更大的块
-            simplifiedDataGenerated = true;
-        }
-        
-        // 获取简化的区块数据
-        public int[][] getSimplifiedBlockData() {
-            updateLastAccessed();
-            return simplifiedBlockData;
-        }
-    }
-
     public MapRenderer() {
         this(DEFAULT_MAP_WIDTH, DEFAULT_MAP_HEIGHT);
     }
@@ -369,8 +255,6 @@ public class MapRenderer {
     public MapRenderer(int width, int height) {
         this.mapWidth = width;
         this.mapHeight = height;
-        // 初始化随机种子，基于当前系统时间
-        this.seed = System.currentTimeMillis();
         
         // 初始化层级配置
         initializeLayerConfigs();
@@ -416,7 +300,24 @@ public class MapRenderer {
     }
 
     public void setZoomLevel(int level) {
-        this.zoomLevel = Math.max(1, Math.min(5, level)); // 限制缩放级别在1-5之间
+        this.zoomLevel = Math.max(1, Math.min(MAX_ZOOM_LEVEL, level)); // 限制缩放级别在1-MAX_ZOOM_LEVEL之间
+    }
+
+    public BlockPos getCenterPos() {
+        return centerPos;
+    }
+
+    public int getMapWidth() {
+        return mapWidth;
+    }
+
+    public int getMapHeight() {
+        return mapHeight;
+    }
+
+    // 每方块对应的屏幕像素数：第1级为4，之后每级减半
+    public double getPixelsPerBlock() {
+        return (double) TILE_SIZE / (1 << (zoomLevel - 1));
     }
 
     public void render(MatrixStack matrices, int x, int y, World world) {
@@ -439,7 +340,7 @@ public class MapRenderer {
         prepareRenderBatches(world);
         
         // 按顺序渲染各层级
-        renderLayers(matrices, x + BORDER_SIZE, y + BORDER_SIZE);
+        renderLayers(matrices, x + BORDER_SIZE, y + BORDER_SIZE, world);
         
         // 绘制UI层
         if (layerConfigs.get(LAYER_UI).isVisible(zoomLevel)) {
@@ -449,9 +350,10 @@ public class MapRenderer {
     
     // 准备渲染批次
     private void prepareRenderBatches(World world) {
-        // 地形层渲染准备
-        if (shouldRenderLayer(LAYER_TERRAIN)) {
-            prepareTerrainBatch();
+        // 地形层直接绘制瓦片纹理，不使用批次
+        // 每方块不足一个像素时轨道和车站已包含在地形瓦片中，不再逐个绘制
+        if (getPixelsPerBlock() < 1) {
+            return;
         }
         
         // 轨道层渲染准备
@@ -466,10 +368,10 @@ public class MapRenderer {
     }
     
     // 渲染各层级
-    private void renderLayers(MatrixStack matrices, int x, int y) {
+    private void renderLayers(MatrixStack matrices, int x, int y, World world) {
         // 地形层
-        if (shouldRenderLayer(LAYER_TERRAIN)) {
-            renderLayer(matrices, x, y, LAYER_TERRAIN);
+        if (shouldRenderLayer(LAYER_TERRAIN) && world != null) {
+            drawTerrainTiles(matrices, x, y, world);
         }
         
         // 轨道层
@@ -485,8 +387,8 @@ public class MapRenderer {
         // 标记层 - 始终单独渲染（动态元素）
         if (shouldRenderLayer(LAYER_MARKERS)) {
             MinecraftClient client = MinecraftClient.getInstance();
-            if (client.world != null) {
-                drawPlayerMarker(matrices, x, y, client.player.getBlockPos(), TILE_SIZE / zoomLevel, mapWidth / 2 / (TILE_SIZE / zoomLevel), mapHeight / 2 / (TILE_SIZE / zoomLevel));
+            if (client.world != null && client.player != null) {
+                drawPlayerMarker(matrices, x, y, client.player.getBlockPos());
             }
         }
     }
@@ -511,8 +413,7 @@ public class MapRenderer {
             return;
         }
         
-        int effectiveTileSize = TILE_SIZE / zoomLevel;
-        if (effectiveTileSize < 1) effectiveTileSize = 1;
+        int effectiveTileSize = Math.max(1, (int) getPixelsPerBlock());
         
         int halfWidth = mapWidth / 2 / effectiveTileSize;
         int halfHeight = mapHeight / 2 / effectiveTileSize;
@@ -550,53 +451,6 @@ public class MapRenderer {
         }
     }
     
-    // 准备地形渲染批次
-    private void prepareTerrainBatch() {
-        // 地形层使用轻量级资源和简化绘制
-        int effectiveTileSize = TILE_SIZE / zoomLevel;
-        if (effectiveTileSize < 1) effectiveTileSize = 1;
-        
-        int halfWidth = mapWidth / 2 / effectiveTileSize;
-        int halfHeight = mapHeight / 2 / effectiveTileSize;
-        
-        // 计算当前中心区块坐标
-        int centerChunkX = centerPos.getX() >> 4;
-        int centerChunkZ = centerPos.getZ() >> 4;
-        
-        // 确定要渲染的区块范围
-        int renderDistance = Math.min(MAX_RENDER_DISTANCE, calculateRenderDistance());
-        
-        // 异步加载区块
-        loadNearbyChunks(centerChunkX, centerChunkZ, renderDistance);
-        
-        // 为可见区块创建渲染批次
-        for (int chunkX = centerChunkX - renderDistance; chunkX <= centerChunkX + renderDistance; chunkX++) {
-            for (int chunkZ = centerChunkZ - renderDistance; chunkZ <= centerChunkZ + renderDistance; chunkZ++) {
-                MapChunk chunk = getChunk(chunkX, chunkZ);
-                if (chunk != null && chunk.isLoaded()) {
-                    // 创建地形渲染批次
-                    RenderBatch terrainBatch = new RenderBatch(LAYER_TERRAIN, new BlockPos(chunkX * CHUNK_SIZE, 0, chunkZ * CHUNK_SIZE));
-                    
-                    // 添加区块中的方块到批次
-                    int[][] simplifiedData = chunk.getSimplifiedBlockData();
-                    for (int relX = 0; relX < CHUNK_SIZE; relX++) {
-                        for (int relZ = 0; relZ < CHUNK_SIZE; relZ++) {
-                            int color = simplifiedData[relX][relZ];
-                            if (color != 0) { // 跳过透明方块
-                                BlockPos pos = chunk.getChunkBlockPos(relX, relZ);
-                                terrainBatch.addElement(new RenderElement(pos, 0, color, 1.0f, null));
-                            }
-                        }
-                    }
-                    
-                    if (!terrainBatch.getElements().isEmpty()) {
-                        renderBatches.get(LAYER_TERRAIN).add(terrainBatch);
-                    }
-                }
-            }
-        }
-    }
-    
     // 准备轨道渲染批次
     private void prepareTracksBatch(World world) {
         if (world == null) return;
@@ -650,16 +504,13 @@ public class MapRenderer {
     }
 
     private void drawMapContent(MatrixStack matrices, int x, int y, World world) {
-        // 绘制基本地形（简化版，仅绘制区块轮廓）
-        int effectiveTileSize = TILE_SIZE / zoomLevel;
-        if (effectiveTileSize < 1) effectiveTileSize = 1;
+        int effectiveTileSize = Math.max(1, (int) getPixelsPerBlock());
         
         int halfWidth = mapWidth / 2 / effectiveTileSize;
         int halfHeight = mapHeight / 2 / effectiveTileSize;
 
-        // 只在低缩放级别绘制地形，减少渲染开销
-        if (zoomLevel <= 2 && world != null) {
-            drawTerrain(matrices, x, y, effectiveTileSize, halfWidth, halfHeight);
+        if (world != null) {
+            drawTerrainTiles(matrices, x, y, world);
         }
         
         // 绘制网格线
@@ -676,328 +527,90 @@ public class MapRenderer {
         }
     }
 
-    private void drawTerrain(MatrixStack matrices, int x, int y, int tileSize, int halfWidth, int halfHeight) {
-        // 计算当前中心区块坐标
-        int centerChunkX = centerPos.getX() >> 4;
-        int centerChunkZ = centerPos.getZ() >> 4;
-        
-        // 确定要渲染的区块范围
-        int renderDistance = Math.min(MAX_RENDER_DISTANCE, calculateRenderDistance());
-        
-        // 异步加载区块
-        loadNearbyChunks(centerChunkX, centerChunkZ, renderDistance);
+    // 绘制地形：按缩放选择金字塔级别，只绘制覆盖地图区域的瓦片，每帧绘制的瓦片数与缩放无关
+    private void drawTerrainTiles(MatrixStack matrices, int x, int y, World world) {
+        double pixelsPerBlock = getPixelsPerBlock();
+        int level = MapTilePyramid.levelFor(1 / pixelsPerBlock);
+        int tileBlocks = MapTilePyramid.TILE_PIXELS << level;
+        int tileScreenSize = (int) Math.round(tileBlocks * pixelsPerBlock);
         
-        // 绘制可见范围内的区块
-        for (int chunkX = centerChunkX - renderDistance; chunkX <= centerChunkX + renderDistance; chunkX++) {
-            for (int chunkZ = centerChunkZ - renderDistance; chunkZ <= centerChunkZ + renderDistance; chunkZ++) {
-                MapChunk chunk = getChunk(chunkX, chunkZ);
-                if (chunk != null && chunk.isLoaded()) {
-                    drawChunk(matrices, x, y, chunk, tileSize, halfWidth, halfHeight);
-                }
-            }
-        }
-        
-        // 清理过期区块缓存
-        cleanupChunkCache();
-    }
-
-    // 绘制区块 - 已优化为使用批量渲染
-    private void drawChunk(MatrixStack matrices, int x, int y, MapChunk chunk, int tileSize, int halfWidth, int halfHeight) {
-        // 计算区块边界，快速判断是否完全在可视区域外
-        int chunkMinX = chunk.getChunkX() * 16;
-        int chunkMaxX = chunkMinX + 15;
-        int chunkMinZ = chunk.getChunkZ() * 16;
-        int chunkMaxZ = chunkMinZ + 15;
+        // 地图区域对应的方块范围
+        double halfBlocksX = mapWidth / 2.0 / pixelsPerBlock;
+        double halfBlocksZ = mapHeight / 2.0 / pixelsPerBlock;
+        int minBlockX = (int) Math.floor(centerPos.getX() - halfBlocksX);
+        int maxBlockX = (int) Math.ceil(centerPos.getX() + halfBlocksX);
+        int minBlockZ = (int) Math.floor(centerPos.getZ() - halfBlocksZ);
+        int maxBlockZ = (int) Math.ceil(centerPos.getZ() + halfBlocksZ);
         
-        // 快速视锥剔除：如果区块完全在可视区域外，直接跳过
-        if (chunkMaxX < centerPos.getX() - halfWidth || 
-            chunkMinX > centerPos.getX() + halfWidth || 
-            chunkMaxZ < centerPos.getZ() - halfHeight || 
-            chunkMinZ > centerPos.getZ() + halfHeight) {
-            return;
+        // 第0、1级使用的区块瓦片向服务器请求；更小的比例尺只显示已缓存的区域，避免一次请求过多区块
+        if (level <= 1) {
+            requestChunkTiles(world, minBlockX >> 4, maxBlockX >> 4, minBlockZ >> 4, maxBlockZ >> 4);
         }
         
-        // 使用简化的区块数据进行快速渲染
-        int[][] simplifiedBlockData = chunk.getSimplifiedBlockData();
-        
-        // 根据当前缩放级别和性能设置，决定渲染粒度
-        int renderStep = calculateRenderStep(zoomLevel);
+        MapTilePyramid.beginFrame();
+        int minTileX = Math.floorDiv(minBlockX, tileBlocks);
+        int maxTileX = Math.floorDiv(maxBlockX, tileBlocks);
+        int minTileZ = Math.floorDiv(minBlockZ, tileBlocks);
+        int maxTileZ = Math.floorDiv(maxBlockZ, tileBlocks);
         
-        // 预计算一些值，减少循环中的计算
-        int centerX = centerPos.getX();
-        int centerZ = centerPos.getZ();
-        int chunkX = chunk.getChunkX() * CHUNK_SIZE;
-        int chunkZ = chunk.getChunkZ() * CHUNK_SIZE;
-        
-        for (int relX = 0; relX < CHUNK_SIZE; relX += renderStep) {
-            for (int relZ = 0; relZ < CHUNK_SIZE; relZ += renderStep) {
-                // 使用采样点的颜色代表整个区域
-                int sampleX = Math.min(relX, CHUNK_SIZE - 1);
-                int sampleZ = Math.min(relZ, CHUNK_SIZE - 1);
-                int color = simplifiedBlockData[sampleX][sampleZ];
-                
-                if (color == 0) continue; // 跳过透明方块
-                
-                int worldX = chunkX + relX;
-                int worldZ = chunkZ + relZ;
-                
-                // 检查是否在可见范围内
-                if (Math.abs(worldX - centerX) > halfWidth || Math.abs(worldZ - centerZ) > halfHeight) {
+        enableMapScissor(x, y);
+        for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+            for (int tileZ = minTileZ; tileZ <= maxTileZ; tileZ++) {
+                MapTilePyramid.PyramidTile tile = MapTilePyramid.getTile(level, tileX, tileZ);
+                if (tile == null) {
                     continue;
                 }
-                
-                // 转换为屏幕坐标
-                int screenX = x + (worldX - centerX + halfWidth) * tileSize;
-                int screenY = y + (worldZ - centerZ + halfHeight) * tileSize;
-                
-                // 绘制方块，根据渲染步长调整大小
-                int drawSize = Math.min(renderStep * tileSize, tileSize * 2);
-                fill(matrices, screenX, screenY, screenX + drawSize - 1, screenY + drawSize - 1, color);
-            }
-        }
-    }
-    
-    // 计算渲染步长（根据缩放级别动态调整）
-    private int calculateRenderStep(int zoom) {
-        // 当缩放级别较低时，增加渲染步长以减少绘制量
-        if (zoom <= 1) return 4;
-        if (zoom <= 2) return 2;
-        return 1;
-    }
-
-    private void loadNearbyChunks(int centerChunkX, int centerChunkZ, int renderDistance) {
-        // 计算区块加载任务的优先级队列
-        List<ChunkLoadTask> tasks = new ArrayList<>();
-        
-        for (int chunkX = centerChunkX - renderDistance; chunkX <= centerChunkX + renderDistance; chunkX++) {
-            for (int chunkZ = centerChunkZ - renderDistance; chunkZ <= centerChunkZ + renderDistance; chunkZ++) {
-                // 只添加未加载的区块
-                if (!chunkCache.containsKey(getChunkKey(chunkX, chunkZ)) || !getChunk(chunkX, chunkZ).isLoaded()) {
-                    // 计算到中心区块的距离，用于优先级排序
-                    int distance = Math.abs(chunkX - centerChunkX) + Math.abs(chunkZ - centerChunkZ);
-                    tasks.add(new ChunkLoadTask(chunkX, chunkZ, distance));
-                }
-            }
-        }
-        
-        // 按距离排序，优先加载近的区块
-        tasks.sort(Comparator.comparingInt(ChunkLoadTask::getDistance));
-        
-        // 限制并发加载的区块数量，避免线程池过载
-        int maxConcurrentLoads = 4;
-        int submitted = 0;
-        
-        for (ChunkLoadTask task : tasks) {
-            if (submitted < maxConcurrentLoads && !chunkLoader.isShutdown()) {
-                final int cx = task.getChunkX();
-                final int cz = task.getChunkZ();
-                
-                chunkLoader.submit(() -> {
-                    loadChunk(cx, cz);
-                });
-                submitted++;
-            } else {
-                // 对于超出限制的任务，稍后再加载
-                break;
+                int screenX = x + mapWidth / 2 + (int) Math.floor(((long) tileX * tileBlocks - centerPos.getX()) * pixelsPerBlock);
+                int screenY = y + mapHeight / 2 + (int) Math.floor(((long) tileZ * tileBlocks - centerPos.getZ()) * pixelsPerBlock);
+                TileTexture texture = getTileTexture(level, tileX, tileZ, tile);
+                RenderSystem.setShaderTexture(0, texture.id);
+                DrawableHelper.drawTexture(matrices, screenX, screenY, tileScreenSize, tileScreenSize, 0, 0,
+                        MapTilePyramid.TILE_PIXELS, MapTilePyramid.TILE_PIXELS, MapTilePyramid.TILE_PIXELS, MapTilePyramid.TILE_PIXELS);
             }
         }
+        RenderSystem.disableScissor();
     }
     
-    // 区块加载任务类，用于优先级排序
-    private static class ChunkLoadTask {
-        private final int chunkX;
-        private final int chunkZ;
-        private final int distance;
-        
-        public ChunkLoadTask(int chunkX, int chunkZ, int distance) {
-            this.chunkX = chunkX;
-            this.chunkZ = chunkZ;
-            this.distance = distance;
-        }
-        
-        public int getChunkX() {
-            return chunkX;
-        }
-        
-        public int getChunkZ() {
-            return chunkZ;
-        }
-        
-        public int getDistance() {
-            return distance;
-        }
-    }
-
-    // 加载区块 - 已优化为使用噪声缓存和简化计算
-    private void loadChunk(int chunkX, int chunkZ) {
-        MapChunk chunk = getChunk(chunkX, chunkZ);
-        
-        if (chunk != null && !chunk.isLoaded()) {
-            // 简化的区块数据生成
-            int[][] simplifiedBlockData = new int[CHUNK_SIZE][CHUNK_SIZE];
-            
-            // 批量计算噪声值
-            generateSimplifiedChunkData(chunkX, chunkZ, simplifiedBlockData);
-            
-            // 设置简化的区块数据并添加方块
-            for (int relX = 0; relX < CHUNK_SIZE; relX++) {
-                for (int relZ = 0; relZ < CHUNK_SIZE; relZ++) {
-                    BlockPos pos = chunk.getChunkBlockPos(relX, relZ);
-                    int color = simplifiedBlockData[relX][relZ];
-                    chunk.addBlock(pos, color);
+    // 请求可见区块的瓦片，近处优先；数据到达后由 MapTileCache 写入金字塔
+    private void requestChunkTiles(World world, int minChunkX, int maxChunkX, int minChunkZ, int maxChunkZ) {
+        int centerChunkX = centerPos.getX() >> 4;
+        int centerChunkZ = centerPos.getZ() >> 4;
+        int radius = Math.max(Math.max(centerChunkX - minChunkX, maxChunkX - centerChunkX),
+                Math.max(centerChunkZ - minChunkZ, maxChunkZ - centerChunkZ));
+        // 由内向外逐圈请求
+        for (int ring = 0; ring <= radius; ring++) {
+            for (int chunkX = centerChunkX - ring; chunkX <= centerChunkX + ring; chunkX++) {
+                for (int chunkZ = centerChunkZ - ring; chunkZ <= centerChunkZ + ring; chunkZ++) {
+                    boolean onRing = Math.abs(chunkX - centerChunkX) == ring || Math.abs(chunkZ - centerChunkZ) == ring;
+                    if (onRing && chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                        MapTileCache.getTile(world, chunkX, chunkZ);
+                    }
                 }
             }
-            
-            chunk.setLoaded(true);
         }
     }
     
-    // 生成简化的区块数据
-    private void generateSimplifiedChunkData(int chunkX, int chunkZ, int[][] blockData) {
-        // 根据性能设置决定噪声计算精度
-        int noisePrecision = 2; // 使用较低精度以提高性能，可根据需要调整
-        
-        // 预计算噪声值并缓存
-        double[][] noiseValues = new double[CHUNK_SIZE / noisePrecision + 1][CHUNK_SIZE / noisePrecision + 1];
-        
-        int worldX = chunkX * CHUNK_SIZE;
-        int worldZ = chunkZ * CHUNK_SIZE;
-        
-        // 只计算关键采样点的噪声值
-        for (int x = 0; x < CHUNK_SIZE; x += noisePrecision) {
-            for (int z = 0; z < CHUNK_SIZE; z += noisePrecision) {
-                noiseValues[x / noisePrecision][z / noisePrecision] = generateNoise(worldX + x, worldZ + z);
-            }
+    // 取得瓦片纹理，瓦片内容变化时重新上传
+    private TileTexture getTileTexture(int level, int tileX, int tileZ, MapTilePyramid.PyramidTile tile) {
+        String key = level + "/" + tileX + "_" + tileZ;
+        TileTexture texture = tileTextures.get(key);
+        if (texture == null) {
+            texture = new TileTexture(new Identifier("krt", "map_tile/" + key));
+            tileTextures.put(key, texture);
         }
-        
-        // 使用双线性插值填充其余点
-        for (int x = 0; x < CHUNK_SIZE; x++) {
-            for (int z = 0; z < CHUNK_SIZE; z++) {
-                double noiseValue;
-                
-                if (x % noisePrecision != 0 || z % noisePrecision != 0) {
-                    // 双线性插值
-                    int x0 = (x / noisePrecision) * noisePrecision;
-                    int z0 = (z / noisePrecision) * noisePrecision;
-                    int x1 = Math.min(x0 + noisePrecision, CHUNK_SIZE - 1);
-                    int z1 = Math.min(z0 + noisePrecision, CHUNK_SIZE - 1);
-                    
-                    double v00 = noiseValues[x0 / noisePrecision][z0 / noisePrecision];
-                    double v01 = noiseValues[x0 / noisePrecision][z1 / noisePrecision];
-                    double v10 = noiseValues[x1 / noisePrecision][z0 / noisePrecision];
-                    double v11 = noiseValues[x1 / noisePrecision][z1 / noisePrecision];
-                    
-                    double tx = (double)(x - x0) / (x1 - x0);
-                    double tz = (double)(z - z0) / (z1 - z0);
-                    
-                    noiseValue = lerp(lerp(v00, v10, tx), lerp(v01, v11, tx), tz);
-                } else {
-                    // 直接使用采样点值
-                    noiseValue = noiseValues[x / noisePrecision][z / noisePrecision];
-                }
-                
-                // 根据噪声值设置方块颜色
-                blockData[x][z] = getColorFromNoise(noiseValue);
-            }
-        }
-    }
-
-    private int getColorFromNoise(double noiseValue) {
-        // 将噪声值映射到不同的地形颜色
-        if (noiseValue < -0.3) {
-            return 0xFF0000FF; // 深蓝色（深海）
-        } else if (noiseValue < 0) {
-            return 0xFF0080FF; // 浅蓝色（浅海）
-        } else if (noiseValue < 0.2) {
-            return 0xFF00FF00; // 绿色（平原）
-        } else if (noiseValue < 0.4) {
-            return 0xFF808000; // 棕色（山地）
-        } else if (noiseValue < 0.6) {
-            return 0xFFA0A0A0; // 灰色（岩石）
-        } else {
-            return 0xFFFFFFFF; // 白色（雪山）
-        }
-    }
-
-    private double generateNoise(double x, double z) {
-        // 使用多层Perlin噪声生成地形
-        double value = 0;
-        double amplitude = 1;
-        double frequency = NOISE_SCALE;
-        
-        for (int i = 0; i < NOISE_OCTAVES; i++) {
-            value += amplitude * perlinNoise(x * frequency + seed, z * frequency + seed);
-            amplitude *= NOISE_PERSISTENCE;
-            frequency *= NOISE_LACUNARITY;
+        if (texture.revision != tile.getRevision()) {
+            texture.upload(tile);
         }
-        
-        // 归一化到[-1, 1]范围
-        return Math.max(-1, Math.min(1, value));
-    }
-
-    private double perlinNoise(double x, double z) {
-        // 简化版的Perlin噪声实现
-        int xi = (int)Math.floor(x) & 255;
-        int yi = (int)Math.floor(z) & 255;
-        
-        double xf = x - Math.floor(x);
-        double yf = z - Math.floor(z);
-        
-        double u = fade(xf);
-        double v = fade(yf);
-        
-        int a = p[xi] + yi;
-        int b = p[xi + 1] + yi;
-        
-        return lerp(v, lerp(u, grad(p[a], xf, yf), grad(p[b], xf - 1, yf)), 
-                   lerp(u, grad(p[a + 1], xf, yf - 1), grad(p[b + 1], xf - 1, yf - 1)));
-    }
-
-    // Perlin噪声辅助函数
-    private double fade(double t) {
-        return t * t * t * (t * (t * 6 - 15) + 10);
-    }
-    
-    private double lerp(double t, double a, double b) {
-        return a + t * (b - a);
+        return texture;
     }
     
-    private double grad(int hash, double x, double z) {
-        int h = hash & 15;
-        double u = h < 8 ? x : z;
-        double v = h < 4 ? z : h == 12 || h == 14 ? x : 0;
-        return ((h & 1) == 0 ? u : -u) + ((h & 2) == 0 ? v : -v);
-    }
-    
-    // Perlin噪声的置换表
-    private final int[] p = new int[512];
-    { 
-        // 初始化置换表
-        int[] permutation = {151, 160, 137, 91, 90, 15, 131, 13, 201, 95, 96, 53, 194, 233, 7, 225, 140, 36, 103, 30, 69, 142, 8, 99, 37, 240, 21, 10, 23, 190, 6, 148, 247, 120, 234, 75, 0, 26, 197, 62, 94, 252, 219, 203, 117, 35, 11, 32, 57, 177, 33, 88, 237, 149, 56, 87, 174, 20, 125, 136, 171, 168, 68, 175, 74, 165, 71, 134, 139, 48, 27, 166, 77, 146, 158, 231, 83, 111, 229, 122, 60, 211, 133, 230, 220, 105, 92, 41, 55, 46, 245, 40, 244, 102, 143, 54, 65, 25, 63, 161, 1, 216, 80, 73, 209, 76, 132, 187, 208, 89, 18, 169, 200, 196, 135, 130, 116, 188, 159, 86, 164, 100, 109, 198, 173, 186, 3, 64, 52, 217, 226, 250, 124, 123, 5, 202, 38, 147, 118, 126, 255, 82, 85, 212, 207, 206, 59, 227, 47, 16, 58, 17, 182, 189, 28, 42, 223, 183, 170, 213, 119, 248, 152, 2, 44, 154, 163, 70, 221, 153, 101, 155, 167, 43, 172, 9, 129, 22, 39, 253, 19, 98, 108, 110, 79, 113, 224, 232, 178, 185, 112, 104, 218, 246, 97, 228, 251, 34, 242, 193, 238, 210, 144, 12, 191, 179, 162, 241, 81, 51, 145, 235, 249, 14, 239, 107, 49, 192, 214, 31, 181, 199, 106, 157, 184, 84, 204, 176, 115, 121, 50, 45, 127, 4, 150, 254, 138, 236, 205, 93, 222, 114, 67, 29, 24, 72, 243, 141, 128, 195, 78, 66, 215, 61, 156, 180};
-        
-        // 复制置换表以避免边界检查
-        for (int i = 0; i < 256; i++) {
-            p[256 + i] = p[i] = permutation[i];
-        }
-    }
-
-    private int calculateRenderDistance() {
-        // 根据缩放级别动态调整渲染距离
-        int baseDistance = 3;
-        
-        // 缩放级别越高（视角越小），渲染距离越小
-        if (zoomLevel >= 4) {
-            return 1;
-        } else if (zoomLevel >= 2) {
-            return 2;
-        }
-        
-        return baseDistance;
-    }
-
-    private MapChunk getChunk(int chunkX, int chunkZ) {
-        long key = getChunkKey(chunkX, chunkZ);
-        return chunkCache.computeIfAbsent(key, k -> new MapChunk(chunkX, chunkZ));
+    // 把绘制限制在地图区域内（裁剪区域使用窗口像素坐标，原点在左下角）
+    private void enableMapScissor(int x, int y) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        double scale = client.getWindow().getScaleFactor();
+        int framebufferHeight = client.getWindow().getFramebufferHeight();
+        RenderSystem.enableScissor((int) (x * scale), (int) (framebufferHeight - (y + mapHeight) * scale),
+                (int) (mapWidth * scale), (int) (mapHeight * scale));
     }
 
     private long getChunkKey(int chunkX, int chunkZ) {
@@ -1005,27 +618,6 @@ public class MapRenderer {
         return ((long)chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
     }
 
-    private void cleanupChunkCache() {
-        // 当缓存的区块数量超过上限时，清理最久未使用的区块
-        if (chunkCache.size() > MAX_CACHED_CHUNKS) {
-            // 只在需要清理时才创建列表并排序
-            List<MapChunk> chunks = new ArrayList<>(chunkCache.values());
-            chunks.sort(Comparator.comparingLong(MapChunk::getLastAccessedTime));
-            
-            // 清理到最大缓存数量的75%，避免频繁清理
-            int targetSize = (int)(MAX_CACHED_CHUNKS * 0.75);
-            int chunksToRemove = chunkCache.size() - targetSize;
-            
-            for (int i = 0; i < chunksToRemove && i < chunks.size(); i++) {
-                MapChunk chunk = chunks.get(i);
-                chunkCache.remove(getChunkKey(chunk.getChunkX(), chunk.getChunkZ()));
-            }
-        }
-        
-        // 同时清理轻量级区块缓存
-        cleanupLightweightChunkCache();
-    }
-    
     // 清理轻量级区块缓存
     private void cleanupLightweightChunkCache() {
         if (lightweightChunkCache.size() > MAX_LIGHTWEIGHT_CHUNK_CACHE_SIZE) {
@@ -1080,8 +672,7 @@ public class MapRenderer {
         LineControlSystem lineControlSystem = LineControlSystem.getInstance(world);
         Collection<LineControlSystem.LineInfo> lines = lineControlSystem.getAllLines();
 
-        int effectiveTileSize = TILE_SIZE / zoomLevel;
-        if (effectiveTileSize < 1) effectiveTileSize = 1;
+        int effectiveTileSize = Math.max(1, (int) getPixelsPerBlock());
 
         int halfWidth = mapWidth / 2 / effectiveTileSize;
         int halfHeight = mapHeight / 2 / effectiveTileSize;
@@ -1102,7 +693,7 @@ public class MapRenderer {
         // 绘制玩家位置标记
         MinecraftClient client = MinecraftClient.getInstance();
         if (client.player != null) {
-            drawPlayerMarker(matrices, x, y, client.player.getBlockPos(), effectiveTileSize, halfWidth, halfHeight);
+            drawPlayerMarker(matrices, x, y, client.player.getBlockPos());
         }
     }
 
@@ -1138,14 +729,14 @@ public class MapRenderer {
         }
     }
 
-    private void drawPlayerMarker(MatrixStack matrices, int x, int y, BlockPos pos, int tileSize, int halfWidth, int halfHeight) {
+    private void drawPlayerMarker(MatrixStack matrices, int x, int y, BlockPos pos) {
+        double pixelsPerBlock = getPixelsPerBlock();
+        int screenX = x + mapWidth / 2 + (int) Math.floor((pos.getX() - centerPos.getX()) * pixelsPerBlock);
+        int screenY = y + mapHeight / 2 + (int) Math.floor((pos.getZ() - centerPos.getZ()) * pixelsPerBlock);
         // 检查玩家是否在可见范围内
-        if (Math.abs(pos.getX() - centerPos.getX()) <= halfWidth && Math.abs(pos.getZ() - centerPos.getZ()) <= halfHeight) {
-            int screenX = x + (pos.getX() - centerPos.getX() + halfWidth) * tileSize;
-            int screenY = y + (pos.getZ() - centerPos.getZ() + halfHeight) * tileSize;
-            
+        if (screenX >= x && screenX <= x + mapWidth && screenY >= y && screenY <= y + mapHeight) {
             // 绘制玩家标记（绿色十字）
-            int crossSize = Math.max(2, tileSize / 2);
+            int crossSize = Math.max(2, (int) pixelsPerBlock / 2);
             drawLine(matrices, screenX, screenY - crossSize, screenX, screenY + crossSize, 0xFF00FF00, 2);
             drawLine(matrices, screenX - crossSize, screenY, screenX + crossSize, screenY, 0xFF00FF00, 2);
         }
@@ -1153,14 +744,9 @@ public class MapRenderer {
     
     // 坐标转换方法：世界坐标转屏幕坐标
     public BlockPos screenToWorld(int screenX, int screenY, int mapX, int mapY) {
-        int effectiveTileSize = TILE_SIZE / zoomLevel;
-        if (effectiveTileSize < 1) effectiveTileSize = 1;
-        
-        int halfWidth = mapWidth / 2 / effectiveTileSize;
-        int halfHeight = mapHeight / 2 / effectiveTileSize;
-        
-        int relX = (screenX - mapX) / effectiveTileSize - halfWidth;
-        int relZ = (screenY - mapY) / effectiveTileSize - halfHeight;
+        double pixelsPerBlock = getPixelsPerBlock();
+        int relX = (int) Math.floor((screenX - mapX - mapWidth / 2) / pixelsPerBlock);
+        int relZ = (int) Math.floor((screenY - mapY - mapHeight / 2) / pixelsPerBlock);
         
         return new BlockPos(centerPos.getX() + relX, centerPos.getY(), centerPos.getZ() + relZ);
     }
@@ -1207,50 +793,18 @@ public class MapRenderer {
         tessellator.draw();
     }
     
-    /**
-     * 将地图渲染到NativeImage对象上，用于导出为图片
-     */
-    public void renderToImage(NativeImage image, int width, int height, World world) {
-        if (centerPos == null) {
-            // 如果没有中心位置，使用玩家位置
-            MinecraftClient client = MinecraftClient.getInstance();
-            if (client.player != null) {
-                setCenterPosition(client.player.getBlockPos());
-            } else {
-                return;
-            }
-        }
-        
-        // 创建一个矩阵堆栈用于渲染
-        MatrixStack matrices = new MatrixStack();
-        
-        // 绘制地图到缓冲区（这里我们不直接渲染到NativeImage，而是通过现有的渲染逻辑）
-        // 在实际实现中，完整的解决方案需要使用Framebuffer来捕获渲染结果
-        // 然后将Framebuffer的内容复制到NativeImage
-        
-        // 这里我们提供一个简化的实现，直接使用现有的渲染方法
-        // 但由于Minecraft的渲染系统限制，这种方法可能无法直接工作
-        // 完整的实现需要更复杂的渲染管道设置
-        
-        // 注意：在实际项目中，你可能需要使用专门的渲染上下文和Framebuffer来正确实现这个功能
-        render(matrices, 0, 0, world);
+    // ARGB 转为 NativeImage 使用的 ABGR
+    private static int toAbgr(int argb) {
+        return argb & 0xFF00FF00 | (argb & 0xFF) << 16 | argb >> 16 & 0xFF;
     }
     
     // 清理资源
     public void cleanup() {
-        // 关闭区块加载线程池
-        chunkLoader.shutdown();
-        try {
-            if (!chunkLoader.awaitTermination(500, TimeUnit.MILLISECONDS)) {
-                chunkLoader.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            chunkLoader.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        
         // 清理所有缓存
-        chunkCache.clear();
+        for (TileTexture texture : tileTextures.values()) {
+            texture.close();
+        }
+        tileTextures.clear();
         lightweightChunkCache.clear();
         
         // 释放轻量级纹理资源
@@ -1275,4 +829,33 @@ public class MapRenderer {
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+
+    // 地形瓦片纹理，注册到纹理管理器，内容按修订号更新
+    private static class TileTexture {
+        private final Identifier id;
+        private final NativeImageBackedTexture texture;
+        private long revision = -1;
+        
+        TileTexture(Identifier id) {
+            this.id = id;
+            this.texture = new NativeImageBackedTexture(MapTilePyramid.TILE_PIXELS, MapTilePyramid.TILE_PIXELS, false);
+            MinecraftClient.getInstance().getTextureManager().registerTexture(id, texture);
+        }
+        
+        void upload(MapTilePyramid.PyramidTile tile) {
+            NativeImage image = texture.getImage();
+            int[] pixels = tile.getPixels();
+            for (int z = 0; z < MapTilePyramid.TILE_PIXELS; z++) {
+                for (int x = 0; x < MapTilePyramid.TILE_PIXELS; x++) {
+                    image.setColor(x, z, toAbgr(pixels[z * MapTilePyramid.TILE_PIXELS + x]));
+                }
+            }
+            texture.upload();
+            revision = tile.getRevision();
+        }
+        
+        void close() {
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(id);
+        }
+    }
+}
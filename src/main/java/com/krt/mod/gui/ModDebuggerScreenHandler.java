@@ -8,20 +8,15 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.ScreenHandlerType;
 import com.krt.mod.Init;
+import com.krt.mod.network.TrainStateStream;
 import com.krt.mod.system.LogSystem;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
-import java.util.ArrayList;
 import java.util.List;
 
 public class ModDebuggerScreenHandler extends ScreenHandler {
 
-    private static final List<DebugInfo> debugInfoCache = new ArrayList<>();
-    private static long lastCacheUpdate = 0;
-    private static final long CACHE_DURATION = 200; // 缓存有效期（毫秒）
-    private static List<DebugInfo> clientTrainsInfo = new ArrayList<>(); // 客户端存储的列车信息
-
     public ModDebuggerScreenHandler(int syncId) {
         super(Init.MOD_DEBUGGER_SCREEN_HANDLER, syncId);
     }
@@ -41,54 +36,14 @@ public class ModDebuggerScreenHandler extends ScreenHandler {
         return true; // 允许任何玩家使用调试器
     }
 
-    // 服务器端获取所有列车信息
-    public static List<DebugInfo> getAllTrainsInfo(ServerPlayerEntity player) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastCacheUpdate < CACHE_DURATION) {
-            return debugInfoCache;
-        }
-
-        debugInfoCache.clear();
-        lastCacheUpdate = currentTime;
-
-        ServerWorld world = player.getServer().getWorld(player.getWorld().getRegistryKey());
-        if (world == null) return debugInfoCache;
-        
-        for (Entity entity : world.iterateEntities()) {
-            if (entity instanceof TrainEntity) {
-                TrainEntity train = (TrainEntity) entity;
-                DebugInfo info = new DebugInfo();
-                info.trainId = train.getTrainId();
-                info.speed = train.getCurrentSpeed();
-                info.health = train.getHealth();
-                info.position = train.getBlockPos();
-                info.atoEnabled = train.isATOEnabled();
-                info.emergencyBrake = train.isEmergencyBraking();
-                info.driverName = train.getDriver() != null ? train.getDriver().getDisplayName().getString() : "无";
-                info.destination = train.getDestination();
-                info.nextStation = train.getNextStation();
-                info.currentLine = train.getCurrentLine();
-                debugInfoCache.add(info);
-            }
-        }
-
-        return debugInfoCache;
-    }
-
-    // 立即刷新缓存
+    // 让订阅者重新接收完整的列车状态
     public static void refreshCache() {
-        lastCacheUpdate = 0;
-    }
-
-    // 存储客户端列车信息（从服务器接收）
-    public static void setTrainsInfo(List<DebugInfo> trainsInfo) {
-        clientTrainsInfo.clear();
-        clientTrainsInfo.addAll(trainsInfo);
+        TrainStateStream.resyncAll();
     }
 
-    // 获取客户端列车信息
+    // 获取客户端列车信息（由列车状态订阅流维护）
     public static List<DebugInfo> getClientTrainsInfo() {
-        return new ArrayList<>(clientTrainsInfo);
+        return TrainStateStream.getClientTrains();
     }
 
     // 调试信息数据类
@@ -6,8 +6,9 @@ import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
-import com.krt.mod.KRTMod;
 import com.krt.mod.entity.TrainEntity;
+import com.krt.mod.network.TrainDrivingNetworking;
+import com.krt.mod.sound.ModSounds;
 import com.krt.mod.system.TrainControlSystem;
 import com.krt.mod.system.LanguageSystem;
 import com.krt.mod.system.LogSystem;
@@ -27,7 +28,9 @@ public class TrainDrivingPanel extends Screen {
     private ButtonWidget closeButton;
     private int gear = 0; // 0: 空挡, 1: 前进1档, 2: 前进2档, -1: 后退1档
     private boolean headlightsOn = false;
-    private boolean hasHornCooldown = false;
+    private int hornCooldownTicks = 0;
+    // 喇叭冷却时间（刻）
+    private static final int HORN_COOLDOWN_TICKS = 20;
 
     public TrainDrivingPanel(TrainEntity train) {
         super(Text.literal(LanguageSystem.translate("krt.train.driving_panel")));
@@ -39,6 +42,9 @@ public class TrainDrivingPanel extends Screen {
         int x = (width - WIDTH) / 2;
         int y = (height - HEIGHT) / 2;
 
+        // 手动模式下由客户端预测列车运动，操作下一刻即生效
+        updatePrediction();
+
         // 前进按钮
         forwardButton = new ButtonWidget(x + 160, y + 110, 100, 30, Text.literal(LanguageSystem.translate("krt.control.forward")), button -> {
             if (gear >= 0) {
@@ -73,22 +79,25 @@ public class TrainDrivingPanel extends Screen {
                 ? LanguageSystem.translate("krt.train.ato") 
                 : LanguageSystem.translate("krt.train.manual");
         controlModeButton = new ButtonWidget(x + 280, y + 110, 100, 30, Text.literal("模式: " + currentMode), button -> {
-            if (train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.ATO) {
-                train.getControlSystem().setControlMode(TrainControlSystem.TrainControlMode.MANUAL);
-            } else {
-                train.getControlSystem().setControlMode(TrainControlSystem.TrainControlMode.ATO);
-            }
+            TrainControlSystem.TrainControlMode mode = train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.ATO
+                    ? TrainControlSystem.TrainControlMode.MANUAL
+                    : TrainControlSystem.TrainControlMode.ATO;
+            // 本地立即切换以更新界面，服务器校验后生效
+            train.getControlSystem().setControlMode(mode);
+            TrainDrivingNetworking.sendControlMode(train, mode);
             // 更新按钮文本
             String newMode = train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.ATO 
                     ? LanguageSystem.translate("krt.train.ato") 
                     : LanguageSystem.translate("krt.train.manual");
             controlModeButton.setMessage(Text.literal("模式: " + newMode));
+            updatePrediction();
         });
         addDrawableChild(controlModeButton);
 
         // 紧急制动按钮
         emergencyBrakeButton = new ButtonWidget(x + 280, y + 180, 100, 30, Text.literal(LanguageSystem.translate("krt.train.emergency_brake")), button -> {
             train.applyEmergencyBrake();
+            TrainDrivingNetworking.sendEmergencyBrake(train);
             LogSystem.trainLog(train.getTrainId(), "紧急制动已触发");
         });
         addDrawableChild(emergencyBrakeButton);
@@ -97,6 +106,7 @@ public class TrainDrivingPanel extends Screen {
         // 释放紧急制动按钮
         releaseBrakeButton = new ButtonWidget(x + 280, y + 150, 100, 30, Text.literal(LanguageSystem.translate("krt.train.release_brake")), button -> {
             train.releaseEmergencyBrake();
+            TrainDrivingNetworking.sendReleaseBrake(train);
             LogSystem.trainLog(train.getTrainId(), "紧急制动已解除");
         });
         addDrawableChild(releaseBrakeButton);
@@ -112,25 +122,11 @@ public class TrainDrivingPanel extends Screen {
 
         // 喇叭按钮
         hornButton = new ButtonWidget(x + 160, y + 220, 100, 30, Text.literal(LanguageSystem.translate("krt.train.horn")), button -> {
-            if (!hasHornCooldown) {
-                // 播放喇叭声音
-                if (!client.world.isClient) {
-                    // 在服务端播放声音的逻辑
-                }
-                // 客户端播放声音
+            if (hornCooldownTicks == 0) {
+                // 客户端播放喇叭声音，走行音由 TrainSoundManager 按车速播放
                 BlockPos pos = train.getBlockPos();
-                client.world.playSound(pos.getX(), pos.getY(), pos.getZ(), KRTMod.TRAIN_MOVING_SOUND, SoundCategory.NEUTRAL, 1.0F, 0.5F, false);
-                
-                hasHornCooldown = true;
-                // 设置冷却时间
-                client.execute(() -> {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    hasHornCooldown = false;
-                });
+                client.world.playSound(pos.getX(), pos.getY(), pos.getZ(), ModSounds.TRAIN_HORN_SOUND, SoundCategory.NEUTRAL, 1.0F, 1.0F, false);
+                hornCooldownTicks = HORN_COOLDOWN_TICKS;
             }
         });
         addDrawableChild(hornButton);
@@ -142,6 +138,30 @@ public class TrainDrivingPanel extends Screen {
         addDrawableChild(closeButton);
     }
 
+    @Override
+    public void tick() {
+        super.tick();
+        if (hornCooldownTicks > 0) {
+            hornCooldownTicks--;
+        }
+    }
+
+    @Override
+    public void removed() {
+        // 关闭驾驶台后位置交还给运动同步
+        train.getMovementSync().stopPrediction();
+        super.removed();
+    }
+
+    // 手动模式下开始预测，其他模式停止预测
+    private void updatePrediction() {
+        if (train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.MANUAL) {
+            train.getMovementSync().startPrediction();
+        } else {
+            train.getMovementSync().stopPrediction();
+        }
+    }
+
     @Override
     public void render(MatrixStack matrices, int mouseX, int mouseY, float delta) {
         renderBackground(matrices);
@@ -260,21 +280,27 @@ public class TrainDrivingPanel extends Screen {
     private void updateTrainControl() {
         // 只有在手动控制模式下才应用档位
         if (train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.MANUAL) {
+            double targetSpeed;
             switch (gear) {
                 case 1:
-                    train.getControlSystem().setTargetSpeed(30.0); // 前进1档：30km/h
+                    targetSpeed = 30.0; // 前进1档：30km/h
                     break;
                 case 2:
-                    train.getControlSystem().setTargetSpeed(60.0); // 前进2档：60km/h
+                    targetSpeed = 60.0; // 前进2档：60km/h
                     break;
                 case -1:
-                    train.getControlSystem().setTargetSpeed(-20.0); // 后退1档：20km/h（负数表示后退）
+                    targetSpeed = -20.0; // 后退1档：20km/h（负数表示后退）
                     break;
                 case 0:
                 default:
-                    train.getControlSystem().setTargetSpeed(0.0); // 空挡：停止
+                    targetSpeed = 0.0; // 空挡：停止
                     break;
             }
+            train.getControlSystem().setTargetSpeed(targetSpeed);
+            // 预测时目标速度随下一刻的驾驶输入发送
+            if (!train.getMovementSync().isPredicting()) {
+                TrainDrivingNetworking.sendTargetSpeed(train, targetSpeed);
+            }
         }
     }
 
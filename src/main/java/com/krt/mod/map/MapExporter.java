@@ -1,34 +1,48 @@
 package com.krt.mod.map;
 
+import com.krt.mod.KRTMod;
+import com.krt.mod.gui.MapRenderer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.gui.screen.Screen;
-import net.minecraft.client.render.BufferBuilder;
-import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.texture.NativeImage;
-import net.minecraft.client.texture.NativeImageBackedTexture;
-import net.minecraft.util.Identifier;
-import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import com.krt.mod.gui.MapRenderer;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
 
+/**
+ * 地图导出
+ * 图片按水平条带从瓦片金字塔取样，多个线程并行取样和编码，再按顺序流式写入 PNG，
+ * 同时在内存中的条带数受内存预算限制，峰值内存与条带大小成正比而与图片大小无关。
+ * 导出过程中写入 .part 文件，每写完一个条带在 .progress 文件中记录进度，中断后可以继续导出。
+ */
 @Environment(EnvType.CLIENT)
 public class MapExporter {
     private static final MinecraftClient client = MinecraftClient.getInstance();
     private static final String DEFAULT_EXPORT_DIR = "config/krt/maps";
+    private static final String PART_SUFFIX = ".part";
+    private static final String PROGRESS_SUFFIX = ".progress";
+    // 同时在内存中的条带像素总量上限（字节）
+    private static final long STRIP_MEMORY_BUDGET = 256L * 1024 * 1024;
+    // 单个条带像素的上限（字节）
+    private static final long MAX_STRIP_BYTES = 32L * 1024 * 1024;
+    // 没有地形数据处的颜色，与地图背景一致
+    private static final int BACKGROUND_COLOR = 0xFF222222;
+    private static final int EXPORT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final ExecutorService exportExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "KRT-MapExport");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
-     * 将小地图导出为PNG图片
+     * 将小地图导出为PNG图片（以地图中心为中心，按当前缩放适配图片大小）
      * @param mapRenderer 地图渲染器实例
      * @param width 图片宽度
      * @param height 图片高度
@@ -38,55 +52,13 @@ public class MapExporter {
      */
     public static String exportMapAsImage(MapRenderer mapRenderer, int width, int height, World world, String customPath) {
         try {
-            // 创建图像缓冲区
-            NativeImage image = new NativeImage(width, height, false);
-            
-            // 渲染地图到图像
-            mapRenderer.renderToImage(image, width, height, world);
-            
-            // 生成文件名
-            String fileName = generateFileName("png");
-            
-            // 确定保存路径
-            File saveFile = getSaveFile(fileName, customPath);
-            
-            // 确保目录存在
-            saveFile.getParentFile().mkdirs();
-            
-            // 保存图像
-            try {
-                // 转换NativeImage到BufferedImage然后保存
-                java.awt.image.BufferedImage bufferedImage = new java.awt.image.BufferedImage(
-                    width, height, java.awt.image.BufferedImage.TYPE_INT_ARGB
-                );
-                
-                // 使用数组批量复制像素数据，比单个像素循环更高效
-                int[] pixelArray = new int[width * height];
-                
-                // 将像素数据复制到数组
-                for (int y = 0; y < height; y++) {
-                    for (int x = 0; x < width; x++) {
-                        int color = image.getColor(x, y);
-                        pixelArray[y * width + x] = color;
-                    }
-                }
-                
-                // 使用setRGB方法一次性设置整行或整个图像的像素
-                bufferedImage.setRGB(0, 0, width, height, pixelArray, 0, width);
-                
-                // 保存BufferedImage到文件
-                javax.imageio.ImageIO.write(bufferedImage, "png", saveFile);
-            } finally {
-                image.close();
-            }
-            
-            return saveFile.getAbsolutePath();
+            return export(createRequest(mapRenderer, width, height, world, customPath), null);
         } catch (Exception e) {
-            e.printStackTrace();
+            KRTMod.LOGGER.error("导出地图图片失败", e);
             return null;
         }
     }
-    
+
     /**
      * 将小地图导出为PNG图片（使用默认大小）
      * @param mapRenderer 地图渲染器实例
@@ -99,6 +71,233 @@ public class MapExporter {
         return exportMapAsImage(mapRenderer, 500, 500, world, customPath);
     }
 
+    /**
+     * 在后台导出区域图片
+     * @param listener 进度回调（在导出线程调用），可以为null
+     * @return 完成时为保存的文件路径
+     */
+    public static CompletableFuture<String> exportRegionAsync(ExportRequest request, ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return export(request, listener);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, exportExecutor);
+    }
+
+    /**
+     * 继续之前中断的导出（只能在导出时所在的维度继续）
+     * @param progressFile 导出进度文件（.progress）
+     */
+    public static CompletableFuture<String> resumeExportAsync(File progressFile, World world, ProgressListener listener) {
+        String dimension = world.getRegistryKey().getValue().toString();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ExportRequest request = readProgress(progressFile).request;
+                if (!request.dimension.equals(dimension)) {
+                    throw new IOException("导出所在的维度与当前维度不同: " + request.dimension);
+                }
+                return export(request, listener);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, exportExecutor);
+    }
+
+    /**
+     * 查找目录中未完成的导出
+     * @param customPath 自定义目录，如果为null则使用默认目录
+     * @return 未完成导出的进度文件
+     */
+    public static List<File> findUnfinishedExports(String customPath) {
+        File directory = customPath != null && !customPath.isEmpty() ? new File(customPath) : new File(getDefaultExportDirectory());
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(PROGRESS_SUFFIX));
+        return files != null ? Arrays.asList(files) : Collections.emptyList();
+    }
+
+    /**
+     * 导出区域图片；目标文件有匹配的未完成进度时从记录的位置继续
+     * @return 保存的文件路径
+     */
+    public static String export(ExportRequest request, ProgressListener listener) throws IOException {
+        File target = request.target;
+        File partFile = new File(target.getPath() + PART_SUFFIX);
+        File progressFile = new File(target.getPath() + PROGRESS_SUFFIX);
+        target.getParentFile().mkdirs();
+
+        StreamingPngWriter writer = null;
+        if (progressFile.isFile() && partFile.isFile()) {
+            Progress progress = readProgress(progressFile);
+            if (progress.request.sameRegion(request)) {
+                writer = StreamingPngWriter.resume(partFile, request.height, progress.checkpoint);
+            }
+        }
+        if (writer == null) {
+            writer = StreamingPngWriter.create(partFile, request.width, request.height);
+            writeProgress(progressFile, request, writer.checkpoint());
+        }
+
+        int stripRows = stripRows(request);
+        long stripBytes = (long) request.width * stripRows * 4;
+        int maxInFlight = (int) Math.max(1, Math.min(EXPORT_THREADS * 2L, STRIP_MEMORY_BUDGET / stripBytes));
+        ExecutorService workers = Executors.newFixedThreadPool(EXPORT_THREADS, r -> {
+            Thread thread = new Thread(r, "KRT-MapExport-Worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<StreamingPngWriter.EncodedStrip>> pending = new ArrayDeque<>();
+            int nextRow = writer.getRowsWritten();
+            while (writer.getRowsWritten() < request.height) {
+                // 按顺序提交条带，同时在内存中的条带数不超过上限
+                while (pending.size() < maxInFlight && nextRow < request.height) {
+                    int startRow = nextRow;
+                    int rows = Math.min(stripRows, request.height - startRow);
+                    pending.add(workers.submit(() -> StreamingPngWriter.encodeStrip(renderStrip(request, startRow, rows), request.width, rows)));
+                    nextRow += rows;
+                }
+                writer.writeStrip(awaitStrip(pending.poll()));
+                writeProgress(progressFile, request, writer.checkpoint());
+                if (listener != null) {
+                    listener.onProgress(writer.getRowsWritten(), request.height);
+                }
+            }
+            writer.finish();
+        } finally {
+            workers.shutdownNow();
+            writer.close();
+        }
+
+        Files.move(partFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(progressFile.toPath());
+        return target.getAbsolutePath();
+    }
+
+    private static StreamingPngWriter.EncodedStrip awaitStrip(Future<StreamingPngWriter.EncodedStrip> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("地图导出被中断");
+        } catch (ExecutionException e) {
+            throw new IOException("地图条带编码失败", e.getCause());
+        }
+    }
+
+    private static ExportRequest createRequest(MapRenderer mapRenderer, int width, int height, World world, String customPath) {
+        BlockPos center = mapRenderer.getCenterPos();
+        if (center == null) {
+            center = client.player != null ? client.player.getBlockPos() : BlockPos.ORIGIN;
+        }
+        // 图片覆盖与地图窗口相同的范围
+        double blocksPerPixel = 1 / (mapRenderer.getPixelsPerBlock()
+                * Math.min((double) width / mapRenderer.getMapWidth(), (double) height / mapRenderer.getMapHeight()));
+        return ExportRequest.centeredOn(world, center, width, height, blocksPerPixel, newExportFile("png", customPath));
+    }
+
+    // 条带高度与瓦片高度对齐，每个条带只需取一行瓦片
+    private static int stripRows(ExportRequest request) {
+        int tileBlocks = MapTilePyramid.TILE_PIXELS << MapTilePyramid.levelFor(request.blocksPerPixel);
+        int tileRows = (int) Math.max(1, Math.round(tileBlocks / request.blocksPerPixel));
+        int maxRows = (int) Math.max(1, MAX_STRIP_BYTES / ((long) request.width * 4));
+        return Math.min(tileRows, maxRows);
+    }
+
+    /**
+     * 从瓦片金字塔取样一个条带的像素（ARGB）
+     * 按瓦片列逐列填充，每个瓦片在一个条带中只取一次
+     */
+    static int[] renderStrip(ExportRequest request, int startRow, int rows) {
+        int width = request.width;
+        int level = MapTilePyramid.levelFor(request.blocksPerPixel);
+        int tileBlocks = MapTilePyramid.TILE_PIXELS << level;
+        int[] pixels = new int[width * rows];
+        int[] columnBlocks = new int[width];
+        for (int x = 0; x < width; x++) {
+            columnBlocks[x] = (int) Math.floor(request.originX + x * request.blocksPerPixel);
+        }
+        int[] rowBlocks = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            rowBlocks[row] = (int) Math.floor(request.originZ + (startRow + row) * request.blocksPerPixel);
+        }
+
+        int start = 0;
+        while (start < width) {
+            int tileX = Math.floorDiv(columnBlocks[start], tileBlocks);
+            int end = start + 1;
+            while (end < width && Math.floorDiv(columnBlocks[end], tileBlocks) == tileX) {
+                end++;
+            }
+            int currentTileZ = Integer.MIN_VALUE;
+            int[] tilePixels = null;
+            for (int row = 0; row < rows; row++) {
+                int tileZ = Math.floorDiv(rowBlocks[row], tileBlocks);
+                if (tileZ != currentTileZ) {
+                    MapTilePyramid.PyramidTile tile = MapTilePyramid.getTileBlocking(level, tileX, tileZ);
+                    tilePixels = tile != null ? tile.getPixels() : null;
+                    currentTileZ = tileZ;
+                }
+                int offset = row * width;
+                if (tilePixels == null) {
+                    Arrays.fill(pixels, offset + start, offset + end, BACKGROUND_COLOR);
+                    continue;
+                }
+                int tileRow = (Math.floorMod(rowBlocks[row], tileBlocks) >> level) * MapTilePyramid.TILE_PIXELS;
+                for (int x = start; x < end; x++) {
+                    int color = tilePixels[tileRow + (Math.floorMod(columnBlocks[x], tileBlocks) >> level)];
+                    pixels[offset + x] = (color >>> 24) != 0 ? color : BACKGROUND_COLOR;
+                }
+            }
+            start = end;
+        }
+        return pixels;
+    }
+
+    // 进度文件：导出参数和写入位置
+    private static void writeProgress(File progressFile, ExportRequest request, StreamingPngWriter.Checkpoint checkpoint) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("target", request.target.getPath());
+        properties.setProperty("dimension", request.dimension);
+        properties.setProperty("width", Integer.toString(request.width));
+        properties.setProperty("height", Integer.toString(request.height));
+        properties.setProperty("originX", Double.toString(request.originX));
+        properties.setProperty("originZ", Double.toString(request.originZ));
+        properties.setProperty("blocksPerPixel", Double.toString(request.blocksPerPixel));
+        properties.setProperty("fileLength", Long.toString(checkpoint.getFileLength()));
+        properties.setProperty("rowsWritten", Integer.toString(checkpoint.getRowsWritten()));
+        properties.setProperty("adler", Long.toString(checkpoint.getAdler()));
+        File temp = new File(progressFile.getPath() + ".tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            properties.store(out, "KRT map export");
+        }
+        Files.move(temp.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Progress readProgress(File progressFile) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(progressFile), StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        try {
+            ExportRequest request = new ExportRequest(
+                    new File(properties.getProperty("target")),
+                    properties.getProperty("dimension"),
+                    Integer.parseInt(properties.getProperty("width")),
+                    Integer.parseInt(properties.getProperty("height")),
+                    Double.parseDouble(properties.getProperty("originX")),
+                    Double.parseDouble(properties.getProperty("originZ")),
+                    Double.parseDouble(properties.getProperty("blocksPerPixel")));
+            StreamingPngWriter.Checkpoint checkpoint = new StreamingPngWriter.Checkpoint(
+                    Long.parseLong(properties.getProperty("fileLength")),
+                    Integer.parseInt(properties.getProperty("rowsWritten")),
+                    Long.parseLong(properties.getProperty("adler")));
+            return new Progress(request, checkpoint);
+        } catch (RuntimeException e) {
+            throw new IOException("导出进度文件无效: " + progressFile, e);
+        }
+    }
+
     /**
      * 下载小地图数据文件
      * @param mapData 地图数据字符串
@@ -128,6 +327,14 @@ public class MapExporter {
         }
     }
 
+    /**
+     * 新导出文件的路径
+     * @param customPath 自定义目录，如果为null则使用默认目录
+     */
+    public static File newExportFile(String extension, String customPath) {
+        return getSaveFile(generateFileName(extension), customPath);
+    }
+
     /**
      * 生成带有时间戳的文件名
      */
@@ -158,4 +365,63 @@ public class MapExporter {
         File gameDir = client.runDirectory;
         return new File(gameDir, DEFAULT_EXPORT_DIR).getAbsolutePath();
     }
-}
\ No newline at end of file
+
+    /**
+     * 导出进度回调
+     */
+    public interface ProgressListener {
+        void onProgress(int rowsWritten, int totalRows);
+    }
+
+    /**
+     * 导出参数：图片左上角对应的方块坐标、每像素方块数和图片大小
+     */
+    public static class ExportRequest {
+        private final File target;
+        private final String dimension;
+        private final int width;
+        private final int height;
+        private final double originX;
+        private final double originZ;
+        private final double blocksPerPixel;
+
+        public ExportRequest(File target, String dimension, int width, int height, double originX, double originZ, double blocksPerPixel) {
+            if (width <= 0 || height <= 0 || blocksPerPixel <= 0) {
+                throw new IllegalArgumentException("导出大小和比例必须为正数");
+            }
+            this.target = target;
+            this.dimension = dimension;
+            this.width = width;
+            this.height = height;
+            this.originX = originX;
+            this.originZ = originZ;
+            this.blocksPerPixel = blocksPerPixel;
+        }
+
+        // 以某个方块为中心的区域
+        public static ExportRequest centeredOn(World world, BlockPos center, int width, int height, double blocksPerPixel, File target) {
+            return new ExportRequest(target, world.getRegistryKey().getValue().toString(), width, height,
+                    center.getX() - width / 2.0 * blocksPerPixel, center.getZ() - height / 2.0 * blocksPerPixel, blocksPerPixel);
+        }
+
+        public File getTarget() {
+            return target;
+        }
+
+        // 参数相同才能继续之前的导出
+        boolean sameRegion(ExportRequest other) {
+            return dimension.equals(other.dimension) && width == other.width && height == other.height
+                    && originX == other.originX && originZ == other.originZ && blocksPerPixel == other.blocksPerPixel;
+        }
+    }
+
+    private static class Progress {
+        private final ExportRequest request;
+        private final StreamingPngWriter.Checkpoint checkpoint;
+
+        Progress(ExportRequest request, StreamingPngWriter.Checkpoint checkpoint) {
+            this.request = request;
+            this.checkpoint = checkpoint;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.krt.mod.map;
+
+import com.krt.mod.KRTMod;
+import com.krt.mod.network.KRTNetwork;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.world.World;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 地图瓦片客户端缓存
+ * 内存中按最近使用保留瓦片，磁盘上按服务器和维度分目录保存瓦片及其版本。
+ * 首次访问某个瓦片时先读磁盘缓存立即显示，再带着缓存版本向服务器确认，
+ * 服务器只在内容变化时下发新数据。正在显示的瓦片定期重新确认。
+ * 区块瓦片的内容同时写入 MapTilePyramid，供各缩放级别使用。
+ * 除磁盘读写在后台线程外，所有方法都在客户端线程调用。
+ */
+@Environment(EnvType.CLIENT)
+public class MapTileCache {
+    private static final String CACHE_DIR = "krt/map_cache";
+    // 内存中保留的瓦片数上限
+    private static final int MAX_MEMORY_TILES = 4096;
+    // 瓦片确认后经过该时间再次向服务器确认（毫秒）
+    private static final long REVALIDATE_MILLIS = 30_000;
+    // 请求超过该时间没有回复时重新请求（毫秒）
+    private static final long REQUEST_TIMEOUT_MILLIS = 5_000;
+
+    private static final Map<Long, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+            return size() > MAX_MEMORY_TILES;
+        }
+    };
+    private static final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "KRT-MapTileCache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 当前缓存对应的维度和磁盘目录，切换服务器或维度时重置
+    private static int dimension;
+    private static Path directory;
+
+    // 注册客户端消息处理
+    public static void registerClient() {
+        MapTileService.TILE.onClient(MapTileCache::handleResponse);
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(MapTileCache::clear));
+    }
+
+    /**
+     * 获取瓦片，没有或需要确认时发起加载/请求
+     * @return 已有的瓦片（可能正在确认中），尚无数据时返回null
+     */
+    public static Tile getTile(World world, int chunkX, int chunkZ) {
+        updateScope(world);
+        long key = MapTileCodec.key(chunkX, chunkZ);
+        Tile tile = tiles.get(key);
+        long now = System.currentTimeMillis();
+        if (tile == null) {
+            tile = new Tile();
+            tiles.put(key, tile);
+            loadFromDisk(tile, chunkX, chunkZ);
+        } else if (tile.requestedAt > 0 ? now - tile.requestedAt > REQUEST_TIMEOUT_MILLIS
+                : tile.validatedAt > 0 && now - tile.validatedAt > REVALIDATE_MILLIS) {
+            request(tile, chunkX, chunkZ);
+        }
+        return tile.pixels != null ? tile : null;
+    }
+
+    public static void clear() {
+        tiles.clear();
+        directory = null;
+        MapTilePyramid.reset(null);
+    }
+
+    // 内存中区块瓦片的像素，不触发加载或请求
+    static int[] peekPixels(int chunkX, int chunkZ) {
+        Tile tile = tiles.get(MapTileCodec.key(chunkX, chunkZ));
+        return tile != null ? tile.pixels : null;
+    }
+
+    // 在磁盘线程执行任务
+    static void executeDiskTask(Runnable task) {
+        diskExecutor.execute(task);
+    }
+
+    private static void updateScope(World world) {
+        int worldDimension = MapTileService.dimensionId(world);
+        if (directory != null && worldDimension == dimension) {
+            return;
+        }
+        tiles.clear();
+        dimension = worldDimension;
+        String dimensionName = world.getRegistryKey().getValue().toString();
+        directory = MinecraftClient.getInstance().runDirectory.toPath()
+                .resolve(CACHE_DIR)
+                .resolve(sanitize(serverName()))
+                .resolve(sanitize(dimensionName));
+        MapTilePyramid.reset(directory.resolve("pyramid"));
+    }
+
+    private static String serverName() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        ServerInfo server = client.getCurrentServerEntry();
+        if (server != null) {
+            return server.address;
+        }
+        if (client.getServer() != null) {
+            return "local_" + client.getServer().getSaveProperties().getLevelName();
+        }
+        return "unknown";
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    // 在后台读取磁盘缓存，读完后在客户端线程显示并向服务器确认
+    private static void loadFromDisk(Tile tile, int chunkX, int chunkZ) {
+        Path file = tileFile(directory, chunkX, chunkZ);
+        int scope = dimension;
+        tile.requestedAt = System.currentTimeMillis();
+        diskExecutor.execute(() -> {
+            DiskTile cached = readTile(file);
+            MinecraftClient.getInstance().execute(() -> {
+                if (scope != dimension || tiles.get(MapTileCodec.key(chunkX, chunkZ)) != tile) {
+                    return;
+                }
+                if (cached != null && tile.pixels == null) {
+                    tile.pixels = cached.pixels;
+                    tile.version = cached.version;
+                    MapTilePyramid.onChunkTile(chunkX, chunkZ, tile.pixels);
+                }
+                request(tile, chunkX, chunkZ);
+            });
+        });
+    }
+
+    private static void request(Tile tile, int chunkX, int chunkZ) {
+        if (MinecraftClient.getInstance().getNetworkHandler() == null) {
+            return;
+        }
+        tile.requestedAt = System.currentTimeMillis();
+        KRTNetwork.sendToServer(MapTileService.REQUEST,
+                new MapTileService.TileRequest(dimension, chunkX, chunkZ, tile.version));
+    }
+
+    private static void handleResponse(MapTileService.TileResponse response) {
+        if (directory == null || response.dimension != dimension) {
+            return;
+        }
+        Tile tile = tiles.get(MapTileCodec.key(response.chunkX, response.chunkZ));
+        if (tile == null) {
+            return;
+        }
+        tile.requestedAt = 0;
+        tile.validatedAt = System.currentTimeMillis();
+        if (response.status == MapTileService.STATUS_DATA) {
+            tile.pixels = MapTileCodec.decompress(response.runs);
+            tile.version = response.version;
+            MapTilePyramid.onChunkTile(response.chunkX, response.chunkZ, tile.pixels);
+            Path file = tileFile(directory, response.chunkX, response.chunkZ);
+            int[] runs = response.runs;
+            long version = response.version;
+            diskExecutor.execute(() -> writeTile(file, version, runs));
+        }
+    }
+
+    // 按32x32区块分子目录，避免单个目录文件过多
+    private static Path tileFile(Path directory, int chunkX, int chunkZ) {
+        return directory.resolve((chunkX >> 5) + "." + (chunkZ >> 5)).resolve(chunkX + "." + chunkZ + ".tile");
+    }
+
+    // 磁盘格式：[long 版本][int 游程组数][int 颜色, byte 数量]...
+    private static DiskTile readTile(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long version = in.readLong();
+            int count = in.readInt();
+            if (count <= 0 || count > MapTileCodec.PIXEL_COUNT) {
+                return null;
+            }
+            int[] runs = new int[count * 2];
+            int total = 0;
+            for (int i = 0; i < runs.length; i += 2) {
+                runs[i] = in.readInt();
+                runs[i + 1] = in.readUnsignedByte();
+                total += runs[i + 1];
+            }
+            return total == MapTileCodec.PIXEL_COUNT ? new DiskTile(version, MapTileCodec.decompress(runs)) : null;
+        } catch (IOException e) {
+            KRTMod.LOGGER.warn("读取地图瓦片缓存失败: {}", file, e);
+            return null;
+        }
+    }
+
+    private static void writeTile(Path file, long version, int[] runs) {
+        try {
+            Files.createDirectories(file.getParent());
+            // 先写临时文件再替换，避免中途退出留下损坏的缓存
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(version);
+                out.writeInt(runs.length / 2);
+                for (int i = 0; i < runs.length; i += 2) {
+                    out.writeInt(runs[i]);
+                    out.writeByte(runs[i + 1]);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            KRTMod.LOGGER.warn("写入地图瓦片缓存失败: {}", file, e);
+        }
+    }
+
+    /**
+     * 客户端瓦片：像素（ARGB，下标 z * 16 + x）和版本
+     */
+    public static class Tile {
+        private int[] pixels;
+        private long version;
+        // 最近一次服务器确认的时间，0表示尚未确认
+        private long validatedAt;
+        // 请求发出的时间，0表示没有未完成的请求
+        private long requestedAt;
+
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private static class DiskTile {
+        private final long version;
+        private final int[] pixels;
+
+        DiskTile(long version, int[] pixels) {
+            this.version = version;
+            this.pixels = pixels;
+        }
+    }
+}
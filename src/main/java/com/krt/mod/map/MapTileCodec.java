@@ -0,0 +1,106 @@
+package com.krt.mod.map;
+
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * 地图瓦片像素编码
+ * 一个瓦片对应一个区块（16x16方块，每方块一个像素），像素为 ARGB，按行存储（下标 z * 16 + x）。
+ * 传输和磁盘缓存使用游程编码（颜色, 数量），数量不超过255；版本号为像素内容的64位哈希。
+ */
+public final class MapTileCodec {
+    public static final int TILE_SIZE = 16;
+    public static final int PIXEL_COUNT = TILE_SIZE * TILE_SIZE;
+    private static final int MAX_RUN = 255;
+
+    private MapTileCodec() {
+    }
+
+    /**
+     * 游程编码压缩：输出为交替的（颜色, 数量）
+     */
+    public static int[] compress(int[] pixels) {
+        if (pixels == null || pixels.length == 0) return new int[0];
+
+        // 最坏情况每个像素一组，先写入临时数组再截断，避免装箱
+        int[] runs = new int[pixels.length * 2];
+        int length = 0;
+        int currentColor = pixels[0];
+        int count = 1;
+        for (int i = 1; i < pixels.length; i++) {
+            if (pixels[i] == currentColor && count < MAX_RUN) {
+                count++;
+            } else {
+                runs[length++] = currentColor;
+                runs[length++] = count;
+                currentColor = pixels[i];
+                count = 1;
+            }
+        }
+        runs[length++] = currentColor;
+        runs[length++] = count;
+        return Arrays.copyOf(runs, length);
+    }
+
+    /**
+     * 解压游程编码的像素数据
+     */
+    public static int[] decompress(int[] runs) {
+        if (runs == null || runs.length == 0) return new int[0];
+
+        int total = 0;
+        for (int i = 1; i < runs.length; i += 2) {
+            total += runs[i];
+        }
+        int[] pixels = new int[total];
+        int offset = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            Arrays.fill(pixels, offset, offset + runs[i + 1], runs[i]);
+            offset += runs[i + 1];
+        }
+        return pixels;
+    }
+
+    /**
+     * 像素内容的64位哈希（FNV-1a），用作瓦片版本号；0保留为“无版本”
+     */
+    public static long contentHash(int[] pixels) {
+        long hash = 0xcbf29ce484222325L;
+        for (int pixel : pixels) {
+            hash ^= pixel;
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    // 写入游程数据：[varint 组数][int 颜色][byte 数量]...
+    public static void writeRuns(PacketByteBuf buf, int[] runs) {
+        buf.writeVarInt(runs.length / 2);
+        for (int i = 0; i < runs.length; i += 2) {
+            buf.writeInt(runs[i]);
+            buf.writeByte(runs[i + 1]);
+        }
+    }
+
+    // 读取游程数据，像素总数不符时返回null
+    public static int[] readRuns(PacketByteBuf buf) {
+        int count = buf.readVarInt();
+        if (count < 0 || count > PIXEL_COUNT) {
+            return null;
+        }
+        int[] runs = new int[count * 2];
+        int total = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            runs[i] = buf.readInt();
+            runs[i + 1] = buf.readUnsignedByte();
+            total += runs[i + 1];
+        }
+        return total == PIXEL_COUNT ? runs : null;
+    }
+
+    // 区块坐标打包为键
+    public static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
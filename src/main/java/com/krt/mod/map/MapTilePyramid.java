@@ -0,0 +1,395 @@
+package com.krt.mod.map;
+
+import com.krt.mod.KRTMod;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 地图瓦片金字塔（客户端）
+ * 第0级瓦片为128x128像素、每像素一个方块，由服务器下发的区块瓦片拼合；
+ * 第N级瓦片由第N-1级相邻的2x2个瓦片缩小一半得到，每像素覆盖 2^N x 2^N 个方块。
+ * 任意缩放下可见瓦片数都有上限，地图每帧只需绘制有限个瓦片。
+ * 瓦片按（级别, x, z）保存在有上限的最近使用缓存中，可选的磁盘层保存被淘汰的瓦片。
+ * 写盘在后台线程进行，写完之前再次读取该瓦片时使用待写入的内容，不读取磁盘上的旧文件。
+ * 区块瓦片变化时标记所有上级瓦片待重建，重建按帧限量进行；导出时使用不限量的阻塞读取。
+ * 所有方法对类加锁，导出线程可以与渲染线程同时读取。
+ */
+@Environment(EnvType.CLIENT)
+public class MapTilePyramid {
+    public static final int TILE_PIXELS = 128;
+    public static final int MAX_LEVEL = 8;
+    private static final int CHUNKS_PER_TILE = TILE_PIXELS / MapTileCodec.TILE_SIZE;
+    // 内存中保留的瓦片数上限（每个瓦片64KB）
+    private static final int MAX_MEMORY_TILES = 256;
+    // 每帧最多重建或从磁盘读取的瓦片数
+    private static final int MAX_BUILDS_PER_FRAME = 8;
+
+    private static final Map<Long, PyramidTile> tiles = new LinkedHashMap<>(MAX_MEMORY_TILES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PyramidTile> eldest) {
+            if (size() <= MAX_MEMORY_TILES) {
+                return false;
+            }
+            evict(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+    // 需要从下级（第0级为区块瓦片）重建的瓦片
+    private static final Set<Long> dirty = new HashSet<>();
+    // 已提交但尚未写完的瓦片文件 -> 压缩内容
+    private static final Map<Path, int[]> pendingWrites = new HashMap<>();
+    // 磁盘层目录，null 表示不使用磁盘层
+    private static Path directory;
+    private static final Budget frameBudget = new Budget(MAX_BUILDS_PER_FRAME);
+    private static long nextRevision = 1;
+
+    /**
+     * 切换缓存范围（服务器或维度变化时），把未保存的瓦片写入原目录
+     * @param newDirectory 新的磁盘层目录，null 表示不使用磁盘层
+     */
+    public static synchronized void reset(Path newDirectory) {
+        if (directory != null) {
+            for (Map.Entry<Long, PyramidTile> entry : tiles.entrySet()) {
+                if (entry.getValue().unsaved) {
+                    save(directory, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        tiles.clear();
+        dirty.clear();
+        directory = newDirectory;
+    }
+
+    // 每帧开始时恢复重建额度
+    public static synchronized void beginFrame() {
+        frameBudget.remaining = MAX_BUILDS_PER_FRAME;
+    }
+
+    /**
+     * 区块瓦片更新：写入第0级瓦片，内容变化时标记上级瓦片待重建
+     */
+    public static synchronized void onChunkTile(int chunkX, int chunkZ, int[] pixels) {
+        int tileX = Math.floorDiv(chunkX, CHUNKS_PER_TILE);
+        int tileZ = Math.floorDiv(chunkZ, CHUNKS_PER_TILE);
+        long key = key(0, tileX, tileZ);
+        PyramidTile tile = getTile(0, tileX, tileZ, Budget.UNLIMITED);
+        if (tile == null) {
+            tile = new PyramidTile(new int[TILE_PIXELS * TILE_PIXELS]);
+            tiles.put(key, tile);
+        }
+        if (copyChunk(tile.pixels, chunkX, chunkZ, pixels)) {
+            tile.revision = nextRevision++;
+            tile.unsaved = true;
+            for (int level = 1; level <= MAX_LEVEL; level++) {
+                tileX >>= 1;
+                tileZ >>= 1;
+                dirty.add(key(level, tileX, tileZ));
+            }
+        }
+    }
+
+    /**
+     * 获取瓦片（渲染用，受每帧重建额度限制）
+     * @return 瓦片，可能是尚未重建的旧内容；该区域没有数据时返回null
+     */
+    public static synchronized PyramidTile getTile(int level, int x, int z) {
+        return getTile(level, x, z, frameBudget);
+    }
+
+    /**
+     * 获取最新的瓦片（导出用，必要时同步重建和读取磁盘）
+     */
+    public static synchronized PyramidTile getTileBlocking(int level, int x, int z) {
+        return getTile(level, x, z, Budget.UNLIMITED);
+    }
+
+    /**
+     * 选择与缩放相符的级别：使瓦片像素不小于屏幕像素的一半
+     */
+    public static int levelFor(double blocksPerPixel) {
+        int level = 0;
+        while (level < MAX_LEVEL && (2 << level) <= blocksPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    private static PyramidTile getTile(int level, int x, int z, Budget budget) {
+        long key = key(level, x, z);
+        PyramidTile tile = tiles.get(key);
+        if (tile == null && directory != null && !budget.isExhausted()) {
+            budget.use();
+            tile = load(directory, key);
+            if (tile != null) {
+                tiles.put(key, tile);
+            }
+        }
+        if (dirty.contains(key) && !budget.isExhausted()) {
+            budget.use();
+            tile = level == 0 ? rebuildFromChunks(key, x, z, tile) : rebuild(key, level, x, z, tile, budget);
+        }
+        return tile;
+    }
+
+    // 由下一级的2x2个瓦片缩小重建；有下级尚未就绪时保留该象限的旧内容，并保持待重建
+    private static PyramidTile rebuild(long key, int level, int x, int z, PyramidTile previous, Budget budget) {
+        PyramidTile[] children = new PyramidTile[4];
+        boolean[] ready = new boolean[4];
+        boolean complete = true;
+        boolean any = false;
+        for (int i = 0; i < 4; i++) {
+            int childX = x * 2 + (i & 1);
+            int childZ = z * 2 + (i >> 1);
+            long childKey = key(level - 1, childX, childZ);
+            // 额度用完后无法确认磁盘上是否有该瓦片
+            if (budget.isExhausted() && directory != null && !tiles.containsKey(childKey)) {
+                complete = false;
+                continue;
+            }
+            children[i] = getTile(level - 1, childX, childZ, budget);
+            ready[i] = true;
+            any |= children[i] != null;
+            complete &= !dirty.contains(childKey);
+        }
+        if (complete) {
+            dirty.remove(key);
+            if (!any) {
+                tiles.remove(key);
+                return null;
+            }
+        }
+        if (!any && previous == null) {
+            return null;
+        }
+        PyramidTile tile = previous != null ? previous : new PyramidTile(new int[TILE_PIXELS * TILE_PIXELS]);
+        int half = TILE_PIXELS / 2;
+        for (int i = 0; i < 4; i++) {
+            int offsetX = (i & 1) * half;
+            int offsetZ = (i >> 1) * half;
+            if (!ready[i]) {
+                continue;
+            }
+            if (children[i] == null) {
+                for (int row = 0; row < half; row++) {
+                    int start = (offsetZ + row) * TILE_PIXELS + offsetX;
+                    Arrays.fill(tile.pixels, start, start + half, 0);
+                }
+            } else {
+                downsample(children[i].pixels, tile.pixels, offsetX, offsetZ);
+            }
+        }
+        tile.revision = nextRevision++;
+        tile.unsaved = true;
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    // 第0级瓦片被淘汰且没有磁盘层时，从内存中的区块瓦片重新拼合
+    // 区块瓦片缓存只能在客户端线程访问，其他线程读取时先返回旧内容
+    private static PyramidTile rebuildFromChunks(long key, int x, int z, PyramidTile previous) {
+        if (!MinecraftClient.getInstance().isOnThread()) {
+            return previous;
+        }
+        dirty.remove(key);
+        PyramidTile tile = previous != null ? previous : new PyramidTile(new int[TILE_PIXELS * TILE_PIXELS]);
+        boolean any = false;
+        for (int i = 0; i < CHUNKS_PER_TILE * CHUNKS_PER_TILE; i++) {
+            int chunkX = x * CHUNKS_PER_TILE + i % CHUNKS_PER_TILE;
+            int chunkZ = z * CHUNKS_PER_TILE + i / CHUNKS_PER_TILE;
+            int[] pixels = MapTileCache.peekPixels(chunkX, chunkZ);
+            if (pixels != null) {
+                copyChunk(tile.pixels, chunkX, chunkZ, pixels);
+                any = true;
+            }
+        }
+        if (!any && previous == null) {
+            return null;
+        }
+        tile.revision = nextRevision++;
+        tiles.put(key, tile);
+        return tile;
+    }
+
+    // 把区块瓦片复制到第0级瓦片的对应位置，返回内容是否变化
+    private static boolean copyChunk(int[] target, int chunkX, int chunkZ, int[] chunkPixels) {
+        int size = MapTileCodec.TILE_SIZE;
+        int offsetX = Math.floorMod(chunkX, CHUNKS_PER_TILE) * size;
+        int offsetZ = Math.floorMod(chunkZ, CHUNKS_PER_TILE) * size;
+        boolean changed = false;
+        for (int z = 0; z < size; z++) {
+            int row = (offsetZ + z) * TILE_PIXELS + offsetX;
+            if (!changed && Arrays.mismatch(target, row, row + size, chunkPixels, z * size, z * size + size) < 0) {
+                continue;
+            }
+            System.arraycopy(chunkPixels, z * size, target, row, size);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // 2x2 像素取平均（只计不透明像素），写入目标瓦片的一个象限
+    private static void downsample(int[] source, int[] target, int offsetX, int offsetZ) {
+        int half = TILE_PIXELS / 2;
+        for (int z = 0; z < half; z++) {
+            for (int x = 0; x < half; x++) {
+                int index = z * 2 * TILE_PIXELS + x * 2;
+                int r = 0, g = 0, b = 0, count = 0;
+                for (int i = 0; i < 4; i++) {
+                    int color = source[index + (i & 1) + (i >> 1) * TILE_PIXELS];
+                    if ((color >>> 24) != 0) {
+                        r += color >> 16 & 0xFF;
+                        g += color >> 8 & 0xFF;
+                        b += color & 0xFF;
+                        count++;
+                    }
+                }
+                target[(offsetZ + z) * TILE_PIXELS + offsetX + x] = count == 0 ? 0
+                        : 0xFF000000 | (r / count) << 16 | (g / count) << 8 | (b / count);
+            }
+        }
+    }
+
+    // 淘汰瓦片：有磁盘层时写入磁盘，否则标记待重建，下次从下级恢复
+    private static void evict(long key, PyramidTile tile) {
+        if (directory == null) {
+            dirty.add(key);
+        } else if (tile.unsaved) {
+            save(directory, key, tile);
+        }
+    }
+
+    private static void save(Path directory, long key, PyramidTile tile) {
+        Path file = tileFile(directory, key);
+        int[] runs = MapTileCodec.compress(tile.pixels);
+        pendingWrites.put(file, runs);
+        MapTileCache.executeDiskTask(() -> {
+            write(file, runs);
+            synchronized (MapTilePyramid.class) {
+                // 期间又提交了更新的内容时保留新的记录
+                pendingWrites.remove(file, runs);
+            }
+        });
+        tile.unsaved = false;
+    }
+
+    // 磁盘格式：[int 游程组数][int 颜色, byte 数量]...
+    private static PyramidTile load(Path directory, long key) {
+        Path file = tileFile(directory, key);
+        int[] pending = pendingWrites.get(file);
+        if (pending != null) {
+            PyramidTile tile = new PyramidTile(MapTileCodec.decompress(pending));
+            tile.revision = nextRevision++;
+            return tile;
+        }
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            if (count <= 0 || count > TILE_PIXELS * TILE_PIXELS) {
+                return null;
+            }
+            int[] runs = new int[count * 2];
+            for (int i = 0; i < runs.length; i += 2) {
+                runs[i] = in.readInt();
+                runs[i + 1] = in.readUnsignedByte();
+            }
+            int[] pixels = MapTileCodec.decompress(runs);
+            if (pixels.length != TILE_PIXELS * TILE_PIXELS) {
+                return null;
+            }
+            PyramidTile tile = new PyramidTile(pixels);
+            tile.revision = nextRevision++;
+            return tile;
+        } catch (IOException e) {
+            KRTMod.LOGGER.warn("读取地图金字塔瓦片失败: {}", file, e);
+            return null;
+        }
+    }
+
+    private static void write(Path file, int[] runs) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(runs.length / 2);
+                for (int i = 0; i < runs.length; i += 2) {
+                    out.writeInt(runs[i]);
+                    out.writeByte(runs[i + 1]);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            KRTMod.LOGGER.warn("写入地图金字塔瓦片失败: {}", file, e);
+        }
+    }
+
+    private static Path tileFile(Path directory, long key) {
+        return directory.resolve(Integer.toString(levelOf(key))).resolve(xOf(key) + "." + zOf(key) + ".tile");
+    }
+
+    // 键：[4位 级别][30位 x][30位 z]
+    private static long key(int level, int x, int z) {
+        return (long) level << 60 | (x & 0x3FFFFFFFL) << 30 | (z & 0x3FFFFFFFL);
+    }
+
+    private static int levelOf(long key) {
+        return (int) (key >>> 60);
+    }
+
+    private static int xOf(long key) {
+        return (int) (key << 4 >> 34);
+    }
+
+    private static int zOf(long key) {
+        return (int) (key << 34 >> 34);
+    }
+
+    /**
+     * 金字塔瓦片：ARGB 像素（下标 z * 128 + x）和修订号，内容变化时修订号改变
+     */
+    public static class PyramidTile {
+        private final int[] pixels;
+        private long revision;
+        private boolean unsaved;
+
+        private PyramidTile(int[] pixels) {
+            this.pixels = pixels;
+        }
+
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        public long getRevision() {
+            return revision;
+        }
+    }
+
+    // 重建额度
+    private static class Budget {
+        static final Budget UNLIMITED = new Budget(-1);
+        private int remaining;
+
+        Budget(int remaining) {
+            this.remaining = remaining;
+        }
+
+        boolean isExhausted() {
+            return remaining == 0;
+        }
+
+        void use() {
+            if (remaining > 0) {
+                remaining--;
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.krt.mod.map;
+
+import com.krt.mod.block.SignalBlock;
+import com.krt.mod.network.KRTNetwork;
+import com.krt.mod.system.LineControlSystem;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.MapColor;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.*;
+
+/**
+ * 地图瓦片服务（服务器端）
+ * 按客户端请求，从区块高度图和线路登记的轨道、车站生成地图瓦片，并按像素内容哈希编版本。
+ * 客户端请求时带上已缓存的版本，内容未变时只回复“未变化”。
+ * 生成按刻分摊：每刻每个世界最多生成固定数量的瓦片，同一瓦片在刷新间隔内直接使用缓存，
+ * 地形或轨道的变化在刷新间隔后随下一次请求生效。
+ * 未加载的区块不会为地图而加载，有缓存时返回缓存，否则回复“不可用”。
+ */
+public class MapTileService {
+    private static final Map<World, MapTileService> INSTANCES = new HashMap<>();
+
+    // 消息类型：瓦片请求（客户端 -> 服务器）和瓦片数据（服务器 -> 客户端）
+    static final KRTNetwork.MessageType<TileRequest> REQUEST = KRTNetwork.register(40, "map_tile_request", 1,
+            TileRequest::write, (buf, version) -> TileRequest.read(buf));
+    static final KRTNetwork.MessageType<TileResponse> TILE = KRTNetwork.register(41, "map_tile", 1,
+            TileResponse::write, (buf, version) -> TileResponse.read(buf));
+
+    // 回复状态
+    static final int STATUS_UNCHANGED = 0;
+    static final int STATUS_DATA = 1;
+    static final int STATUS_UNAVAILABLE = 2;
+
+    // 每刻每个世界最多生成的瓦片数
+    private static final int MAX_TILES_PER_TICK = 16;
+    // 每刻每个世界最多处理的请求数（含直接命中缓存的请求）
+    private static final int MAX_REQUESTS_PER_TICK = 256;
+    // 每个玩家排队请求的上限，超出的请求丢弃，客户端超时后会重新请求
+    private static final int MAX_QUEUED_PER_PLAYER = 512;
+    // 瓦片缓存后至少经过该刻数才重新生成
+    private static final int TILE_REFRESH_TICKS = 100;
+    // 服务器缓存的瓦片数上限
+    private static final int MAX_CACHED_TILES = 16384;
+
+    // 颜色（与 MapRenderer 的轨道、车站颜色一致）
+    private static final int TRACK_COLOR = 0xFFAAAAAA;
+    private static final int STATION_COLOR = 0xFFFF0000;
+    private static final int SIGNAL_COLOR = 0xFFFFFF00;
+    private static final int VOID_COLOR = 0xFF000000;
+
+    private final ServerWorld world;
+    // 区块键 -> 缓存的瓦片（按访问顺序淘汰）
+    private final Map<Long, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
+    private final ArrayDeque<PendingRequest> queue = new ArrayDeque<>();
+    private final Map<UUID, Integer> queuedPerPlayer = new HashMap<>();
+    private long currentTick = 0;
+
+    // 轨道和车站按区块的索引，线路修改计数变化时重建
+    private Map<Long, long[]> trackIndex = Collections.emptyMap();
+    private Map<Long, long[]> stationIndex = Collections.emptyMap();
+    private long indexedRevision = -1;
+
+    private MapTileService(ServerWorld world) {
+        this.world = world;
+    }
+
+    public static MapTileService getInstance(ServerWorld world) {
+        return INSTANCES.computeIfAbsent(world, w -> new MapTileService((ServerWorld) w));
+    }
+
+    // 注册服务器端消息处理和刻事件
+    public static void initialize() {
+        REQUEST.onServer((request, player) -> getInstance(player.getWorld()).enqueue(request, player));
+        ServerTickEvents.END_WORLD_TICK.register(world -> {
+            MapTileService service = INSTANCES.get(world);
+            if (service != null) {
+                service.tick();
+            }
+        });
+        ServerWorldEvents.UNLOAD.register((server, world) -> INSTANCES.remove(world));
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            UUID uuid = handler.player.getUuid();
+            for (MapTileService service : INSTANCES.values()) {
+                if (service.queuedPerPlayer.remove(uuid) != null) {
+                    service.queue.removeIf(pending -> pending.player.getUuid().equals(uuid));
+                }
+            }
+        });
+    }
+
+    // 维度标识，请求和回复都带上，避免切换维度后把旧维度的瓦片存错位置
+    public static int dimensionId(World world) {
+        return world.getRegistryKey().getValue().toString().hashCode();
+    }
+
+    private void enqueue(TileRequest request, ServerPlayerEntity player) {
+        if (request.dimension != dimensionId(world)) {
+            return;
+        }
+        int queued = queuedPerPlayer.getOrDefault(player.getUuid(), 0);
+        if (queued >= MAX_QUEUED_PER_PLAYER) {
+            return;
+        }
+        queuedPerPlayer.put(player.getUuid(), queued + 1);
+        queue.add(new PendingRequest(player, request));
+    }
+
+    private void tick() {
+        currentTick++;
+        int generated = 0;
+        int handled = 0;
+        while (!queue.isEmpty() && handled < MAX_REQUESTS_PER_TICK) {
+            PendingRequest pending = queue.peek();
+            TileRequest request = pending.request;
+            long key = MapTileCodec.key(request.chunkX, request.chunkZ);
+            Tile tile = tiles.get(key);
+            if (tile == null || currentTick - tile.generatedTick >= TILE_REFRESH_TICKS) {
+                // 生成预算用完后留到下一刻
+                if (generated >= MAX_TILES_PER_TICK) {
+                    break;
+                }
+                Tile refreshed = generateTile(request.chunkX, request.chunkZ);
+                generated++;
+                if (refreshed != null) {
+                    tiles.put(key, refreshed);
+                    tile = refreshed;
+                }
+            }
+            queue.poll();
+            handled++;
+            queuedPerPlayer.computeIfPresent(pending.player.getUuid(), (uuid, count) -> count > 1 ? count - 1 : null);
+            if (pending.player.isDisconnected() || pending.player.getWorld() != world) {
+                continue;
+            }
+            KRTNetwork.send(pending.player, TILE, respond(request, tile));
+        }
+    }
+
+    private TileResponse respond(TileRequest request, Tile tile) {
+        if (tile == null) {
+            return new TileResponse(request.dimension, request.chunkX, request.chunkZ, STATUS_UNAVAILABLE, 0, null);
+        }
+        if (tile.version == request.knownVersion) {
+            return new TileResponse(request.dimension, request.chunkX, request.chunkZ, STATUS_UNCHANGED, tile.version, null);
+        }
+        return new TileResponse(request.dimension, request.chunkX, request.chunkZ, STATUS_DATA, tile.version, tile.runs);
+    }
+
+    /**
+     * 生成一个区块的瓦片：高度着色的地表颜色，叠加信号机、轨道和车站
+     * @return 区块未加载时返回null
+     */
+    private Tile generateTile(int chunkX, int chunkZ) {
+        WorldChunk chunk = world.getChunkManager().getWorldChunk(chunkX, chunkZ, false);
+        if (chunk == null) {
+            return null;
+        }
+        refreshIndex();
+
+        int size = MapTileCodec.TILE_SIZE;
+        int[] pixels = new int[MapTileCodec.PIXEL_COUNT];
+        int[] previousRow = new int[size];
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        int baseX = chunkX * size;
+        int baseZ = chunkZ * size;
+        int bottomY = world.getBottomY();
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int y = chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE, x, z);
+                BlockState state = chunk.getBlockState(pos.set(baseX + x, y, baseZ + z));
+                MapColor mapColor = state.getMapColor(world, pos);
+                // 与原版地图相同，跳过无颜色的方块
+                while (mapColor == MapColor.CLEAR && y > bottomY) {
+                    y--;
+                    state = chunk.getBlockState(pos.setY(y));
+                    mapColor = state.getMapColor(world, pos);
+                }
+                int color;
+                if (state.getBlock() instanceof SignalBlock) {
+                    color = SIGNAL_COLOR;
+                } else if (mapColor == MapColor.CLEAR) {
+                    color = VOID_COLOR;
+                } else {
+                    // 按与北侧相邻方块的高差着色：较高偏亮，较低偏暗
+                    int northY = z > 0 ? previousRow[x] : y;
+                    int brightness = y > northY ? 255 : y == northY ? 220 : 180;
+                    color = shade(mapColor.color, brightness);
+                }
+                previousRow[x] = y;
+                pixels[z * size + x] = color;
+            }
+        }
+
+        long key = MapTileCodec.key(chunkX, chunkZ);
+        overlay(pixels, trackIndex.get(key), TRACK_COLOR);
+        overlay(pixels, stationIndex.get(key), STATION_COLOR);
+        return new Tile(MapTileCodec.contentHash(pixels), MapTileCodec.compress(pixels), currentTick);
+    }
+
+    private static void overlay(int[] pixels, long[] positions, int color) {
+        if (positions == null) {
+            return;
+        }
+        for (long packed : positions) {
+            int x = BlockPos.unpackLongX(packed) & (MapTileCodec.TILE_SIZE - 1);
+            int z = BlockPos.unpackLongZ(packed) & (MapTileCodec.TILE_SIZE - 1);
+            pixels[z * MapTileCodec.TILE_SIZE + x] = color;
+        }
+    }
+
+    private static int shade(int rgb, int brightness) {
+        int r = (rgb >> 16 & 0xFF) * brightness / 255;
+        int g = (rgb >> 8 & 0xFF) * brightness / 255;
+        int b = (rgb & 0xFF) * brightness / 255;
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+
+    // 线路修改计数变化时按区块重建轨道、车站索引
+    private void refreshIndex() {
+        Collection<LineControlSystem.LineInfo> lines = LineControlSystem.getAllLines();
+        long revision = lines.size();
+        for (LineControlSystem.LineInfo line : lines) {
+            revision = revision * 31 + line.getLineId().hashCode() * 17L + line.getRevision();
+        }
+        if (revision == indexedRevision) {
+            return;
+        }
+        indexedRevision = revision;
+
+        Map<Long, LongList> tracks = new HashMap<>();
+        Map<Long, LongList> stations = new HashMap<>();
+        for (LineControlSystem.LineInfo line : lines) {
+            line.getTracks().forEachLong(packed -> tracks.computeIfAbsent(chunkKeyOf(packed), k -> new LongList()).add(packed));
+            for (LineControlSystem.StationInfo station : line.getStations()) {
+                long packed = station.getPosition().asLong();
+                stations.computeIfAbsent(chunkKeyOf(packed), k -> new LongList()).add(packed);
+            }
+        }
+        trackIndex = toArrays(tracks);
+        stationIndex = toArrays(stations);
+    }
+
+    private static long chunkKeyOf(long packed) {
+        return MapTileCodec.key(BlockPos.unpackLongX(packed) >> 4, BlockPos.unpackLongZ(packed) >> 4);
+    }
+
+    private static Map<Long, long[]> toArrays(Map<Long, LongList> lists) {
+        Map<Long, long[]> result = new HashMap<>(lists.size() * 2);
+        lists.forEach((key, list) -> result.put(key, list.toArray()));
+        return result;
+    }
+
+    // 服务器缓存的瓦片
+    private static class Tile {
+        private final long version;
+        private final int[] runs;
+        private final long generatedTick;
+
+        Tile(long version, int[] runs, long generatedTick) {
+            this.version = version;
+            this.runs = runs;
+            this.generatedTick = generatedTick;
+        }
+    }
+
+    private static class PendingRequest {
+        private final ServerPlayerEntity player;
+        private final TileRequest request;
+
+        PendingRequest(ServerPlayerEntity player, TileRequest request) {
+            this.player = player;
+            this.request = request;
+        }
+    }
+
+    // 简单的 long 列表，用于建立索引
+    private static class LongList {
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // 瓦片请求：[int 维度][int 区块X][int 区块Z][long 已缓存版本，0表示没有]
+    static class TileRequest {
+        final int dimension;
+        final int chunkX;
+        final int chunkZ;
+        final long knownVersion;
+
+        TileRequest(int dimension, int chunkX, int chunkZ, long knownVersion) {
+            this.dimension = dimension;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.knownVersion = knownVersion;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeInt(dimension);
+            buf.writeInt(chunkX);
+            buf.writeInt(chunkZ);
+            buf.writeLong(knownVersion);
+        }
+
+        static TileRequest read(PacketByteBuf buf) {
+            return new TileRequest(buf.readInt(), buf.readInt(), buf.readInt(), buf.readLong());
+        }
+    }
+
+    // 瓦片回复：[int 维度][int 区块X][int 区块Z][byte 状态][long 版本][状态为数据时: 游程数据]
+    static class TileResponse {
+        final int dimension;
+        final int chunkX;
+        final int chunkZ;
+        final int status;
+        final long version;
+        final int[] runs;
+
+        TileResponse(int dimension, int chunkX, int chunkZ, int status, long version, int[] runs) {
+            this.dimension = dimension;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.status = status;
+            this.version = version;
+            this.runs = runs;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeInt(dimension);
+            buf.writeInt(chunkX);
+            buf.writeInt(chunkZ);
+            buf.writeByte(status);
+            buf.writeLong(version);
+            if (status == STATUS_DATA) {
+                MapTileCodec.writeRuns(buf, runs);
+            }
+        }
+
+        static TileResponse read(PacketByteBuf buf) {
+            int dimension = buf.readInt();
+            int chunkX = buf.readInt();
+            int chunkZ = buf.readInt();
+            int status = buf.readByte();
+            long version = buf.readLong();
+            int[] runs = null;
+            if (status == STATUS_DATA) {
+                runs = MapTileCodec.readRuns(buf);
+                if (runs == null) {
+                    status = STATUS_UNAVAILABLE;
+                }
+            }
+            return new TileResponse(dimension, chunkX, chunkZ, status, version, runs);
+        }
+    }
+}
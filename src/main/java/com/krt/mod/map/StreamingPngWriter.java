@@ -0,0 +1,282 @@
+package com.krt.mod.map;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 流式 PNG 编码（RGB 8位）
+ * 图像按水平条带编码：每个条带独立过滤并压缩为以同步刷新结束的原始 deflate 数据，
+ * 条带之间没有依赖，可以在多个线程中并行编码，再按顺序写成一个 IDAT 块。
+ * 各条带的 Adler-32 校验值按 zlib 的合并公式累加，文件中只保存正在写入的条带。
+ * 写完每个条带后的状态（文件长度、已写行数、校验值）可以保存下来，之后从该位置继续写入。
+ */
+public final class StreamingPngWriter implements Closeable {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // zlib 头：deflate，32K 窗口，默认压缩级别
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    // 最后一个空的固定哈夫曼块，结束 deflate 流
+    private static final byte[] FINAL_BLOCK = {0x03, 0x00};
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int ADLER_BASE = 65521;
+
+    private final int height;
+    private final RandomAccessFile output;
+    private int rowsWritten;
+    private long adler;
+
+    private StreamingPngWriter(int height, RandomAccessFile output, int rowsWritten, long adler) {
+        this.height = height;
+        this.output = output;
+        this.rowsWritten = rowsWritten;
+        this.adler = adler;
+    }
+
+    /**
+     * 创建新文件并写入文件头
+     */
+    public static StreamingPngWriter create(File file, int width, int height) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        output.setLength(0);
+        try {
+            output.write(SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+            DataOutputStream data = new DataOutputStream(header);
+            data.writeInt(width);
+            data.writeInt(height);
+            data.writeByte(8); // 位深度
+            data.writeByte(2); // 颜色类型：RGB
+            data.writeByte(0); // 压缩方式
+            data.writeByte(0); // 过滤方式
+            data.writeByte(0); // 不隔行扫描
+            writeChunk(output, "IHDR", header.toByteArray(), 0, header.size());
+            writeChunk(output, "IDAT", ZLIB_HEADER, 0, ZLIB_HEADER.length);
+        } catch (IOException e) {
+            output.close();
+            throw e;
+        }
+        return new StreamingPngWriter(height, output, 0, 1);
+    }
+
+    /**
+     * 从保存的状态继续写入，丢弃该状态之后写入的数据
+     */
+    public static StreamingPngWriter resume(File file, int height, Checkpoint checkpoint) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        if (output.length() < checkpoint.fileLength) {
+            output.close();
+            throw new IOException("导出文件比记录的进度短: " + file);
+        }
+        output.setLength(checkpoint.fileLength);
+        output.seek(checkpoint.fileLength);
+        return new StreamingPngWriter(height, output, checkpoint.rowsWritten, checkpoint.adler);
+    }
+
+    /**
+     * 编码一个条带（可在任意线程调用）
+     * @param pixels ARGB 像素，按行存储，共 rows 行
+     */
+    public static EncodedStrip encodeStrip(int[] pixels, int width, int rows) {
+        int stride = width * BYTES_PER_PIXEL;
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        // 每行：1字节过滤类型 + 过滤后的数据
+        byte[] filtered = new byte[stride + 1];
+        byte[] candidate = new byte[stride + 1];
+        Adler32 checksum = new Adler32();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, stride * rows / 8));
+        byte[] buffer = new byte[32 * 1024];
+        try {
+            for (int row = 0; row < rows; row++) {
+                int offset = row * width;
+                for (int x = 0, i = 0; x < width; x++, i += BYTES_PER_PIXEL) {
+                    int color = pixels[offset + x];
+                    current[i] = (byte) (color >> 16);
+                    current[i + 1] = (byte) (color >> 8);
+                    current[i + 2] = (byte) color;
+                }
+                // 每个条带的第一行不参考上一行，条带之间互不依赖
+                chooseFilter(current, row > 0 ? previous : null, filtered, candidate);
+                checksum.update(filtered, 0, filtered.length);
+                deflater.setInput(filtered);
+                while (!deflater.needsInput()) {
+                    int length = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                    compressed.write(buffer, 0, length);
+                }
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            // 同步刷新：输出按字节对齐且不是最后一个块，可以与下一个条带直接拼接
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, length);
+            } while (length == buffer.length);
+        } finally {
+            deflater.end();
+        }
+        return new EncodedStrip(rows, compressed.toByteArray(), checksum.getValue(), (long) (stride + 1) * rows);
+    }
+
+    /**
+     * 按顺序写入编码好的条带
+     */
+    public void writeStrip(EncodedStrip strip) throws IOException {
+        if (rowsWritten + strip.rows > height) {
+            throw new IOException("写入的行数超过图像高度");
+        }
+        if (strip.data.length > 0) {
+            writeChunk(output, "IDAT", strip.data, 0, strip.data.length);
+        }
+        adler = combineAdler(adler, strip.adler, strip.rawLength);
+        rowsWritten += strip.rows;
+    }
+
+    /**
+     * 当前写入位置，可用于之后继续写入
+     */
+    public Checkpoint checkpoint() throws IOException {
+        output.getChannel().force(false);
+        return new Checkpoint(output.getFilePointer(), rowsWritten, adler);
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * 结束 deflate 流并写入文件尾
+     */
+    public void finish() throws IOException {
+        if (rowsWritten != height) {
+            throw new IOException("图像尚未写完: " + rowsWritten + "/" + height);
+        }
+        byte[] tail = new byte[FINAL_BLOCK.length + 4];
+        System.arraycopy(FINAL_BLOCK, 0, tail, 0, FINAL_BLOCK.length);
+        tail[2] = (byte) (adler >>> 24);
+        tail[3] = (byte) (adler >>> 16);
+        tail[4] = (byte) (adler >>> 8);
+        tail[5] = (byte) adler;
+        writeChunk(output, "IDAT", tail, 0, tail.length);
+        writeChunk(output, "IEND", new byte[0], 0, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    // 在无过滤、Sub、Up 中选择绝对值和最小的一种（PNG 推荐的启发式）
+    private static void chooseFilter(byte[] row, byte[] previous, byte[] best, byte[] candidate) {
+        int length = row.length;
+        best[0] = 0;
+        System.arraycopy(row, 0, best, 1, length);
+        long bestScore = score(best);
+
+        candidate[0] = 1;
+        for (int i = 0; i < length; i++) {
+            candidate[i + 1] = (byte) (row[i] - (i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] : 0));
+        }
+        long subScore = score(candidate);
+        if (subScore < bestScore) {
+            System.arraycopy(candidate, 0, best, 0, length + 1);
+            bestScore = subScore;
+        }
+
+        if (previous != null) {
+            candidate[0] = 2;
+            for (int i = 0; i < length; i++) {
+                candidate[i + 1] = (byte) (row[i] - previous[i]);
+            }
+            if (score(candidate) < bestScore) {
+                System.arraycopy(candidate, 0, best, 0, length + 1);
+            }
+        }
+    }
+
+    // 把字节视为有符号数求绝对值和
+    private static long score(byte[] filtered) {
+        long sum = 0;
+        for (int i = 1; i < filtered.length; i++) {
+            sum += Math.abs(filtered[i]);
+        }
+        return sum;
+    }
+
+    // 合并两段数据的 Adler-32（与 zlib 的 adler32_combine 相同）
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += (adler1 >> 16 & 0xFFFF) + (adler2 >> 16 & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= (long) ADLER_BASE << 1) sum2 -= (long) ADLER_BASE << 1;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | sum2 << 16;
+    }
+
+    private static void writeChunk(RandomAccessFile output, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        output.writeInt(length);
+        output.write(typeBytes);
+        output.write(data, offset, length);
+        output.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * 编码好的条带
+     */
+    public static class EncodedStrip {
+        private final int rows;
+        private final byte[] data;
+        private final long adler;
+        private final long rawLength;
+
+        EncodedStrip(int rows, byte[] data, long adler, long rawLength) {
+            this.rows = rows;
+            this.data = data;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * 写入进度：文件长度、已写行数和已写数据的校验值
+     */
+    public static class Checkpoint {
+        private final long fileLength;
+        private final int rowsWritten;
+        private final long adler;
+
+        public Checkpoint(long fileLength, int rowsWritten, long adler) {
+            this.fileLength = fileLength;
+            this.rowsWritten = rowsWritten;
+            this.adler = adler;
+        }
+
+        public long getFileLength() {
+            return fileLength;
+        }
+
+        public int getRowsWritten() {
+            return rowsWritten;
+        }
+
+        public long getAdler() {
+            return adler;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.krt.mod.network;
+
+import com.krt.mod.KRTMod;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * KRT 数据包层
+ * 模组的所有消息注册为带编号和结构版本的类型，经同一个通道收发。
+ * 每个玩家（以及客户端自身）有一个发件箱，一刻内的消息按顺序编码进池化直接缓冲区，
+ * 刻末合并为一个数据包发送，内容超过阈值时整体用 Deflate 压缩。
+ * 记录带长度前缀，接收方可以跳过未知类型或更高结构版本的记录。
+ *
+ * 帧格式：[byte 标志][压缩时: varint 原始长度][记录...]
+ * 记录格式：[varint 类型编号][varint 结构版本][varint 长度][内容]
+ *
+ * 类型编号分配：1-9 调试器，10-19 列车状态订阅，20-29 列车运动同步，30-39 驾驶台，40-49 地图瓦片
+ */
+public class KRTNetwork {
+    public static final Identifier CHANNEL = new Identifier(KRTMod.MOD_ID, "batch");
+    // 刻末发送阶段，排在其他刻末监听器之后，保证同一刻产生的消息在本刻发出
+    private static final Identifier FLUSH_PHASE = new Identifier(KRTMod.MOD_ID, "network_flush");
+
+    private static final int FLAG_DEFLATED = 1;
+    // 帧内容超过该字节数时压缩
+    static final int COMPRESSION_THRESHOLD = 512;
+    // 解压后帧大小上限
+    private static final int MAX_FRAME_SIZE = 8 * 1024 * 1024;
+
+    private static final Map<Integer, MessageType<?>> TYPES = new HashMap<>();
+    // 已提示过的未知类型或不支持的版本，避免重复刷屏
+    private static final Set<Long> warnedRecords = Collections.synchronizedSet(new HashSet<>());
+
+    // 服务器：玩家UUID -> 发件箱（服务器线程）
+    private static final Map<UUID, Outbox> serverOutboxes = new HashMap<>();
+    // 客户端发件箱（客户端线程）
+    private static final Outbox clientOutbox = new Outbox();
+
+    /**
+     * 注册消息类型
+     * @param id 类型编号，双方一致且不可重复
+     * @param version 当前结构版本，编码时写入，解码器可据此兼容旧版本
+     */
+    public static synchronized <T> MessageType<T> register(int id, String name, int version, Encoder<T> encoder, Decoder<T> decoder) {
+        MessageType<T> type = new MessageType<>(id, name, version, encoder, decoder);
+        MessageType<?> existing = TYPES.putIfAbsent(id, type);
+        if (existing != null) {
+            throw new IllegalStateException("数据包类型编号重复: " + id + " (" + existing.name + ", " + name + ")");
+        }
+        return type;
+    }
+
+    /**
+     * 注册原始内容的消息类型
+     * 用于需要按到达顺序维护状态的流（如增量基线、字符串表）：内容由调用方写好，
+     * 接收时处理器直接读取记录内容，缓冲区在处理器返回后失效。
+     */
+    public static MessageType<PacketByteBuf> registerRaw(int id, String name, int version) {
+        return register(id, name, version,
+                (payload, buf) -> buf.writeBytes(payload, payload.readerIndex(), payload.readableBytes()),
+                (buf, messageVersion) -> buf);
+    }
+
+    // 从池中分配直接缓冲区，用完必须调用 release()
+    public static PacketByteBuf allocate() {
+        return new PacketByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer());
+    }
+
+    // 注册服务器端通道和刻末发送
+    public static void initialize() {
+        ServerPlayNetworking.registerGlobalReceiver(CHANNEL, (server, player, handler, buf, responseSender) -> {
+            ByteBuf frame = readFrame(buf);
+            if (frame != null) {
+                server.execute(() -> dispatch(frame, player));
+            }
+        });
+        ServerTickEvents.END_SERVER_TICK.addPhaseOrdering(Event.DEFAULT_PHASE, FLUSH_PHASE);
+        ServerTickEvents.END_SERVER_TICK.register(FLUSH_PHASE, KRTNetwork::flushServer);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            Outbox outbox = serverOutboxes.remove(handler.player.getUuid());
+            if (outbox != null) {
+                outbox.release();
+            }
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            serverOutboxes.values().forEach(Outbox::release);
+            serverOutboxes.clear();
+        });
+    }
+
+    // 注册客户端通道和刻末发送
+    public static void initializeClient() {
+        ClientPlayNetworking.registerGlobalReceiver(CHANNEL, (client, handler, buf, responseSender) -> {
+            ByteBuf frame = readFrame(buf);
+            if (frame != null) {
+                client.execute(() -> dispatch(frame, null));
+            }
+        });
+        ClientTickEvents.END_CLIENT_TICK.addPhaseOrdering(Event.DEFAULT_PHASE, FLUSH_PHASE);
+        ClientTickEvents.END_CLIENT_TICK.register(FLUSH_PHASE, client -> {
+            if (client.getNetworkHandler() != null) {
+                PacketByteBuf packet = clientOutbox.drain();
+                if (packet != null) {
+                    ClientPlayNetworking.send(CHANNEL, packet);
+                }
+            } else {
+                clientOutbox.release();
+            }
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(clientOutbox::release));
+    }
+
+    /**
+     * 服务器：向玩家发送消息，在本刻末与其他消息合并发送（必须在服务器线程调用）
+     */
+    public static <T> void send(ServerPlayerEntity player, MessageType<T> type, T message) {
+        PacketByteBuf body = encode(type, message);
+        try {
+            serverOutboxes.computeIfAbsent(player.getUuid(), uuid -> new Outbox()).append(type, body);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * 服务器：向多个玩家发送同一条消息，只编码一次
+     */
+    public static <T> void send(Collection<ServerPlayerEntity> players, MessageType<T> type, T message) {
+        if (players.isEmpty()) {
+            return;
+        }
+        PacketByteBuf body = encode(type, message);
+        try {
+            for (ServerPlayerEntity player : players) {
+                serverOutboxes.computeIfAbsent(player.getUuid(), uuid -> new Outbox()).append(type, body);
+            }
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * 客户端：向服务器发送消息，在本刻末合并发送（必须在客户端线程调用）
+     */
+    public static <T> void sendToServer(MessageType<T> type, T message) {
+        PacketByteBuf body = encode(type, message);
+        try {
+            clientOutbox.append(type, body);
+        } finally {
+            body.release();
+        }
+    }
+
+    private static <T> PacketByteBuf encode(MessageType<T> type, T message) {
+        PacketByteBuf body = allocate();
+        try {
+            type.encoder.encode(message, body);
+        } catch (RuntimeException e) {
+            body.release();
+            throw e;
+        }
+        return body;
+    }
+
+    private static void flushServer(MinecraftServer server) {
+        Iterator<Map.Entry<UUID, Outbox>> iterator = serverOutboxes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, Outbox> entry = iterator.next();
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+            if (player == null) {
+                entry.getValue().release();
+                iterator.remove();
+                continue;
+            }
+            PacketByteBuf packet = entry.getValue().drain();
+            if (packet != null) {
+                ServerPlayNetworking.send(player, CHANNEL, packet);
+            }
+        }
+    }
+
+    // 在网络线程读取帧并解压，返回记录内容
+    private static ByteBuf readFrame(PacketByteBuf buf) {
+        try {
+            int flags = buf.readByte();
+            if ((flags & FLAG_DEFLATED) == 0) {
+                return Unpooled.copiedBuffer(buf);
+            }
+            int length = buf.readVarInt();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                KRTMod.LOGGER.warn("丢弃过大的KRT数据包: {} 字节", length);
+                return null;
+            }
+            byte[] input = new byte[buf.readableBytes()];
+            buf.readBytes(input);
+            byte[] output = new byte[length];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input);
+                int inflated = inflater.inflate(output);
+                if (inflated != length || !inflater.finished()) {
+                    KRTMod.LOGGER.warn("KRT数据包解压长度不符: {} / {}", inflated, length);
+                    return null;
+                }
+            } finally {
+                inflater.end();
+            }
+            return Unpooled.wrappedBuffer(output);
+        } catch (DataFormatException | RuntimeException e) {
+            KRTMod.LOGGER.warn("无法读取KRT数据包: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // 在主线程按顺序处理帧内的记录（player 为 null 表示客户端）
+    private static void dispatch(ByteBuf frame, ServerPlayerEntity player) {
+        PacketByteBuf buf = new PacketByteBuf(frame);
+        try {
+            while (buf.isReadable()) {
+                int id = buf.readVarInt();
+                int version = buf.readVarInt();
+                int length = buf.readVarInt();
+                PacketByteBuf body = new PacketByteBuf(buf.readSlice(length));
+                MessageType<?> type = TYPES.get(id);
+                if (type == null || version > type.version) {
+                    if (warnedRecords.add(((long) id << 32) | version)) {
+                        KRTMod.LOGGER.warn("跳过无法识别的KRT消息: 类型 {} 版本 {}", id, version);
+                    }
+                    continue;
+                }
+                try {
+                    if (player != null) {
+                        type.handleServer(body, version, player);
+                    } else {
+                        type.handleClient(body, version);
+                    }
+                } catch (RuntimeException e) {
+                    KRTMod.LOGGER.error("处理KRT消息 {} 失败", type.name, e);
+                }
+            }
+        } catch (RuntimeException e) {
+            KRTMod.LOGGER.warn("KRT数据包格式错误: {}", e.getMessage());
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * 消息类型：编号、名称、结构版本、编解码器和两端的处理器
+     */
+    public static class MessageType<T> {
+        private final int id;
+        private final String name;
+        private final int version;
+        private final Encoder<T> encoder;
+        private final Decoder<T> decoder;
+        private ServerHandler<T> serverHandler;
+        private ClientHandler<T> clientHandler;
+
+        private MessageType(int id, String name, int version, Encoder<T> encoder, Decoder<T> decoder) {
+            this.id = id;
+            this.name = name;
+            this.version = version;
+            this.encoder = encoder;
+            this.decoder = decoder;
+        }
+
+        // 设置服务器端处理器（在服务器线程调用）
+        public MessageType<T> onServer(ServerHandler<T> handler) {
+            this.serverHandler = handler;
+            return this;
+        }
+
+        // 设置客户端处理器（在客户端线程调用）
+        public MessageType<T> onClient(ClientHandler<T> handler) {
+            this.clientHandler = handler;
+            return this;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        private void handleServer(PacketByteBuf body, int messageVersion, ServerPlayerEntity player) {
+            // 只接受注册了服务器端处理器的消息
+            if (serverHandler != null) {
+                serverHandler.handle(decoder.decode(body, messageVersion), player);
+            }
+        }
+
+        private void handleClient(PacketByteBuf body, int messageVersion) {
+            if (clientHandler != null) {
+                clientHandler.handle(decoder.decode(body, messageVersion));
+            }
+        }
+    }
+
+    public interface Encoder<T> {
+        void encode(T message, PacketByteBuf buf);
+    }
+
+    public interface Decoder<T> {
+        /**
+         * @param version 发送方写入的结构版本，不高于本地版本
+         */
+        T decode(PacketByteBuf buf, int version);
+    }
+
+    public interface ServerHandler<T> {
+        void handle(T message, ServerPlayerEntity player);
+    }
+
+    public interface ClientHandler<T> {
+        void handle(T message);
+    }
+
+    /**
+     * 发件箱：累积一刻内的记录，刻末组帧（按需压缩）后清空
+     */
+    private static class Outbox {
+        private ByteBuf records;
+        private Deflater deflater;
+        private byte[] deflateBuffer;
+
+        void append(MessageType<?> type, PacketByteBuf body) {
+            if (records == null) {
+                records = PooledByteBufAllocator.DEFAULT.directBuffer();
+            }
+            PacketByteBuf out = new PacketByteBuf(records);
+            out.writeVarInt(type.id);
+            out.writeVarInt(type.version);
+            out.writeVarInt(body.readableBytes());
+            out.writeBytes(body, body.readerIndex(), body.readableBytes());
+        }
+
+        /**
+         * 组帧并清空发件箱
+         * @return 要发送的数据包（堆缓冲区，交给原版网络层后无需释放），没有记录时返回null
+         */
+        PacketByteBuf drain() {
+            if (records == null || !records.isReadable()) {
+                return null;
+            }
+            int length = records.readableBytes();
+            PacketByteBuf packet = null;
+            if (length > COMPRESSION_THRESHOLD) {
+                packet = deflate(length);
+            }
+            if (packet == null) {
+                packet = new PacketByteBuf(Unpooled.buffer(length + 1));
+                packet.writeByte(0);
+                packet.writeBytes(records);
+            }
+            records.clear();
+            // 空闲时把直接内存还给池
+            if (records.capacity() > COMPRESSION_THRESHOLD * 64) {
+                records.release();
+                records = null;
+            }
+            return packet;
+        }
+
+        // 压缩后不小于原始长度时返回null，改为不压缩发送
+        private PacketByteBuf deflate(int length) {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            if (deflateBuffer == null || deflateBuffer.length < length) {
+                deflateBuffer = new byte[Math.max(length, 1024)];
+            }
+            ByteBuffer input = records.nioBuffer(records.readerIndex(), length);
+            deflater.reset();
+            deflater.setInput(input);
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished() && compressed < length) {
+                compressed += deflater.deflate(deflateBuffer, compressed, length - compressed);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            PacketByteBuf packet = new PacketByteBuf(Unpooled.buffer(compressed + 6));
+            packet.writeByte(FLAG_DEFLATED);
+            packet.writeVarInt(length);
+            packet.writeBytes(deflateBuffer, 0, compressed);
+            return packet;
+        }
+
+        void release() {
+            if (records != null) {
+                records.release();
+                records = null;
+            }
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+            deflateBuffer = null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.krt.mod.network;
+
+import com.krt.mod.entity.ManualDrivingModel;
+import com.krt.mod.entity.TrainEntity;
+import com.krt.mod.system.LogSystem;
+import com.krt.mod.system.TrainControlSystem;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+
+/**
+ * 驾驶台操作消息
+ * 客户端驾驶台的操作发送到服务器，由服务器校验后作用于列车，状态再随运动同步下发。
+ * 手动驾驶时客户端每刻发送一条带序号的驾驶输入，服务器按同一运动模型处理后，
+ * 把确认序号和权威状态回传给驾驶员，客户端据此回放未确认的输入（见 ManualDrivingPrediction）。
+ */
+public class TrainDrivingNetworking {
+    static final KRTNetwork.MessageType<DrivingCommand> DRIVING_COMMAND = KRTNetwork.register(30, "driving_command", 1,
+            DrivingCommand::write, (buf, version) -> DrivingCommand.read(buf));
+    static final KRTNetwork.MessageType<DrivingInput> DRIVING_INPUT = KRTNetwork.register(31, "driving_input", 1,
+            DrivingInput::write, (buf, version) -> DrivingInput.read(buf));
+    static final KRTNetwork.MessageType<DrivingState> DRIVING_STATE = KRTNetwork.register(32, "driving_state", 1,
+            DrivingState::write, (buf, version) -> DrivingState.read(buf));
+
+    // 操作类型
+    public static final int ACTION_CONTROL_MODE = 0;
+    public static final int ACTION_EMERGENCY_BRAKE = 1;
+    public static final int ACTION_RELEASE_BRAKE = 2;
+    public static final int ACTION_TARGET_SPEED = 3;
+
+    // 玩家与列车的最大操作距离（方块）
+    private static final double MAX_DISTANCE = 32.0;
+
+    // 注册服务器端处理器
+    public static void initialize() {
+        DRIVING_COMMAND.onServer(TrainDrivingNetworking::handleCommand);
+        DRIVING_INPUT.onServer(TrainDrivingNetworking::handleInput);
+    }
+
+    // 注册客户端处理器
+    public static void registerClient() {
+        DRIVING_STATE.onClient(state -> {
+            MinecraftClient client = MinecraftClient.getInstance();
+            if (client.world != null && client.world.getEntityById(state.entityId) instanceof TrainEntity train) {
+                train.getMovementSync().applyDrivingState(state.acknowledged, state.x, state.y, state.z,
+                        state.speed, state.acceleration, state.deceleration);
+            }
+        });
+    }
+
+    // 从客户端发送切换控制模式
+    public static void sendControlMode(TrainEntity train, TrainControlSystem.TrainControlMode mode) {
+        KRTNetwork.sendToServer(DRIVING_COMMAND, new DrivingCommand(train.getId(), ACTION_CONTROL_MODE, mode.ordinal()));
+    }
+
+    // 从客户端发送紧急制动
+    public static void sendEmergencyBrake(TrainEntity train) {
+        KRTNetwork.sendToServer(DRIVING_COMMAND, new DrivingCommand(train.getId(), ACTION_EMERGENCY_BRAKE, 0));
+    }
+
+    // 从客户端发送解除紧急制动
+    public static void sendReleaseBrake(TrainEntity train) {
+        KRTNetwork.sendToServer(DRIVING_COMMAND, new DrivingCommand(train.getId(), ACTION_RELEASE_BRAKE, 0));
+    }
+
+    // 从客户端发送目标速度（km/h，负数表示后退）
+    public static void sendTargetSpeed(TrainEntity train, double targetSpeed) {
+        KRTNetwork.sendToServer(DRIVING_COMMAND, new DrivingCommand(train.getId(), ACTION_TARGET_SPEED, targetSpeed));
+    }
+
+    // 从客户端发送一刻的驾驶输入
+    public static void sendDrivingInput(TrainEntity train, ManualDrivingModel.Input input) {
+        KRTNetwork.sendToServer(DRIVING_INPUT, new DrivingInput(train.getId(), input.getSequence(), input.getTargetSpeed()));
+    }
+
+    // 服务器向驾驶员回传已处理的输入序号和列车状态
+    public static void sendDrivingState(ServerPlayerEntity player, TrainEntity train, int acknowledged, ManualDrivingModel model) {
+        KRTNetwork.send(player, DRIVING_STATE, new DrivingState(train.getId(), acknowledged, model.getX(), model.getY(), model.getZ(),
+                model.getSpeed(), model.getAcceleration(), model.getDeceleration()));
+    }
+
+    private static void handleInput(DrivingInput input, ServerPlayerEntity player) {
+        Entity entity = player.getWorld().getEntityById(input.entityId);
+        if (!(entity instanceof TrainEntity train) || player.squaredDistanceTo(train) > MAX_DISTANCE * MAX_DISTANCE
+                || !Double.isFinite(input.targetSpeed)) {
+            return;
+        }
+        train.queueDrivingInput(player, input.sequence, input.targetSpeed);
+    }
+
+    private static void handleCommand(DrivingCommand command, ServerPlayerEntity player) {
+        Entity entity = player.getWorld().getEntityById(command.entityId);
+        if (!(entity instanceof TrainEntity train) || player.squaredDistanceTo(train) > MAX_DISTANCE * MAX_DISTANCE) {
+            return;
+        }
+        switch (command.action) {
+            case ACTION_CONTROL_MODE -> {
+                TrainControlSystem.TrainControlMode[] modes = TrainControlSystem.TrainControlMode.values();
+                int ordinal = (int) command.value;
+                if (ordinal >= 0 && ordinal < modes.length) {
+                    train.getControlSystem().setControlMode(modes[ordinal]);
+                }
+            }
+            case ACTION_EMERGENCY_BRAKE -> {
+                train.applyEmergencyBrake();
+                LogSystem.trainLog(train.getTrainId(), "紧急制动已触发（" + player.getName().getString() + "）");
+            }
+            case ACTION_RELEASE_BRAKE -> {
+                train.releaseEmergencyBrake();
+                LogSystem.trainLog(train.getTrainId(), "紧急制动已解除（" + player.getName().getString() + "）");
+            }
+            case ACTION_TARGET_SPEED -> {
+                // 只有手动控制模式下才接受档位速度
+                if (train.getControlSystem().getControlMode() == TrainControlSystem.TrainControlMode.MANUAL
+                        && Double.isFinite(command.value)) {
+                    train.getControlSystem().setTargetSpeed(command.value);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    // 驾驶台操作消息
+    static class DrivingCommand {
+        private final int entityId;
+        private final int action;
+        private final double value;
+
+        DrivingCommand(int entityId, int action, double value) {
+            this.entityId = entityId;
+            this.action = action;
+            this.value = value;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeVarInt(entityId);
+            buf.writeByte(action);
+            buf.writeDouble(value);
+        }
+
+        static DrivingCommand read(PacketByteBuf buf) {
+            return new DrivingCommand(buf.readVarInt(), buf.readByte(), buf.readDouble());
+        }
+    }
+
+    // 驾驶输入消息（每刻一条）
+    static class DrivingInput {
+        private final int entityId;
+        private final int sequence;
+        private final double targetSpeed;
+
+        DrivingInput(int entityId, int sequence, double targetSpeed) {
+            this.entityId = entityId;
+            this.sequence = sequence;
+            this.targetSpeed = targetSpeed;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeVarInt(entityId);
+            buf.writeVarInt(sequence);
+            buf.writeDouble(targetSpeed);
+        }
+
+        static DrivingInput read(PacketByteBuf buf) {
+            return new DrivingInput(buf.readVarInt(), buf.readVarInt(), buf.readDouble());
+        }
+    }
+
+    // 驾驶状态消息：已处理的最后一个输入序号和处理后的权威状态
+    static class DrivingState {
+        private final int entityId;
+        private final int acknowledged;
+        private final double x, y, z;
+        private final double speed;
+        private final double acceleration, deceleration;
+
+        DrivingState(int entityId, int acknowledged, double x, double y, double z,
+                     double speed, double acceleration, double deceleration) {
+            this.entityId = entityId;
+            this.acknowledged = acknowledged;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.speed = speed;
+            this.acceleration = acceleration;
+            this.deceleration = deceleration;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeVarInt(entityId);
+            buf.writeVarInt(acknowledged);
+            buf.writeDouble(x);
+            buf.writeDouble(y);
+            buf.writeDouble(z);
+            buf.writeDouble(speed);
+            buf.writeDouble(acceleration);
+            buf.writeDouble(deceleration);
+        }
+
+        static DrivingState read(PacketByteBuf buf) {
+            return new DrivingState(buf.readVarInt(), buf.readVarInt(), buf.readDouble(), buf.readDouble(), buf.readDouble(),
+                    buf.readDouble(), buf.readDouble(), buf.readDouble());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,439 @@
+package com.krt.mod.network;
+
+import com.krt.mod.entity.ManualDrivingModel;
+import com.krt.mod.entity.ManualDrivingPrediction;
+import com.krt.mod.entity.TrainEntity;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.EntityTrackingEvents;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 列车运动同步（航位推算）
+ * 服务器记录最近一次发送给客户端的位置、速度向量和加速度，每刻按同样的公式外推，
+ * 只有外推误差超过容差、或运动中超过关键帧间隔时才重新发送；匀速运行的列车几乎不产生数据包。
+ * 客户端按收到的运动状态逐刻外推位置，并把新旧状态之间的偏差逐渐消除，避免跳动。
+ * 目的地、下一站等文本属性按玩家维护字符串表，每个字符串只完整发送一次，之后只发送编号。
+ * 本机玩家手动驾驶的列车改由客户端预测接管位置和速度，操作在下一刻即生效，不等待服务器往返。
+ */
+public class TrainMovementSync {
+    // 消息类型：运动状态（[varint 实体ID][运动状态]）和文本属性（[varint 实体ID][byte 掩码][字符串编号...]）
+    static final KRTNetwork.MessageType<MotionMessage> MOTION = KRTNetwork.register(20, "train_motion", 1,
+            MotionMessage::write, (buf, version) -> MotionMessage.read(buf));
+    static final KRTNetwork.MessageType<PacketByteBuf> ATTRIBUTES = KRTNetwork.registerRaw(21, "train_attributes", 1);
+
+    // 文本属性
+    public static final int ATTR_DESTINATION = 0;
+    public static final int ATTR_NEXT_STATION = 1;
+    public static final int ATTR_DEPOT = 2;
+    public static final int ATTR_LINE = 3;
+    public static final int ATTR_CONSIST_ID = 4;
+    public static final int ATTRIBUTE_COUNT = 5;
+    private static final int ALL_ATTRIBUTES = (1 << ATTRIBUTE_COUNT) - 1;
+
+    // 位置外推容差（方块）
+    static final double POSITION_TOLERANCE = 0.1;
+    // 显示速度外推容差（km/h）
+    static final float SPEED_TOLERANCE = 0.5f;
+    // 运动中的关键帧间隔（刻），保证服务器不再更新该列车时客户端的偏差有界
+    static final int KEYFRAME_TICKS = 40;
+    // 客户端最多外推的刻数，超过后停在外推位置等待更新
+    static final int MAX_EXTRAPOLATION_TICKS = KEYFRAME_TICKS + 20;
+    // 客户端每刻保留的修正偏差比例
+    private static final double CORRECTION_DECAY = 0.6;
+    // 每个玩家字符串表的上限，超过后新字符串直接内联发送
+    private static final int MAX_INTERNED_STRINGS = 1024;
+
+    // 服务器：玩家UUID -> 已发送给该玩家的字符串编号
+    private static final Map<UUID, Map<String, Integer>> serverStringTables = new HashMap<>();
+    // 客户端：编号 -> 字符串
+    private static final Map<Integer, String> clientStringTable = new HashMap<>();
+    // 客户端：最近发送的驾驶输入序号，重新开始预测时接着编号，服务器据此丢弃过期输入
+    private static int lastDrivingSequence;
+
+    private final TrainEntity train;
+
+    // 服务器端：上一刻的位置、速度和显示速度，用于估计速度和加速度
+    private Vec3d lastPos;
+    private Vec3d lastVelocity = Vec3d.ZERO;
+    private float lastSpeed;
+    // 服务器端：最近一次发送的运动状态及其后经过的刻数
+    private Motion sent;
+    private int ticksSinceSent;
+    // 服务器端：待发送的文本属性掩码
+    private int dirtyAttributes;
+
+    // 客户端：最近一次收到的运动状态及其后经过的刻数
+    private Motion received;
+    private int ticksSinceReceived;
+    // 客户端：收到新状态时渲染位置与新外推位置的偏差，逐刻衰减
+    private double correctionX, correctionY, correctionZ;
+    // 客户端：本机手动驾驶时的预测，为空表示不在预测
+    private ManualDrivingPrediction prediction;
+
+    public TrainMovementSync(TrainEntity train) {
+        this.train = train;
+    }
+
+    // 注册服务器端事件
+    public static void initialize() {
+        // 玩家开始跟踪列车时发送完整状态
+        EntityTrackingEvents.START_TRACKING.register((trackedEntity, player) -> {
+            if (trackedEntity instanceof TrainEntity train) {
+                train.getMovementSync().sendFullState(player);
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> serverStringTables.remove(handler.player.getUuid()));
+    }
+
+    // 注册客户端处理器
+    public static void registerClient() {
+        MOTION.onClient(message -> {
+            MinecraftClient client = MinecraftClient.getInstance();
+            if (client.world != null && client.world.getEntityById(message.entityId) instanceof TrainEntity train) {
+                train.getMovementSync().applyMotion(message.motion);
+            }
+        });
+        ATTRIBUTES.onClient(buf -> {
+            // 字符串表必须按到达顺序更新，即使实体已不存在也要读完
+            MinecraftClient client = MinecraftClient.getInstance();
+            int entityId = buf.readVarInt();
+            int mask = buf.readByte();
+            Entity entity = client.world != null ? client.world.getEntityById(entityId) : null;
+            for (int attribute = 0; attribute < ATTRIBUTE_COUNT; attribute++) {
+                if ((mask & (1 << attribute)) != 0) {
+                    String value = readInterned(buf);
+                    if (entity instanceof TrainEntity train) {
+                        train.setSyncedAttribute(attribute, value);
+                    }
+                }
+            }
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> client.execute(clientStringTable::clear));
+    }
+
+    /**
+     * 标记文本属性已修改，在下一次服务器刻发送给跟踪该列车的玩家
+     */
+    public void markAttributeDirty(int attribute) {
+        dirtyAttributes |= 1 << attribute;
+    }
+
+    /**
+     * 服务器刻：估计运动状态，外推误差超过容差时发送
+     */
+    public void serverTick() {
+        Vec3d pos = train.getPos();
+        Vec3d velocity = lastPos != null ? pos.subtract(lastPos) : Vec3d.ZERO;
+        Vec3d acceleration = velocity.subtract(lastVelocity);
+        float speed = train.getCurrentSpeed();
+        float speedRate = speed - lastSpeed;
+        lastPos = pos;
+        lastVelocity = velocity;
+        lastSpeed = speed;
+
+        ticksSinceSent++;
+        if (needsUpdate(pos, speed)) {
+            sent = new Motion(pos, velocity, acceleration, speed, speedRate);
+            ticksSinceSent = 0;
+            KRTNetwork.send(PlayerLookup.tracking(train), MOTION, new MotionMessage(train.getId(), sent));
+        }
+
+        if (dirtyAttributes != 0) {
+            for (ServerPlayerEntity player : PlayerLookup.tracking(train)) {
+                sendAttributes(player, dirtyAttributes);
+            }
+            dirtyAttributes = 0;
+        }
+    }
+
+    private boolean needsUpdate(Vec3d pos, float speed) {
+        if (sent == null) {
+            return true;
+        }
+        if (sent.isMoving() && ticksSinceSent >= KEYFRAME_TICKS) {
+            return true;
+        }
+        float t = sent.clampTime(ticksSinceSent);
+        double dx = pos.x - sent.predictX(t);
+        double dy = pos.y - sent.predictY(t);
+        double dz = pos.z - sent.predictZ(t);
+        if (dx * dx + dy * dy + dz * dz > POSITION_TOLERANCE * POSITION_TOLERANCE) {
+            return true;
+        }
+        return Math.abs(speed - sent.predictSpeed(t)) > SPEED_TOLERANCE;
+    }
+
+    // 发送当前运动状态和全部文本属性给刚开始跟踪的玩家
+    private void sendFullState(ServerPlayerEntity player) {
+        Motion motion = sent != null ? sent.advance(ticksSinceSent)
+                : new Motion(train.getPos(), Vec3d.ZERO, Vec3d.ZERO, train.getCurrentSpeed(), 0);
+        KRTNetwork.send(player, MOTION, new MotionMessage(train.getId(), motion));
+        sendAttributes(player, ALL_ATTRIBUTES);
+    }
+
+    private void sendAttributes(ServerPlayerEntity player, int mask) {
+        Map<String, Integer> table = serverStringTables.computeIfAbsent(player.getUuid(), uuid -> new HashMap<>());
+        PacketByteBuf buf = KRTNetwork.allocate();
+        try {
+            buf.writeVarInt(train.getId());
+            buf.writeByte(mask);
+            for (int attribute = 0; attribute < ATTRIBUTE_COUNT; attribute++) {
+                if ((mask & (1 << attribute)) != 0) {
+                    writeInterned(buf, table, train.getSyncedAttribute(attribute));
+                }
+            }
+            KRTNetwork.send(player, ATTRIBUTES, buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * 写入字符串：编码为0时后跟内联字符串；奇数为新编号的定义，后跟字符串；偶数为已定义编号的引用
+     */
+    static void writeInterned(PacketByteBuf buf, Map<String, Integer> table, String value) {
+        Integer id = table.get(value);
+        if (id != null) {
+            buf.writeVarInt(id << 1);
+        } else if (table.size() < MAX_INTERNED_STRINGS) {
+            id = table.size() + 1;
+            table.put(value, id);
+            buf.writeVarInt(id << 1 | 1);
+            buf.writeString(value);
+        } else {
+            buf.writeVarInt(0);
+            buf.writeString(value);
+        }
+    }
+
+    static String readInterned(PacketByteBuf buf) {
+        int code = buf.readVarInt();
+        if (code == 0) {
+            return buf.readString();
+        }
+        if ((code & 1) != 0) {
+            String value = buf.readString();
+            clientStringTable.put(code >>> 1, value);
+            return value;
+        }
+        return clientStringTable.getOrDefault(code >>> 1, "");
+    }
+
+    // 客户端：收到新的运动状态
+    private void applyMotion(Motion motion) {
+        if (received != null) {
+            // 保留当前渲染位置与新外推起点之间的偏差，之后逐刻消除
+            correctionX = train.getX() - motion.x;
+            correctionY = train.getY() - motion.y;
+            correctionZ = train.getZ() - motion.z;
+        } else {
+            correctionX = correctionY = correctionZ = 0;
+            train.setPosition(motion.x, motion.y, motion.z);
+        }
+        received = motion;
+        ticksSinceReceived = 0;
+    }
+
+    /**
+     * 客户端：开始预测本机驾驶的列车，从当前显示位置和速度出发
+     * 初始速度由外推的每刻位移沿车头朝向求出（km/h，带方向），与服务器切换到手动时的做法一致
+     */
+    public void startPrediction() {
+        if (prediction != null) {
+            return;
+        }
+        double speed = 0.0;
+        if (received != null) {
+            float t = received.clampTime(ticksSinceReceived);
+            speed = ManualDrivingModel.speedAlongHeading(received.vx + received.ax * t, received.vz + received.az * t, train.getYaw());
+        }
+        prediction = new ManualDrivingPrediction(train.getX(), train.getY(), train.getZ(), speed, lastDrivingSequence + 1);
+    }
+
+    /**
+     * 客户端：停止预测，位置交还给航位推算，偏差逐刻消除
+     */
+    public void stopPrediction() {
+        if (prediction == null) {
+            return;
+        }
+        prediction = null;
+        if (received != null) {
+            float t = received.clampTime(ticksSinceReceived);
+            correctionX = train.getX() - received.predictX(t);
+            correctionY = train.getY() - received.predictY(t);
+            correctionZ = train.getZ() - received.predictZ(t);
+        }
+    }
+
+    public boolean isPredicting() {
+        return prediction != null;
+    }
+
+    // 客户端：收到服务器回传的驾驶状态，回放未确认的输入
+    void applyDrivingState(int acknowledged, double x, double y, double z, double speed, double acceleration, double deceleration) {
+        if (prediction != null) {
+            prediction.reconcile(acknowledged, x, y, z, speed, acceleration, deceleration, train.getYaw());
+        }
+    }
+
+    /**
+     * 客户端刻：预测时按本刻输入步进并发送输入，否则沿收到的运动状态外推位置
+     */
+    public void clientTick() {
+        if (prediction != null && prediction.isStalled()) {
+            stopPrediction();
+        }
+        if (prediction != null) {
+            ManualDrivingModel.Input input = prediction.predict(train.getControlSystem().getTargetSpeed(),
+                    train.isEmergencyBraking(), train.getYaw());
+            lastDrivingSequence = input.getSequence();
+            TrainDrivingNetworking.sendDrivingInput(train, input);
+            train.setPosition(prediction.getX(), prediction.getY(), prediction.getZ());
+            // 运动状态继续计时，停止预测后从正确的外推时刻接续
+            ticksSinceReceived = Math.min(ticksSinceReceived + 1, MAX_EXTRAPOLATION_TICKS);
+            return;
+        }
+        if (received == null) {
+            return;
+        }
+        ticksSinceReceived = Math.min(ticksSinceReceived + 1, MAX_EXTRAPOLATION_TICKS);
+        correctionX *= CORRECTION_DECAY;
+        correctionY *= CORRECTION_DECAY;
+        correctionZ *= CORRECTION_DECAY;
+        float t = received.clampTime(ticksSinceReceived);
+        train.setPosition(received.predictX(t) + correctionX, received.predictY(t) + correctionY, received.predictZ(t) + correctionZ);
+    }
+
+    // 客户端：是否已由运动同步接管位置（此时忽略原版的实体位置包）
+    public boolean isClientDriven() {
+        return received != null || prediction != null;
+    }
+
+    // 客户端：外推（或预测）的显示速度
+    public float getClientSpeed() {
+        if (prediction != null) {
+            return (float) Math.abs(prediction.getSpeed());
+        }
+        if (received == null) {
+            return 0;
+        }
+        return received.predictSpeed(received.clampTime(ticksSinceReceived));
+    }
+
+    // 运动状态消息
+    static class MotionMessage {
+        private final int entityId;
+        private final Motion motion;
+
+        MotionMessage(int entityId, Motion motion) {
+            this.entityId = entityId;
+            this.motion = motion;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeVarInt(entityId);
+            motion.write(buf);
+        }
+
+        static MotionMessage read(PacketByteBuf buf) {
+            return new MotionMessage(buf.readVarInt(), Motion.read(buf));
+        }
+    }
+
+    /**
+     * 运动状态：位置、每刻位移、每刻位移变化量，以及显示速度和其每刻变化量
+     * 服务器和客户端使用同一套外推公式，减速时在速度降为零处停止外推。
+     */
+    static class Motion {
+        final double x, y, z;
+        final float vx, vy, vz;
+        final float ax, ay, az;
+        final float speed, speedRate;
+
+        Motion(double x, double y, double z, float vx, float vy, float vz, float ax, float ay, float az, float speed, float speedRate) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.vx = vx;
+            this.vy = vy;
+            this.vz = vz;
+            this.ax = ax;
+            this.ay = ay;
+            this.az = az;
+            this.speed = speed;
+            this.speedRate = speedRate;
+        }
+
+        Motion(Vec3d pos, Vec3d velocity, Vec3d acceleration, float speed, float speedRate) {
+            this(pos.x, pos.y, pos.z, (float) velocity.x, (float) velocity.y, (float) velocity.z,
+                    (float) acceleration.x, (float) acceleration.y, (float) acceleration.z, speed, speedRate);
+        }
+
+        boolean isMoving() {
+            return vx != 0 || vy != 0 || vz != 0 || ax != 0 || ay != 0 || az != 0 || speed > 0;
+        }
+
+        // 减速时外推到速度降为零为止
+        float clampTime(float t) {
+            if (speedRate < 0 && speed > 0) {
+                return Math.min(t, speed / -speedRate);
+            }
+            return t;
+        }
+
+        double predictX(float t) {
+            return x + vx * t + 0.5 * ax * t * t;
+        }
+
+        double predictY(float t) {
+            return y + vy * t + 0.5 * ay * t * t;
+        }
+
+        double predictZ(float t) {
+            return z + vz * t + 0.5 * az * t * t;
+        }
+
+        float predictSpeed(float t) {
+            return Math.max(0, speed + speedRate * t);
+        }
+
+        // 外推指定刻数后的运动状态（用于新跟踪的玩家）
+        Motion advance(int ticks) {
+            float t = clampTime(ticks);
+            return new Motion(predictX(t), predictY(t), predictZ(t),
+                    vx + ax * t, vy + ay * t, vz + az * t, ax, ay, az, predictSpeed(t), speedRate);
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeDouble(x);
+            buf.writeDouble(y);
+            buf.writeDouble(z);
+            buf.writeFloat(vx);
+            buf.writeFloat(vy);
+            buf.writeFloat(vz);
+            buf.writeFloat(ax);
+            buf.writeFloat(ay);
+            buf.writeFloat(az);
+            buf.writeFloat(speed);
+            buf.writeFloat(speedRate);
+        }
+
+        static Motion read(PacketByteBuf buf) {
+            return new Motion(buf.readDouble(), buf.readDouble(), buf.readDouble(),
+                    buf.readFloat(), buf.readFloat(), buf.readFloat(),
+                    buf.readFloat(), buf.readFloat(), buf.readFloat(),
+                    buf.readFloat(), buf.readFloat());
+        }
+    }
+}
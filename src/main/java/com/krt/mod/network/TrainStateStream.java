@@ -0,0 +1,540 @@
+package com.krt.mod.network;
+
+import com.krt.mod.KRTMod;
+import com.krt.mod.entity.TrainEntity;
+import com.krt.mod.gui.ModDebuggerScreenHandler.DebugInfo;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.*;
+
+/**
+ * 列车状态订阅流
+ * 客户端按全部、线路或区域订阅列车状态。服务器每刻对已加载列车采样一次并量化，
+ * 只把本刻发生变化的列车与各订阅者上次发送的基线比较，变化字段以二进制增量编码，
+ * 每个订阅者每刻最多一条消息，经 KRTNetwork 与其他消息合并发送。带宽和服务器开销随状态变化量增长，与列车数 × 观察者数无关。
+ *
+ * 增量消息格式：[boolean 重置] 之后为若干条记录 [varint 句柄][varint 字段掩码][变化字段...]，
+ * 句柄为0表示结束，掩码为0表示列车离开订阅范围。
+ */
+public class TrainStateStream {
+    // 订阅范围
+    public static final int SCOPE_ALL = 0;
+    public static final int SCOPE_LINE = 1;
+    public static final int SCOPE_AREA = 2;
+    private static final int MAX_AREA_RADIUS = 4096;
+
+    // 消息类型
+    static final KRTNetwork.MessageType<Subscription> SUBSCRIBE = KRTNetwork.register(10, "subscribe_trains", 1,
+            Subscription::write, (buf, version) -> Subscription.read(buf));
+    static final KRTNetwork.MessageType<Void> UNSUBSCRIBE = KRTNetwork.register(11, "unsubscribe_trains", 1,
+            (message, buf) -> {}, (buf, version) -> null);
+    static final KRTNetwork.MessageType<PacketByteBuf> DELTA = KRTNetwork.registerRaw(12, "train_state_delta", 1);
+
+    // 字段掩码
+    static final int FIELD_TRAIN_ID = 1;
+    static final int FIELD_SPEED = 1 << 1;
+    static final int FIELD_HEALTH = 1 << 2;
+    static final int FIELD_POSITION = 1 << 3;
+    static final int FIELD_FLAGS = 1 << 4;
+    static final int FIELD_DRIVER = 1 << 5;
+    static final int FIELD_DESTINATION = 1 << 6;
+    static final int FIELD_NEXT_STATION = 1 << 7;
+    static final int FIELD_LINE = 1 << 8;
+    static final int ALL_FIELDS = (1 << 9) - 1;
+
+    private static final int FLAG_ATO = 1;
+    private static final int FLAG_EMERGENCY_BRAKE = 2;
+    // 速度量化精度：0.1 km/h
+    private static final float SPEED_SCALE = 10.0f;
+
+    // 已加载的列车及其最近一次采样的状态（服务器线程）
+    private static final Map<TrainEntity, TrainState> trains = new IdentityHashMap<>();
+    // 本刻状态发生变化的列车
+    private static final List<TrainEntity> changedTrains = new ArrayList<>();
+    // 上次发送后卸载的列车
+    private static final List<TrainEntity> removedTrains = new ArrayList<>();
+    // 玩家UUID -> 订阅
+    private static final Map<UUID, Subscription> subscriptions = new HashMap<>();
+
+    // 客户端：句柄 -> 列车信息
+    private static final Map<Integer, DebugInfo> clientTrains = new LinkedHashMap<>();
+    private static int clientVersion = 0;
+
+    // 注册服务器端事件和数据包处理器
+    public static void initialize() {
+        ServerEntityEvents.ENTITY_LOAD.register((entity, world) -> {
+            if (entity instanceof TrainEntity train) {
+                trains.put(train, new TrainState());
+            }
+        });
+        ServerEntityEvents.ENTITY_UNLOAD.register((entity, world) -> {
+            if (entity instanceof TrainEntity train && trains.remove(train) != null && !subscriptions.isEmpty()) {
+                removedTrains.add(train);
+            }
+        });
+        ServerTickEvents.END_SERVER_TICK.register(TrainStateStream::tick);
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> subscriptions.remove(handler.player.getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            trains.clear();
+            changedTrains.clear();
+            removedTrains.clear();
+            subscriptions.clear();
+        });
+
+        SUBSCRIBE.onServer((subscription, player) -> {
+            // 订阅流包含所有列车的位置，只向管理员（调试器）开放
+            if (!player.hasPermissionLevel(ModDebuggerNetworking.DEBUGGER_PERMISSION_LEVEL)) {
+                KRTMod.LOGGER.warn("拒绝玩家 {} 订阅列车状态: 权限不足", player.getName().getString());
+                return;
+            }
+            if (subscription != null) {
+                subscriptions.put(player.getUuid(), subscription);
+            }
+        });
+        UNSUBSCRIBE.onServer((message, player) -> subscriptions.remove(player.getUuid()));
+    }
+
+    // 注册客户端处理器
+    public static void registerClient() {
+        DELTA.onClient(TrainStateStream::applyDelta);
+    }
+
+    // 让所有订阅者在下一刻重新接收完整状态
+    public static void resyncAll() {
+        for (Subscription subscription : subscriptions.values()) {
+            subscription.resync = true;
+        }
+    }
+
+    private static void tick(MinecraftServer server) {
+        if (subscriptions.isEmpty()) {
+            removedTrains.clear();
+            return;
+        }
+
+        // 每刻对每列列车只采样一次，与订阅者数量无关
+        changedTrains.clear();
+        for (Map.Entry<TrainEntity, TrainState> entry : trains.entrySet()) {
+            if (entry.getValue().sample(entry.getKey()) != 0) {
+                changedTrains.add(entry.getKey());
+            }
+        }
+
+        PacketByteBuf buf = KRTNetwork.allocate();
+        try {
+            Iterator<Map.Entry<UUID, Subscription>> iterator = subscriptions.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, Subscription> entry = iterator.next();
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(entry.getKey());
+                if (player == null) {
+                    iterator.remove();
+                    continue;
+                }
+                buf.clear();
+                if (entry.getValue().collect(player.getWorld(), buf)) {
+                    KRTNetwork.send(player, DELTA, buf);
+                }
+            }
+        } finally {
+            buf.release();
+        }
+        removedTrains.clear();
+    }
+
+    // 客户端：应用服务器发送的增量
+    public static void applyDelta(PacketByteBuf buf) {
+        if (buf.readBoolean()) {
+            clientTrains.clear();
+        }
+        int handle;
+        while ((handle = buf.readVarInt()) != 0) {
+            int mask = buf.readVarInt();
+            if (mask == 0) {
+                clientTrains.remove(handle);
+                continue;
+            }
+            DebugInfo info = clientTrains.computeIfAbsent(handle, h -> new DebugInfo());
+            if ((mask & FIELD_TRAIN_ID) != 0) {
+                info.trainId = buf.readString();
+            }
+            if ((mask & FIELD_SPEED) != 0) {
+                info.speed = readZigZag(buf) / SPEED_SCALE;
+            }
+            if ((mask & FIELD_HEALTH) != 0) {
+                info.health = readZigZag(buf);
+            }
+            if ((mask & FIELD_POSITION) != 0) {
+                if ((mask & FIELD_TRAIN_ID) != 0 || info.position == null) {
+                    info.position = BlockPos.fromLong(buf.readLong());
+                } else {
+                    info.position = info.position.add(readZigZag(buf), readZigZag(buf), readZigZag(buf));
+                }
+            }
+            if ((mask & FIELD_FLAGS) != 0) {
+                int flags = buf.readByte();
+                info.atoEnabled = (flags & FLAG_ATO) != 0;
+                info.emergencyBrake = (flags & FLAG_EMERGENCY_BRAKE) != 0;
+            }
+            if ((mask & FIELD_DRIVER) != 0) {
+                info.driverName = buf.readString();
+            }
+            if ((mask & FIELD_DESTINATION) != 0) {
+                info.destination = buf.readString();
+            }
+            if ((mask & FIELD_NEXT_STATION) != 0) {
+                info.nextStation = buf.readString();
+            }
+            if ((mask & FIELD_LINE) != 0) {
+                info.currentLine = buf.readString();
+            }
+        }
+        clientVersion++;
+    }
+
+    // 客户端：当前订阅范围内的列车
+    public static List<DebugInfo> getClientTrains() {
+        return new ArrayList<>(clientTrains.values());
+    }
+
+    // 客户端：列车数据版本，每收到一次增量加一
+    public static int getClientVersion() {
+        return clientVersion;
+    }
+
+    // 客户端：断开连接时清空
+    public static void clearClient() {
+        clientTrains.clear();
+        clientVersion++;
+    }
+
+    // 客户端：订阅全部列车（重复订阅会重新接收完整状态）
+    public static void subscribeAll() {
+        KRTNetwork.sendToServer(SUBSCRIBE, new Subscription(SCOPE_ALL, "", BlockPos.ORIGIN, 0));
+    }
+
+    // 客户端：订阅指定线路上的列车
+    public static void subscribeLine(String lineId) {
+        KRTNetwork.sendToServer(SUBSCRIBE, new Subscription(SCOPE_LINE, lineId, BlockPos.ORIGIN, 0));
+    }
+
+    // 客户端：订阅以指定位置为中心、水平半径内的列车
+    public static void subscribeArea(BlockPos center, int radius) {
+        KRTNetwork.sendToServer(SUBSCRIBE, new Subscription(SCOPE_AREA, "", center, radius));
+    }
+
+    // 客户端：取消订阅
+    public static void unsubscribe() {
+        KRTNetwork.sendToServer(UNSUBSCRIBE, null);
+    }
+
+    private static void writeZigZag(PacketByteBuf buf, int value) {
+        buf.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    private static int readZigZag(PacketByteBuf buf) {
+        int value = buf.readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 单个玩家的订阅及其已发送基线
+     */
+    private static class Subscription {
+        private final int scope;
+        private final String lineId;
+        private final BlockPos center;
+        private final int radius;
+        private final long radiusSquared;
+        // 列车 -> 已发送给该玩家的状态
+        private final Map<TrainEntity, SentTrain> sent = new IdentityHashMap<>();
+        // 上次发送时玩家所在的世界，切换维度后需要重新同步
+        private World world;
+        private boolean resync = true;
+        private int nextHandle = 1;
+
+        Subscription(int scope, String lineId, BlockPos center, int radius) {
+            this.scope = scope;
+            this.lineId = lineId;
+            this.center = center;
+            this.radius = radius;
+            this.radiusSquared = (long) radius * radius;
+        }
+
+        void write(PacketByteBuf buf) {
+            buf.writeByte(scope);
+            if (scope == SCOPE_LINE) {
+                buf.writeString(lineId, 64);
+            } else if (scope == SCOPE_AREA) {
+                buf.writeBlockPos(center);
+                buf.writeVarInt(radius);
+            }
+        }
+
+        static Subscription read(PacketByteBuf buf) {
+            int scope = buf.readByte();
+            switch (scope) {
+                case SCOPE_ALL:
+                    return new Subscription(SCOPE_ALL, "", BlockPos.ORIGIN, 0);
+                case SCOPE_LINE:
+                    return new Subscription(SCOPE_LINE, buf.readString(64), BlockPos.ORIGIN, 0);
+                case SCOPE_AREA:
+                    BlockPos center = buf.readBlockPos();
+                    int radius = Math.min(buf.readVarInt(), MAX_AREA_RADIUS);
+                    return new Subscription(SCOPE_AREA, "", center, radius);
+                default:
+                    KRTMod.LOGGER.warn("未知的列车状态订阅范围: {}", scope);
+                    return null;
+            }
+        }
+
+        boolean matches(TrainEntity train, TrainState state) {
+            if (train.getWorld() != world) {
+                return false;
+            }
+            switch (scope) {
+                case SCOPE_LINE:
+                    return lineId.equals(state.line);
+                case SCOPE_AREA:
+                    long dx = BlockPos.unpackLongX(state.position) - center.getX();
+                    long dz = BlockPos.unpackLongZ(state.position) - center.getZ();
+                    return dx * dx + dz * dz <= radiusSquared;
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * 把本刻需要发送的增量写入缓冲区
+         * @return 是否需要发送
+         */
+        boolean collect(World playerWorld, PacketByteBuf buf) {
+            if (playerWorld != world) {
+                world = playerWorld;
+                resync = true;
+            }
+            boolean reset = resync;
+            buf.writeBoolean(reset);
+            int records = 0;
+
+            if (reset) {
+                resync = false;
+                sent.clear();
+                for (Map.Entry<TrainEntity, TrainState> entry : trains.entrySet()) {
+                    records += update(buf, entry.getKey(), entry.getValue());
+                }
+            } else {
+                for (TrainEntity train : removedTrains) {
+                    SentTrain removed = sent.remove(train);
+                    if (removed != null) {
+                        buf.writeVarInt(removed.handle);
+                        buf.writeVarInt(0);
+                        records++;
+                    }
+                }
+                for (TrainEntity train : changedTrains) {
+                    TrainState state = trains.get(train);
+                    if (state != null) {
+                        records += update(buf, train, state);
+                    }
+                }
+            }
+
+            if (records == 0 && !reset) {
+                return false;
+            }
+            buf.writeVarInt(0);
+            return true;
+        }
+
+        // 写入单列列车相对基线的变化，返回写入的记录数
+        private int update(PacketByteBuf buf, TrainEntity train, TrainState state) {
+            SentTrain entry = sent.get(train);
+            if (!matches(train, state)) {
+                if (entry == null) {
+                    return 0;
+                }
+                sent.remove(train);
+                buf.writeVarInt(entry.handle);
+                buf.writeVarInt(0);
+                return 1;
+            }
+            int mask;
+            if (entry == null) {
+                entry = new SentTrain(nextHandle++);
+                sent.put(train, entry);
+                mask = ALL_FIELDS;
+            } else {
+                mask = entry.state.diff(state);
+                if (mask == 0) {
+                    return 0;
+                }
+            }
+            buf.writeVarInt(entry.handle);
+            buf.writeVarInt(mask);
+            state.write(buf, mask, entry.state);
+            entry.state.copyFrom(state, mask);
+            return 1;
+        }
+    }
+
+    // 已发送给某个玩家的列车：句柄和发送时的状态
+    private static class SentTrain {
+        private final int handle;
+        private final TrainState state = new TrainState();
+
+        SentTrain(int handle) {
+            this.handle = handle;
+        }
+    }
+
+    /**
+     * 量化后的列车状态
+     */
+    static class TrainState {
+        String trainId = "";
+        int speed;
+        int health;
+        long position;
+        int flags;
+        String driverName = "";
+        String destination = "";
+        String nextStation = "";
+        String line = "";
+        // 上次采样时的司机，司机未变时不重新生成名称
+        private PlayerEntity driver;
+
+        // 按列车当前状态更新，返回发生变化的字段掩码
+        int sample(TrainEntity train) {
+            int mask = 0;
+            String id = nonNull(train.getTrainId());
+            if (!id.equals(trainId)) {
+                trainId = id;
+                mask |= FIELD_TRAIN_ID;
+            }
+            int quantizedSpeed = Math.round(train.getCurrentSpeed() * SPEED_SCALE);
+            if (quantizedSpeed != speed) {
+                speed = quantizedSpeed;
+                mask |= FIELD_SPEED;
+            }
+            if (train.getHealth() != health) {
+                health = train.getHealth();
+                mask |= FIELD_HEALTH;
+            }
+            long pos = train.getBlockPos().asLong();
+            if (pos != position) {
+                position = pos;
+                mask |= FIELD_POSITION;
+            }
+            int currentFlags = (train.isATOEnabled() ? FLAG_ATO : 0) | (train.isEmergencyBraking() ? FLAG_EMERGENCY_BRAKE : 0);
+            if (currentFlags != flags) {
+                flags = currentFlags;
+                mask |= FIELD_FLAGS;
+            }
+            PlayerEntity currentDriver = train.getDriver();
+            if (currentDriver != driver || driverName.isEmpty()) {
+                driver = currentDriver;
+                String name = currentDriver != null ? currentDriver.getDisplayName().getString() : "无";
+                if (!name.equals(driverName)) {
+                    driverName = name;
+                    mask |= FIELD_DRIVER;
+                }
+            }
+            String value = nonNull(train.getDestination());
+            if (!value.equals(destination)) {
+                destination = value;
+                mask |= FIELD_DESTINATION;
+            }
+            value = nonNull(train.getNextStation());
+            if (!value.equals(nextStation)) {
+                nextStation = value;
+                mask |= FIELD_NEXT_STATION;
+            }
+            value = nonNull(train.getCurrentLine());
+            if (!value.equals(line)) {
+                line = value;
+                mask |= FIELD_LINE;
+            }
+            return mask;
+        }
+
+        // 与另一状态不同的字段掩码
+        int diff(TrainState other) {
+            int mask = 0;
+            if (!trainId.equals(other.trainId)) mask |= FIELD_TRAIN_ID;
+            if (speed != other.speed) mask |= FIELD_SPEED;
+            if (health != other.health) mask |= FIELD_HEALTH;
+            if (position != other.position) mask |= FIELD_POSITION;
+            if (flags != other.flags) mask |= FIELD_FLAGS;
+            if (!driverName.equals(other.driverName)) mask |= FIELD_DRIVER;
+            if (!destination.equals(other.destination)) mask |= FIELD_DESTINATION;
+            if (!nextStation.equals(other.nextStation)) mask |= FIELD_NEXT_STATION;
+            if (!line.equals(other.line)) mask |= FIELD_LINE;
+            return mask;
+        }
+
+        void copyFrom(TrainState other, int mask) {
+            if ((mask & FIELD_TRAIN_ID) != 0) trainId = other.trainId;
+            if ((mask & FIELD_SPEED) != 0) speed = other.speed;
+            if ((mask & FIELD_HEALTH) != 0) health = other.health;
+            if ((mask & FIELD_POSITION) != 0) position = other.position;
+            if ((mask & FIELD_FLAGS) != 0) flags = other.flags;
+            if ((mask & FIELD_DRIVER) != 0) driverName = other.driverName;
+            if ((mask & FIELD_DESTINATION) != 0) destination = other.destination;
+            if ((mask & FIELD_NEXT_STATION) != 0) nextStation = other.nextStation;
+            if ((mask & FIELD_LINE) != 0) line = other.line;
+        }
+
+        /**
+         * 写入掩码中的字段
+         * @param baseline 接收方已有的状态，位置以相对它的偏移编码（新列车写绝对位置）
+         */
+        void write(PacketByteBuf buf, int mask, TrainState baseline) {
+            if ((mask & FIELD_TRAIN_ID) != 0) {
+                buf.writeString(trainId);
+            }
+            if ((mask & FIELD_SPEED) != 0) {
+                writeZigZag(buf, speed);
+            }
+            if ((mask & FIELD_HEALTH) != 0) {
+                writeZigZag(buf, health);
+            }
+            if ((mask & FIELD_POSITION) != 0) {
+                if ((mask & FIELD_TRAIN_ID) != 0) {
+                    buf.writeLong(position);
+                } else {
+                    writeZigZag(buf, BlockPos.unpackLongX(position) - BlockPos.unpackLongX(baseline.position));
+                    writeZigZag(buf, BlockPos.unpackLongY(position) - BlockPos.unpackLongY(baseline.position));
+                    writeZigZag(buf, BlockPos.unpackLongZ(position) - BlockPos.unpackLongZ(baseline.position));
+                }
+            }
+            if ((mask & FIELD_FLAGS) != 0) {
+                buf.writeByte(flags);
+            }
+            if ((mask & FIELD_DRIVER) != 0) {
+                buf.writeString(driverName);
+            }
+            if ((mask & FIELD_DESTINATION) != 0) {
+                buf.writeString(destination);
+            }
+            if ((mask & FIELD_NEXT_STATION) != 0) {
+                buf.writeString(nextStation);
+            }
+            if ((mask & FIELD_LINE) != 0) {
+                buf.writeString(line);
+            }
+        }
+
+        private static String nonNull(String value) {
+            return value != null ? value : "";
+        }
+    }
+}
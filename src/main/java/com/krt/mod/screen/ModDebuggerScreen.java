@@ -2,6 +2,7 @@ package com.krt.mod.screen;
 
 import com.krt.mod.gui.ModDebuggerScreenHandler;
 import com.krt.mod.network.ModDebuggerNetworking;
+import com.krt.mod.network.TrainStateStream;
 import com.krt.mod.system.LanguageSystem;
 import com.krt.mod.system.LogSystem;
 import net.minecraft.client.gui.screen.Screen;
@@ -28,6 +29,9 @@ public class ModDebuggerScreen extends Screen {
     private boolean showLogs = false;
     private int scrollOffset = 0;
     private List<ModDebuggerScreenHandler.DebugInfo> filteredTrains = List.of();
+    private boolean subscribed = false;
+    // 已过滤的列车数据版本
+    private int filteredVersion = -1;
 
     public ModDebuggerScreen() {
         super(Text.literal(LanguageSystem.translate("krt.debugger.title")));
@@ -79,31 +83,44 @@ public class ModDebuggerScreen extends Screen {
         // 命令说明
         addDrawableChild(new ButtonWidget(x + 20, y + HEIGHT - 25, 550, 20, Text.literal("可用命令: set_speed, toggle_ato, release_brake, apply_brake, set_health, clear_cache"), button -> {}));
 
-        // 初始加载数据
-        refreshData();
+        // 订阅列车状态（窗口大小变化时会重新调用init，不重复订阅）
+        if (!subscribed) {
+            TrainStateStream.subscribeAll();
+            subscribed = true;
+        }
+        filterTrains();
     }
 
     private void refreshData() {
-        // 通过网络请求从服务器获取数据
-        ModDebuggerNetworking.requestTrainsInfoFromClient();
+        // 重新订阅，服务器会发送完整状态
+        TrainStateStream.subscribeAll();
         
         // 重置滚动位置
         scrollOffset = 0;
-        
-        // 延迟一小段时间后再过滤，确保数据已经收到
-        client.execute(() -> {
-            try {
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+        // 收到新的增量后重新过滤
+        if (filteredVersion != TrainStateStream.getClientVersion()) {
             filterTrains();
-        });
+        }
+    }
+
+    @Override
+    public void removed() {
+        super.removed();
+        if (subscribed) {
+            TrainStateStream.unsubscribe();
+            subscribed = false;
+        }
     }
 
     private void filterTrains() {
         // 使用从服务器获取并存储在客户端的数据
         String searchText = searchField.getText().toLowerCase();
+        filteredVersion = TrainStateStream.getClientVersion();
         filteredTrains = ModDebuggerScreenHandler.getClientTrainsInfo().stream()
                 .filter(train -> searchText.isEmpty() || 
                         train.trainId.toLowerCase().contains(searchText) ||
@@ -129,9 +146,6 @@ public class ModDebuggerScreen extends Screen {
         
         // 记录日志
         LogSystem.debug("调试命令已发送: " + command + " 目标: " + target + " 参数: " + params);
-        
-        // 刷新数据以显示最新状态
-        refreshData();
     }
 
     @Override
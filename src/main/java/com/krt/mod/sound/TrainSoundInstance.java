@@ -0,0 +1,81 @@
+package com.krt.mod.sound;
+
+import com.krt.mod.entity.TrainEntity;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.client.sound.MovingSoundInstance;
+import net.minecraft.client.sound.SoundInstance;
+import net.minecraft.sound.SoundCategory;
+
+/**
+ * 列车走行音（客户端循环播放）
+ * 跟随列车位置，音量和音高按同步的车速每tick平滑变化；停车时静音但不结束，
+ * 被 TrainSoundManager 剔除或列车移除时淡出后结束。
+ */
+@Environment(EnvType.CLIENT)
+public class TrainSoundInstance extends MovingSoundInstance {
+    // 低于该速度视为停车
+    private static final float MIN_SPEED = 0.1F;
+    // 每tick音量最大变化量
+    private static final float VOLUME_STEP = 0.05F;
+
+    private final TrainEntity train;
+    private boolean fadingOut;
+
+    public TrainSoundInstance(TrainEntity train) {
+        super(ModSounds.TRAIN_MOVING_SOUND, SoundCategory.NEUTRAL, SoundInstance.createRandom());
+        this.train = train;
+        this.repeat = true;
+        this.repeatDelay = 0;
+        this.volume = 0.0F;
+        this.x = train.getX();
+        this.y = train.getY();
+        this.z = train.getZ();
+    }
+
+    public TrainEntity getTrain() {
+        return train;
+    }
+
+    // 设为淡出时音量降到0后结束；结束前可以取消淡出
+    public void setFadingOut(boolean fadingOut) {
+        this.fadingOut = fadingOut;
+    }
+
+    @Override
+    public boolean shouldAlwaysPlay() {
+        return true;
+    }
+
+    @Override
+    public boolean canPlay() {
+        return !this.train.isSilent();
+    }
+
+    @Override
+    public void tick() {
+        if (this.train.isRemoved()) {
+            this.setDone();
+            return;
+        }
+        this.x = this.train.getX();
+        this.y = this.train.getY();
+        this.z = this.train.getZ();
+
+        float speed = this.train.getCurrentSpeed();
+        float targetVolume = 0.0F;
+        if (!this.fadingOut && speed > MIN_SPEED) {
+            // 与原服务端播放的音量、音高一致
+            targetVolume = Math.min(0.5F + speed / 200.0F, 1.0F);
+            this.pitch = 0.8F + speed / 400.0F;
+        }
+        if (this.volume < targetVolume) {
+            this.volume = Math.min(targetVolume, this.volume + VOLUME_STEP);
+        } else {
+            this.volume = Math.max(targetVolume, this.volume - VOLUME_STEP);
+        }
+        if (this.fadingOut && this.volume <= 0.0F) {
+            this.setDone();
+        }
+    }
+}
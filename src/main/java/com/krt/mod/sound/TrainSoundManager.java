@@ -0,0 +1,80 @@
+package com.krt.mod.sound;
+
+import com.krt.mod.entity.TrainEntity;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.*;
+
+/**
+ * 列车走行音管理（客户端）
+ * 走行音不再由服务端每tick发送，而是在客户端为附近的列车各创建一个循环播放的声音，
+ * 音量和音高跟随同步的车速。同时播放的数量有上限，只保留离玩家最近的列车，超出距离的淡出。
+ * 制动、紧急制动等声音仍由服务端作为单次事件播放。
+ */
+@Environment(EnvType.CLIENT)
+public class TrainSoundManager {
+    // 同时播放走行音的列车数上限
+    private static final int MAX_SOUNDS = 6;
+    // 超过该距离的列车不播放走行音（方块）
+    private static final double CULL_DISTANCE = 64.0;
+    // 每隔多少tick重新选择播放的列车
+    private static final int SELECT_INTERVAL = 10;
+
+    private static final Map<Integer, TrainSoundInstance> playing = new HashMap<>();
+    private static int tickCounter;
+
+    // 注册客户端tick处理
+    public static void registerClient() {
+        ClientTickEvents.END_CLIENT_TICK.register(TrainSoundManager::tick);
+    }
+
+    private static void tick(MinecraftClient client) {
+        // 离开世界时声音系统会停止所有声音
+        if (client.world == null || client.player == null) {
+            playing.clear();
+            return;
+        }
+        if (++tickCounter % SELECT_INTERVAL != 0) {
+            return;
+        }
+        // 去掉已结束或被声音系统停止的声音，之后可以重新播放
+        playing.values().removeIf(sound -> sound.isDone() || !client.getSoundManager().isPlaying(sound));
+
+        // 选出距离内最近的若干列车
+        Vec3d listener = client.player.getPos();
+        List<TrainEntity> trains = client.world.getEntitiesByClass(TrainEntity.class,
+                new Box(listener, listener).expand(CULL_DISTANCE),
+                train -> train.squaredDistanceTo(listener) <= CULL_DISTANCE * CULL_DISTANCE);
+        trains.sort(Comparator.comparingDouble(train -> train.squaredDistanceTo(listener)));
+        Set<Integer> selected = new HashSet<>();
+        for (int i = 0; i < trains.size() && i < MAX_SOUNDS; i++) {
+            selected.add(trains.get(i).getId());
+        }
+
+        // 不再入选的淡出，新入选的开始播放
+        for (Map.Entry<Integer, TrainSoundInstance> entry : playing.entrySet()) {
+            if (!selected.contains(entry.getKey())) {
+                entry.getValue().setFadingOut(true);
+            }
+        }
+        for (int i = 0; i < trains.size() && i < MAX_SOUNDS; i++) {
+            TrainEntity train = trains.get(i);
+            TrainSoundInstance current = playing.get(train.getId());
+            if (current != null && current.getTrain() == train) {
+                current.setFadingOut(false);
+                continue;
+            }
+            if (current != null) {
+                current.setFadingOut(true);
+            }
+            TrainSoundInstance sound = new TrainSoundInstance(train);
+            playing.put(train.getId(), sound);
+            client.getSoundManager().play(sound);
+        }
+    }
+}
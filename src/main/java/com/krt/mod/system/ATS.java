@@ -1,5 +1,8 @@
 package com.krt.mod.system;
 
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.world.World;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
@@ -28,14 +31,40 @@ public class ATS {
     private final Map<String, SwitchInfo> switchInfos = new HashMap<>();
     private final Map<String, DrivingRecord> drivingRecords = new ConcurrentHashMap<>();
     private final Map<String, DrivingAction> currentRecordings = new ConcurrentHashMap<>();
+    // 尚未办理成功的进路请求：列车ID -> 请求，每次更新时重试
+    private final Map<String, RouteRequest> routeRequests = new LinkedHashMap<>();
     private boolean centralMode = true; // 中央控制模式
+    // 信号运行状态日志，记录控制模式和时刻表
+    private final SignallingJournal journal;
 
     private ATS(World world) {
         this.world = world;
         this.trackSectionManager = TrackSectionManager.getInstance(world);
+        this.journal = SignallingJournal.getInstance(world);
+        restoreFromJournal();
         initialize();
     }
 
+    /**
+     * 从信号状态日志恢复控制模式和时刻表
+     */
+    private void restoreFromJournal() {
+        NbtCompound mode = journal.getEntries(SignallingJournal.ATS_STATE).get("controlMode");
+        if (mode != null) {
+            centralMode = mode.getBoolean("central");
+        }
+        for (Map.Entry<String, NbtCompound> entry : journal.getEntries(SignallingJournal.ATS_SCHEDULES).entrySet()) {
+            NbtCompound nbt = entry.getValue();
+            List<ScheduleItem> items = new ArrayList<>();
+            NbtList itemList = nbt.getList("items", NbtElement.COMPOUND_TYPE);
+            for (int i = 0; i < itemList.size(); i++) {
+                NbtCompound item = itemList.getCompound(i);
+                items.add(new ScheduleItem(item.getString("stationId"), item.getLong("arrivalTime"), item.getLong("departureTime")));
+            }
+            schedules.put(entry.getKey(), new TrainSchedule(entry.getKey(), nbt.getString("lineId"), items));
+        }
+    }
+
     /**
      * 获取实例（单例模式）
      */
@@ -317,7 +346,11 @@ public class ATS {
      * 检查区段是否有活跃的进路请求
      */
     private boolean hasActiveRouteRequestForSection(String sectionId) {
-        // TODO: 实现进路请求检查逻辑
+        for (RouteRequest request : routeRequests.values()) {
+            if (request.getSectionIds().contains(sectionId)) {
+                return true;
+            }
+        }
         return false;
     }
 
@@ -418,7 +451,81 @@ public class ATS {
      * 生成进路控制命令
      */
     private void generateRouteCommands() {
-        // TODO: 实现进路生成逻辑
+        Iterator<RouteRequest> iterator = routeRequests.values().iterator();
+        while (iterator.hasNext()) {
+            RouteRequest request = iterator.next();
+            InterlockingSystem.RouteResult result = tryRouteRequest(request);
+            if (!isRetryable(result)) {
+                iterator.remove();
+                LogSystem.systemLog("ATS进路办理: " + request.getRouteId() + " (列车: " + request.getTrainId() + ") " + result.getDisplayName());
+            }
+        }
+    }
+
+    /**
+     * 为列车请求从起始区间到终点区间的进路
+     * 按闭塞区间的当前最短可用进路登记联锁进路并办理；因敌对进路、区间占用或道岔暂时无法办理时
+     * 保留请求，在每次更新时重试
+     * @throws IllegalArgumentException trainId为null时
+     */
+    public InterlockingSystem.RouteResult requestRoute(String trainId, String fromSectionId, String toSectionId) {
+        if (trainId == null) {
+            throw new IllegalArgumentException("Route request from " + fromSectionId + " without a train id");
+        }
+        RouteRequest request = new RouteRequest(trainId, fromSectionId, toSectionId);
+        InterlockingSystem.RouteResult result = tryRouteRequest(request);
+        if (isRetryable(result)) {
+            routeRequests.put(trainId, request);
+            LogSystem.atsWarning("进路 " + request.getRouteId() + " 暂时无法办理（" + result.getDisplayName() + "），等待重试");
+        } else {
+            routeRequests.remove(trainId);
+        }
+        return result;
+    }
+
+    /**
+     * 取消列车的进路请求，并取消该列车已办理的进路
+     */
+    public void cancelRouteRequest(String trainId) {
+        routeRequests.remove(trainId);
+        InterlockingSystem.getInstance(world).releaseRoutesForTrain(trainId);
+    }
+
+    // 搜索进路并交给联锁系统办理
+    private InterlockingSystem.RouteResult tryRouteRequest(RouteRequest request) {
+        InterlockingSystem interlocking = InterlockingSystem.getInstance(world);
+        String routeId = request.getRouteId();
+        if (interlocking.isRouteSet(routeId)) {
+            return request.getTrainId().equals(interlocking.getRouteTrain(routeId))
+                ? InterlockingSystem.RouteResult.ALREADY_SET : InterlockingSystem.RouteResult.CONFLICT;
+        }
+
+        BlockSectionManagement sectionManagement = BlockSectionManagement.getInstance(world);
+        SectionRouter.Route route = sectionManagement.findShortestRoute(request.getFromSectionId(), request.getToSectionId(), request.getTrainId());
+        if (route == null) {
+            // 起终点区间存在但没有可用进路时，说明区间暂时被占用
+            boolean known = sectionManagement.getBlockSection(request.getFromSectionId()) != null
+                && sectionManagement.getBlockSection(request.getToSectionId()) != null;
+            return known ? InterlockingSystem.RouteResult.SECTION_UNAVAILABLE : InterlockingSystem.RouteResult.UNKNOWN_ROUTE;
+        }
+
+        List<String> sectionIds = new ArrayList<>();
+        for (BlockSectionManagement.BlockSection section : route.getSections()) {
+            sectionIds.add(section.getId());
+        }
+        // 进路经过的区间变化时重新登记（未办理的同名进路直接替换）
+        if (!sectionIds.equals(request.getSectionIds()) || !interlocking.isRouteRegistered(routeId)) {
+            interlocking.registerRoute(routeId, null, Collections.emptyMap(), sectionIds, Collections.emptyList());
+            request.setSectionIds(sectionIds);
+        }
+        return interlocking.setRoute(routeId, request.getTrainId());
+    }
+
+    // 敌对进路、区间占用和道岔不可用都是暂时的，可以重试
+    private static boolean isRetryable(InterlockingSystem.RouteResult result) {
+        return result == InterlockingSystem.RouteResult.CONFLICT
+            || result == InterlockingSystem.RouteResult.SECTION_UNAVAILABLE
+            || result == InterlockingSystem.RouteResult.SWITCH_UNAVAILABLE;
     }
 
     /**
@@ -427,6 +534,19 @@ public class ATS {
     public void createSchedule(String scheduleId, String lineId, List<ScheduleItem> items) {
         TrainSchedule schedule = new TrainSchedule(scheduleId, lineId, items);
         schedules.put(scheduleId, schedule);
+
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("lineId", lineId);
+        NbtList itemList = new NbtList();
+        for (ScheduleItem item : items) {
+            NbtCompound itemNbt = new NbtCompound();
+            itemNbt.putString("stationId", item.getStationId());
+            itemNbt.putLong("arrivalTime", item.getArrivalTime());
+            itemNbt.putLong("departureTime", item.getDepartureTime());
+            itemList.add(itemNbt);
+        }
+        nbt.put("items", itemList);
+        journal.put(SignallingJournal.ATS_SCHEDULES, scheduleId, nbt);
         LogSystem.systemLog("创建列车时刻表: " + scheduleId + " (线路: " + lineId + ")");
     }
 
@@ -435,6 +555,9 @@ public class ATS {
      */
     public void setControlMode(boolean centralMode) {
         this.centralMode = centralMode;
+        NbtCompound nbt = new NbtCompound();
+        nbt.putBoolean("central", centralMode);
+        journal.put(SignallingJournal.ATS_STATE, "controlMode", nbt);
         String mode = centralMode ? "中央控制" : "车站控制";
         LogSystem.systemLog("ATS系统切换至" + mode + "模式");
     }
@@ -524,6 +647,30 @@ public class ATS {
         public void setControlledSection(String controlledSection) { this.controlledSection = controlledSection; }
     }
 
+    /**
+     * 进路请求类
+     */
+    public static class RouteRequest {
+        private final String trainId;
+        private final String fromSectionId;
+        private final String toSectionId;
+        private List<String> sectionIds = Collections.emptyList();
+
+        public RouteRequest(String trainId, String fromSectionId, String toSectionId) {
+            this.trainId = trainId;
+            this.fromSectionId = fromSectionId;
+            this.toSectionId = toSectionId;
+        }
+
+        // 同一起终点的请求使用同一条联锁进路
+        public String getRouteId() { return "ats:" + fromSectionId + ">" + toSectionId; }
+        public String getTrainId() { return trainId; }
+        public String getFromSectionId() { return fromSectionId; }
+        public String getToSectionId() { return toSectionId; }
+        public List<String> getSectionIds() { return sectionIds; }
+        public void setSectionIds(List<String> sectionIds) { this.sectionIds = sectionIds; }
+    }
+
     /**
      * 道岔信息类
      */
@@ -0,0 +1,238 @@
+package com.krt.mod.system;
+
+import java.util.*;
+
+/**
+ * 运行调整历史存储
+ * 以列式环形缓冲区保存最近的调整记录（时间戳、对象、类型、调整前后数值均为原始类型数组），
+ * 所有记录同时累计到按小时的汇总中。缓冲区和汇总容量固定，内存占用不随运行时间增长。
+ */
+public class AdjustmentHistoryStore {
+    // 每小时的游戏刻数
+    public static final long TICKS_PER_HOUR = 72000;
+
+    private final int capacity;
+    private final String[] typeNames;
+
+    // 明细列
+    private final long[] timestamps;
+    private final int[] subjects;
+    private final byte[] types;
+    private final double[] originalValues;
+    private final double[] newValues;
+    private final float[] flowRates;
+    // 同一对象的上一条记录序号，用于按对象查询时跳链
+    private final long[] previousOfSubject;
+
+    // 下一条记录的序号；有效序号范围为 [nextSeq - size, nextSeq)
+    private long nextSeq = 0;
+    private int size = 0;
+
+    // 对象ID（线路/列车）与整数句柄的映射
+    private final Map<String, Integer> subjectHandles = new HashMap<>();
+    private final List<String> subjectIds = new ArrayList<>();
+    private final List<Long> lastSeqOfSubject = new ArrayList<>();
+
+    // 按小时汇总（环形）
+    private final int hoursKept;
+    private final long[] aggregateHours;
+    private final int[][] aggregateCounts;
+    private final double[][] aggregateMagnitudes;
+
+    public AdjustmentHistoryStore(int capacity, int hoursKept, String[] typeNames) {
+        if (typeNames.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many adjustment types: " + typeNames.length);
+        }
+        this.capacity = capacity;
+        this.typeNames = typeNames.clone();
+        this.timestamps = new long[capacity];
+        this.subjects = new int[capacity];
+        this.types = new byte[capacity];
+        this.originalValues = new double[capacity];
+        this.newValues = new double[capacity];
+        this.flowRates = new float[capacity];
+        this.previousOfSubject = new long[capacity];
+
+        this.hoursKept = hoursKept;
+        this.aggregateHours = new long[hoursKept];
+        Arrays.fill(aggregateHours, -1);
+        this.aggregateCounts = new int[hoursKept][typeNames.length];
+        this.aggregateMagnitudes = new double[hoursKept][typeNames.length];
+    }
+
+    // 记录一次调整，时间戳应单调不减
+    public synchronized void record(long timestamp, String subjectId, int type, double originalValue,
+                                    double newValue, double flowRate) {
+        int subject = subjectHandles.computeIfAbsent(subjectId, id -> {
+            subjectIds.add(id);
+            lastSeqOfSubject.add(-1L);
+            return subjectIds.size() - 1;
+        });
+
+        int slot = (int) (nextSeq % capacity);
+        timestamps[slot] = timestamp;
+        subjects[slot] = subject;
+        types[slot] = (byte) type;
+        originalValues[slot] = originalValue;
+        newValues[slot] = newValue;
+        flowRates[slot] = (float) flowRate;
+        previousOfSubject[slot] = lastSeqOfSubject.get(subject);
+        lastSeqOfSubject.set(subject, nextSeq);
+        nextSeq++;
+        if (size < capacity) {
+            size++;
+        }
+
+        // 累计到小时汇总，过旧的小时桶被新小时覆盖
+        long hour = Math.floorDiv(timestamp, TICKS_PER_HOUR);
+        int bucket = (int) Math.floorMod(hour, (long) hoursKept);
+        if (aggregateHours[bucket] != hour) {
+            if (aggregateHours[bucket] > hour) {
+                return;
+            }
+            aggregateHours[bucket] = hour;
+            Arrays.fill(aggregateCounts[bucket], 0);
+            Arrays.fill(aggregateMagnitudes[bucket], 0);
+        }
+        aggregateCounts[bucket][type]++;
+        aggregateMagnitudes[bucket][type] += Math.abs(newValue - originalValue);
+    }
+
+    // 获取时间窗口 [fromTick, toTick] 内的明细记录（按时间升序）
+    public synchronized List<Record> getRecordsInWindow(long fromTick, long toTick) {
+        List<Record> result = new ArrayList<>();
+        for (long seq = lowerBound(fromTick); seq < nextSeq; seq++) {
+            int slot = (int) (seq % capacity);
+            if (timestamps[slot] > toTick) {
+                break;
+            }
+            result.add(toRecord(slot));
+        }
+        return result;
+    }
+
+    // 统计时间窗口内的调整次数
+    public synchronized int countInWindow(long fromTick, long toTick) {
+        return (int) (lowerBound(toTick + 1) - lowerBound(fromTick));
+    }
+
+    // 获取指定对象最近的调整记录（按时间倒序）
+    public synchronized List<Record> getRecentRecords(String subjectId, int limit) {
+        Integer subject = subjectHandles.get(subjectId);
+        if (subject == null) {
+            return Collections.emptyList();
+        }
+        List<Record> result = new ArrayList<>();
+        long oldest = nextSeq - size;
+        for (long seq = lastSeqOfSubject.get(subject); seq >= oldest && result.size() < limit;
+             seq = previousOfSubject[(int) (seq % capacity)]) {
+            result.add(toRecord((int) (seq % capacity)));
+        }
+        return result;
+    }
+
+    // 获取按小时汇总的调整统计（按小时升序）
+    public synchronized List<HourlyAggregate> getHourlyAggregates() {
+        List<HourlyAggregate> result = new ArrayList<>();
+        for (int bucket = 0; bucket < hoursKept; bucket++) {
+            if (aggregateHours[bucket] >= 0) {
+                result.add(new HourlyAggregate(aggregateHours[bucket], aggregateCounts[bucket].clone(),
+                        aggregateMagnitudes[bucket].clone()));
+            }
+        }
+        result.sort(Comparator.comparingLong(HourlyAggregate::getHour));
+        return result;
+    }
+
+    // 获取当前保存的明细记录数
+    public synchronized int size() {
+        return size;
+    }
+
+    public String getTypeName(int type) {
+        return typeNames[type];
+    }
+
+    // 二分查找第一条时间戳不小于tick的记录序号
+    private long lowerBound(long tick) {
+        long low = nextSeq - size;
+        long high = nextSeq;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (timestamps[(int) (mid % capacity)] < tick) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Record toRecord(int slot) {
+        return new Record(timestamps[slot], subjectIds.get(subjects[slot]), typeNames[types[slot]],
+                originalValues[slot], newValues[slot], flowRates[slot]);
+    }
+
+    /**
+     * 调整记录（查询时生成）
+     */
+    public static class Record {
+        private final long timestamp;
+        private final String subjectId;
+        private final String type;
+        private final double originalValue;
+        private final double newValue;
+        private final double flowRate;
+
+        Record(long timestamp, String subjectId, String type, double originalValue, double newValue, double flowRate) {
+            this.timestamp = timestamp;
+            this.subjectId = subjectId;
+            this.type = type;
+            this.originalValue = originalValue;
+            this.newValue = newValue;
+            this.flowRate = flowRate;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public String getSubjectId() { return subjectId; }
+        public String getType() { return type; }
+        public double getOriginalValue() { return originalValue; }
+        public double getNewValue() { return newValue; }
+        public double getFlowRate() { return flowRate; }
+    }
+
+    /**
+     * 每小时汇总
+     */
+    public class HourlyAggregate {
+        private final long hour;
+        private final int[] counts;
+        private final double[] magnitudes;
+
+        HourlyAggregate(long hour, int[] counts, double[] magnitudes) {
+            this.hour = hour;
+            this.counts = counts;
+            this.magnitudes = magnitudes;
+        }
+
+        // 小时序号（游戏刻 / TICKS_PER_HOUR）
+        public long getHour() { return hour; }
+
+        public int getCount(int type) { return counts[type]; }
+
+        // 该小时内该类型调整幅度之和
+        public double getMagnitude(int type) { return magnitudes[type]; }
+
+        public int getTotalCount() {
+            int total = 0;
+            for (int count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public String getTypeName(int type) { return typeNames[type]; }
+
+        public int getTypeCount() { return counts.length; }
+    }
+}
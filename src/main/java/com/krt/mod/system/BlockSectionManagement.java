@@ -48,6 +48,15 @@ public class BlockSectionManagement {
     // 原子时间戳，用于移动闭塞更新
     private final AtomicLong lastMobileBlockUpdateTime = new AtomicLong(0);
     
+    // 区间拓扑版本，区间或连接关系变化时递增，用于使进路缓存失效
+    private final AtomicLong topologyVersion = new AtomicLong(0);
+    
+    // 备选进路数量
+    private static final int DEFAULT_ALTERNATIVE_PATHS = 3;
+    
+    // 进路搜索器
+    private final SectionRouter router = new SectionRouter(this);
+    
     private BlockSectionManagement(World world) {
         this.world = world;
     }
@@ -59,10 +68,12 @@ public class BlockSectionManagement {
     // 创建闭塞区间
     public void createBlockSection(String lineId, String sectionId, BlockPos startPos, BlockPos endPos) {
         BlockSection section = new BlockSection(sectionId, lineId, startPos, endPos);
+        section.owner = this;
         blockSections.put(sectionId, section);
         
         // 添加到线路映射
         lineToBlockSections.computeIfAbsent(lineId, k -> new ArrayList<>()).add(sectionId);
+        topologyVersion.incrementAndGet();
         
         KRTMod.LOGGER.info("Created block section: {}", sectionId);
     }
@@ -76,9 +87,14 @@ public class BlockSectionManagement {
         // 清除旧的闭塞区间
         if (lineToBlockSections.containsKey(lineId)) {
             for (String sectionId : lineToBlockSections.get(lineId)) {
-                blockSections.remove(sectionId);
+                BlockSection removed = blockSections.remove(sectionId);
+                if (removed != null) {
+                    removed.owner = null;
+                }
+                blockSectionConnections.remove(sectionId);
             }
             lineToBlockSections.remove(lineId);
+            topologyVersion.incrementAndGet();
         }
         
         // 生成新的闭塞区间
@@ -328,6 +344,7 @@ public class BlockSectionManagement {
     // 添加闭塞区间连接关系
     public void addBlockSectionConnection(String fromSectionId, String toSectionId) {
         blockSectionConnections.computeIfAbsent(fromSectionId, k -> new ArrayList<>()).add(toSectionId);
+        topologyVersion.incrementAndGet();
     }
     
     // 获取闭塞区间的下一区间
@@ -347,46 +364,46 @@ public class BlockSectionManagement {
     
     // 获取可用的闭塞区间路径
     public List<List<BlockSection>> findAvailablePaths(String startSectionId, String endSectionId, TrainEntity train) {
+        return findAvailablePaths(startSectionId, endSectionId, train.getUuidAsString());
+    }
+    
+    // 获取可用的闭塞区间路径（按列车ID），按运行时间升序返回最短路径及备选路径
+    public List<List<BlockSection>> findAvailablePaths(String startSectionId, String endSectionId, String trainId) {
         List<List<BlockSection>> paths = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
-        List<BlockSection> currentPath = new ArrayList<>();
-        
-        BlockSection startSection = getBlockSection(startSectionId);
-        if (startSection != null) {
-            dfsFindPath(startSection, endSectionId, visited, currentPath, paths, train);
+        for (SectionRouter.Route route : router.findRoutes(startSectionId, endSectionId, trainId, DEFAULT_ALTERNATIVE_PATHS)) {
+            paths.add(new ArrayList<>(route.getSections()));
         }
-        
         return paths;
     }
     
-    // 深度优先搜索查找路径
-    private void dfsFindPath(BlockSection currentSection, String endSectionId, Set<String> visited, 
-                           List<BlockSection> currentPath, List<List<BlockSection>> paths, TrainEntity train) {
-        if (visited.contains(currentSection.getId())) {
-            return;
-        }
-        
-        // 检查当前区间是否可用
-        if (currentSection.isOccupied() || currentSection.isReservedByOtherTrain(train.getUuidAsString())) {
-            return;
-        }
-        
-        visited.add(currentSection.getId());
-        currentPath.add(currentSection);
-        
-        // 找到终点
-        if (currentSection.getId().equals(endSectionId)) {
-            paths.add(new ArrayList<>(currentPath));
-        } else {
-            // 继续搜索下一区间
-            for (BlockSection nextSection : getNextBlockSections(currentSection.getId())) {
-                dfsFindPath(nextSection, endSectionId, visited, currentPath, paths, train);
-            }
-        }
-        
-        // 回溯
-        currentPath.remove(currentPath.size() - 1);
-        visited.remove(currentSection.getId());
+    // 获取最短可用进路
+    public SectionRouter.Route findShortestRoute(String startSectionId, String endSectionId, String trainId) {
+        return router.findShortestRoute(startSectionId, endSectionId, trainId);
+    }
+    
+    // 获取进路搜索器
+    SectionRouter getRouter() {
+        return router;
+    }
+    
+    // 使进路缓存失效（区间限速变化时由区间自动调用）
+    public void invalidateRoutes() {
+        topologyVersion.incrementAndGet();
+    }
+    
+    // 获取区间拓扑版本
+    long getTopologyVersion() {
+        return topologyVersion.get();
+    }
+    
+    // 供进路搜索器读取的区间视图
+    Map<String, BlockSection> getBlockSectionsView() {
+        return Collections.unmodifiableMap(blockSections);
+    }
+    
+    // 供进路搜索器读取的连接关系视图
+    Map<String, List<String>> getConnectionsView() {
+        return Collections.unmodifiableMap(blockSectionConnections);
     }
     
     // 获取区间之间的最小安全间隔时间
@@ -480,6 +497,9 @@ public class BlockSectionManagement {
         private double speedLimit = 80.0;         // 速度限制（m/s）
         private int trackNumber = 1;              // 股道号
         
+        // 所属的闭塞区间管理，限速变化时使其进路缓存失效
+        private BlockSectionManagement owner;
+        
         public BlockSection(String id, String lineId, BlockPos startPos, BlockPos endPos) {
             this.id = id;
             this.lineId = lineId;
@@ -691,7 +711,14 @@ public class BlockSectionManagement {
         }
         
         public void setSpeedLimit(double speedLimit) {
+            if (this.speedLimit == speedLimit) {
+                return;
+            }
             this.speedLimit = speedLimit;
+            // 限速决定进路权重（通过时间），缓存的进路需要重新计算
+            if (owner != null) {
+                owner.invalidateRoutes();
+            }
         }
         
         public void setTrackNumber(int trackNumber) {
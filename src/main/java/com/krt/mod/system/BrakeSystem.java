@@ -141,7 +141,10 @@ public class BrakeSystem {
         // 通过牵引系统进行能量回收
         if (tractionSystem != null && tractionSystem.isPowerRegenerationEnabled()) {
             double recoveredEnergy = tractionSystem.regenerateEnergy(brakeForce);
-            // 可以在这里添加能量回收的处理逻辑
+            // 回收功率（制动力 × 速度）交由编组上报供电区段结算
+            if (car.getConsist() != null) {
+                car.getConsist().addRegeneratedPower(recoveredEnergy * car.getSpeed());
+            }
         }
         
         // 应用制动力
@@ -150,6 +153,17 @@ public class BrakeSystem {
         status = BrakeStatus.APPLIED;
     }
     
+    /**
+     * 估算常用制动中电制动部分的回收功率（瓦），制动力本身仍由常用制动施加
+     */
+    public double estimateRegenerativePower(double level, TractionSystem tractionSystem) {
+        if (status == BrakeStatus.ERROR || tractionSystem == null || !tractionSystem.isPowerRegenerationEnabled()) {
+            return 0;
+        }
+        double electricForce = calculateBrakeForce(Math.max(0.0, Math.min(1.0, level)), BrakeType.REGENERATIVE_BRAKE);
+        return tractionSystem.regenerateEnergy(electricForce) * car.getSpeed();
+    }
+    
     /**
      * 释放所有制动
      */
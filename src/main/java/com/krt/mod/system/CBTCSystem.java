@@ -5,6 +5,7 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
@@ -49,9 +50,15 @@ public class CBTCSystem {
     // 警报系统管理
     private final ConcurrentHashMap<String, List<AlertInfo>> activeAlerts = new ConcurrentHashMap<>(); // 按列车ID分组的活跃警报
     private final ConcurrentHashMap<String, TemporarySpeedLimit> temporarySpeedLimits = new ConcurrentHashMap<>(); // 临时限速信息
+    private final ConcurrentHashMap<String, TickScheduler.TimerHandle> speedLimitExpiryTimers = new ConcurrentHashMap<>(); // 临时限速到期移除任务
     private final ExecutorService alertProcessingPool = Executors.newFixedThreadPool(2); // 警报处理线程池
+    // 信号运行状态日志（警报和临时限速的持久化）
+    private final SignallingJournal journal;
     // 供电系统引用
     private final PowerSupplySystem powerSupplySystem;
+    // 上次处理的供电状态，只在状态变化或电力网络通断时执行停车/限速/恢复
+    private volatile PowerSupplySystem.PowerStatus lastPowerStatus = null;
+    private volatile boolean powerNetworkChanged = false;
     
     // 线程池配置
     private final ExecutorService computationThreadPool;
@@ -76,7 +83,12 @@ public class CBTCSystem {
     
     private CBTCSystem(World world) {
         this.world = world;
-        this.powerSupplySystem = VehicleSystemInitializer.getPowerSupplySystem();
+        this.powerSupplySystem = PowerSupplySystemManager.getForWorld(world);
+        // 电力网络分量通断时重新评估供电状态
+        PowerNetwork.getInstance(world).addListener(event -> {
+            LogSystem.debug("CBTC系统收到电力网络变化: " + event);
+            powerNetworkChanged = true;
+        });
         initializeSections();
         
         // 初始化线程池 - 根据处理器核心数动态调整
@@ -102,10 +114,81 @@ public class CBTCSystem {
             return thread;
         });
         
+        // 从信号状态日志恢复警报和临时限速
+        this.journal = SignallingJournal.getInstance(world);
+        restoreFromJournal();
+        
         // 启动异步处理
         startAsyncProcessing();
     }
     
+    /**
+     * 从信号状态日志恢复活跃警报和临时限速
+     * 关闭时尚未处理完的警报重新提交处理，已过期的临时限速直接丢弃
+     */
+    private void restoreFromJournal() {
+        for (Map.Entry<String, NbtCompound> entry : journal.getEntries(SignallingJournal.ALERTS).entrySet()) {
+            NbtCompound nbt = entry.getValue();
+            AlertType type;
+            try {
+                type = AlertType.valueOf(nbt.getString("type"));
+            } catch (IllegalArgumentException e) {
+                journal.remove(SignallingJournal.ALERTS, entry.getKey());
+                continue;
+            }
+            Map<String, Object> additionalInfo = new HashMap<>();
+            NbtCompound info = nbt.getCompound("info");
+            for (String key : info.getKeys()) {
+                additionalInfo.put(key, info.getString(key));
+            }
+            AlertInfo alert = new AlertInfo(entry.getKey(), nbt.getString("trainId"), type, nbt.getString("message"),
+                    additionalInfo, nbt.getLong("timestamp"));
+            activeAlerts.computeIfAbsent(alert.getTrainId(), k -> new CopyOnWriteArrayList<>()).add(alert);
+            if (nbt.getBoolean("pending")) {
+                journal.put(SignallingJournal.ALERTS, alert.getAlertId(), alertToNbt(alert, false));
+                alertProcessingPool.execute(new AlertTask(alert));
+            }
+        }
+        
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, NbtCompound> entry : journal.getEntries(SignallingJournal.SPEED_LIMITS).entrySet()) {
+            NbtCompound nbt = entry.getValue();
+            long endTime = nbt.getLong("endTime");
+            if (endTime <= now) {
+                journal.remove(SignallingJournal.SPEED_LIMITS, entry.getKey());
+                continue;
+            }
+            TemporarySpeedLimit limit = new TemporarySpeedLimit(entry.getKey(),
+                    new Vec3d(nbt.getDouble("startX"), nbt.getDouble("startY"), nbt.getDouble("startZ")),
+                    new Vec3d(nbt.getDouble("endX"), nbt.getDouble("endY"), nbt.getDouble("endZ")),
+                    nbt.getDouble("speedLimit"), nbt.getLong("startTime"), endTime,
+                    nbt.getString("reason"), nbt.getString("operator"));
+            registerTemporarySpeedLimit(limit);
+        }
+        
+        if (!activeAlerts.isEmpty() || !temporarySpeedLimits.isEmpty()) {
+            LogSystem.systemLog("CBTC系统已恢复 " + activeAlerts.values().stream().mapToInt(List::size).sum()
+                    + " 条活跃警报和 " + temporarySpeedLimits.size() + " 条临时限速");
+        }
+    }
+    
+    private NbtCompound alertToNbt(AlertInfo alert, boolean pending) {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("trainId", alert.getTrainId());
+        nbt.putString("type", alert.getType().name());
+        nbt.putString("message", alert.getMessage());
+        nbt.putLong("timestamp", alert.getTimestamp());
+        NbtCompound info = new NbtCompound();
+        for (Map.Entry<String, Object> entry : alert.getAdditionalInfo().entrySet()) {
+            info.putString(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        nbt.put("info", info);
+        if (pending) {
+            nbt.putBoolean("pending", true);
+        }
+        return nbt;
+    }
+    
     // 启动异步处理
     private void startAsyncProcessing() {
         // 使用scheduleWithFixedDelay代替scheduleAtFixedRate，确保前一个任务完成后再执行下一个任务
@@ -201,21 +284,32 @@ public class CBTCSystem {
     
     /**
      * 保存未完成的警报任务，以便系统重启后恢复处理
+     * 警报在触发时已写入信号状态日志，这里把尚未处理的警报标记为待处理，重启恢复后重新提交
      */
     private void savePendingAlerts(List<Runnable> pendingAlerts) {
-        // 实际实现可能需要序列化任务信息并保存到文件
-        // 这里提供一个基础框架，需要根据具体任务类型进行扩展
-        Map<String, Object> pendingAlertsInfo = new HashMap<>();
-        pendingAlertsInfo.put("timestamp", System.currentTimeMillis());
-        pendingAlertsInfo.put("count", pendingAlerts.size());
-        pendingAlertsInfo.put("world", world.getRegistryKey().getValue().toString());
+        int saved = 0;
+        for (Runnable task : pendingAlerts) {
+            if (task instanceof AlertTask alertTask) {
+                journal.put(SignallingJournal.ALERTS, alertTask.alert.getAlertId(), alertToNbt(alertTask.alert, true));
+                saved++;
+            }
+        }
+        journal.flush();
+        LogSystem.log("已记录 " + saved + " 个待处理警报");
+    }
+    
+    // 警报处理任务，线程池关闭时可以从未执行的任务中取回警报
+    private class AlertTask implements Runnable {
+        private final AlertInfo alert;
         
-        // 记录任务类型统计信息（如果需要更详细的信息，需要对任务类型进行定制）
-        pendingAlertsInfo.put("task_types", pendingAlerts.stream()
-                .map(task -> task.getClass().getSimpleName())
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting())));
+        AlertTask(AlertInfo alert) {
+            this.alert = alert;
+        }
         
-        // TODO: 实现序列化保存到文件的逻辑
+        @Override
+        public void run() {
+            processAlert(alert);
+        }
     }
     
     public static CBTCSystem getInstance(World world) {
@@ -236,9 +330,10 @@ public class CBTCSystem {
         
         // 将警报添加到活跃警报列表
         activeAlerts.computeIfAbsent(trainId, k -> new CopyOnWriteArrayList<>()).add(alert);
+        journal.put(SignallingJournal.ALERTS, alertId, alertToNbt(alert, false));
         
         // 异步处理警报（发出声光提示、通知控制中心等）
-        alertProcessingPool.submit(() -> processAlert(alert));
+        alertProcessingPool.execute(new AlertTask(alert));
         
         LogSystem.logInfo("Alert triggered: " + alertId + " - " + alertType + " - " + alertMessage);
         return alertId;
@@ -408,6 +503,7 @@ public class CBTCSystem {
                     
                     // 从活跃警报列表中移除
                     alerts.remove(alert);
+                    journal.remove(SignallingJournal.ALERTS, alertId);
                     
                     // 如果该列车没有活跃警报了，从map中移除
                     if (alerts.isEmpty()) {
@@ -432,6 +528,7 @@ public class CBTCSystem {
             for (AlertInfo alert : alerts) {
                 alert.setStatus(AlertStatus.RESOLVED);
                 alert.setResolveTime(new Date());
+                journal.remove(SignallingJournal.ALERTS, alert.getAlertId());
             }
             LogSystem.logInfo("Resolved all alerts for train: " + trainId);
         }
@@ -633,17 +730,29 @@ public class CBTCSystem {
     private boolean checkPowerSupplyStatus() {
         if (powerSupplySystem != null) {
             PowerSupplySystem.PowerStatus status = powerSupplySystem.getSystemStatus();
+            boolean powerAvailable = status != PowerSupplySystem.PowerStatus.ERROR
+                    && status != PowerSupplySystem.PowerStatus.OUTAGE;
             
-            if (status == PowerSupplySystem.PowerStatus.ERROR || status == PowerSupplySystem.PowerStatus.OUTAGE) {
+            // 状态未变化且电力网络无通断时不重复处理
+            if (status == lastPowerStatus && !powerNetworkChanged) {
+                return powerAvailable;
+            }
+            PowerSupplySystem.PowerStatus previousStatus = lastPowerStatus;
+            lastPowerStatus = status;
+            powerNetworkChanged = false;
+            
+            if (!powerAvailable) {
                 LogSystem.warning("CBTC系统检测到供电异常: " + status.name());
                 // 供电异常时，将所有信号机设为红灯并触发紧急制动
                 emergencyStopAllTrains();
                 setAllSignalsToRed();
                 return false;
             } else if (status == PowerSupplySystem.PowerStatus.WARNING) {
-                LogSystem.warning("CBTC系统检测到供电警告: " + status.name());
-                // 供电警告时，限制列车速度
-                limitTrainSpeeds(0.5); // 降低到50%速度
+                if (previousStatus != PowerSupplySystem.PowerStatus.WARNING) {
+                    LogSystem.warning("CBTC系统检测到供电警告: " + status.name());
+                    // 供电警告时，限制列车速度
+                    limitTrainSpeeds(0.5); // 降低到50%速度
+                }
             } else if (status == PowerSupplySystem.PowerStatus.NORMAL) {
                 // 检查是否需要恢复正常运行
                 checkAndRestoreNormalOperation();
@@ -948,14 +1057,18 @@ public class CBTCSystem {
     // 移动闭塞算法：计算前方空闲区间
     private int calculateMobileBlockFreeSections(BlockPos signalPos) {
         Direction trackDir = getTrackDirection(signalPos);
+        return countMobileBlockFreeSections(signalPos, trackDir, mobileBlockMap.values());
+    }
+    
+    // 根据各列车的移动闭塞区域计算信号机前方空闲分区数（不访问世界，便于基准测试）
+    static int countMobileBlockFreeSections(BlockPos signalPos, Direction trackDir, Collection<MobileBlockInfo> blocks) {
         Vec3d signalVec = new Vec3d(signalPos.getX() + 0.5, signalPos.getY(), signalPos.getZ() + 0.5);
         
         // 模拟前方最大可检测距离（3个传统闭塞分区）
         double maxDetectionDistance = BLOCK_SECTION_LENGTH * 3;
         
         // 检查前方是否有列车的移动闭塞区域
-        for (Map.Entry<String, MobileBlockInfo> entry : mobileBlockMap.entrySet()) {
-            MobileBlockInfo blockInfo = entry.getValue();
+        for (MobileBlockInfo blockInfo : blocks) {
             if (blockInfo.isActive && blockInfo.frontPosition != null) {
                 Vec3d trainFrontVec = new Vec3d(blockInfo.frontPosition.getX() + 0.5, 
                                               blockInfo.frontPosition.getY(), 
@@ -1161,7 +1274,7 @@ public class CBTCSystem {
     }
     
     // 辅助方法：为主信号机确定显示状态
-    private SignalDisplay determineSignalDisplayForMain(int freeSections) {
+    static SignalDisplay determineSignalDisplayForMain(int freeSections) {
         if (freeSections >= 3) {
             return SignalDisplay.GREEN;
         } else if (freeSections == 2) {
@@ -1241,8 +1354,6 @@ public class CBTCSystem {
         }
         return false;
     }
-        }
-    }
     
     // 转换CBTC信号显示到SignalBlock状态
     private SignalBlock.SignalState convertToSignalBlockState(SignalDisplay display) {
@@ -2234,15 +2345,42 @@ public class CBTCSystem {
         String id = UUID.randomUUID().toString();
         TemporarySpeedLimit limit = new TemporarySpeedLimit(id, startPos, endPos, speedLimit, 
                                                          startTime, endTime, reason, operator);
-        temporarySpeedLimits.put(id, limit);
+        registerTemporarySpeedLimit(limit);
+        
+        NbtCompound nbt = new NbtCompound();
+        nbt.putDouble("startX", startPos.x);
+        nbt.putDouble("startY", startPos.y);
+        nbt.putDouble("startZ", startPos.z);
+        nbt.putDouble("endX", endPos.x);
+        nbt.putDouble("endY", endPos.y);
+        nbt.putDouble("endZ", endPos.z);
+        nbt.putDouble("speedLimit", speedLimit);
+        nbt.putLong("startTime", startTime);
+        nbt.putLong("endTime", endTime);
+        nbt.putString("reason", reason != null ? reason : "");
+        nbt.putString("operator", operator != null ? operator : "");
+        journal.put(SignallingJournal.SPEED_LIMITS, id, nbt);
         LogSystem.logInfo("添加临时限速: ID=" + id + ", 区间=" + startPos + "至" + endPos + ", 限速=" + speedLimit + "m/s");
     }
     
+    private void registerTemporarySpeedLimit(TemporarySpeedLimit limit) {
+        String id = limit.getId();
+        temporarySpeedLimits.put(id, limit);
+        // 到期后由时间轮移除，避免过期限速长期留在表中被逐个检查
+        speedLimitExpiryTimers.put(id, TickScheduler.getInstance(world).scheduleMillis(
+                Math.max(0, limit.getEndTime() - System.currentTimeMillis()), () -> removeTemporarySpeedLimit(id)));
+    }
+    
     /**
      * 移除临时限速
      */
     public void removeTemporarySpeedLimit(String id) {
+        TickScheduler.TimerHandle expiryTimer = speedLimitExpiryTimers.remove(id);
+        if (expiryTimer != null) {
+            expiryTimer.cancel();
+        }
         if (temporarySpeedLimits.remove(id) != null) {
+            journal.remove(SignallingJournal.SPEED_LIMITS, id);
             LogSystem.logInfo("移除临时限速: ID=" + id);
         }
     }
@@ -2267,13 +2405,22 @@ public class CBTCSystem {
         private Map<String, Object> additionalInfo;
         
         public AlertInfo(String trainId, AlertType type, String message) {
-            this.alertId = "ALERT-" + UUID.randomUUID().toString().substring(0, 8);
+            this("ALERT-" + UUID.randomUUID().toString().substring(0, 8), trainId, type, message, new HashMap<>());
+        }
+        
+        public AlertInfo(String alertId, String trainId, AlertType type, String message, Map<String, Object> additionalInfo) {
+            this(alertId, trainId, type, message, additionalInfo, System.currentTimeMillis());
+        }
+        
+        // 从信号状态日志恢复时保留原触发时间
+        private AlertInfo(String alertId, String trainId, AlertType type, String message, Map<String, Object> additionalInfo, long timestamp) {
+            this.alertId = alertId;
             this.trainId = trainId;
             this.type = type;
             this.message = message;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
             this.status = AlertStatus.ACTIVE;
-            this.additionalInfo = new HashMap<>();
+            this.additionalInfo = additionalInfo != null ? new HashMap<>(additionalInfo) : new HashMap<>();
         }
         
         public String getAlertId() { return alertId; }
@@ -2426,7 +2573,7 @@ public class CBTCSystem {
     private static final double TRAIN_LENGTH_FACTOR = 1.5;            // 列车长度倍数（移动闭塞计算用）
     
     // 移动闭塞数据结构
-    private static class MobileBlockInfo {
+    static class MobileBlockInfo {
         private final String trainId;
         private BlockPos frontPosition;
         private double requiredBlockLength;
@@ -10,6 +10,7 @@ import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import com.krt.mod.KRTMod;
+import com.krt.mod.blockentity.power.RailPowerConnectorBlockEntity;
 import java.util.*;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -145,6 +146,48 @@ public class ControlCenterSystem {
         return switchStatus;
     }
     
+    // 获取各供电区段的能量信息（按区段供电变电所位置）
+    public Map<String, String> getFeederEnergyInfo() {
+        Map<String, String> feederEnergy = new TreeMap<>();
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem == null) {
+            return feederEnergy;
+        }
+
+        for (RegenerativeEnergyLedger.SectionEnergy section : powerSystem.getFeederSectionEnergy()) {
+            BlockPos pos = BlockPos.fromLong(section.getKey());
+            String sectionId = String.format("供电区段_%d_%d_%d", pos.getX(), pos.getY(), pos.getZ());
+            feederEnergy.put(sectionId, String.format(
+                    "列车%d | 牵引%.0fkW 再生%.0fkW | 累计再生%.1fkWh 利用%.1fkWh 储能%.1fkWh 耗散%.1fkWh | 回收率%.0f%%",
+                    section.getTrainCount(),
+                    section.getMotoringPower() / 1000, section.getRegenPower() / 1000,
+                    section.getTotalRegenerated() / 3.6e6, section.getTotalReused() / 3.6e6,
+                    section.getTotalStored() / 3.6e6, section.getTotalDissipated() / 3.6e6,
+                    section.getRecoveryRate() * 100));
+        }
+
+        return feederEnergy;
+    }
+
+    // 获取轨道连接器覆盖重叠情况（同一供电制式，按重叠深度降序）
+    public List<String> getPowerCoverageOverlapInfo() {
+        List<String> overlapInfo = new ArrayList<>();
+        PowerSupplySystem powerSystem = PowerSupplySystemManager.getForWorld(world);
+        if (powerSystem == null) {
+            return overlapInfo;
+        }
+
+        for (PowerCoverageIndex.Overlap<RailPowerConnectorBlockEntity> overlap : powerSystem.getRailConnectorOverlaps()) {
+            BlockPos first = overlap.getFirst().getPos();
+            BlockPos second = overlap.getSecond().getPos();
+            overlapInfo.add(String.format("连接器(%d,%d,%d) 与 连接器(%d,%d,%d) | %s | 间距%.1f格 重叠%.1f格",
+                    first.getX(), first.getY(), first.getZ(), second.getX(), second.getY(), second.getZ(),
+                    overlap.getFirst().getPowerType().getName(), overlap.getDistance(), overlap.getDepth()));
+        }
+
+        return overlapInfo;
+    }
+
     // 将道岔状态转换为可读字符串
     private String getSwitchStateString(SwitchControlSystem.SwitchState state) {
         switch (state) {
@@ -33,10 +33,12 @@ public class DispatchSystem {
     private final PassengerFlowMonitor passengerFlowMonitor;
     // 列车位置实时跟踪
     private final Map<String, TrainPositionInfo> trainPositionMap = new ConcurrentHashMap<>();
-    // 调度事件队列
-    private final Queue<DispatchEvent> dispatchEventQueue = new LinkedList<>();
-    // 运行调整记录
-    private final Map<Long, DispatchAdjustment> adjustmentHistory = new LinkedHashMap<>();
+    // 运行调整记录（最近明细 + 每小时汇总，容量固定）
+    private static final int ADJUSTMENT_HISTORY_CAPACITY = 4096;
+    private static final int ADJUSTMENT_HISTORY_HOURS = 168;
+    private final AdjustmentHistoryStore adjustmentHistory = new AdjustmentHistoryStore(
+        ADJUSTMENT_HISTORY_CAPACITY, ADJUSTMENT_HISTORY_HOURS,
+        Arrays.stream(ScheduleAdjustment.AdjustmentType.values()).map(Enum::name).toArray(String[]::new));
 
     private DispatchSystem(World world) {
         this.world = world;
@@ -101,9 +103,6 @@ public class DispatchSystem {
         
         // 如果是系统控制模式，执行调度
         if (dispatchMode == DispatchMode.SYSTEM) {
-            // 处理调度事件队列
-            processDispatchEvents();
-            
             // 高峰期调度（优先级高于普通AI调度）
             if (isPeakHour()) {
                 peakHourDispatch();
@@ -677,17 +676,6 @@ public class DispatchSystem {
         }
     }
     
-    // 处理调度事件队列
-    private void processDispatchEvents() {
-        while (!dispatchEventQueue.isEmpty()) {
-            DispatchEvent event = dispatchEventQueue.poll();
-            if (event.isValid()) {
-                event.execute();
-                LogSystem.dispatchLog("执行调度事件: " + event.getDescription());
-            }
-        }
-    }
-    
     // 动态调整运行图
     private void adjustScheduleIfNeeded() {
         // 每分钟检查一次是否需要调整运行图
@@ -723,15 +711,14 @@ public class DispatchSystem {
         }
         
         // 记录调整历史
-        DispatchAdjustment record = new DispatchAdjustment(
+        adjustmentHistory.record(
             world.getTime(),
             lineId,
-            adjustment.getType().name(),
+            adjustment.getType().ordinal(),
             adjustment.getOriginalValue(),
             adjustment.getNewValue(),
             passengerFlowMonitor.getLinePassengerFlowRate(lineId)
         );
-        adjustmentHistory.put(world.getTime(), record);
     }
     
     // 检查列车密度
@@ -889,6 +876,11 @@ public class DispatchSystem {
         return dispatchMode;
     }
     
+    // 获取运行调整历史（供控制中心绘制调整记录）
+    public AdjustmentHistoryStore getAdjustmentHistory() {
+        return adjustmentHistory;
+    }
+    
     // 获取所有车站信息
     public Map<String, BlockPos> getAllStations() {
         Map<String, BlockPos> stationsMap = new HashMap<>();
@@ -971,28 +963,6 @@ public class DispatchSystem {
         }
     }
     
-    // 调度事件类
-    private abstract class DispatchEvent {
-        private final long creationTime;
-        private final String description;
-        
-        public DispatchEvent(String description) {
-            this.creationTime = System.currentTimeMillis();
-            this.description = description;
-        }
-        
-        public abstract void execute();
-        
-        public boolean isValid() {
-            // 事件有效期为10分钟
-            return System.currentTimeMillis() - creationTime < 600000;
-        }
-        
-        public String getDescription() {
-            return description;
-        }
-    }
-    
     // 列车运行图管理器
     private class TrainScheduleManager {
         private final Map<String, LineSchedule> lineSchedules = new ConcurrentHashMap<>();
@@ -1571,26 +1541,6 @@ public class DispatchSystem {
         }
     }
     
-    // 调度调整记录类
-    private static class DispatchAdjustment {
-        private final long timestamp;
-        private final String lineId;
-        private final String adjustmentType;
-        private final double originalValue;
-        private final double newValue;
-        private final double passengerFlowRate;
-        
-        public DispatchAdjustment(long timestamp, String lineId, String adjustmentType,
-                               double originalValue, double newValue, double passengerFlowRate) {
-            this.timestamp = timestamp;
-            this.lineId = lineId;
-            this.adjustmentType = adjustmentType;
-            this.originalValue = originalValue;
-            this.newValue = newValue;
-            this.passengerFlowRate = passengerFlowRate;
-        }
-    }
-    
     // 列车运行状态枚举
     private enum TrainRunningStatus {
         NORMAL,
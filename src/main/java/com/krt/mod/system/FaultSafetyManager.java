@@ -23,7 +23,7 @@ public class FaultSafetyManager {
 
     private FaultSafetyManager(World world) {
         this.world = world;
-        this.powerSupplySystem = VehicleSystemInitializer.getPowerSupplySystem();
+        this.powerSupplySystem = PowerSupplySystemManager.getForWorld(world);
         initialize();
     }
 
@@ -0,0 +1,186 @@
+package com.krt.mod.system;
+
+import com.krt.mod.KRTMod;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.world.PersistentState;
+import net.minecraft.world.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 车队数据持久化
+ * 服务器线程只负责复制编组和车辆的状态快照，NBT构建、压缩和写盘都在后台线程完成，
+ * 写入时先写临时文件再原子重命名。连续提交的快照只写最新的一份，内容未变化时跳过写盘。
+ * 每次世界保存（自动保存、/save-all、单人游戏暂停）都会提交一次快照，服务器关闭时等待最后一次写入完成。
+ */
+public class FleetPersistence {
+    private static final String FILE_NAME = "fleet.dat";
+    private static final int FORMAT_VERSION = 1;
+    // 主世界中用于接收世界保存通知的持久化状态，本身不写文件
+    private static final String SAVE_HOOK_KEY = "krt_fleet_save_hook";
+
+    // 当前服务器的车队存档，服务器未运行时为null
+    private static FleetPersistence current;
+    // 已读取但尚未恢复的车队数据（等待主世界加载）
+    private static NbtCompound pendingFleetData;
+
+    private final Path file;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "KRTFleetSaver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 等待写入的最新快照，写线程取走后置空
+    private final AtomicReference<VehicleManagementSystem.FleetSnapshot> pending = new AtomicReference<>();
+    // 最近一次写入（或加载）的内容，仅由写线程访问
+    private NbtCompound lastWritten;
+
+    /**
+     * @param directory 存档中的模组数据目录（<世界>/krt_mod）
+     */
+    public FleetPersistence(Path directory) {
+        this.file = directory.resolve(FILE_NAME);
+    }
+
+    /**
+     * 注册车队存档的读取、世界保存和关闭保存
+     */
+    public static void initialize() {
+        // 此时世界尚未加载，先读取存档，等主世界加载后恢复
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            current = new FleetPersistence(getModDataDir(server));
+            NbtCompound fleetData = current.load();
+            // 没有存档时也要清空上一个世界留下的车队
+            pendingFleetData = fleetData != null ? fleetData : new NbtCompound();
+        });
+        // 在主世界实体加载前恢复车队，使列车实体能找到自己的编组
+        ServerWorldEvents.LOAD.register((server, world) -> {
+            if (world.getRegistryKey() != World.OVERWORLD) {
+                return;
+            }
+            if (pendingFleetData != null) {
+                VehicleManagementSystem.getInstance(world).restoreFleet(pendingFleetData);
+                pendingFleetData = null;
+            }
+            world.getPersistentStateManager().getOrCreate(nbt -> new SaveHook(world), () -> new SaveHook(world), SAVE_HOOK_KEY);
+        });
+        // 保存最新快照并等待写入完成
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            if (current != null) {
+                current.close(VehicleManagementSystem.getInstance(server.getOverworld()));
+                current = null;
+                KRTMod.LOGGER.info("已保存车队数据到: {}", getModDataDir(server));
+            }
+            pendingFleetData = null;
+        });
+    }
+
+    // 存档中的模组数据目录
+    private static Path getModDataDir(MinecraftServer server) {
+        return server.getSavePath(WorldSavePath.ROOT).resolve("krt_mod");
+    }
+
+    /**
+     * 读取车队存档
+     * @return 车队数据，不存在或读取失败时返回null
+     */
+    public NbtCompound load() {
+        File input = file.toFile();
+        if (!input.exists()) {
+            return null;
+        }
+        try {
+            NbtCompound root = NbtIo.readCompressed(input);
+            NbtCompound fleet = root.getCompound("fleet");
+            writer.execute(() -> lastWritten = fleet);
+            KRTMod.LOGGER.info("已读取车队存档: {}", file);
+            return fleet;
+        } catch (IOException e) {
+            KRTMod.LOGGER.error("读取车队存档失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 提交快照异步保存，必须在服务器线程上调用
+     */
+    public void saveAsync(VehicleManagementSystem vehicleManagementSystem) {
+        if (pending.getAndSet(vehicleManagementSystem.snapshotFleet()) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * 保存最新快照并等待写入完成（服务器关闭时调用）
+     */
+    public void close(VehicleManagementSystem vehicleManagementSystem) {
+        if (vehicleManagementSystem != null) {
+            saveAsync(vehicleManagementSystem);
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                KRTMod.LOGGER.warn("车队存档写入超时，放弃等待");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePending() {
+        VehicleManagementSystem.FleetSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) {
+            return;
+        }
+        NbtCompound fleet = snapshot.toNbt();
+        if (fleet.equals(lastWritten)) {
+            return;
+        }
+
+        NbtCompound root = new NbtCompound();
+        root.putInt("formatVersion", FORMAT_VERSION);
+        root.put("fleet", fleet);
+        try {
+            Files.createDirectories(file.getParent());
+            RailwayLineStore.writeAtomically(root, file);
+            lastWritten = fleet;
+            KRTMod.LOGGER.debug("车队存档已保存: {} 个编组", snapshot.getConsistCount());
+        } catch (IOException e) {
+            KRTMod.LOGGER.error("保存车队存档失败: {}", e.getMessage());
+        }
+    }
+
+    // 世界保存时由主世界的持久化状态管理器调用，在服务器线程上提交车队快照
+    private static class SaveHook extends PersistentState {
+        private final ServerWorld world;
+
+        SaveHook(ServerWorld world) {
+            this.world = world;
+        }
+
+        @Override
+        public NbtCompound writeNbt(NbtCompound nbt) {
+            return nbt;
+        }
+
+        @Override
+        public void save(File file) {
+            if (current != null) {
+                current.saveAsync(VehicleManagementSystem.getInstance(world));
+            }
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.krt.mod.system;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import com.krt.mod.KRTMod;
+import com.krt.mod.block.SignalBlock;
+import com.krt.mod.block.ATPSignalBlockEntity;
+import com.krt.mod.system.BlockSectionManagement.BlockSection;
+import com.krt.mod.system.SwitchControlSystem.SwitchState;
+
+import java.util.*;
+
+/**
+ * 进路联锁系统
+ * 基于进路表进行联锁：每条进路列出所需的道岔位置、经过的闭塞区间和防护信号机，
+ * 进路之间的敌对关系在登记时预先计算为位图，办理、检查和取消进路只需少量按字运算。
+ */
+public class InterlockingSystem {
+    private static final Map<World, InterlockingSystem> INSTANCES = new HashMap<>();
+    private final World world;
+
+    // 进路表：按进路编号索引，注销的进路位置为null并可复用
+    private final List<InterlockingRoute> routes = new ArrayList<>();
+    private final Map<String, Integer> routeIndex = new HashMap<>();
+    private final Deque<Integer> freeRouteSlots = new ArrayDeque<>();
+
+    // 每条进路的敌对进路位图
+    private long[][] conflictBits = new long[0][];
+    // 当前已办理的进路位图
+    private long[] activeBits = new long[0];
+
+    // 道岔编号，用于道岔锁闭计数
+    private final Map<BlockPos, Integer> switchIndex = new HashMap<>();
+    private int[] switchLockCount = new int[0];
+
+    // 反向索引：区间/道岔 -> 使用它的进路
+    private final Map<String, Set<Integer>> sectionToRoutes = new HashMap<>();
+    private final Map<BlockPos, Set<Integer>> switchToRoutes = new HashMap<>();
+
+    // 进路办理结果
+    public enum RouteResult {
+        SET("进路已办理"),
+        ALREADY_SET("进路已由该列车办理"),
+        UNKNOWN_ROUTE("进路不存在"),
+        CONFLICT("存在敌对进路"),
+        SECTION_UNAVAILABLE("区间被占用或已预留"),
+        SWITCH_UNAVAILABLE("道岔无法转换");
+
+        private final String displayName;
+
+        RouteResult(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    // 信号运行状态日志，记录已办理的进路
+    private final SignallingJournal journal;
+
+    private InterlockingSystem(World world) {
+        this.world = world;
+        this.journal = SignallingJournal.getInstance(world);
+    }
+
+    public static InterlockingSystem getInstance(World world) {
+        return INSTANCES.computeIfAbsent(world, InterlockingSystem::new);
+    }
+
+    // 登记进路，同名进路会被替换
+    public synchronized void registerRoute(String routeId, BlockPos entrySignal, Map<BlockPos, SwitchState> switchPositions,
+                                           List<String> sectionIds, List<BlockPos> protectingSignals) {
+        if (routeIndex.containsKey(routeId)) {
+            unregisterRoute(routeId);
+        }
+
+        int index = freeRouteSlots.isEmpty() ? routes.size() : freeRouteSlots.pop();
+        InterlockingRoute route = new InterlockingRoute(index, routeId, entrySignal, switchPositions, sectionIds, protectingSignals);
+        if (index == routes.size()) {
+            routes.add(route);
+        } else {
+            routes.set(index, route);
+        }
+        routeIndex.put(routeId, index);
+        ensureRouteCapacity(routes.size());
+
+        for (BlockPos switchPos : route.switchPositions.keySet()) {
+            switchIndex.computeIfAbsent(switchPos, k -> switchIndex.size());
+        }
+        if (switchLockCount.length < switchIndex.size()) {
+            switchLockCount = Arrays.copyOf(switchLockCount, Math.max(switchIndex.size(), switchLockCount.length * 2));
+        }
+
+        // 预先计算敌对关系：共用区间，或要求同一道岔处于不同位置
+        long[] row = conflictBits[index];
+        Arrays.fill(row, 0L);
+        for (String sectionId : route.sectionIds) {
+            for (int other : sectionToRoutes.getOrDefault(sectionId, Collections.emptySet())) {
+                markConflict(index, other);
+            }
+        }
+        for (Map.Entry<BlockPos, SwitchState> entry : route.switchPositions.entrySet()) {
+            for (int other : switchToRoutes.getOrDefault(entry.getKey(), Collections.emptySet())) {
+                if (routes.get(other).switchPositions.get(entry.getKey()) != entry.getValue()) {
+                    markConflict(index, other);
+                }
+            }
+        }
+
+        for (String sectionId : route.sectionIds) {
+            sectionToRoutes.computeIfAbsent(sectionId, k -> new HashSet<>()).add(index);
+        }
+        for (BlockPos switchPos : route.switchPositions.keySet()) {
+            switchToRoutes.computeIfAbsent(switchPos, k -> new HashSet<>()).add(index);
+        }
+
+        // 重启前已办理的进路：道岔位置随世界保存，这里只恢复锁闭和区间预留
+        NbtCompound saved = journal.getEntries(SignallingJournal.ROUTES).get(routeId);
+        if (saved != null) {
+            lock(route, saved.getString("trainId"));
+            KRTMod.LOGGER.info("Restored route {} for train {}", routeId, route.trainId);
+        }
+
+        KRTMod.LOGGER.info("Registered interlocking route: {}", routeId);
+    }
+
+    // 注销进路（已办理的进路会先取消）
+    public synchronized void unregisterRoute(String routeId) {
+        Integer index = routeIndex.remove(routeId);
+        if (index == null) {
+            return;
+        }
+        InterlockingRoute route = routes.get(index);
+        if (isActive(index)) {
+            release(route);
+        }
+
+        // 从其他进路的敌对位图中清除
+        long[] row = conflictBits[index];
+        for (int word = 0; word < row.length; word++) {
+            long bits = row[word];
+            while (bits != 0) {
+                int other = (word << 6) + Long.numberOfTrailingZeros(bits);
+                conflictBits[other][index >>> 6] &= ~(1L << index);
+                bits &= bits - 1;
+            }
+            row[word] = 0L;
+        }
+        for (String sectionId : route.sectionIds) {
+            removeFromIndex(sectionToRoutes, sectionId, index);
+        }
+        for (BlockPos switchPos : route.switchPositions.keySet()) {
+            removeFromIndex(switchToRoutes, switchPos, index);
+        }
+
+        routes.set(index, null);
+        freeRouteSlots.push(index);
+    }
+
+    /**
+     * 为列车办理进路
+     * 先检查敌对进路、区间和全部道岔，都满足后才转换道岔并锁闭；转换中途失败时回退已转换的道岔
+     * @throws IllegalArgumentException trainId为null时
+     */
+    public synchronized RouteResult setRoute(String routeId, String trainId) {
+        if (trainId == null) {
+            throw new IllegalArgumentException("Route " + routeId + " requested without a train id");
+        }
+        Integer index = routeIndex.get(routeId);
+        if (index == null) {
+            return RouteResult.UNKNOWN_ROUTE;
+        }
+        InterlockingRoute route = routes.get(index);
+        if (isActive(index)) {
+            return trainId.equals(route.trainId) ? RouteResult.ALREADY_SET : RouteResult.CONFLICT;
+        }
+
+        // 敌对进路检查：与已办理进路位图按字求交
+        long[] row = conflictBits[index];
+        for (int word = 0; word < row.length; word++) {
+            if ((row[word] & activeBits[word]) != 0) {
+                return RouteResult.CONFLICT;
+            }
+        }
+
+        // 区间检查
+        BlockSectionManagement sectionManagement = BlockSectionManagement.getInstance(world);
+        BlockSection[] sections = new BlockSection[route.sectionIds.length];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = sectionManagement.getBlockSection(route.sectionIds[i]);
+            if (sections[i] == null || sections[i].isOccupied() || sections[i].isReservedByOtherTrain(trainId)) {
+                return RouteResult.SECTION_UNAVAILABLE;
+            }
+        }
+
+        // 道岔检查：需要转换的道岔都未被锁闭且可以操作，才开始转换
+        SwitchControlSystem switchSystem = SwitchControlSystem.getInstance(world);
+        Map<BlockPos, SwitchState> toThrow = new LinkedHashMap<>();
+        for (Map.Entry<BlockPos, SwitchState> entry : route.switchPositions.entrySet()) {
+            BlockPos switchPos = entry.getKey();
+            SwitchState current = switchSystem.getSwitchState(switchPos);
+            if (current == entry.getValue()) {
+                continue;
+            }
+            if (switchLockCount[switchIndex.get(switchPos)] > 0 || !switchSystem.canRequestSwitchState(switchPos)) {
+                return RouteResult.SWITCH_UNAVAILABLE;
+            }
+            toThrow.put(switchPos, current);
+        }
+
+        // 转换道岔，任一道岔转换失败时回退已转换的道岔
+        List<BlockPos> thrown = new ArrayList<>(toThrow.size());
+        for (Map.Entry<BlockPos, SwitchState> entry : toThrow.entrySet()) {
+            BlockPos switchPos = entry.getKey();
+            if (!switchSystem.requestSwitchState(switchPos, route.switchPositions.get(switchPos), "Interlocking route " + routeId)) {
+                for (BlockPos thrownPos : thrown) {
+                    switchSystem.revertSwitchState(thrownPos, toThrow.get(thrownPos));
+                }
+                return RouteResult.SWITCH_UNAVAILABLE;
+            }
+            thrown.add(switchPos);
+        }
+
+        lock(route, trainId);
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("trainId", trainId);
+        journal.put(SignallingJournal.ROUTES, routeId, nbt);
+
+        KRTMod.LOGGER.info("Set route {} for train {}", routeId, trainId);
+        return RouteResult.SET;
+    }
+
+    // 取消进路
+    public synchronized boolean releaseRoute(String routeId) {
+        Integer index = routeIndex.get(routeId);
+        if (index == null || !isActive(index)) {
+            return false;
+        }
+        release(routes.get(index));
+        KRTMod.LOGGER.info("Released route {}", routeId);
+        return true;
+    }
+
+    // 取消列车办理的所有进路
+    public synchronized void releaseRoutesForTrain(String trainId) {
+        if (trainId == null) {
+            return;
+        }
+        for (int word = 0; word < activeBits.length; word++) {
+            long bits = activeBits[word];
+            while (bits != 0) {
+                InterlockingRoute route = routes.get((word << 6) + Long.numberOfTrailingZeros(bits));
+                if (trainId.equals(route.trainId)) {
+                    release(route);
+                    KRTMod.LOGGER.info("Released route {} for train {}", route.routeId, trainId);
+                }
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    // 检查进路是否可以办理（不改变任何状态）
+    public synchronized boolean canSetRoute(String routeId) {
+        Integer index = routeIndex.get(routeId);
+        if (index == null || isActive(index)) {
+            return false;
+        }
+        long[] row = conflictBits[index];
+        for (int word = 0; word < row.length; word++) {
+            if ((row[word] & activeBits[word]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 检查道岔是否被已办理的进路锁闭
+    public synchronized boolean isSwitchLocked(BlockPos switchPos) {
+        Integer index = switchIndex.get(switchPos);
+        return index != null && switchLockCount[index] > 0;
+    }
+
+    // 道岔是否已登记在进路表中
+    public synchronized boolean hasRoutesForSwitch(BlockPos switchPos) {
+        Set<Integer> indices = switchToRoutes.get(switchPos);
+        return indices != null && !indices.isEmpty();
+    }
+
+    // 检查进路是否已办理
+    public synchronized boolean isRouteSet(String routeId) {
+        Integer index = routeIndex.get(routeId);
+        return index != null && isActive(index);
+    }
+
+    // 获取已办理进路的列车ID
+    public synchronized String getRouteTrain(String routeId) {
+        Integer index = routeIndex.get(routeId);
+        return index != null && isActive(index) ? routes.get(index).trainId : null;
+    }
+
+    // 进路是否已登记
+    public synchronized boolean isRouteRegistered(String routeId) {
+        return routeIndex.containsKey(routeId);
+    }
+
+    // 获取已登记的进路数量
+    public synchronized int getRouteCount() {
+        return routeIndex.size();
+    }
+
+    // 道岔转换到位或发生故障后，刷新经过该道岔的已办理进路的信号
+    public synchronized void onSwitchStateChanged(BlockPos switchPos) {
+        for (int index : switchToRoutes.getOrDefault(switchPos, Collections.emptySet())) {
+            if (isActive(index)) {
+                refreshRouteSignals(routes.get(index));
+            }
+        }
+    }
+
+    // 锁闭进路：标记已办理，锁闭道岔并预留区间
+    private void lock(InterlockingRoute route, String trainId) {
+        activeBits[route.index >>> 6] |= 1L << route.index;
+        route.trainId = trainId;
+        for (BlockPos switchPos : route.switchPositions.keySet()) {
+            switchLockCount[switchIndex.get(switchPos)]++;
+        }
+        BlockSectionManagement sectionManagement = BlockSectionManagement.getInstance(world);
+        for (String sectionId : route.sectionIds) {
+            BlockSection section = sectionManagement.getBlockSection(sectionId);
+            if (section != null) {
+                section.reserveForTrain(trainId);
+            }
+        }
+        refreshRouteSignals(route);
+    }
+
+    private void release(InterlockingRoute route) {
+        journal.remove(SignallingJournal.ROUTES, route.routeId);
+        activeBits[route.index >>> 6] &= ~(1L << route.index);
+        for (BlockPos switchPos : route.switchPositions.keySet()) {
+            switchLockCount[switchIndex.get(switchPos)]--;
+        }
+        BlockSectionManagement sectionManagement = BlockSectionManagement.getInstance(world);
+        for (String sectionId : route.sectionIds) {
+            BlockSection section = sectionManagement.getBlockSection(sectionId);
+            if (section != null) {
+                section.clearTrainReservation(route.trainId);
+            }
+        }
+        setRouteSignals(route, false);
+        route.trainId = null;
+    }
+
+    // 所有道岔到位时开放防护信号，否则保持关闭
+    private void refreshRouteSignals(InterlockingRoute route) {
+        SwitchControlSystem switchSystem = SwitchControlSystem.getInstance(world);
+        boolean inPosition = true;
+        for (Map.Entry<BlockPos, SwitchState> entry : route.switchPositions.entrySet()) {
+            if (switchSystem.getSwitchState(entry.getKey()) != entry.getValue()) {
+                inPosition = false;
+                break;
+            }
+        }
+        setRouteSignals(route, inPosition);
+    }
+
+    private void setRouteSignals(InterlockingRoute route, boolean allowPass) {
+        if (world == null) {
+            return;
+        }
+        if (route.entrySignal != null) {
+            setSignalAllowPass(route.entrySignal, allowPass);
+        }
+        for (BlockPos signalPos : route.protectingSignals) {
+            setSignalAllowPass(signalPos, allowPass);
+        }
+    }
+
+    private void setSignalAllowPass(BlockPos signalPos, boolean allowPass) {
+        if (world.getBlockState(signalPos).getBlock() instanceof SignalBlock) {
+            ATPSignalBlockEntity signalEntity = (ATPSignalBlockEntity) world.getBlockEntity(signalPos);
+            if (signalEntity != null) {
+                signalEntity.setAllowPass(allowPass);
+            }
+        }
+    }
+
+    private boolean isActive(int index) {
+        return (activeBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void markConflict(int a, int b) {
+        conflictBits[a][b >>> 6] |= 1L << b;
+        conflictBits[b][a >>> 6] |= 1L << a;
+    }
+
+    // 扩展位图容量
+    private void ensureRouteCapacity(int routeCount) {
+        int words = (routeCount + 63) >>> 6;
+        if (conflictBits.length >= routeCount && activeBits.length >= words) {
+            return;
+        }
+        int capacity = Math.max(64, Math.max(routeCount, conflictBits.length * 2));
+        int capacityWords = (capacity + 63) >>> 6;
+        long[][] grown = new long[capacity][];
+        for (int i = 0; i < capacity; i++) {
+            grown[i] = i < conflictBits.length ? Arrays.copyOf(conflictBits[i], capacityWords) : new long[capacityWords];
+        }
+        conflictBits = grown;
+        activeBits = Arrays.copyOf(activeBits, capacityWords);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Integer>> index, K key, int routeIndex) {
+        Set<Integer> set = index.get(key);
+        if (set != null) {
+            set.remove(routeIndex);
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    // 联锁进路
+    private static class InterlockingRoute {
+        private final int index;
+        private final String routeId;
+        private final BlockPos entrySignal;
+        private final Map<BlockPos, SwitchState> switchPositions;
+        private final String[] sectionIds;
+        private final List<BlockPos> protectingSignals;
+        private String trainId;
+
+        InterlockingRoute(int index, String routeId, BlockPos entrySignal, Map<BlockPos, SwitchState> switchPositions,
+                          List<String> sectionIds, List<BlockPos> protectingSignals) {
+            this.index = index;
+            this.routeId = routeId;
+            this.entrySignal = entrySignal;
+            this.switchPositions = new LinkedHashMap<>(switchPositions);
+            this.sectionIds = sectionIds.toArray(new String[0]);
+            this.protectingSignals = new ArrayList<>(protectingSignals);
+        }
+    }
+}
@@ -102,24 +102,31 @@ public class LineControlSystem {
             return false;
         }
 
-        Set<BlockPos> connectedTracks = new HashSet<>();
-        Queue<BlockPos> queue = new LinkedList<>();
-        BlockPos firstTrack = line.getTracks().iterator().next();
-        queue.add(firstTrack);
-        connectedTracks.add(firstTrack);
-
-        while (!queue.isEmpty()) {
-            BlockPos current = queue.poll();
+        // 在打包位置上做广度优先搜索，每个轨道最多入队一次，队列用定长数组
+        PackedPositionSet tracks = line.getTracks();
+        PackedPositionSet connectedTracks = new PackedPositionSet(tracks.size());
+        long[] queue = new long[tracks.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = tracks.iterator().next().asLong();
+        connectedTracks.addLong(queue[0]);
+
+        while (head < tail) {
+            long current = queue[head++];
             // 检查周围的轨道
-            for (BlockPos neighbor : getAdjacentBlocks(current)) {
-                if (line.getTracks().contains(neighbor) && !connectedTracks.contains(neighbor)) {
-                    connectedTracks.add(neighbor);
-                    queue.add(neighbor);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        long neighbor = BlockPos.add(current, dx, dy, dz);
+                        if (tracks.containsLong(neighbor) && connectedTracks.addLong(neighbor)) {
+                            queue[tail++] = neighbor;
+                        }
+                    }
                 }
             }
         }
 
-        return connectedTracks.size() == line.getTracks().size();
+        return connectedTracks.size() == tracks.size();
     }
 
     // 检查坡度限制
@@ -233,8 +240,11 @@ public class LineControlSystem {
         private final String lineId;
         private final String lineName;
         private final List<StationInfo> stations = new ArrayList<>();
-        private final Set<BlockPos> tracks = new HashSet<>();
+        // 轨道位置（堆外打包存储）
+        private final PackedPositionSet tracks = new PackedPositionSet();
         private double maxSpeed = 80.0; // 默认最大运营速度80km/h
+        // 修改计数，车站、轨道或设置变化时递增，用于增量保存
+        private int revision = 0;
 
         public LineInfo(String lineId, String lineName) {
             this.lineId = lineId;
@@ -255,14 +265,26 @@ public class LineControlSystem {
 
         public void addStation(StationInfo station) {
             stations.add(station);
+            revision++;
         }
 
-        public Set<BlockPos> getTracks() {
+        public PackedPositionSet getTracks() {
             return tracks;
         }
 
         public void addTrack(BlockPos pos) {
-            tracks.add(pos);
+            if (tracks.add(pos)) {
+                revision++;
+            }
+        }
+
+        // 批量添加打包的轨道位置（加载存档时使用）
+        public void addTracks(long[] packedPositions) {
+            int before = tracks.size();
+            tracks.addAll(packedPositions);
+            if (tracks.size() != before) {
+                revision++;
+            }
         }
 
         public double getMaxSpeed() {
@@ -270,7 +292,14 @@ public class LineControlSystem {
         }
 
         public void setMaxSpeed(double maxSpeed) {
-            this.maxSpeed = maxSpeed;
+            if (this.maxSpeed != maxSpeed) {
+                this.maxSpeed = maxSpeed;
+                revision++;
+            }
+        }
+
+        public int getRevision() {
+            return revision;
         }
         
         // 获取根据时刻表调整后的运营速度
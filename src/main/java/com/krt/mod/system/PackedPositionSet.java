@@ -0,0 +1,397 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * 堆外打包位置集合
+ * 以 BlockPos.asLong() 打包后的 long 值存储方块位置，使用线性探测开放寻址哈希表，
+ * 槽位数组放在直接内存（ByteBuffer.allocateDirect）中。每个位置只占一个8字节槽位，
+ * 不产生 BlockPos 和哈希节点对象，百万级轨道网络的堆占用和GC扫描量都很小。
+ * 0 作为空槽标记，位置(0,0,0)单独记录。删除使用反向移位，不留墓碑。
+ * 以 Set&lt;BlockPos&gt; 视图兼容原有调用方，遍历时按需创建 BlockPos。非线程安全。
+ * 迭代器从表尾向表头遍历并支持删除：删除移位时从表头绕回、移入已遍历区域的元素另行记录，遍历最后返回。
+ */
+public class PackedPositionSet extends AbstractSet<BlockPos> {
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private LongBuffer slots;
+    private int mask;
+    private int size = 0;
+    // (0,0,0) 打包后为0，与空槽标记相同，单独记录
+    private boolean containsZero = false;
+    private int resizeThreshold;
+
+    public PackedPositionSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize 预计元素数量，用于预分配槽位
+     */
+    public PackedPositionSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public PackedPositionSet(Collection<BlockPos> positions) {
+        this(positions.size());
+        addAll(positions);
+    }
+
+    // 打包值操作
+
+    public boolean addLong(long packed) {
+        if (packed == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = mix(packed) & mask;
+        long current;
+        while ((current = slots.get(slot)) != 0) {
+            if (current == packed) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots.put(slot, packed);
+        if (++size >= resizeThreshold) {
+            rehash(slots.capacity() * 2);
+        }
+        return true;
+    }
+
+    public boolean containsLong(long packed) {
+        if (packed == 0) {
+            return containsZero;
+        }
+        int slot = mix(packed) & mask;
+        long current;
+        while ((current = slots.get(slot)) != 0) {
+            if (current == packed) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public boolean removeLong(long packed) {
+        if (packed == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int slot = mix(packed) & mask;
+        long current;
+        while ((current = slots.get(slot)) != 0) {
+            if (current == packed) {
+                size--;
+                shiftKeys(slot, null);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 批量添加打包位置，先按最终大小扩容一次
+     */
+    public void addAll(long[] packed) {
+        ensureCapacity(size + packed.length);
+        for (long value : packed) {
+            addLong(value);
+        }
+    }
+
+    public boolean addAll(PackedPositionSet other) {
+        ensureCapacity(size + other.size);
+        boolean changed = false;
+        if (other.containsZero) {
+            changed = addLong(0);
+        }
+        for (int i = 0, n = other.slots.capacity(); i < n; i++) {
+            long value = other.slots.get(i);
+            if (value != 0) {
+                changed |= addLong(value);
+            }
+        }
+        return changed;
+    }
+
+    // 遍历所有打包位置（不创建对象）
+    public void forEachLong(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (int i = 0, n = slots.capacity(); i < n; i++) {
+            long value = slots.get(i);
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    // 导出为 long 数组（无序）
+    public long[] toLongArray() {
+        long[] result = new long[size];
+        int index = 0;
+        if (containsZero) {
+            result[index++] = 0;
+        }
+        for (int i = 0, n = slots.capacity(); i < n; i++) {
+            long value = slots.get(i);
+            if (value != 0) {
+                result[index++] = value;
+            }
+        }
+        return result;
+    }
+
+    // 导出为升序 long 数组（用于紧凑编码保存）
+    public long[] toSortedLongArray() {
+        long[] result = toLongArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 获取位置所在的槽位下标，不存在时返回-1
+     * 下标在集合发生增删前保持稳定，可用作并查集等辅助数组的索引；(0,0,0)对应下标 getSlotCount()
+     */
+    public int slotOf(long packed) {
+        if (packed == 0) {
+            return containsZero ? slots.capacity() : -1;
+        }
+        int slot = mix(packed) & mask;
+        long current;
+        while ((current = slots.get(slot)) != 0) {
+            if (current == packed) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // 槽位数量（辅助数组需要 getSlotCount() + 1 个元素）
+    public int getSlotCount() {
+        return slots.capacity();
+    }
+
+    // 槽位中的打包位置，空槽返回0
+    public long getSlot(int slot) {
+        return slot == slots.capacity() ? 0 : slots.get(slot);
+    }
+
+    // 占用的直接内存字节数
+    public long getOffHeapBytes() {
+        return (long) slots.capacity() * Long.BYTES;
+    }
+
+    // Set<BlockPos> 视图
+
+    @Override
+    public boolean add(BlockPos pos) {
+        return addLong(pos.asLong());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof BlockPos pos && containsLong(pos.asLong());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof BlockPos pos && removeLong(pos.asLong());
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends BlockPos> positions) {
+        if (positions instanceof PackedPositionSet other) {
+            return addAll(other);
+        }
+        ensureCapacity(size + positions.size());
+        return super.addAll(positions);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+        size = 0;
+        containsZero = false;
+        if (slots.capacity() > MIN_CAPACITY * 64) {
+            // 大表清空后释放直接内存，避免长期占用
+            allocate(MIN_CAPACITY);
+        } else {
+            for (int i = 0, n = slots.capacity(); i < n; i++) {
+                slots.put(i, 0);
+            }
+        }
+    }
+
+    @Override
+    public Iterator<BlockPos> iterator() {
+        return new Iterator<>() {
+            // 下一个检查的槽位为 pos - 1，小于0后改为返回 wrapped 中的元素
+            private int pos = slots.capacity();
+            // 上次返回的元素所在槽位，-1表示没有可删除的元素，slots.capacity()表示(0,0,0)
+            private int last = -1;
+            private int remaining = size;
+            private boolean returnZero = containsZero;
+            // 删除移位时从表头绕回到已遍历区域的元素
+            private long[] wrapped;
+            private int wrappedCount = 0;
+            private long lastWrapped;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public BlockPos next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                if (returnZero) {
+                    returnZero = false;
+                    last = slots.capacity();
+                    return BlockPos.fromLong(0);
+                }
+                while (--pos >= 0) {
+                    long value = slots.get(pos);
+                    if (value != 0) {
+                        last = pos;
+                        return BlockPos.fromLong(value);
+                    }
+                }
+                last = Integer.MIN_VALUE;
+                lastWrapped = wrapped[-pos - 1];
+                return BlockPos.fromLong(lastWrapped);
+            }
+
+            @Override
+            public void remove() {
+                if (last == -1) {
+                    throw new IllegalStateException();
+                }
+                if (last == slots.capacity()) {
+                    containsZero = false;
+                    size--;
+                } else if (pos >= 0) {
+                    size--;
+                    shiftKeys(last, this::addWrapped);
+                } else {
+                    // 表已遍历完，此时移位不再影响剩余的 wrapped 元素
+                    removeLong(lastWrapped);
+                }
+                last = -1;
+            }
+
+            private void addWrapped(long value) {
+                if (wrapped == null) {
+                    wrapped = new long[2];
+                } else if (wrappedCount == wrapped.length) {
+                    wrapped = Arrays.copyOf(wrapped, wrappedCount * 2);
+                }
+                wrapped[wrappedCount++] = value;
+            }
+        };
+    }
+
+    // 预留容量，使集合达到指定大小前不再扩容
+    public void ensureCapacity(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > slots.capacity()) {
+            rehash(capacity);
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        mask = capacity - 1;
+        resizeThreshold = (int) Math.min(Integer.MAX_VALUE, (long) (capacity * LOAD_FACTOR));
+    }
+
+    private void rehash(int capacity) {
+        LongBuffer old = slots;
+        allocate(capacity);
+        for (int i = 0, n = old.capacity(); i < n; i++) {
+            long value = old.get(i);
+            if (value != 0) {
+                int slot = mix(value) & mask;
+                while (slots.get(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.put(slot, value);
+            }
+        }
+    }
+
+    /**
+     * 反向移位删除：把后续探测链上的元素前移填补空位
+     * @param wrappedAction 元素从表头绕回移到表尾一侧时调用（供迭代器记录），可为null
+     */
+    private void shiftKeys(int slot, LongConsumer wrappedAction) {
+        int last;
+        long current;
+        while (true) {
+            last = slot;
+            slot = (slot + 1) & mask;
+            while (true) {
+                current = slots.get(slot);
+                if (current == 0) {
+                    slots.put(last, 0);
+                    return;
+                }
+                int home = mix(current) & mask;
+                // 元素的理想位置不在 (last, slot] 区间内时才能前移
+                if (last <= slot ? (last >= home || home > slot) : (last >= home && home > slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (slot < last && wrappedAction != null) {
+                wrappedAction.accept(current);
+            }
+            slots.put(last, current);
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / (double) LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+}
@@ -0,0 +1,114 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Arrays;
+
+/**
+ * 方块位置集合的紧凑二进制编码
+ * 位置按 BlockPos.asLong() 排序后，逐个记录与前一个位置在 X/Y/Z 三个方向上的差值，
+ * 差值经 ZigZag 变换后以变长整数写出。沿轴线铺设的连续轨道每个位置只占3字节。
+ */
+public final class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    /**
+     * 编码已排序的打包位置
+     */
+    public static byte[] encode(long[] sortedPositions) {
+        ByteWriter out = new ByteWriter(sortedPositions.length * 3 + 16);
+        int lastX = 0;
+        int lastY = 0;
+        int lastZ = 0;
+        for (long packed : sortedPositions) {
+            int x = BlockPos.unpackLongX(packed);
+            int y = BlockPos.unpackLongY(packed);
+            int z = BlockPos.unpackLongZ(packed);
+            out.writeVarInt(zigZag(x - lastX));
+            out.writeVarInt(zigZag(y - lastY));
+            out.writeVarInt(zigZag(z - lastZ));
+            lastX = x;
+            lastY = y;
+            lastZ = z;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码位置
+     * @param data 编码数据
+     * @param count 位置数量
+     * @throws IllegalArgumentException 数量与数据长度不符、数据被截断或格式错误时
+     */
+    public static long[] decode(byte[] data, int count) {
+        // 每个位置至少占3字节，先检查数量再分配数组，避免损坏的数量导致超大分配
+        if (count < 0 || count > data.length / 3) {
+            throw new IllegalArgumentException("Position count " + count + " does not fit " + data.length + " bytes");
+        }
+        long[] positions = new long[count];
+        int[] cursor = new int[1];
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        for (int i = 0; i < count; i++) {
+            x += unZigZag(readVarInt(data, cursor));
+            y += unZigZag(readVarInt(data, cursor));
+            z += unZigZag(readVarInt(data, cursor));
+            positions[i] = BlockPos.asLong(x, y, z);
+        }
+        if (cursor[0] != data.length) {
+            throw new IllegalArgumentException("Trailing position data at byte " + cursor[0]);
+        }
+        return positions;
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int readVarInt(byte[] data, int[] cursor) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (cursor[0] >= data.length) {
+                throw new IllegalArgumentException("Truncated position data at byte " + cursor[0]);
+            }
+            byte b = data[cursor[0]++];
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at byte " + cursor[0]);
+    }
+
+    // 可增长的字节缓冲区
+    private static class ByteWriter {
+        private byte[] buffer;
+        private int size = 0;
+
+        ByteWriter(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeVarInt(int value) {
+            if (size + 5 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
+
+/**
+ * 供电覆盖空间索引
+ * 把空间划分为边长16的网格，每个网格记录覆盖范围（以供电点为中心的球）与之相交的供电点。
+ * 查询只检查所在网格内的候选供电点，与供电点总数无关；供电点放置、移除或覆盖半径变化时更新索引。
+ */
+public class PowerCoverageIndex<T> {
+    private static final int CELL_BITS = 4;
+    private static final int CELL_SIZE = 1 << CELL_BITS;
+
+    private final Map<T, Entry<T>> entries = new HashMap<>();
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private int nextSeq = 0;
+
+    /**
+     * 添加或更新供电点
+     * @param owner 供电点（如轨道连接器）
+     * @param pos 供电点位置
+     * @param radius 覆盖半径（方块数）
+     * @param group 供电制式分组，只有同组供电点之间才统计覆盖重叠
+     */
+    public synchronized void put(T owner, BlockPos pos, int radius, int group) {
+        Entry<T> existing = entries.get(owner);
+        if (existing != null) {
+            if (existing.x == pos.getX() && existing.y == pos.getY() && existing.z == pos.getZ()
+                    && existing.radius == radius && existing.group == group) {
+                return;
+            }
+            unlink(existing);
+        }
+
+        Entry<T> entry = new Entry<>(owner, nextSeq++, pos.getX(), pos.getY(), pos.getZ(), Math.max(0, radius), group);
+        entries.put(owner, entry);
+        forEachCoveredCell(entry, key -> cells.computeIfAbsent(key, k -> new ArrayList<>(2)).add(entry));
+    }
+
+    // 移除供电点
+    public synchronized void remove(T owner) {
+        Entry<T> entry = entries.remove(owner);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * 查找覆盖该位置且距离最近的供电点，距离相同时取先加入的
+     * @return 没有供电点覆盖时返回null
+     */
+    public synchronized T findNearest(BlockPos pos) {
+        List<Entry<T>> candidates = cells.get(cellKey(pos.getX(), pos.getY(), pos.getZ()));
+        if (candidates == null) {
+            return null;
+        }
+        Entry<T> nearest = null;
+        long nearestDistance = Long.MAX_VALUE;
+        for (Entry<T> entry : candidates) {
+            long distance = entry.squaredDistance(pos.getX(), pos.getY(), pos.getZ());
+            if (distance <= (long) entry.radius * entry.radius
+                    && (distance < nearestDistance || (distance == nearestDistance && entry.seq < nearest.seq))) {
+                nearest = entry;
+                nearestDistance = distance;
+            }
+        }
+        return nearest != null ? nearest.owner : null;
+    }
+
+    // 查找覆盖该位置的所有供电点
+    public synchronized List<T> findCovering(BlockPos pos) {
+        List<Entry<T>> candidates = cells.get(cellKey(pos.getX(), pos.getY(), pos.getZ()));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>();
+        for (Entry<T> entry : candidates) {
+            if (entry.squaredDistance(pos.getX(), pos.getY(), pos.getZ()) <= (long) entry.radius * entry.radius) {
+                result.add(entry.owner);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 统计同组供电点之间的覆盖重叠
+     * 两个覆盖球相交时交集中必有一点落在某个网格内，该网格同时登记了两者，因此只需检查网格内的成对组合
+     */
+    public synchronized List<Overlap<T>> findOverlaps() {
+        List<Overlap<T>> overlaps = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (List<Entry<T>> cell : cells.values()) {
+            for (int i = 0; i < cell.size(); i++) {
+                Entry<T> a = cell.get(i);
+                for (int j = i + 1; j < cell.size(); j++) {
+                    Entry<T> b = cell.get(j);
+                    if (a.group != b.group) {
+                        continue;
+                    }
+                    double distance = Math.sqrt(a.squaredDistance(b.x, b.y, b.z));
+                    double depth = a.radius + b.radius - distance;
+                    if (depth <= 0) {
+                        continue;
+                    }
+                    Entry<T> first = a.seq < b.seq ? a : b;
+                    Entry<T> second = first == a ? b : a;
+                    if (seen.add(((long) first.seq << 32) | second.seq)) {
+                        overlaps.add(new Overlap<>(first.owner, second.owner, distance, depth));
+                    }
+                }
+            }
+        }
+        overlaps.sort(Comparator.comparingDouble((Overlap<T> overlap) -> overlap.depth).reversed());
+        return overlaps;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // 获取已登记的网格数量
+    public synchronized int getCellCount() {
+        return cells.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cells.clear();
+    }
+
+    private void unlink(Entry<T> entry) {
+        forEachCoveredCell(entry, key -> {
+            List<Entry<T>> cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(entry);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        });
+    }
+
+    // 遍历覆盖球与之相交的网格
+    private void forEachCoveredCell(Entry<T> entry, CellVisitor visitor) {
+        int r = entry.radius;
+        long radiusSquared = (long) r * r;
+        for (int cx = (entry.x - r) >> CELL_BITS; cx <= (entry.x + r) >> CELL_BITS; cx++) {
+            long dx = axisDistance(entry.x, cx);
+            for (int cy = (entry.y - r) >> CELL_BITS; cy <= (entry.y + r) >> CELL_BITS; cy++) {
+                long dy = axisDistance(entry.y, cy);
+                for (int cz = (entry.z - r) >> CELL_BITS; cz <= (entry.z + r) >> CELL_BITS; cz++) {
+                    long dz = axisDistance(entry.z, cz);
+                    if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                        visitor.visit(BlockPos.asLong(cx, cy, cz));
+                    }
+                }
+            }
+        }
+    }
+
+    // 坐标到网格在该轴上的最近方块距离
+    private static long axisDistance(int coordinate, int cell) {
+        int min = cell << CELL_BITS;
+        int max = min + CELL_SIZE - 1;
+        if (coordinate < min) {
+            return min - coordinate;
+        }
+        if (coordinate > max) {
+            return coordinate - max;
+        }
+        return 0;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return BlockPos.asLong(x >> CELL_BITS, y >> CELL_BITS, z >> CELL_BITS);
+    }
+
+    private interface CellVisitor {
+        void visit(long key);
+    }
+
+    private static class Entry<T> {
+        private final T owner;
+        private final int seq;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final int radius;
+        private final int group;
+
+        Entry(T owner, int seq, int x, int y, int z, int radius, int group) {
+            this.owner = owner;
+            this.seq = seq;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.radius = radius;
+            this.group = group;
+        }
+
+        long squaredDistance(int px, int py, int pz) {
+            long dx = px - x;
+            long dy = py - y;
+            long dz = pz - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * 两个供电点的覆盖重叠
+     */
+    public static class Overlap<T> {
+        private final T first;
+        private final T second;
+        private final double distance;
+        private final double depth;
+
+        Overlap(T first, T second, double distance, double depth) {
+            this.first = first;
+            this.second = second;
+            this.distance = distance;
+            this.depth = depth;
+        }
+
+        public T getFirst() { return first; }
+        public T getSecond() { return second; }
+        // 两供电点间距
+        public double getDistance() { return distance; }
+        // 重叠深度（两覆盖半径之和减去间距）
+        public double getDepth() { return depth; }
+    }
+}
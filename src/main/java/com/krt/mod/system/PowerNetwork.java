@@ -0,0 +1,544 @@
+package com.krt.mod.system;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import com.krt.mod.KRTMod;
+import com.krt.mod.block.power.PowerTransmissionLineBlock;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 电力网络
+ * 将发电机、传输线、储能、轨道连接器、接触网及第三轨组成的网络用并查集划分为连通分量，
+ * 每个分量汇总供电和负载。网络只在方块放置/破坏或供电量变化时更新，
+ * 查询某位置是否有电及其电力等级为O(1)，分量通断电时向监听者发送一次事件。
+ */
+public class PowerNetwork {
+    private static final Map<World, PowerNetwork> INSTANCES = new HashMap<>();
+
+    // 26邻域偏移
+    private static final int[][] NEIGHBOR_OFFSETS;
+    static {
+        List<int[]> offsets = new ArrayList<>();
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -1; z <= 1; z++) {
+                    if (x != 0 || y != 0 || z != 0) {
+                        offsets.add(new int[]{x, y, z});
+                    }
+                }
+            }
+        }
+        NEIGHBOR_OFFSETS = offsets.toArray(new int[0][]);
+    }
+
+    // 单次注册时最多发现的传输线数量
+    private static final int MAX_LINE_DISCOVERY = 4096;
+
+    // 网络节点类型
+    public enum NodeType {
+        GENERATOR("发电机"),
+        TRANSMISSION_LINE("传输线"),
+        STORAGE("储能"),
+        RAIL_CONNECTOR("轨道连接器"),
+        OVERHEAD_POLE("接触网支柱"),
+        OVERHEAD_WIRE("接触网"),
+        THIRD_RAIL("第三轨");
+
+        private final String displayName;
+
+        NodeType(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        // 接触网侧与第三轨侧只能通过连接器等设备相连，不能直接导通
+        boolean connectsTo(NodeType other) {
+            boolean overhead = this == OVERHEAD_WIRE || this == OVERHEAD_POLE;
+            boolean otherOverhead = other == OVERHEAD_WIRE || other == OVERHEAD_POLE;
+            return !(overhead && other == THIRD_RAIL) && !(otherOverhead && this == THIRD_RAIL);
+        }
+    }
+
+    /**
+     * 通断电监听器
+     */
+    public interface PowerListener {
+        void onPowerChanged(PowerChangeEvent event);
+    }
+
+    /**
+     * 节点通断电回调（由方块实体注册，所在分量通断变化时通知）
+     */
+    public interface NodeListener {
+        void onNodePowerChanged(boolean powered);
+    }
+
+    /**
+     * 分量供电量变化回调（储能等需要区分自身与其他电源的节点注册）
+     * 分量中其他节点的供电量变化、或分量合并/拆分导致供电量变化时通知，通断是否翻转都会通知
+     */
+    public interface SupplyListener {
+        void onComponentSupplyChanged();
+    }
+
+    private final World world;
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final List<PowerListener> listeners = new CopyOnWriteArrayList<>();
+    // 供电量回调（节点位置 -> 回调），数量很少，供电量变化时逐个检查是否在受影响的分量中
+    private final Map<Long, SupplyListener> supplyListeners = new HashMap<>();
+    private int nextComponentId = 1;
+
+    private PowerNetwork(World world) {
+        this.world = world;
+    }
+
+    public static synchronized PowerNetwork getInstance(World world) {
+        return INSTANCES.computeIfAbsent(world, PowerNetwork::new);
+    }
+
+    public static synchronized void removeForWorld(World world) {
+        INSTANCES.remove(world);
+    }
+
+    // 世界卸载时丢弃其电力网络，重新加载后由方块实体重新注册
+    public static void initialize() {
+        ServerWorldEvents.UNLOAD.register((server, world) -> removeForWorld(world));
+    }
+
+    public void addListener(PowerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PowerListener listener) {
+        listeners.remove(listener);
+    }
+
+    // 添加节点（方块放置或方块实体加载时调用），已存在时更新类型
+    public void addNode(BlockPos pos, NodeType type) {
+        addNode(pos, type, null);
+    }
+
+    // 添加节点并设置通断电回调，节点已存在且类型相同时只替换回调
+    public void addNode(BlockPos pos, NodeType type, NodeListener listener) {
+        List<PowerChangeEvent> events = new ArrayList<>();
+        List<SupplyListener> supplyChanged = new ArrayList<>();
+        synchronized (this) {
+            long key = pos.asLong();
+            Node existing = nodes.get(key);
+            if (existing != null) {
+                if (existing.type == type) {
+                    if (listener != null) {
+                        existing.listener = listener;
+                    }
+                    return;
+                }
+                removeNodeInternal(key, events, supplyChanged);
+            }
+
+            Node node = new Node(key, type);
+            node.listener = listener;
+            node.component = new Component(nextComponentId++);
+            node.component.members.add(node);
+            nodes.put(key, node);
+
+            // 新节点连通了原本无电的分量且合并后有电时，视为这些分量恢复供电
+            boolean joinedUnpowered = false;
+            int merged = 0;
+            for (int[] offset : NEIGHBOR_OFFSETS) {
+                Node neighbor = nodes.get(BlockPos.add(key, offset[0], offset[1], offset[2]));
+                if (neighbor != null && type.connectsTo(neighbor.type)) {
+                    Node root = find(neighbor);
+                    if (root != find(node)) {
+                        joinedUnpowered |= !root.component.isPowered();
+                        union(node, neighbor);
+                        merged++;
+                    }
+                }
+            }
+            if (joinedUnpowered) {
+                report(find(node).component, false, events);
+            }
+            // 连通了多个分量时，各分量看到的供电量都可能变化
+            if (merged > 1) {
+                collectSupplyListeners(find(node).component, key, supplyChanged);
+            }
+        }
+        fire(events);
+        fireSupplyChanged(supplyChanged);
+    }
+
+    // 方块实体加入世界时调用：加入网络，并把相连的已加载传输线（无方块实体）一并加入
+    public void registerNode(BlockPos pos, NodeType type) {
+        registerNode(pos, type, null);
+    }
+
+    public void registerNode(BlockPos pos, NodeType type, NodeListener listener) {
+        addNode(pos, type, listener);
+        if (world == null || world.isClient) {
+            return;
+        }
+
+        Deque<BlockPos> queue = new ArrayDeque<>();
+        queue.add(pos);
+        int discovered = 0;
+        while (!queue.isEmpty() && discovered < MAX_LINE_DISCOVERY) {
+            BlockPos current = queue.poll();
+            for (int[] offset : NEIGHBOR_OFFSETS) {
+                BlockPos neighbor = current.add(offset[0], offset[1], offset[2]);
+                if (containsNode(neighbor) || !world.isChunkLoaded(neighbor)) {
+                    continue;
+                }
+                if (world.getBlockState(neighbor).getBlock() instanceof PowerTransmissionLineBlock) {
+                    addNode(neighbor, NodeType.TRANSMISSION_LINE);
+                    queue.add(neighbor);
+                    discovered++;
+                }
+            }
+        }
+    }
+
+    // 移除节点（方块破坏时调用），受影响的分量会被重新划分
+    public void removeNode(BlockPos pos) {
+        List<PowerChangeEvent> events = new ArrayList<>();
+        List<SupplyListener> supplyChanged = new ArrayList<>();
+        synchronized (this) {
+            removeNodeInternal(pos.asLong(), events, supplyChanged);
+        }
+        fire(events);
+        fireSupplyChanged(supplyChanged);
+    }
+
+    // 清除节点回调（方块实体卸载时调用），回调已被替换时不处理
+    public synchronized void removeNodeListener(BlockPos pos, NodeListener listener) {
+        Node node = nodes.get(pos.asLong());
+        if (node != null && node.listener == listener) {
+            node.listener = null;
+        }
+    }
+
+    // 设置供电量回调，同一位置只保留一个
+    public synchronized void setSupplyListener(BlockPos pos, SupplyListener listener) {
+        supplyListeners.put(pos.asLong(), listener);
+    }
+
+    // 清除供电量回调（方块实体卸载时调用），回调已被替换时不处理
+    public synchronized void removeSupplyListener(BlockPos pos, SupplyListener listener) {
+        supplyListeners.remove(pos.asLong(), listener);
+    }
+
+    // 设置节点供电量（发电机启停、储能充放电状态变化时调用）
+    public void setSupply(BlockPos pos, int supply) {
+        List<PowerChangeEvent> events = new ArrayList<>();
+        List<SupplyListener> supplyChanged = new ArrayList<>();
+        synchronized (this) {
+            Node node = nodes.get(pos.asLong());
+            if (node == null || node.supply == supply) {
+                return;
+            }
+            Component component = find(node).component;
+            boolean wasPowered = component.isPowered();
+            component.supply += supply - node.supply;
+            node.supply = supply;
+            report(component, wasPowered, events);
+            // 供电量变化的节点自己不需要通知
+            collectSupplyListeners(component, node.pos, supplyChanged);
+        }
+        fire(events);
+        fireSupplyChanged(supplyChanged);
+    }
+
+    // 设置节点负载
+    public synchronized void setDemand(BlockPos pos, int demand) {
+        Node node = nodes.get(pos.asLong());
+        if (node == null || node.demand == demand) {
+            return;
+        }
+        find(node).component.demand += demand - node.demand;
+        node.demand = demand;
+    }
+
+    public synchronized boolean containsNode(BlockPos pos) {
+        return nodes.containsKey(pos.asLong());
+    }
+
+    // 位置所在分量是否有电
+    public synchronized boolean isPowered(BlockPos pos) {
+        Node node = nodes.get(pos.asLong());
+        return node != null && find(node).component.isPowered();
+    }
+
+    // 位置所在分量的电力等级（0-100，负载超过供电时按比例下降）
+    public synchronized int getPowerLevel(BlockPos pos) {
+        Node node = nodes.get(pos.asLong());
+        return node == null ? 0 : find(node).component.getPowerLevel();
+    }
+
+    // 位置所在分量的编号，不在网络中时返回0
+    public synchronized int getComponentId(BlockPos pos) {
+        Node node = nodes.get(pos.asLong());
+        return node == null ? 0 : find(node).component.id;
+    }
+
+    // 位置所在分量的总供电量
+    public synchronized int getComponentSupply(BlockPos pos) {
+        Node node = nodes.get(pos.asLong());
+        return node == null ? 0 : find(node).component.supply;
+    }
+
+    // 位置所在分量的总负载
+    public synchronized int getComponentDemand(BlockPos pos) {
+        Node node = nodes.get(pos.asLong());
+        return node == null ? 0 : find(node).component.demand;
+    }
+
+    // 位置所在分量中指定类型节点的位置
+    public synchronized List<BlockPos> getComponentNodes(BlockPos pos, NodeType type) {
+        Node node = nodes.get(pos.asLong());
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<BlockPos> result = new ArrayList<>();
+        for (Node member : find(node).component.members) {
+            if (type == null || member.type == type) {
+                result.add(BlockPos.fromLong(member.pos));
+            }
+        }
+        return result;
+    }
+
+    public synchronized int getNodeCount() {
+        return nodes.size();
+    }
+
+    private void removeNodeInternal(long key, List<PowerChangeEvent> events, List<SupplyListener> supplyChanged) {
+        Node removed = nodes.remove(key);
+        if (removed == null) {
+            return;
+        }
+        supplyListeners.remove(key);
+        Component old = find(removed).component;
+        boolean wasPowered = old.isPowered();
+        int oldSupply = old.supply;
+
+        // 并查集不支持删除，对原分量的剩余节点重新划分
+        List<Node> remaining = new ArrayList<>(old.members.size());
+        for (Node member : old.members) {
+            if (member != removed) {
+                member.parent = member;
+                member.rank = 0;
+                member.component = new Component(nextComponentId++);
+                member.component.members.add(member);
+                member.component.supply = member.supply;
+                member.component.demand = member.demand;
+                remaining.add(member);
+            }
+        }
+        for (Node member : remaining) {
+            for (int[] offset : NEIGHBOR_OFFSETS) {
+                Node neighbor = nodes.get(BlockPos.add(member.pos, offset[0], offset[1], offset[2]));
+                if (neighbor != null && member.type.connectsTo(neighbor.type)) {
+                    union(member, neighbor);
+                }
+            }
+        }
+
+        // 与原分量通断状态不同的新分量各发送一次事件
+        Set<Component> split = new LinkedHashSet<>();
+        for (Node member : remaining) {
+            split.add(find(member).component);
+        }
+        for (Component component : split) {
+            report(component, wasPowered, events);
+            if (component.supply != oldSupply) {
+                collectSupplyListeners(component, key, supplyChanged);
+            }
+        }
+    }
+
+    // 收集分量中（除指定位置外）的供电量回调
+    private void collectSupplyListeners(Component component, long exclude, List<SupplyListener> out) {
+        for (Map.Entry<Long, SupplyListener> entry : supplyListeners.entrySet()) {
+            if (entry.getKey() == exclude) {
+                continue;
+            }
+            Node node = nodes.get(entry.getKey());
+            if (node != null && find(node).component == component) {
+                out.add(entry.getValue());
+            }
+        }
+    }
+
+    private void fireSupplyChanged(List<SupplyListener> supplyChanged) {
+        for (SupplyListener listener : supplyChanged) {
+            try {
+                listener.onComponentSupplyChanged();
+            } catch (Exception e) {
+                KRTMod.LOGGER.error("Power network supply listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Node find(Node node) {
+        Node root = node;
+        while (root.parent != root) {
+            root = root.parent;
+        }
+        // 路径压缩
+        while (node.parent != root) {
+            Node next = node.parent;
+            node.parent = root;
+            node = next;
+        }
+        return root;
+    }
+
+    // 合并两个节点所在的分量，按秩合并，成员列表并入保留的根
+    private void union(Node a, Node b) {
+        Node rootA = find(a);
+        Node rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (rootA.rank < rootB.rank || (rootA.rank == rootB.rank
+                && rootA.component.members.size() < rootB.component.members.size())) {
+            Node swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        Component kept = rootA.component;
+        Component merged = rootB.component;
+
+        rootB.parent = rootA;
+        rootB.component = null;
+        if (rootA.rank == rootB.rank) {
+            rootA.rank++;
+        }
+        kept.members.addAll(merged.members);
+        kept.supply += merged.supply;
+        kept.demand += merged.demand;
+    }
+
+    private void report(Component component, boolean wasPowered, List<PowerChangeEvent> events) {
+        if (component.isPowered() != wasPowered) {
+            PowerChangeEvent event = new PowerChangeEvent(component.id, component.isPowered(),
+                    component.getPowerLevel(), component.members.size());
+            // 只有通断翻转时才遍历成员收集回调
+            for (Node member : component.members) {
+                if (member.listener != null) {
+                    event.nodeListeners.add(member.listener);
+                }
+            }
+            events.add(event);
+        }
+    }
+
+    private void fire(List<PowerChangeEvent> events) {
+        for (PowerChangeEvent event : events) {
+            for (PowerListener listener : listeners) {
+                try {
+                    listener.onPowerChanged(event);
+                } catch (Exception e) {
+                    KRTMod.LOGGER.error("Power network listener failed: {}", e.getMessage());
+                }
+            }
+            for (NodeListener listener : event.nodeListeners) {
+                try {
+                    listener.onNodePowerChanged(event.powered);
+                } catch (Exception e) {
+                    KRTMod.LOGGER.error("Power network node listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    // 网络节点
+    private static class Node {
+        private final long pos;
+        private final NodeType type;
+        private Node parent = this;
+        private int rank = 0;
+        private int supply = 0;
+        private int demand = 0;
+        private NodeListener listener;
+        // 仅根节点持有分量信息
+        private Component component;
+
+        Node(long pos, NodeType type) {
+            this.pos = pos;
+            this.type = type;
+        }
+    }
+
+    // 连通分量汇总信息
+    private static class Component {
+        private final int id;
+        private final List<Node> members = new ArrayList<>();
+        private int supply = 0;
+        private int demand = 0;
+
+        Component(int id) {
+            this.id = id;
+        }
+
+        boolean isPowered() {
+            return supply > 0;
+        }
+
+        int getPowerLevel() {
+            if (supply <= 0) {
+                return 0;
+            }
+            if (demand <= supply) {
+                return 100;
+            }
+            return (int) (100L * supply / demand);
+        }
+    }
+
+    /**
+     * 分量通断电事件
+     */
+    public static class PowerChangeEvent {
+        private final int componentId;
+        private final boolean powered;
+        private final int powerLevel;
+        private final int nodeCount;
+        // 分量内需要通知的节点回调
+        private final List<NodeListener> nodeListeners = new ArrayList<>();
+
+        PowerChangeEvent(int componentId, boolean powered, int powerLevel, int nodeCount) {
+            this.componentId = componentId;
+            this.powered = powered;
+            this.powerLevel = powerLevel;
+            this.nodeCount = nodeCount;
+        }
+
+        public int getComponentId() {
+            return componentId;
+        }
+
+        public boolean isPowered() {
+            return powered;
+        }
+
+        public int getPowerLevel() {
+            return powerLevel;
+        }
+
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PowerChangeEvent{component=%d, powered=%s, level=%d, nodes=%d}",
+                    componentId, powered, powerLevel, nodeCount);
+        }
+    }
+}
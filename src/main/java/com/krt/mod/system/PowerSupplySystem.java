@@ -64,12 +64,21 @@ public class PowerSupplySystem {
     private final List<PowerGeneratorBlockEntity> generators = new ArrayList<>();
     private final List<PowerStorageBlockEntity> storageUnits = new ArrayList<>();
     private final List<RailPowerConnectorBlockEntity> railConnectors = new ArrayList<>();
+    // 轨道连接器覆盖范围的空间索引，列车按位置查询轨道电力时使用
+    private final PowerCoverageIndex<RailPowerConnectorBlockEntity> connectorCoverage = new PowerCoverageIndex<>();
     private PowerStatus systemStatus = PowerStatus.NORMAL;
     private int totalPower = 0;
     private int generatedPower = 0;
     private int consumedPower = 0;
     private int storedPower = 0;
     private int voltage = 1500; // 默认1500V直流电
+    // 直流牵引潮流计算（以已接入电网的轨道连接器作为牵引变电所）
+    private final TractionLoadFlowSolver loadFlow = new TractionLoadFlowSolver();
+    // 按供电区段结算的再生制动能量账本
+    private final RegenerativeEnergyLedger regenLedger = new RegenerativeEnergyLedger();
+    private long lastSettleTime = -1;
+    // 储能装置每单位电量对应的能量（焦耳）
+    private static final double JOULES_PER_STORAGE_UNIT = 1000;
     
     /**
      * 创建供电系统
@@ -216,6 +225,12 @@ public class PowerSupplySystem {
         // 更新轨道连接器
         updateRailConnectors();
         
+        // 计算各列车处的网压
+        solveTractionLoadFlow();
+        
+        // 结算各供电区段的再生制动能量
+        settleRegenerativeEnergy();
+        
         // 分配电力
         distributePower();
         
@@ -262,6 +277,99 @@ public class PowerSupplySystem {
         }
     }
     
+    /**
+     * 求解牵引网潮流，得到各列车处的网压
+     */
+    private void solveTractionLoadFlow() {
+        for (RailPowerConnectorBlockEntity connector : railConnectors) {
+            if (!connector.isRemoved() && connector.isConnectedToPowerGrid()) {
+                BlockPos pos = connector.getPos();
+                loadFlow.setSubstation(pos.asLong(), pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5,
+                        connector.getPowerType().getVoltage());
+            }
+        }
+        loadFlow.solve();
+        // 之后上报的列车负载计入下一次求解
+        loadFlow.beginUpdate();
+    }
+    
+    /**
+     * 结算再生制动能量：区段内先抵消牵引需求，剩余存入同一电力网络中的储能装置，其余由制动电阻消耗
+     */
+    private void settleRegenerativeEnergy() {
+        long now = world.getTime();
+        double seconds = lastSettleTime < 0 ? 0.1 : Math.max(0, now - lastSettleTime) / 20.0;
+        lastSettleTime = now;
+        
+        // 按电力网络分量归类有剩余容量的储能装置
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        Map<Integer, List<PowerStorageBlockEntity>> storageByComponent = new HashMap<>();
+        for (PowerStorageBlockEntity storage : storageUnits) {
+            if (!storage.isRemoved() && storage.getPowerPercentage() < 100) {
+                int componentId = network.getComponentId(storage.getPos());
+                if (componentId != 0) {
+                    storageByComponent.computeIfAbsent(componentId, id -> new ArrayList<>()).add(storage);
+                }
+            }
+        }
+        
+        regenLedger.settle(seconds, trainId -> {
+            long feeder = loadFlow.getTrainFeeder(trainId);
+            return feeder == TractionLoadFlowSolver.NO_FEEDER ? RegenerativeEnergyLedger.NO_SECTION : feeder;
+        }, (sectionKey, joules) -> {
+            List<PowerStorageBlockEntity> storages = storageByComponent.get(network.getComponentId(BlockPos.fromLong(sectionKey)));
+            if (storages == null) {
+                return 0;
+            }
+            double absorbed = 0;
+            for (PowerStorageBlockEntity storage : storages) {
+                int units = (int) ((joules - absorbed) / JOULES_PER_STORAGE_UNIT);
+                if (units <= 0) {
+                    break;
+                }
+                absorbed += storage.storePower(units) * JOULES_PER_STORAGE_UNIT;
+            }
+            return absorbed;
+        });
+    }
+    
+    /**
+     * 上报列车牵引功率和再生制动功率（瓦），未在下一次求解前上报的列车视为离开供电网
+     */
+    public void reportTractionLoad(String trainId, double x, double y, double z, double motoringWatts, double regenWatts) {
+        loadFlow.setTrainLoad(trainId, x, y, z, motoringWatts - regenWatts);
+        regenLedger.report(trainId, motoringWatts, regenWatts);
+    }
+    
+    /**
+     * 获取各供电区段的再生制动能量统计
+     */
+    public List<RegenerativeEnergyLedger.SectionEnergy> getFeederSectionEnergy() {
+        return regenLedger.getSections();
+    }
+    
+    public RegenerativeEnergyLedger getRegenLedger() {
+        return regenLedger;
+    }
+    
+    /**
+     * 获取列车处的网压（伏），不在供电范围内或尚未求解时为0
+     */
+    public double getTrainLineVoltage(String trainId) {
+        return loadFlow.getTrainVoltage(trainId);
+    }
+    
+    /**
+     * 获取列车处网压与额定电压之比，不在供电范围内或尚未求解时为0
+     */
+    public double getTrainVoltageRatio(String trainId) {
+        return loadFlow.getTrainVoltageRatio(trainId);
+    }
+    
+    public TractionLoadFlowSolver getLoadFlow() {
+        return loadFlow;
+    }
+    
     /**
      * 分配电力到存储单元和消耗设备
      */
@@ -468,6 +576,19 @@ public class PowerSupplySystem {
         if (!railConnectors.contains(connector)) {
             railConnectors.add(connector);
         }
+        updateRailConnectorCoverage(connector);
+    }
+    
+    /**
+     * 轨道连接器覆盖半径或供电制式变化后更新覆盖索引
+     */
+    public void updateRailConnectorCoverage(RailPowerConnectorBlockEntity connector) {
+        if (!railConnectors.contains(connector)) {
+            return;
+        }
+        PowerType type = connector.getPowerType();
+        connectorCoverage.put(connector, connector.getPos(), connector.getCoverageRadius(),
+                type != null ? type.ordinal() : 0);
     }
     
     /**
@@ -475,31 +596,43 @@ public class PowerSupplySystem {
      */
     public void removeRailConnector(RailPowerConnectorBlockEntity connector) {
         railConnectors.remove(connector);
+        connectorCoverage.remove(connector);
+        regenLedger.removeSection(connector.getPos().asLong());
     }
     
     /**
      * 获取指定位置的轨道电力等级
      */
     public int getRailPowerLevel(BlockPos pos) {
-        // 查找最近的轨道连接器
-        RailPowerConnectorBlockEntity closestConnector = null;
-        double closestDistance = Double.MAX_VALUE;
-        
-        for (RailPowerConnectorBlockEntity connector : railConnectors) {
-            double distance = connector.getPos().getSquaredDistance(pos);
-            if (distance < closestDistance && distance <= connector.getCoverageRadius() * connector.getCoverageRadius()) {
-                closestDistance = distance;
-                closestConnector = connector;
-            }
-        }
-        
+        // 通过覆盖索引查找覆盖该位置的最近轨道连接器
+        RailPowerConnectorBlockEntity closestConnector = connectorCoverage.findNearest(pos);
         return closestConnector != null ? closestConnector.getPowerLevel() : 0;
     }
     
+    /**
+     * 获取覆盖指定位置的所有轨道连接器
+     */
+    public List<RailPowerConnectorBlockEntity> getCoveringRailConnectors(BlockPos pos) {
+        return connectorCoverage.findCovering(pos);
+    }
+    
+    /**
+     * 获取同一供电制式的轨道连接器覆盖重叠情况（按重叠深度降序），用于供电网络设计
+     */
+    public List<PowerCoverageIndex.Overlap<RailPowerConnectorBlockEntity>> getRailConnectorOverlaps() {
+        return connectorCoverage.findOverlaps();
+    }
+    
     /**
      * 检查位置是否在供电范围内
      */
     public boolean isPositionPowered(BlockPos pos, int range) {
+        // 位置本身是电力网络节点（接触网、第三轨等）时直接查询所在分量
+        PowerNetwork network = PowerNetwork.getInstance(world);
+        if (network.containsNode(pos)) {
+            return network.isPowered(pos);
+        }
+        
         // 检查是否有轨道连接器在范围内
         for (RailPowerConnectorBlockEntity connector : railConnectors) {
             if (connector.getPos().getSquaredDistance(pos) <= range * range && connector.getPowerLevel() > 0) {
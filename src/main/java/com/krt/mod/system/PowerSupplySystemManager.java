@@ -1,5 +1,7 @@
 package com.krt.mod.system;
 
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.world.World;
 import java.util.HashMap;
 import java.util.Map;
@@ -9,6 +11,22 @@ import java.util.Map;
  */
 public class PowerSupplySystemManager {
     private static final Map<World, PowerSupplySystem> POWER_SYSTEMS = new HashMap<>();
+    // 供电系统更新间隔（tick）
+    private static final int UPDATE_INTERVAL = 2;
+    
+    /**
+     * 注册世界tick：每个已有供电系统的世界按间隔更新（潮流计算、再生能量结算、电力分配）
+     */
+    public static void initialize() {
+        ServerTickEvents.END_WORLD_TICK.register(world -> {
+            PowerSupplySystem system = POWER_SYSTEMS.get(world);
+            if (system != null && world.getTime() % UPDATE_INTERVAL == 0) {
+                system.update();
+            }
+        });
+        // 世界卸载时丢弃其供电系统
+        ServerWorldEvents.UNLOAD.register((server, world) -> removeForWorld(world));
+    }
     
     /**
      * 获取指定世界的供电系统
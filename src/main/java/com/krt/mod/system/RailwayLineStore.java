@@ -0,0 +1,267 @@
+package com.krt.mod.system;
+
+import com.krt.mod.KRTMod;
+import com.krt.mod.system.LineControlSystem.LineInfo;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.world.PersistentState;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 按线路分块的铁路数据存储
+ * 每条线路单独保存为一个文件，索引（本持久化状态）只记录线路编号和文件名。
+ * 世界保存时只重写修改计数发生变化的线路，索引仅在线路增删时重写；所有文件先写临时文件再原子重命名。
+ * 读取失败的线路文件保留在索引和磁盘上，不会被当作已删除的线路清除；同编号的线路重新创建时原文件改名为 .corrupt。
+ * 从旧的整体存档迁移时，首次分线路保存成功后旧存档改名为 .migrated，不再读取。
+ */
+public class RailwayLineStore extends PersistentState {
+    public static final String INDEX_KEY = "krt_railway_index";
+    private static final String LINES_DIR = "krt_railway_lines";
+
+    // 线路编号 -> 已保存的状态
+    private final Map<String, SavedLine> savedLines = new HashMap<>();
+    // 存档数据目录（<维度>/data），由 SaveDataManager 在获取实例后设置
+    private Path dataDir;
+    // 是否从已有索引文件加载（否则需要检查旧格式存档）
+    private final boolean loadedFromDisk;
+    // 线路控制系统是否已从本存储加载；加载前保存会把尚未加载的线路当作已删除
+    private boolean synced = false;
+    // 迁移来源的旧整体存档，首次分线路保存成功后改名
+    private Path legacyFile;
+
+    public RailwayLineStore() {
+        this.loadedFromDisk = false;
+    }
+
+    // 从索引NBT创建实例
+    public RailwayLineStore(NbtCompound nbt) {
+        this.loadedFromDisk = true;
+        NbtList lines = nbt.getList("lines", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < lines.size(); i++) {
+            NbtCompound entry = lines.getCompound(i);
+            savedLines.put(entry.getString("lineId"), new SavedLine(entry.getString("file")));
+        }
+    }
+
+    public void setDataDir(Path dataDir) {
+        this.dataDir = dataDir;
+    }
+
+    // 记录本次数据从旧整体存档（data/<key>.dat）迁移而来
+    public void setLegacyFile(String legacyKey) {
+        if (dataDir != null) {
+            this.legacyFile = dataDir.resolve(legacyKey + ".dat");
+        }
+    }
+
+    public boolean isLoadedFromDisk() {
+        return loadedFromDisk;
+    }
+
+    @Override
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        nbt.putInt("formatVersion", SaveDataManager.RailwayData.FORMAT_VERSION);
+        NbtList lines = new NbtList();
+        for (Map.Entry<String, SavedLine> entry : new TreeMap<>(savedLines).entrySet()) {
+            NbtCompound lineEntry = new NbtCompound();
+            lineEntry.putString("lineId", entry.getKey());
+            lineEntry.putString("file", entry.getValue().file);
+            lines.add(lineEntry);
+        }
+        nbt.put("lines", lines);
+        return nbt;
+    }
+
+    /**
+     * 读取索引中的所有线路，读取失败的线路会被跳过并记录错误，其文件保持不动
+     */
+    public List<LineInfo> loadLines() {
+        List<LineInfo> lines = new ArrayList<>();
+        if (dataDir == null) {
+            return lines;
+        }
+        Path linesDir = dataDir.resolve(LINES_DIR);
+        for (Map.Entry<String, SavedLine> entry : savedLines.entrySet()) {
+            File file = linesDir.resolve(entry.getValue().file).toFile();
+            try {
+                NbtCompound nbt = NbtIo.readCompressed(file);
+                lines.add(SaveDataManager.RailwayData.decodeLine(nbt, nbt.getInt("formatVersion")));
+            } catch (IOException e) {
+                entry.getValue().loadFailed = true;
+                KRTMod.LOGGER.error("读取线路 {} 的存档失败，保留文件 {} 不做修改: {}", entry.getKey(), file, e.getMessage());
+            }
+        }
+        return lines;
+    }
+
+    // 记录线路当前内容已与磁盘一致（加载完成后调用，迁移旧存档时传入空集合）
+    public void markClean(Collection<LineInfo> lines) {
+        synced = true;
+        for (LineInfo line : lines) {
+            SavedLine saved = savedLines.computeIfAbsent(line.getLineId(), id -> new SavedLine(fileNameFor(id)));
+            saved.line = line;
+            saved.revision = line.getRevision();
+        }
+    }
+
+    @Override
+    public boolean isDirty() {
+        return super.isDirty() || (synced && hasChangedLines(LineControlSystem.getAllLines()));
+    }
+
+    private boolean hasChangedLines(Collection<LineInfo> lines) {
+        // 读取失败的线路不在线路控制系统中，不计入数量
+        int loaded = 0;
+        for (SavedLine saved : savedLines.values()) {
+            if (!saved.loadFailed) {
+                loaded++;
+            }
+        }
+        if (lines.size() != loaded) {
+            return true;
+        }
+        for (LineInfo line : lines) {
+            SavedLine saved = savedLines.get(line.getLineId());
+            if (saved == null || saved.isStale(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 世界保存时由持久化状态管理器调用
+    @Override
+    public void save(File file) {
+        if (synced) {
+            saveChanges(file.toPath());
+        }
+    }
+
+    // 立即保存有变化的线路（如线路控制面板手动保存）
+    public void saveNow() {
+        synced = true;
+        if (dataDir != null) {
+            saveChanges(dataDir.resolve(INDEX_KEY + ".dat"));
+        }
+    }
+
+    private synchronized void saveChanges(Path indexFile) {
+        Path linesDir = indexFile.resolveSibling(LINES_DIR);
+        Collection<LineInfo> lines = LineControlSystem.getAllLines();
+        boolean indexChanged = super.isDirty();
+        int written = 0;
+
+        try {
+            Files.createDirectories(linesDir);
+
+            // 只重写修改过的线路
+            Set<String> current = new HashSet<>();
+            for (LineInfo line : lines) {
+                current.add(line.getLineId());
+                SavedLine saved = savedLines.get(line.getLineId());
+                if (saved == null) {
+                    saved = new SavedLine(fileNameFor(line.getLineId()));
+                    savedLines.put(line.getLineId(), saved);
+                    indexChanged = true;
+                } else if (!saved.isStale(line)) {
+                    continue;
+                } else if (saved.loadFailed) {
+                    // 重新创建了读取失败的线路，先保留原文件再写入新内容
+                    Path old = linesDir.resolve(saved.file);
+                    if (Files.exists(old)) {
+                        Files.move(old, old.resolveSibling(saved.file + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+                        KRTMod.LOGGER.warn("线路 {} 的原存档无法读取，已改名为 {}.corrupt", line.getLineId(), saved.file);
+                    }
+                    saved.loadFailed = false;
+                }
+                NbtCompound nbt = SaveDataManager.RailwayData.encodeLine(line);
+                nbt.putInt("formatVersion", SaveDataManager.RailwayData.FORMAT_VERSION);
+                writeAtomically(nbt, linesDir.resolve(saved.file));
+                saved.line = line;
+                saved.revision = line.getRevision();
+                written++;
+            }
+
+            // 删除已不存在的线路（读取失败的线路不是被删除的，保留在索引中）
+            Iterator<Map.Entry<String, SavedLine>> iterator = savedLines.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, SavedLine> entry = iterator.next();
+                if (!current.contains(entry.getKey()) && !entry.getValue().loadFailed) {
+                    Files.deleteIfExists(linesDir.resolve(entry.getValue().file));
+                    iterator.remove();
+                    indexChanged = true;
+                }
+            }
+
+            if (indexChanged) {
+                NbtCompound wrapper = new NbtCompound();
+                wrapper.put("data", writeNbt(new NbtCompound()));
+                NbtHelper.putDataVersion(wrapper);
+                writeAtomically(wrapper, indexFile);
+            }
+            setDirty(false);
+            if (legacyFile != null) {
+                // 线路已写入分线路文件，旧整体存档改名保留，下次加载不再迁移
+                if (Files.exists(legacyFile)) {
+                    Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    KRTMod.LOGGER.info("线路数据已迁移为分线路存档，旧存档改名为 {}.migrated", legacyFile.getFileName());
+                }
+                legacyFile = null;
+            }
+            if (written > 0 || indexChanged) {
+                KRTMod.LOGGER.debug("增量保存线路数据: 重写 {} 条线路，共 {} 条", written, lines.size());
+            }
+        } catch (IOException e) {
+            KRTMod.LOGGER.error("保存线路数据失败: {}", e.getMessage());
+        }
+    }
+
+    // 先写入临时文件再原子重命名，避免保存中断时留下不完整的文件
+    static void writeAtomically(NbtCompound nbt, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        NbtIo.writeCompressed(nbt, temp.toFile());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // 线路文件名：保留安全字符，附加编号哈希以区分清洗后相同的编号
+    private static String fileNameFor(String lineId) {
+        String safe = lineId.replaceAll("[^A-Za-z0-9_-]", "_");
+        if (safe.length() > 48) {
+            safe = safe.substring(0, 48);
+        }
+        return "line_" + safe + "_" + Integer.toHexString(lineId.hashCode()) + ".dat";
+    }
+
+    // 已保存线路的状态
+    private static class SavedLine {
+        private final String file;
+        // 最近一次保存或加载时的线路对象和修改计数
+        private LineInfo line;
+        private int revision = -1;
+        // 加载时读取失败，文件需要保留
+        private boolean loadFailed;
+
+        SavedLine(String file) {
+            this.file = file;
+        }
+
+        boolean isStale(LineInfo current) {
+            return line != current || revision != current.getRevision();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.krt.mod.system;
+
+import java.util.*;
+
+/**
+ * 再生制动能量账本
+ * 按供电区段（最近的牵引变电所）汇总列车的牵引和再生功率，每个结算周期一次性结算：
+ * 同一区段内制动列车的再生能量优先供给牵引列车，剩余部分存入储能装置，仍有剩余则由制动电阻消耗。
+ * 结算复杂度为 O(列车数 + 区段数)。
+ */
+public class RegenerativeEnergyLedger {
+    // 不在任何供电区段内（无法向电网回馈）的区段键
+    public static final long NO_SECTION = Long.MIN_VALUE;
+
+    /**
+     * 区段剩余再生能量的吸收者（如储能装置）
+     */
+    public interface SurplusSink {
+        // 尝试吸收指定区段的剩余能量（焦耳），返回实际吸收量
+        double absorb(long sectionKey, double joules);
+    }
+
+    /**
+     * 列车所在区段查询
+     */
+    public interface SectionResolver {
+        long getSection(String trainId);
+    }
+
+    // 本周期上报（列车ID -> 下标）
+    private final Map<String, Integer> reportIndex = new HashMap<>();
+    private String[] reportedTrains = new String[16];
+    private double[] motoringPower = new double[16];
+    private double[] regenPower = new double[16];
+    private int reportCount = 0;
+
+    private final Map<Long, SectionEnergy> sections = new HashMap<>();
+    private final List<SectionEnergy> touched = new ArrayList<>();
+    private long settleCount = 0;
+
+    // 不在供电区段内的列车被迫消耗的再生能量（焦耳）
+    private double offGridDissipated = 0;
+
+    /**
+     * 上报列车本周期的牵引功率和再生功率（瓦），同一周期内重复上报以最后一次为准
+     */
+    public synchronized void report(String trainId, double motoringWatts, double regenWatts) {
+        Integer index = reportIndex.get(trainId);
+        if (index == null) {
+            if (reportCount == reportedTrains.length) {
+                int capacity = reportCount * 2;
+                reportedTrains = Arrays.copyOf(reportedTrains, capacity);
+                motoringPower = Arrays.copyOf(motoringPower, capacity);
+                regenPower = Arrays.copyOf(regenPower, capacity);
+            }
+            index = reportCount++;
+            reportIndex.put(trainId, index);
+            reportedTrains[index] = trainId;
+        }
+        motoringPower[index] = Math.max(0, motoringWatts);
+        regenPower[index] = Math.max(0, regenWatts);
+    }
+
+    /**
+     * 结算本周期
+     * @param seconds 周期时长（秒）
+     * @param resolver 列车所在区段
+     * @param sink 剩余能量吸收者，可为null
+     */
+    public synchronized void settle(double seconds, SectionResolver resolver, SurplusSink sink) {
+        settleCount++;
+        touched.clear();
+
+        // 第一遍：按区段累加功率
+        for (int i = 0; i < reportCount; i++) {
+            long key = resolver.getSection(reportedTrains[i]);
+            if (key == NO_SECTION) {
+                offGridDissipated += regenPower[i] * seconds;
+                continue;
+            }
+            SectionEnergy section = sections.computeIfAbsent(key, SectionEnergy::new);
+            if (section.lastSettle != settleCount) {
+                section.lastSettle = settleCount;
+                section.motoringPower = 0;
+                section.regenPower = 0;
+                section.trainCount = 0;
+                touched.add(section);
+            }
+            section.motoringPower += motoringPower[i];
+            section.regenPower += regenPower[i];
+            section.trainCount++;
+        }
+
+        // 第二遍：逐区段结算
+        for (SectionEnergy section : touched) {
+            double regenerated = section.regenPower * seconds;
+            double demand = section.motoringPower * seconds;
+            double reused = Math.min(regenerated, demand);
+            double surplus = regenerated - reused;
+            double stored = 0;
+            if (surplus > 0 && sink != null) {
+                stored = Math.max(0, Math.min(surplus, sink.absorb(section.key, surplus)));
+            }
+            section.totalRegenerated += regenerated;
+            section.totalReused += reused;
+            section.totalStored += stored;
+            section.totalDissipated += surplus - stored;
+            section.totalDrawn += demand - reused;
+        }
+
+        // 未被更新的区段功率清零
+        for (SectionEnergy section : sections.values()) {
+            if (section.lastSettle != settleCount) {
+                section.motoringPower = 0;
+                section.regenPower = 0;
+                section.trainCount = 0;
+            }
+        }
+
+        for (int i = 0; i < reportCount; i++) {
+            reportedTrains[i] = null;
+        }
+        reportIndex.clear();
+        reportCount = 0;
+    }
+
+    public synchronized SectionEnergy getSection(long key) {
+        return sections.get(key);
+    }
+
+    public synchronized List<SectionEnergy> getSections() {
+        return new ArrayList<>(sections.values());
+    }
+
+    // 移除区段（变电所拆除时调用）
+    public synchronized void removeSection(long key) {
+        sections.remove(key);
+    }
+
+    public synchronized double getOffGridDissipated() {
+        return offGridDissipated;
+    }
+
+    /**
+     * 区段能量统计（能量单位为焦耳，功率单位为瓦）
+     */
+    public static class SectionEnergy {
+        private final long key;
+        private long lastSettle = 0;
+        // 最近一个周期
+        private double motoringPower = 0;
+        private double regenPower = 0;
+        private int trainCount = 0;
+        // 累计
+        private double totalRegenerated = 0;
+        private double totalReused = 0;
+        private double totalStored = 0;
+        private double totalDissipated = 0;
+        private double totalDrawn = 0;
+
+        SectionEnergy(long key) {
+            this.key = key;
+        }
+
+        public long getKey() { return key; }
+        public double getMotoringPower() { return motoringPower; }
+        public double getRegenPower() { return regenPower; }
+        public int getTrainCount() { return trainCount; }
+        public double getTotalRegenerated() { return totalRegenerated; }
+        public double getTotalReused() { return totalReused; }
+        public double getTotalStored() { return totalStored; }
+        public double getTotalDissipated() { return totalDissipated; }
+        // 由变电所提供的牵引能量
+        public double getTotalDrawn() { return totalDrawn; }
+
+        // 再生能量利用率（被其他列车使用或存储的比例）
+        public double getRecoveryRate() {
+            return totalRegenerated > 0 ? (totalReused + totalStored) / totalRegenerated : 0;
+        }
+    }
+}
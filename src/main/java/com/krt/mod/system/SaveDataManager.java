@@ -6,34 +6,30 @@ import com.krt.mod.system.LineControlSystem.StationInfo;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
+import net.minecraft.nbt.NbtString;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.WorldSavePath;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.PersistentState;
 import net.minecraft.world.PersistentStateManager;
 import net.minecraft.world.World;
+import net.minecraft.world.dimension.DimensionType;
 
+import java.nio.file.Path;
 import java.util.*;
 
 public class SaveDataManager {
     private static final String DATA_KEY = "krt_railway_data";
 
-    // 保存线路数据到世界存档
+    // 保存线路数据到世界存档（只重写有变化的线路）
     public static void saveRailwayData(World world) {
         if (!(world instanceof ServerWorld)) {
             return; // 只在服务端保存数据
         }
 
-        ServerWorld serverWorld = (ServerWorld) world;
-        PersistentStateManager stateManager = serverWorld.getPersistentStateManager();
-        RailwayData data = stateManager.getOrCreate(RailwayData::new, RailwayData::new, DATA_KEY);
-
-        // 从LineControlSystem获取线路数据
-        Collection<LineInfo> lines = LineControlSystem.getAllLines();
-        data.saveLines(lines);
-
-        // 标记数据为已修改，以便保存
-        data.markDirty();
-        KRTMod.LOGGER.info("已保存 {} 条线路数据到存档", lines.size());
+        RailwayLineStore store = getLineStore((ServerWorld) world);
+        store.saveNow();
+        KRTMod.LOGGER.info("已保存 {} 条线路数据到存档", LineControlSystem.getAllLines().size());
     }
 
     // 从世界存档加载线路数据
@@ -43,11 +39,21 @@ public class SaveDataManager {
         }
 
         ServerWorld serverWorld = (ServerWorld) world;
-        PersistentStateManager stateManager = serverWorld.getPersistentStateManager();
-        RailwayData data = stateManager.getOrCreate(RailwayData::new, RailwayData::new, DATA_KEY);
+        RailwayLineStore store = getLineStore(serverWorld);
+        Collection<LineInfo> lines = store.loadLines();
+        if (!store.isLoadedFromDisk()) {
+            // 尚无分线路存档时从旧的整体存档迁移，下次保存时写成分线路文件
+            RailwayData legacy = serverWorld.getPersistentStateManager().get(RailwayData::new, DATA_KEY);
+            if (legacy != null) {
+                lines = legacy.loadLines();
+                // 旧存档由分线路存储接管，不再作为持久化状态写回；首次分线路保存成功后改名保留
+                legacy.setDirty(false);
+                store.setLegacyFile(DATA_KEY);
+                KRTMod.LOGGER.info("从整体存档迁移 {} 条线路数据", lines.size());
+            }
+        }
 
         // 加载线路数据到LineControlSystem
-        Collection<LineInfo> lines = data.loadLines();
         LineControlSystem lineControlSystem = LineControlSystem.getInstance(world);
         
         // 清除现有线路数据（避免重复）
@@ -64,9 +70,21 @@ public class SaveDataManager {
             }
         }
 
+        // 刚从分线路存档加载的线路与磁盘一致，无需重写；迁移来的线路在下次保存时写出
+        store.markClean(store.isLoadedFromDisk() ? LineControlSystem.getAllLines() : Collections.emptyList());
+
         KRTMod.LOGGER.info("已从存档加载 {} 条线路数据", lines.size());
     }
 
+    // 获取分线路存储（作为持久化状态注册，世界保存时自动增量保存）
+    private static RailwayLineStore getLineStore(ServerWorld world) {
+        PersistentStateManager stateManager = world.getPersistentStateManager();
+        RailwayLineStore store = stateManager.getOrCreate(RailwayLineStore::new, RailwayLineStore::new, RailwayLineStore.INDEX_KEY);
+        Path worldDir = DimensionType.getSaveDirectory(world.getRegistryKey(), world.getServer().getSavePath(WorldSavePath.ROOT));
+        store.setDataDir(worldDir.resolve("data"));
+        return store;
+    }
+
     // 清除现有线路数据
     private static void clearExistingLines(LineControlSystem lineControlSystem) {
         // 在实际实现中，这里需要访问LineControlSystem中的lines字段
@@ -77,6 +95,10 @@ public class SaveDataManager {
 
     // 铁路数据持久化类
     public static class RailwayData extends PersistentState {
+        // 存档格式版本，按格式变化依次递增：
+        // 0（没有 formatVersion 标签）为每个位置一个复合标签的旧格式；1 为紧凑二进制格式，整体存档和分线路文件共用
+        public static final int FORMAT_VERSION = 1;
+
         private final List<LineInfoData> lineDataList = new ArrayList<>();
 
         public RailwayData() {
@@ -91,32 +113,7 @@ public class SaveDataManager {
         public void saveLines(Collection<LineInfo> lines) {
             lineDataList.clear();
             for (LineInfo line : lines) {
-                LineInfoData lineData = new LineInfoData();
-                lineData.lineId = line.getLineId();
-                lineData.lineName = line.getLineName();
-                lineData.maxSpeed = line.getMaxSpeed();
-
-                // 保存车站数据
-                for (StationInfo station : line.getStations()) {
-                    StationInfoData stationData = new StationInfoData();
-                    stationData.stationId = station.getStationId();
-                    stationData.stationName = station.getStationName();
-                    stationData.posX = station.getPosition().getX();
-                    stationData.posY = station.getPosition().getY();
-                    stationData.posZ = station.getPosition().getZ();
-                    lineData.stations.add(stationData);
-                }
-
-                // 保存轨道数据
-                for (BlockPos pos : line.getTracks()) {
-                    TrackPosData trackData = new TrackPosData();
-                    trackData.x = pos.getX();
-                    trackData.y = pos.getY();
-                    trackData.z = pos.getZ();
-                    lineData.tracks.add(trackData);
-                }
-
-                lineDataList.add(lineData);
+                lineDataList.add(toData(line));
             }
         }
 
@@ -124,61 +121,17 @@ public class SaveDataManager {
         public Collection<LineInfo> loadLines() {
             List<LineInfo> lines = new ArrayList<>();
             for (LineInfoData lineData : lineDataList) {
-                LineInfo line = new LineInfo(lineData.lineId, lineData.lineName);
-                line.setMaxSpeed(lineData.maxSpeed);
-
-                // 加载车站数据
-                for (StationInfoData stationData : lineData.stations) {
-                    BlockPos pos = new BlockPos(stationData.posX, stationData.posY, stationData.posZ);
-                    StationInfo station = new StationInfo(stationData.stationId, stationData.stationName, pos);
-                    line.addStation(station);
-                }
-
-                // 加载轨道数据
-                for (TrackPosData trackData : lineData.tracks) {
-                    BlockPos pos = new BlockPos(trackData.x, trackData.y, trackData.z);
-                    line.addTrack(pos);
-                }
-
-                lines.add(line);
+                lines.add(toLineInfo(lineData));
             }
             return lines;
         }
 
         @Override
         public NbtCompound writeNbt(NbtCompound nbt) {
+            nbt.putInt("formatVersion", FORMAT_VERSION);
             NbtList linesList = new NbtList();
             for (LineInfoData lineData : lineDataList) {
-                NbtCompound lineTag = new NbtCompound();
-                lineTag.putString("lineId", lineData.lineId);
-                lineTag.putString("lineName", lineData.lineName);
-                lineTag.putDouble("maxSpeed", lineData.maxSpeed);
-
-                // 保存车站列表
-                NbtList stationsList = new NbtList();
-                for (StationInfoData stationData : lineData.stations) {
-                    NbtCompound stationTag = new NbtCompound();
-                    stationTag.putString("stationId", stationData.stationId);
-                    stationTag.putString("stationName", stationData.stationName);
-                    stationTag.putInt("posX", stationData.posX);
-                    stationTag.putInt("posY", stationData.posY);
-                    stationTag.putInt("posZ", stationData.posZ);
-                    stationsList.add(stationTag);
-                }
-                lineTag.put("stations", stationsList);
-
-                // 保存轨道列表
-                NbtList tracksList = new NbtList();
-                for (TrackPosData trackData : lineData.tracks) {
-                    NbtCompound trackTag = new NbtCompound();
-                    trackTag.putInt("x", trackData.x);
-                    trackTag.putInt("y", trackData.y);
-                    trackTag.putInt("z", trackData.z);
-                    tracksList.add(trackTag);
-                }
-                lineTag.put("tracks", tracksList);
-
-                linesList.add(lineTag);
+                linesList.add(writeLine(lineData));
             }
             nbt.put("lines", linesList);
             return nbt;
@@ -186,46 +139,159 @@ public class SaveDataManager {
 
         public void readNbt(NbtCompound nbt) {
             lineDataList.clear();
-            if (nbt.contains("lines", NbtElement.LIST_TYPE)) {
-                NbtList linesList = nbt.getList("lines", NbtElement.COMPOUND_TYPE);
-                for (int i = 0; i < linesList.size(); i++) {
-                    NbtCompound lineTag = linesList.getCompound(i);
-                    LineInfoData lineData = new LineInfoData();
-                    lineData.lineId = lineTag.getString("lineId");
-                    lineData.lineName = lineTag.getString("lineName");
-                    lineData.maxSpeed = lineTag.getDouble("maxSpeed");
-
-                    // 加载车站列表
-                    if (lineTag.contains("stations", NbtElement.LIST_TYPE)) {
-                        NbtList stationsList = lineTag.getList("stations", NbtElement.COMPOUND_TYPE);
-                        for (int j = 0; j < stationsList.size(); j++) {
-                            NbtCompound stationTag = stationsList.getCompound(j);
-                            StationInfoData stationData = new StationInfoData();
-                            stationData.stationId = stationTag.getString("stationId");
-                            stationData.stationName = stationTag.getString("stationName");
-                            stationData.posX = stationTag.getInt("posX");
-                            stationData.posY = stationTag.getInt("posY");
-                            stationData.posZ = stationTag.getInt("posZ");
-                            lineData.stations.add(stationData);
-                        }
-                    }
-
-                    // 加载轨道列表
-                    if (lineTag.contains("tracks", NbtElement.LIST_TYPE)) {
-                        NbtList tracksList = lineTag.getList("tracks", NbtElement.COMPOUND_TYPE);
-                        for (int j = 0; j < tracksList.size(); j++) {
-                            NbtCompound trackTag = tracksList.getCompound(j);
-                            TrackPosData trackData = new TrackPosData();
-                            trackData.x = trackTag.getInt("x");
-                            trackData.y = trackTag.getInt("y");
-                            trackData.z = trackTag.getInt("z");
-                            lineData.tracks.add(trackData);
-                        }
-                    }
-
-                    lineDataList.add(lineData);
+            if (!nbt.contains("lines", NbtElement.LIST_TYPE)) {
+                return;
+            }
+            int version = nbt.getInt("formatVersion");
+            NbtList linesList = nbt.getList("lines", NbtElement.COMPOUND_TYPE);
+            for (int i = 0; i < linesList.size(); i++) {
+                lineDataList.add(readLine(linesList.getCompound(i), version));
+            }
+
+            // 旧格式存档在下次保存时转换为新格式
+            if (version < FORMAT_VERSION && !lineDataList.isEmpty()) {
+                KRTMod.LOGGER.info("线路数据存档格式从版本 {} 迁移到版本 {}", version, FORMAT_VERSION);
+                markDirty();
+            }
+        }
+
+        // 将单条线路编码为NBT（当前格式版本）
+        public static NbtCompound encodeLine(LineInfo line) {
+            return writeLine(toData(line));
+        }
+
+        // 从NBT解码单条线路
+        public static LineInfo decodeLine(NbtCompound lineTag, int version) {
+            return toLineInfo(readLine(lineTag, version));
+        }
+
+        private static LineInfoData toData(LineInfo line) {
+            LineInfoData lineData = new LineInfoData();
+            lineData.lineId = line.getLineId();
+            lineData.lineName = line.getLineName();
+            lineData.maxSpeed = line.getMaxSpeed();
+
+            // 保存车站数据
+            for (StationInfo station : line.getStations()) {
+                StationInfoData stationData = new StationInfoData();
+                stationData.stationId = station.getStationId();
+                stationData.stationName = station.getStationName();
+                stationData.pos = station.getPosition().asLong();
+                lineData.stations.add(stationData);
+            }
+
+            // 保存轨道数据（排序后的打包位置）
+            lineData.tracks = line.getTracks().toSortedLongArray();
+            return lineData;
+        }
+
+        private static LineInfo toLineInfo(LineInfoData lineData) {
+            LineInfo line = new LineInfo(lineData.lineId, lineData.lineName);
+            line.setMaxSpeed(lineData.maxSpeed);
+
+            // 加载车站数据
+            for (StationInfoData stationData : lineData.stations) {
+                StationInfo station = new StationInfo(stationData.stationId, stationData.stationName,
+                        BlockPos.fromLong(stationData.pos));
+                line.addStation(station);
+            }
+
+            // 加载轨道数据
+            line.addTracks(lineData.tracks);
+            return line;
+        }
+
+        private static NbtCompound writeLine(LineInfoData lineData) {
+            NbtCompound lineTag = new NbtCompound();
+            lineTag.putString("lineId", lineData.lineId);
+            lineTag.putString("lineName", lineData.lineName);
+            lineTag.putDouble("maxSpeed", lineData.maxSpeed);
+
+            // 车站：编号和名称为字符串列表，位置为打包的long数组
+            NbtList stationIds = new NbtList();
+            NbtList stationNames = new NbtList();
+            long[] stationPositions = new long[lineData.stations.size()];
+            for (int i = 0; i < lineData.stations.size(); i++) {
+                StationInfoData stationData = lineData.stations.get(i);
+                stationIds.add(NbtString.of(stationData.stationId));
+                stationNames.add(NbtString.of(stationData.stationName));
+                stationPositions[i] = stationData.pos;
+            }
+            lineTag.put("stationIds", stationIds);
+            lineTag.put("stationNames", stationNames);
+            lineTag.putLongArray("stationPositions", stationPositions);
+
+            // 轨道：差分+变长整数编码为单个字节数组
+            lineTag.putInt("trackCount", lineData.tracks.length);
+            lineTag.putByteArray("trackData", PositionCodec.encode(lineData.tracks));
+            return lineTag;
+        }
+
+        private static LineInfoData readLine(NbtCompound lineTag, int version) {
+            LineInfoData lineData = new LineInfoData();
+            lineData.lineId = lineTag.getString("lineId");
+            lineData.lineName = lineTag.getString("lineName");
+            lineData.maxSpeed = lineTag.getDouble("maxSpeed");
+            if (version >= FORMAT_VERSION) {
+                readCompactLine(lineTag, lineData);
+            } else {
+                readLegacyLine(lineTag, lineData);
+            }
+            return lineData;
+        }
+
+        // 读取紧凑格式的车站和轨道
+        private static void readCompactLine(NbtCompound lineTag, LineInfoData lineData) {
+            NbtList stationIds = lineTag.getList("stationIds", NbtElement.STRING_TYPE);
+            NbtList stationNames = lineTag.getList("stationNames", NbtElement.STRING_TYPE);
+            long[] stationPositions = lineTag.getLongArray("stationPositions");
+            // 三个数组按下标对应，长度不一致时无法确定对应关系，丢弃该线路的车站
+            int stationCount = stationPositions.length;
+            if (stationIds.size() != stationCount || stationNames.size() != stationCount) {
+                KRTMod.LOGGER.error("线路 {} 的车站数据损坏: ID {} 个, 名称 {} 个, 位置 {} 个",
+                        lineData.lineId, stationIds.size(), stationNames.size(), stationCount);
+                stationCount = 0;
+            }
+            for (int j = 0; j < stationCount; j++) {
+                StationInfoData stationData = new StationInfoData();
+                stationData.stationId = stationIds.getString(j);
+                stationData.stationName = stationNames.getString(j);
+                stationData.pos = stationPositions[j];
+                lineData.stations.add(stationData);
+            }
+
+            try {
+                lineData.tracks = PositionCodec.decode(lineTag.getByteArray("trackData"), lineTag.getInt("trackCount"));
+            } catch (IllegalArgumentException e) {
+                KRTMod.LOGGER.error("线路 {} 的轨道数据损坏: {}", lineData.lineId, e.getMessage());
+                lineData.tracks = new long[0];
+            }
+        }
+
+        // 读取旧格式（每个位置一个复合标签）的车站和轨道
+        private static void readLegacyLine(NbtCompound lineTag, LineInfoData lineData) {
+            if (lineTag.contains("stations", NbtElement.LIST_TYPE)) {
+                NbtList stationsList = lineTag.getList("stations", NbtElement.COMPOUND_TYPE);
+                for (int j = 0; j < stationsList.size(); j++) {
+                    NbtCompound stationTag = stationsList.getCompound(j);
+                    StationInfoData stationData = new StationInfoData();
+                    stationData.stationId = stationTag.getString("stationId");
+                    stationData.stationName = stationTag.getString("stationName");
+                    stationData.pos = BlockPos.asLong(stationTag.getInt("posX"), stationTag.getInt("posY"), stationTag.getInt("posZ"));
+                    lineData.stations.add(stationData);
                 }
             }
+
+            if (lineTag.contains("tracks", NbtElement.LIST_TYPE)) {
+                NbtList tracksList = lineTag.getList("tracks", NbtElement.COMPOUND_TYPE);
+                long[] tracks = new long[tracksList.size()];
+                for (int j = 0; j < tracksList.size(); j++) {
+                    NbtCompound trackTag = tracksList.getCompound(j);
+                    tracks[j] = BlockPos.asLong(trackTag.getInt("x"), trackTag.getInt("y"), trackTag.getInt("z"));
+                }
+                Arrays.sort(tracks);
+                lineData.tracks = tracks;
+            }
         }
 
         // 内部数据类
@@ -234,21 +300,14 @@ public class SaveDataManager {
             public String lineName;
             public double maxSpeed;
             public List<StationInfoData> stations = new ArrayList<>();
-            public List<TrackPosData> tracks = new ArrayList<>();
+            // 升序排列的打包轨道位置
+            public long[] tracks = new long[0];
         }
 
         private static class StationInfoData {
             public String stationId;
             public String stationName;
-            public int posX;
-            public int posY;
-            public int posZ;
-        }
-
-        private static class TrackPosData {
-            public int x;
-            public int y;
-            public int z;
+            public long pos;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,482 @@
+package com.krt.mod.system;
+
+import com.krt.mod.system.BlockSectionManagement.BlockSection;
+
+import java.util.*;
+
+/**
+ * 闭塞区间进路搜索器
+ * 将闭塞区间连接关系压缩为数组形式的有向图，使用Dijkstra算法搜索最短进路，
+ * 使用Yen算法计算备选进路。每个起终点对的候选进路会被缓存，只有拓扑变化时才重建。
+ */
+public class SectionRouter {
+    // 每个起终点对缓存的候选进路数量
+    private static final int CACHED_CANDIDATES = 4;
+    // 最多缓存的起终点对数量
+    private static final int MAX_CACHED_PAIRS = 4096;
+    // 最低计算速度（m/s），避免限速为0时出现除零
+    private static final double MIN_SPEED = 0.1;
+
+    private final BlockSectionManagement management;
+
+    // 已构建图对应的拓扑版本
+    private long builtVersion = -1;
+
+    // 压缩图：节点为闭塞区间，边为区间连接关系（CSR格式）
+    private BlockSection[] nodes = new BlockSection[0];
+    private final Map<String, Integer> nodeIndex = new HashMap<>();
+    private int[] edgeStart = new int[1];
+    private int[] edgeTarget = new int[0];
+    // 通过每个区间的时间（秒）= 区间长度 / 限速
+    private double[] nodeCost = new double[0];
+
+    // 搜索过程复用的工作数组，通过时间戳避免每次清零
+    private double[] dist = new double[0];
+    private int[] prev = new int[0];
+    private int[] settledStamp = new int[0];
+    private int[] reachedStamp = new int[0];
+    private int[] blockedStamp = new int[0];
+    private int[] removedEdgeStamp = new int[0];
+    private int stamp = 0;
+    private final NodeHeap heap = new NodeHeap();
+
+    // 候选进路缓存（按访问顺序淘汰）
+    private final Map<Long, List<Route>> routeCache = new LinkedHashMap<Long, List<Route>>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, List<Route>> eldest) {
+            return size() > MAX_CACHED_PAIRS;
+        }
+    };
+
+    public SectionRouter(BlockSectionManagement management) {
+        this.management = management;
+    }
+
+    /**
+     * 查找列车当前可用的最短进路
+     * @return 最短可用进路，不存在时返回null
+     */
+    public synchronized Route findShortestRoute(String fromSectionId, String toSectionId, String trainId) {
+        List<Route> routes = findRoutes(fromSectionId, toSectionId, trainId, 1);
+        return routes.isEmpty() ? null : routes.get(0);
+    }
+
+    /**
+     * 查找列车当前可用的k条最短进路（按运行时间升序）
+     * 优先使用缓存的候选进路；候选进路均被占用时，按实时占用情况重新搜索
+     */
+    public synchronized List<Route> findRoutes(String fromSectionId, String toSectionId, String trainId, int k) {
+        ensureGraph();
+        Integer from = nodeIndex.get(fromSectionId);
+        Integer to = nodeIndex.get(toSectionId);
+        if (from == null || to == null || k <= 0) {
+            return Collections.emptyList();
+        }
+
+        List<Route> available = new ArrayList<>(k);
+        if (k <= CACHED_CANDIDATES) {
+            long key = ((long) from << 32) | (to & 0xFFFFFFFFL);
+            List<Route> candidates = routeCache.get(key);
+            if (candidates == null) {
+                candidates = computeRoutes(from, to, CACHED_CANDIDATES, null);
+                routeCache.put(key, candidates);
+            }
+            for (Route route : candidates) {
+                if (route.isAvailableFor(trainId)) {
+                    available.add(route);
+                    if (available.size() >= k) {
+                        return available;
+                    }
+                }
+            }
+            if (!available.isEmpty()) {
+                return available;
+            }
+        }
+
+        // 缓存的候选进路都不可用，绕开被占用或被其他列车预留的区间重新搜索
+        return computeRoutes(from, to, k, trainId);
+    }
+
+    /**
+     * 不使用缓存、按实时占用情况直接搜索最短进路
+     */
+    synchronized Route computeShortestRoute(String fromSectionId, String toSectionId, String trainId) {
+        ensureGraph();
+        Integer from = nodeIndex.get(fromSectionId);
+        Integer to = nodeIndex.get(toSectionId);
+        if (from == null || to == null) {
+            return null;
+        }
+        int[] path = shortestPath(from, to, trainId, false);
+        return path == null ? null : toRoute(path);
+    }
+
+    /**
+     * 获取当前缓存的起终点对数量
+     */
+    public synchronized int getCachedPairCount() {
+        return routeCache.size();
+    }
+
+    // 拓扑版本变化时重建压缩图并清空缓存
+    private void ensureGraph() {
+        long version = management.getTopologyVersion();
+        if (version == builtVersion) {
+            return;
+        }
+
+        Map<String, BlockSection> sections = management.getBlockSectionsView();
+        Map<String, List<String>> connections = management.getConnectionsView();
+
+        int nodeCount = sections.size();
+        nodes = new BlockSection[nodeCount];
+        nodeCost = new double[nodeCount];
+        nodeIndex.clear();
+        int index = 0;
+        for (BlockSection section : sections.values()) {
+            nodes[index] = section;
+            nodeCost[index] = section.getLength() / Math.max(MIN_SPEED, section.getSpeedLimit());
+            nodeIndex.put(section.getId(), index);
+            index++;
+        }
+
+        // 第一遍统计出度，第二遍填充边
+        edgeStart = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            edgeStart[i + 1] = edgeStart[i] + countTargets(connections.get(nodes[i].getId()));
+        }
+        edgeTarget = new int[edgeStart[nodeCount]];
+        for (int i = 0; i < nodeCount; i++) {
+            int cursor = edgeStart[i];
+            List<String> targets = connections.get(nodes[i].getId());
+            if (targets == null) {
+                continue;
+            }
+            for (String targetId : targets) {
+                Integer target = nodeIndex.get(targetId);
+                if (target != null) {
+                    edgeTarget[cursor++] = target;
+                }
+            }
+        }
+
+        dist = new double[nodeCount];
+        prev = new int[nodeCount];
+        settledStamp = new int[nodeCount];
+        reachedStamp = new int[nodeCount];
+        blockedStamp = new int[nodeCount];
+        removedEdgeStamp = new int[edgeTarget.length];
+        stamp = 0;
+
+        routeCache.clear();
+        builtVersion = version;
+    }
+
+    private int countTargets(List<String> targets) {
+        if (targets == null) {
+            return 0;
+        }
+        int count = 0;
+        for (String targetId : targets) {
+            if (nodeIndex.containsKey(targetId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Yen算法计算k条无环最短进路
+     * @param trainId 非null时跳过被占用或被其他列车预留的区间
+     */
+    List<Route> computeRoutes(int from, int to, int k, String trainId) {
+        List<Route> result = new ArrayList<>(k);
+        int[] first = shortestPath(from, to, trainId, false);
+        if (first == null) {
+            return result;
+        }
+        result.add(toRoute(first));
+
+        PriorityQueue<Route> candidates = new PriorityQueue<>(Comparator.comparingDouble(Route::getCost));
+        Set<PathKey> seen = new HashSet<>();
+        seen.add(new PathKey(first));
+        List<int[]> accepted = new ArrayList<>();
+        accepted.add(first);
+
+        while (result.size() < k) {
+            int[] previous = accepted.get(accepted.size() - 1);
+            for (int i = 0; i < previous.length - 1; i++) {
+                int spur = previous[i];
+
+                // 与已选进路共享相同前缀的，移除其在偏离点的下一条边
+                stamp++;
+                for (int[] path : accepted) {
+                    if (path.length > i + 1 && samePrefix(path, previous, i)) {
+                        markRemovedEdge(path[i], path[i + 1]);
+                    }
+                }
+                // 前缀上除偏离点外的区间不可再经过，保证进路无环
+                for (int j = 0; j < i; j++) {
+                    blockedStamp[previous[j]] = stamp;
+                }
+
+                int[] spurPath = shortestPath(spur, to, trainId, true);
+                if (spurPath != null) {
+                    int[] total = new int[i + spurPath.length];
+                    System.arraycopy(previous, 0, total, 0, i);
+                    System.arraycopy(spurPath, 0, total, i, spurPath.length);
+                    PathKey key = new PathKey(total);
+                    if (seen.add(key)) {
+                        candidates.add(toRoute(total));
+                    }
+                }
+            }
+
+            Route next = candidates.poll();
+            if (next == null) {
+                break;
+            }
+            result.add(next);
+            accepted.add(next.path);
+        }
+        return result;
+    }
+
+    private boolean samePrefix(int[] path, int[] reference, int length) {
+        for (int j = 0; j <= length; j++) {
+            if (path[j] != reference[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markRemovedEdge(int from, int to) {
+        for (int e = edgeStart[from]; e < edgeStart[from + 1]; e++) {
+            if (edgeTarget[e] == to) {
+                removedEdgeStamp[e] = stamp;
+            }
+        }
+    }
+
+    /**
+     * 单源最短路（Dijkstra），到达终点即停止
+     * 在Yen算法的偏离搜索中，当前时间戳标记的区间和边视为已移除
+     */
+    private int[] shortestPath(int from, int to, String trainId, boolean honourRemovals) {
+        if (!honourRemovals) {
+            stamp++;
+        }
+        int searchStamp = stamp;
+        if (trainId != null && !isPassable(from, trainId)) {
+            return null;
+        }
+
+        heap.clear();
+        dist[from] = nodeCost[from];
+        prev[from] = -1;
+        reachedStamp[from] = searchStamp;
+        heap.push(from, dist[from]);
+
+        while (!heap.isEmpty()) {
+            int node = heap.popNode();
+            if (settledStamp[node] == searchStamp) {
+                continue;
+            }
+            settledStamp[node] = searchStamp;
+            if (node == to) {
+                return buildPath(to);
+            }
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++) {
+                if (honourRemovals && removedEdgeStamp[e] == searchStamp) {
+                    continue;
+                }
+                int next = edgeTarget[e];
+                if (settledStamp[next] == searchStamp || (honourRemovals && blockedStamp[next] == searchStamp)) {
+                    continue;
+                }
+                if (trainId != null && !isPassable(next, trainId)) {
+                    continue;
+                }
+                double candidate = dist[node] + nodeCost[next];
+                if (reachedStamp[next] != searchStamp || candidate < dist[next]) {
+                    reachedStamp[next] = searchStamp;
+                    dist[next] = candidate;
+                    prev[next] = node;
+                    heap.push(next, candidate);
+                }
+            }
+        }
+        return null;
+    }
+
+    private int[] buildPath(int to) {
+        int length = 0;
+        for (int node = to; node != -1; node = prev[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = to, i = length - 1; node != -1; node = prev[node], i--) {
+            path[i] = node;
+        }
+        return path;
+    }
+
+    // 区间未被占用且未被其他列车预留时可通过
+    private boolean isPassable(int node, String trainId) {
+        BlockSection section = nodes[node];
+        return !section.isOccupied() && !section.isReservedByOtherTrain(trainId);
+    }
+
+    private Route toRoute(int[] path) {
+        BlockSection[] sections = new BlockSection[path.length];
+        double cost = 0;
+        double length = 0;
+        for (int i = 0; i < path.length; i++) {
+            sections[i] = nodes[path[i]];
+            cost += nodeCost[path[i]];
+            length += sections[i].getLength();
+        }
+        return new Route(path, sections, cost, length);
+    }
+
+    /**
+     * 进路结果
+     */
+    public static class Route {
+        private final int[] path;
+        private final BlockSection[] sections;
+        private final double cost;
+        private final double length;
+
+        private Route(int[] path, BlockSection[] sections, double cost, double length) {
+            this.path = path;
+            this.sections = sections;
+            this.cost = cost;
+            this.length = length;
+        }
+
+        /**
+         * 获取进路经过的闭塞区间（按行车顺序）
+         */
+        public List<BlockSection> getSections() {
+            return Collections.unmodifiableList(Arrays.asList(sections));
+        }
+
+        /**
+         * 获取按限速计算的运行时间（秒）
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        /**
+         * 获取进路总长度（米）
+         */
+        public double getLength() {
+            return length;
+        }
+
+        /**
+         * 检查进路上所有区间是否对指定列车可用
+         */
+        public boolean isAvailableFor(String trainId) {
+            for (BlockSection section : sections) {
+                if (section.isOccupied() || section.isReservedByOtherTrain(trainId)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Route{sections=%d, cost=%.1fs, length=%.1fm}", sections.length, cost, length);
+        }
+    }
+
+    // 用于候选进路去重的路径键
+    private static class PathKey {
+        private final int[] path;
+        private final int hash;
+
+        PathKey(int[] path) {
+            this.path = path;
+            this.hash = Arrays.hashCode(path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof PathKey && Arrays.equals(path, ((PathKey) o).path);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    // 基于原始数组的二叉小顶堆（允许重复节点，出堆时跳过已确定的节点）
+    private static class NodeHeap {
+        private int[] heapNodes = new int[64];
+        private double[] heapKeys = new double[64];
+        private int size = 0;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int node, double key) {
+            if (size == heapNodes.length) {
+                heapNodes = Arrays.copyOf(heapNodes, size * 2);
+                heapKeys = Arrays.copyOf(heapKeys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKeys[parent] <= key) {
+                    break;
+                }
+                heapNodes[i] = heapNodes[parent];
+                heapKeys[i] = heapKeys[parent];
+                i = parent;
+            }
+            heapNodes[i] = node;
+            heapKeys[i] = key;
+        }
+
+        int popNode() {
+            int top = heapNodes[0];
+            size--;
+            if (size > 0) {
+                int node = heapNodes[size];
+                double key = heapKeys[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heapKeys[child + 1] < heapKeys[child]) {
+                        child++;
+                    }
+                    if (heapKeys[child] >= key) {
+                        break;
+                    }
+                    heapNodes[i] = heapNodes[child];
+                    heapKeys[i] = heapKeys[child];
+                    i = child;
+                }
+                heapNodes[i] = node;
+                heapKeys[i] = key;
+            }
+            return top;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.krt.mod.system;
+
+import com.krt.mod.KRTMod;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.world.World;
+
+import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 信号运行状态日志
+ * 活跃警报、临时限速、已办理进路（及其道岔锁闭和区间预留）和ATS调整状态以键值记录追加写入
+ * <世界>/krt_mod 下的日志文件，崩溃或重启后重放恢复。
+ * 每条记录格式为：长度(int) + CRC32(int) + 内容，内容为操作类型、分类、键和NBT值；
+ * 记录由后台线程成批写入并在每批结束时落盘（组提交），记录数超过阈值时把当前状态压缩为快照并清空日志。
+ * 重放时遇到长度或校验错误的记录即视为崩溃时未写完的尾部，截断后继续运行。
+ */
+public class SignallingJournal {
+    private static final Map<World, SignallingJournal> INSTANCES = new HashMap<>();
+
+    // 状态分类
+    public static final String ALERTS = "alerts";
+    public static final String SPEED_LIMITS = "speed_limits";
+    public static final String ROUTES = "routes";
+    public static final String ATS_STATE = "ats_state";
+    public static final String ATS_SCHEDULES = "ats_schedules";
+
+    static final byte OP_PUT = 1;
+    static final byte OP_REMOVE = 2;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    // 日志记录数超过该值后压缩为快照
+    private static final int COMPACT_THRESHOLD = 20000;
+    // 写线程停止标记
+    private static final Object STOP = new Object();
+
+    // 日志文件，客户端世界为null（只保存在内存中）
+    private final File journalFile;
+    private final File snapshotFile;
+    // 最新状态：分类 -> 键 -> 值
+    private final Map<String, Map<String, NbtCompound>> state = new HashMap<>();
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+    private DataOutputStream journalOut;
+    private FileOutputStream journalFileOut;
+    private int journalRecords = 0;
+    private volatile boolean closed = false;
+
+    private SignallingJournal(World world) {
+        this(getJournalFile(world, ".journal"), getJournalFile(world, ".snapshot"));
+        if (journalFile != null) {
+            open();
+        }
+    }
+
+    // 只设置文件不打开日志，供基准测试直接重放记录文件
+    SignallingJournal(File journalFile, File snapshotFile) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+    }
+
+    private static File getJournalFile(World world, String extension) {
+        if (!(world instanceof ServerWorld serverWorld)) {
+            return null;
+        }
+        Path dir = serverWorld.getServer().getSavePath(WorldSavePath.ROOT).resolve("krt_mod");
+        Identifier dimension = world.getRegistryKey().getValue();
+        String baseName = "signalling_" + dimension.getNamespace() + "_" + dimension.getPath().replace('/', '_');
+        return dir.resolve(baseName + extension).toFile();
+    }
+
+    public static synchronized SignallingJournal getInstance(World world) {
+        return INSTANCES.computeIfAbsent(world, SignallingJournal::new);
+    }
+
+    // 世界卸载时写完剩余记录并压缩日志
+    public static void initialize() {
+        ServerWorldEvents.UNLOAD.register((server, world) -> {
+            SignallingJournal journal;
+            synchronized (SignallingJournal.class) {
+                journal = INSTANCES.remove(world);
+            }
+            if (journal != null) {
+                journal.close();
+            }
+        });
+    }
+
+    /**
+     * 记录状态项（新增或更新）
+     */
+    public void put(String category, String key, NbtCompound value) {
+        NbtCompound copy = value.copy();
+        synchronized (state) {
+            state.computeIfAbsent(category, k -> new HashMap<>()).put(key, copy);
+        }
+        enqueue(new Record(OP_PUT, category, key, copy));
+    }
+
+    /**
+     * 删除状态项
+     */
+    public void remove(String category, String key) {
+        synchronized (state) {
+            Map<String, NbtCompound> entries = state.get(category);
+            if (entries == null || entries.remove(key) == null) {
+                return;
+            }
+        }
+        enqueue(new Record(OP_REMOVE, category, key, null));
+    }
+
+    /**
+     * 获取某一分类下恢复出的所有状态项
+     */
+    public Map<String, NbtCompound> getEntries(String category) {
+        synchronized (state) {
+            Map<String, NbtCompound> entries = state.get(category);
+            return entries != null ? new LinkedHashMap<>(entries) : Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 等待已提交的记录写入磁盘
+     */
+    public void flush() {
+        if (writerThread == null || closed) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        queue.add(latch);
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                KRTMod.LOGGER.warn("信号状态日志写入超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 写完剩余记录，压缩为快照后关闭
+    public void close() {
+        if (writerThread == null || closed) {
+            return;
+        }
+        closed = true;
+        queue.add(STOP);
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            compact();
+            journalOut.close();
+        } catch (IOException e) {
+            KRTMod.LOGGER.error("关闭信号状态日志失败: {}", e.getMessage());
+        }
+    }
+
+    private void enqueue(Record record) {
+        if (writerThread != null && !closed) {
+            queue.add(record);
+        }
+    }
+
+    // 读取快照并重放日志，然后启动写线程
+    private void open() {
+        long start = System.nanoTime();
+        int replayed = 0;
+        try {
+            Files.createDirectories(journalFile.toPath().getParent());
+            if (snapshotFile.exists()) {
+                readRecords(snapshotFile);
+            }
+            long validLength = 0;
+            if (journalFile.exists()) {
+                long[] result = readRecords(journalFile);
+                replayed = (int) result[0];
+                validLength = result[1];
+                if (validLength < journalFile.length()) {
+                    KRTMod.LOGGER.warn("信号状态日志尾部有 {} 字节不完整的记录，已丢弃", journalFile.length() - validLength);
+                }
+            }
+            journalFileOut = new FileOutputStream(journalFile, true);
+            // 截断不完整的尾部，新记录接在最后一条有效记录之后
+            journalFileOut.getChannel().truncate(validLength);
+            journalOut = new DataOutputStream(new BufferedOutputStream(journalFileOut, 64 * 1024));
+            journalRecords = replayed;
+        } catch (IOException e) {
+            KRTMod.LOGGER.error("打开信号状态日志失败，本次运行不记录信号状态: {}", e.getMessage());
+            return;
+        }
+
+        writerThread = new Thread(this::runWriter, "KRTSignallingJournal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        KRTMod.LOGGER.info("信号状态日志恢复完成: 重放 {} 条记录，耗时 {} ms", replayed, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 读取记录文件并应用到状态
+     * @return [有效记录数, 最后一条有效记录结束的位置]
+     */
+    long[] readRecords(File file) throws IOException {
+        long count = 0;
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+        RecordInput recordInput = new RecordInput();
+        DataInputStream recordIn = new DataInputStream(recordInput);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            byte[] buffer = new byte[256];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                try {
+                    in.readFully(buffer, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                try {
+                    recordInput.reset(buffer, length);
+                    apply(Record.decode(recordIn));
+                } catch (IOException e) {
+                    break;
+                }
+                count++;
+                validLength += 8 + length;
+            }
+        }
+        return new long[]{count, validLength};
+    }
+
+    private void apply(Record record) {
+        synchronized (state) {
+            if (record.op == OP_PUT) {
+                state.computeIfAbsent(record.category, k -> new HashMap<>()).put(record.key, record.value);
+            } else {
+                Map<String, NbtCompound> entries = state.get(record.category);
+                if (entries != null) {
+                    entries.remove(record.key);
+                }
+            }
+        }
+    }
+
+    // 写线程：取出当前积压的全部记录一次写入，每批只落盘一次
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>();
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+        CRC32 crc = new CRC32();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+
+            List<CountDownLatch> waiters = new ArrayList<>();
+            try {
+                for (Object item : batch) {
+                    if (item instanceof Record record) {
+                        writeRecord(journalOut, record, recordBuffer, crc);
+                        journalRecords++;
+                    } else if (item instanceof CountDownLatch latch) {
+                        waiters.add(latch);
+                    } else if (item == STOP) {
+                        stopped = true;
+                    }
+                }
+                journalOut.flush();
+                journalFileOut.getFD().sync();
+                if (journalRecords >= COMPACT_THRESHOLD) {
+                    compact();
+                }
+            } catch (IOException e) {
+                KRTMod.LOGGER.error("写入信号状态日志失败: {}", e.getMessage());
+            }
+            waiters.forEach(CountDownLatch::countDown);
+            batch.clear();
+        }
+    }
+
+    // 把当前状态写为快照（先写临时文件再重命名），然后清空日志
+    private synchronized void compact() throws IOException {
+        List<Record> records = new ArrayList<>();
+        synchronized (state) {
+            for (Map.Entry<String, Map<String, NbtCompound>> category : state.entrySet()) {
+                for (Map.Entry<String, NbtCompound> entry : category.getValue().entrySet()) {
+                    records.add(new Record(OP_PUT, category.getKey(), entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+
+        File temp = new File(snapshotFile.getPath() + ".tmp");
+        ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            for (Record record : records) {
+                writeRecord(out, record, recordBuffer, crc);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        journalOut.flush();
+        journalFileOut.getChannel().truncate(0);
+        journalRecords = 0;
+        KRTMod.LOGGER.debug("信号状态日志已压缩为快照: {} 项", records.size());
+    }
+
+    static void writeRecord(DataOutputStream out, Record record, ByteArrayOutputStream buffer, CRC32 crc) throws IOException {
+        buffer.reset();
+        record.encode(new DataOutputStream(buffer));
+        byte[] bytes = buffer.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    // 日志记录
+    static class Record {
+        private final byte op;
+        private final String category;
+        private final String key;
+        private final NbtCompound value;
+
+        Record(byte op, String category, String key, NbtCompound value) {
+            this.op = op;
+            this.category = category;
+            this.key = key;
+            this.value = value;
+        }
+
+        void encode(DataOutputStream out) throws IOException {
+            out.writeByte(op);
+            out.writeUTF(category);
+            out.writeUTF(key);
+            if (op == OP_PUT) {
+                NbtIo.write(value, out);
+            }
+        }
+
+        static Record decode(DataInputStream in) throws IOException {
+            byte op = in.readByte();
+            if (op != OP_PUT && op != OP_REMOVE) {
+                throw new IOException("Unknown journal record type " + op);
+            }
+            String category = in.readUTF();
+            String key = in.readUTF();
+            NbtCompound value = op == OP_PUT ? NbtIo.read(in) : null;
+            return new Record(op, category, key, value);
+        }
+    }
+
+    // 可重复使用的记录输入流，避免重放时为每条记录创建新的流
+    private static class RecordInput extends ByteArrayInputStream {
+        RecordInput() {
+            super(new byte[0]);
+        }
+
+        void reset(byte[] data, int length) {
+            this.buf = data;
+            this.pos = 0;
+            this.count = length;
+            this.mark = 0;
+        }
+    }
+}
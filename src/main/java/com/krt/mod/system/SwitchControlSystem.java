@@ -43,6 +43,7 @@ public class SwitchControlSystem {
     private static final long SWITCH_OPERATION_TIME = 2000; // 道岔转换所需时间（毫秒）
     private static final long SWITCH_LOCK_TIME = 5000;     // 道岔锁定时间（毫秒）
     private static final int MAX_SWITCH_ATTEMPTS = 3;      // 最大尝试次数
+    private static final long SWITCH_RECOVERY_TIME = 30000; // 故障后尝试恢复的时间（毫秒）
     
     private SwitchControlSystem(World world) {
         this.world = world;
@@ -68,11 +69,9 @@ public class SwitchControlSystem {
             String switchId = entry.getKey();
             SwitchControlState state = entry.getValue();
             
-            // 检查道岔是否存在
-            if (world.getBlockState(state.getSwitchPos()).getBlock() instanceof SwitchTrackBlock) {
-                state.update(world);
-            } else {
-                // 移除不存在的道岔控制状态
+            // 移除不存在的道岔控制状态（转换和故障恢复由时间轮定时处理）
+            if (!(world.getBlockState(state.getSwitchPos()).getBlock() instanceof SwitchTrackBlock)) {
+                state.cancelPendingTimer();
                 switchControlStates.remove(switchId);
                 KRTMod.LOGGER.info("Removed switch control for non-existent switch: {}", switchId);
             }
@@ -84,6 +83,13 @@ public class SwitchControlSystem {
     
     // 更新道岔关联的信号机状态
     private void updateRelatedSignalsForSwitch(BlockPos switchPos, boolean isSwitchInPosition) {
+        // 已登记进路的道岔由联锁系统按进路表刷新防护信号，无需搜索周边方块
+        InterlockingSystem interlocking = InterlockingSystem.getInstance(world);
+        if (interlocking.hasRoutesForSwitch(switchPos)) {
+            interlocking.onSwitchStateChanged(switchPos);
+            return;
+        }
+        
         // 查找与道岔关联的信号机
         List<BlockPos> relatedSignals = findRelatedSignals(switchPos);
         
@@ -213,10 +219,14 @@ public class SwitchControlSystem {
         String switchId = getSwitchId(switchPos);
         SwitchControlState switchState = switchControlStates.computeIfAbsent(switchId, k -> new SwitchControlState(switchPos));
         
+        // 被已办理进路锁闭的道岔不能转换
+        if (InterlockingSystem.getInstance(world).isSwitchLocked(switchPos)) {
+            KRTMod.LOGGER.warn("Cannot switch state for {}: locked by an interlocking route", switchId);
+            return false;
+        }
+        
         // 检查道岔是否可操作
-        if (switchState.getCurrentState() == SwitchState.LOCKED || 
-            switchState.getCurrentState() == SwitchState.FAILED || 
-            (switchState.getCurrentState() == SwitchState.MOVING && System.currentTimeMillis() - switchState.getLastOperationTime() < SWITCH_OPERATION_TIME)) {
+        if (!isOperable(switchState)) {
             KRTMod.LOGGER.warn("Cannot switch state for {}: current state is {}", switchId, switchState.getCurrentState());
             return false;
         }
@@ -236,6 +246,8 @@ public class SwitchControlSystem {
             switchState.setDesiredState(desiredState);
             switchState.setLastOperationTime(System.currentTimeMillis());
             switchState.setLastRequester(requester);
+            switchState.setPendingTimer(TickScheduler.getInstance(world).scheduleMillis(
+                SWITCH_OPERATION_TIME, () -> completeSwitchOperation(switchId)));
             
             KRTMod.LOGGER.info("Requested switch state change for {} to {} by {}", switchId, desiredState, requester);
             
@@ -247,7 +259,7 @@ public class SwitchControlSystem {
             
             // 如果尝试次数过多，标记为故障
             if (switchState.getAttemptCount() >= MAX_SWITCH_ATTEMPTS) {
-                switchState.setCurrentState(SwitchState.FAILED);
+                markSwitchFailed(switchId, switchState);
                 KRTMod.LOGGER.error("Failed to switch state for {} after {} attempts", switchId, MAX_SWITCH_ATTEMPTS);
             }
         }
@@ -255,6 +267,111 @@ public class SwitchControlSystem {
         return success;
     }
     
+    /**
+     * 检查道岔当前能否转换（不改变任何状态）
+     * 联锁系统办理进路前先检查全部道岔，避免转换到一半才发现某个道岔无法转换
+     */
+    public boolean canRequestSwitchState(BlockPos switchPos) {
+        if (InterlockingSystem.getInstance(world).isSwitchLocked(switchPos)) {
+            return false;
+        }
+        if (!(world.getBlockState(switchPos).getBlock() instanceof SwitchTrackBlock)) {
+            return false;
+        }
+        SwitchControlState switchState = switchControlStates.get(getSwitchId(switchPos));
+        return switchState == null || isOperable(switchState);
+    }
+    
+    /**
+     * 撤销刚发起的道岔转换，恢复到转换前的位置
+     * 用于进路办理中途失败时回退已转换的道岔
+     */
+    void revertSwitchState(BlockPos switchPos, SwitchState previousState) {
+        SwitchControlState switchState = switchControlStates.get(getSwitchId(switchPos));
+        if (switchState == null || switchState.getCurrentState() != SwitchState.MOVING) {
+            return;
+        }
+        switchState.cancelPendingTimer();
+        if (attemptSwitchStateChange(switchPos, previousState)) {
+            switchState.setCurrentState(previousState);
+            switchState.setDesiredState(previousState);
+            switchState.resetAttemptCount();
+            updateRelatedSignalsForSwitch(switchPos, true);
+            KRTMod.LOGGER.info("Reverted switch at {} to {}", switchPos, previousState);
+        } else {
+            markSwitchFailed(getSwitchId(switchPos), switchState);
+            KRTMod.LOGGER.error("Failed to revert switch at {} to {}", switchPos, previousState);
+        }
+    }
+    
+    // 道岔是否处于可操作状态（未锁定、未故障、不在转换中）
+    private boolean isOperable(SwitchControlState switchState) {
+        SwitchState current = switchState.getCurrentState();
+        return current != SwitchState.LOCKED && current != SwitchState.FAILED
+            && !(current == SwitchState.MOVING && System.currentTimeMillis() - switchState.getLastOperationTime() < SWITCH_OPERATION_TIME);
+    }
+    
+    // 道岔转换时间到，检查实际状态是否与预期一致
+    private void completeSwitchOperation(String switchId) {
+        SwitchControlState switchState = switchControlStates.get(switchId);
+        if (switchState == null || switchState.getCurrentState() != SwitchState.MOVING) {
+            return;
+        }
+        BlockPos switchPos = switchState.getSwitchPos();
+        if (!(world.getBlockState(switchPos).getBlock() instanceof SwitchTrackBlock)) {
+            return;
+        }
+        
+        SwitchTrackBlock switchBlock = (SwitchTrackBlock) world.getBlockState(switchPos).getBlock();
+        boolean isNormal = switchBlock.isNormal(world, switchPos);
+        SwitchState actualState = isNormal ? SwitchState.NORMAL : SwitchState.REVERSE;
+        
+        if (actualState == switchState.getDesiredState()) {
+            switchState.setCurrentState(actualState);
+            switchState.resetAttemptCount();
+            KRTMod.LOGGER.info("Switch at {} successfully moved to {}", switchPos, actualState);
+            
+            // 道岔成功切换到位后，更新关联信号机为允许通行状态
+            updateRelatedSignalsForSwitch(switchPos, true);
+        } else {
+            // 如果不一致，标记为故障
+            markSwitchFailed(switchId, switchState);
+            KRTMod.LOGGER.error("Switch at {} failed to move to {}. Actual state: {}", 
+                switchPos, switchState.getDesiredState(), actualState);
+        }
+    }
+    
+    // 标记道岔故障，并安排定时恢复
+    private void markSwitchFailed(String switchId, SwitchControlState switchState) {
+        switchState.setCurrentState(SwitchState.FAILED);
+        switchState.setLastFailureTime(System.currentTimeMillis());
+        switchState.setPendingTimer(TickScheduler.getInstance(world).scheduleMillis(
+            SWITCH_RECOVERY_TIME, () -> recoverFailedSwitch(switchId)));
+    }
+    
+    // 故障时间已到，尝试将道岔重置为直股状态
+    private void recoverFailedSwitch(String switchId) {
+        SwitchControlState switchState = switchControlStates.get(switchId);
+        if (switchState == null || switchState.getCurrentState() != SwitchState.FAILED) {
+            return;
+        }
+        BlockPos switchPos = switchState.getSwitchPos();
+        if (!(world.getBlockState(switchPos).getBlock() instanceof SwitchTrackBlock)) {
+            return;
+        }
+        
+        SwitchTrackBlock switchBlock = (SwitchTrackBlock) world.getBlockState(switchPos).getBlock();
+        try {
+            switchBlock.setNormal(world, switchPos);
+            switchState.setCurrentState(SwitchState.NORMAL);
+            switchState.setDesiredState(SwitchState.NORMAL);
+            switchState.resetAttemptCount();
+            KRTMod.LOGGER.info("Switch at {} recovered from failure", switchPos);
+        } catch (Exception e) {
+            KRTMod.LOGGER.error("Failed to recover switch at {}: {}", switchPos, e.getMessage());
+        }
+    }
+    
     // 尝试切换道岔状态
     private boolean attemptSwitchStateChange(BlockPos switchPos, SwitchState desiredState) {
         // 检查道岔是否存在
@@ -388,6 +505,7 @@ public class SwitchControlSystem {
         private long lockTime = 0;
         private int attemptCount = 0;
         private long lastFailureTime = 0;
+        private TickScheduler.TimerHandle pendingTimer;
         
         public SwitchControlState(BlockPos switchPos) {
             this.switchPos = switchPos;
@@ -473,59 +591,16 @@ public class SwitchControlSystem {
             this.lastFailureTime = time;
         }
         
-        // 更新道岔状态
-        public void update(World world) {
-            // 检查道岔是否在转换中
-            if (currentState == SwitchState.MOVING) {
-                long elapsedTime = System.currentTimeMillis() - lastOperationTime;
-                
-                // 如果转换时间已到，更新状态
-                if (elapsedTime >= SWITCH_OPERATION_TIME) {
-                    // 检查实际道岔状态是否与预期一致
-                    if (world.getBlockState(switchPos).getBlock() instanceof SwitchTrackBlock) {
-                        SwitchTrackBlock switchBlock = (SwitchTrackBlock) world.getBlockState(switchPos).getBlock();
-                        boolean isNormal = switchBlock.isNormal(world, switchPos);
-                        SwitchState actualState = isNormal ? SwitchState.NORMAL : SwitchState.REVERSE;
-                        
-                        if (actualState == desiredState) {
-                            currentState = desiredState;
-                            resetAttemptCount();
-                            KRTMod.LOGGER.info("Switch at {} successfully moved to {}", switchPos, desiredState);
-                            
-                            // 道岔成功切换到位后，更新关联信号机为允许通行状态
-                            updateRelatedSignalsForSwitch(switchPos, true);
-                        } else {
-                            // 如果不一致，标记为故障
-                            currentState = SwitchState.FAILED;
-                            lastFailureTime = System.currentTimeMillis();
-                            KRTMod.LOGGER.error("Switch at {} failed to move to {}. Actual state: {}", 
-                                switchPos, desiredState, actualState);
-                        }
-                    }
-                }
-            }
-            
-            // 检查故障状态是否已恢复
-            if (currentState == SwitchState.FAILED) {
-                long elapsedTimeSinceFailure = System.currentTimeMillis() - lastFailureTime;
-                
-                // 如果故障时间超过一定时间，尝试恢复
-                if (elapsedTimeSinceFailure >= 30000) { // 30秒后尝试恢复
-                    // 尝试将道岔重置为直股状态
-                    if (world.getBlockState(switchPos).getBlock() instanceof SwitchTrackBlock) {
-                        SwitchTrackBlock switchBlock = (SwitchTrackBlock) world.getBlockState(switchPos).getBlock();
-                        
-                        try {
-                            switchBlock.setNormal(world, switchPos);
-                            currentState = SwitchState.NORMAL;
-                            desiredState = SwitchState.NORMAL;
-                            resetAttemptCount();
-                            KRTMod.LOGGER.info("Switch at {} recovered from failure", switchPos);
-                        } catch (Exception e) {
-                            KRTMod.LOGGER.error("Failed to recover switch at {}: {}", switchPos, e.getMessage());
-                        }
-                    }
-                }
+        // 设置待执行的转换/恢复定时任务，替换之前未执行的任务
+        public void setPendingTimer(TickScheduler.TimerHandle timer) {
+            cancelPendingTimer();
+            this.pendingTimer = timer;
+        }
+        
+        public void cancelPendingTimer() {
+            if (pendingTimer != null) {
+                pendingTimer.cancel();
+                pendingTimer = null;
             }
         }
         
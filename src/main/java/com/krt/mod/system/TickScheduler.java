@@ -0,0 +1,220 @@
+package com.krt.mod.system;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
+import net.minecraft.world.World;
+import com.krt.mod.KRTMod;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 延时任务调度器
+ * 每个世界一个分层时间轮，任务按游戏刻对齐并在服务器线程执行。
+ * 调度和取消可以在任意线程调用，推进时间轮每刻只处理当前槽位，与挂起任务数量无关。
+ */
+public class TickScheduler {
+    private static final Map<World, TickScheduler> INSTANCES = new HashMap<>();
+
+    // 时间轮参数：每层64个槽位，共4层，可覆盖约9.7天（64^4刻）
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final World world;
+
+    // 各层槽位中的任务链表头
+    private final TimerHandle[][] wheels = new TimerHandle[LEVELS][SLOTS];
+    // 超出时间轮范围的任务
+    private final List<TimerHandle> overflow = new ArrayList<>();
+    // 其他线程提交的任务，在下一刻由服务器线程放入时间轮
+    private final Queue<TimerHandle> pending = new ConcurrentLinkedQueue<>();
+
+    // 当前刻（从调度器创建开始计数）
+    private volatile long currentTick = 0;
+    private int scheduledCount = 0;
+
+    private TickScheduler(World world) {
+        this.world = world;
+    }
+
+    public static synchronized TickScheduler getInstance(World world) {
+        return INSTANCES.computeIfAbsent(world, TickScheduler::new);
+    }
+
+    // 注册服务器世界刻事件，驱动各世界的时间轮
+    public static void initialize() {
+        ServerTickEvents.END_WORLD_TICK.register(world -> getInstance(world).tick());
+        // 世界卸载时丢弃其调度器及未执行的任务
+        ServerWorldEvents.UNLOAD.register((server, world) -> {
+            synchronized (TickScheduler.class) {
+                INSTANCES.remove(world);
+            }
+        });
+    }
+
+    /**
+     * 在指定刻数后执行任务
+     * @param delayTicks 延迟刻数（小于1时在下一刻执行）
+     * @param task 在服务器线程执行的任务
+     * @return 可取消的任务句柄
+     */
+    public TimerHandle schedule(long delayTicks, Runnable task) {
+        TimerHandle handle = new TimerHandle(task, Math.max(1, delayTicks));
+        pending.add(handle);
+        return handle;
+    }
+
+    /**
+     * 在指定毫秒后执行任务（按每刻50毫秒换算）
+     */
+    public TimerHandle scheduleMillis(long delayMillis, Runnable task) {
+        return schedule((delayMillis + 49) / 50, task);
+    }
+
+    // 获取当前刻
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    // 获取已进入时间轮、尚未执行的任务数量
+    public int getScheduledCount() {
+        return scheduledCount;
+    }
+
+    // 推进一刻并执行到期任务（服务器线程调用）
+    public void tick() {
+        long tick = currentTick + 1;
+        currentTick = tick;
+
+        // 将其他线程提交的任务放入时间轮
+        TimerHandle submitted;
+        while ((submitted = pending.poll()) != null) {
+            if (!submitted.cancelled) {
+                submitted.deadline = tick - 1 + submitted.deadline;
+                insert(submitted, tick);
+            }
+        }
+
+        // 低层一圈走完时，把上层对应槽位的任务下放
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+                break;
+            }
+            cascade(level, (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK), tick);
+        }
+        // 最高层转完一圈时，重新放入超出范围的任务
+        if ((tick & ((1L << (LEVELS * SLOT_BITS)) - 1)) == 0) {
+            reinsertOverflow(tick);
+        }
+
+        // 执行当前槽位的任务
+        int slot = (int) (tick & SLOT_MASK);
+        TimerHandle handle = wheels[0][slot];
+        wheels[0][slot] = null;
+        while (handle != null) {
+            TimerHandle next = handle.next;
+            handle.next = null;
+            scheduledCount--;
+            if (handle.deadline > tick) {
+                // 同一槽位中下一圈才到期的任务
+                insert(handle, tick);
+            } else if (!handle.cancelled) {
+                handle.done = true;
+                try {
+                    handle.task.run();
+                } catch (Exception e) {
+                    KRTMod.LOGGER.error("Scheduled task failed: {}", e.getMessage());
+                }
+            }
+            handle = next;
+        }
+    }
+
+    private void cascade(int level, int slot, long tick) {
+        TimerHandle handle = wheels[level][slot];
+        wheels[level][slot] = null;
+        while (handle != null) {
+            TimerHandle next = handle.next;
+            handle.next = null;
+            scheduledCount--;
+            if (!handle.cancelled) {
+                insert(handle, tick);
+            }
+            handle = next;
+        }
+    }
+
+    private void reinsertOverflow(long tick) {
+        if (overflow.isEmpty()) {
+            return;
+        }
+        List<TimerHandle> waiting = new ArrayList<>(overflow);
+        overflow.clear();
+        for (TimerHandle handle : waiting) {
+            scheduledCount--;
+            if (!handle.cancelled) {
+                insert(handle, tick);
+            }
+        }
+    }
+
+    // 按剩余刻数选择层级和槽位
+    private void insert(TimerHandle handle, long tick) {
+        long remaining = handle.deadline - tick;
+        scheduledCount++;
+        if (remaining <= 0) {
+            // 已到期（当前槽位尚未执行），放入本刻槽位
+            int slot = (int) (tick & SLOT_MASK);
+            handle.next = wheels[0][slot];
+            wheels[0][slot] = handle;
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (remaining < (1L << ((level + 1) * SLOT_BITS))) {
+                int slot = (int) ((handle.deadline >>> (level * SLOT_BITS)) & SLOT_MASK);
+                handle.next = wheels[level][slot];
+                wheels[level][slot] = handle;
+                return;
+            }
+        }
+        overflow.add(handle);
+    }
+
+    /**
+     * 延时任务句柄
+     */
+    public static class TimerHandle {
+        private final Runnable task;
+        // 提交时为延迟刻数，进入时间轮后为到期刻
+        private long deadline;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private TimerHandle next;
+
+        private TimerHandle(Runnable task, long delayTicks) {
+            this.task = task;
+            this.deadline = delayTicks;
+        }
+
+        // 取消任务，已执行的任务不受影响
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // 任务是否已执行
+        public boolean isDone() {
+            return done;
+        }
+
+        // 任务是否仍在等待执行
+        public boolean isPending() {
+            return !cancelled && !done;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.krt.mod.system;
 
 import net.minecraft.world.World;
 import com.krt.mod.KRTMod;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -17,6 +19,11 @@ public class TimetableSystem {
     private static final Map<World, TimetableSystem> INSTANCES = new HashMap<>();
     private final Map<String, Timetable> timetables = new ConcurrentHashMap<>();
     private final Map<TemporaryKey, Timetable> temporaryTimetables = new ConcurrentHashMap<>();
+    // 当天生效的临时时刻表（按线路），在添加/移除时和每天零点刷新
+    private final Map<String, Timetable> activeTemporaryTimetables = new ConcurrentHashMap<>();
+    // 上面的集合是按哪一天计算的；零点定时器按刻计时，低TPS或暂停时会晚到，查询时以日期为准
+    private volatile LocalDate activeDate;
+    private TickScheduler.TimerHandle nextActivationTimer;
     private final World world;
     
     // 时段类型枚举
@@ -63,6 +70,7 @@ public class TimetableSystem {
     public void addTemporaryTimetable(String lineId, LocalDate startDate, LocalDate endDate, Timetable tempTimetable) {
         TemporaryKey key = new TemporaryKey(lineId, startDate, endDate);
         temporaryTimetables.put(key, tempTimetable);
+        refreshTemporaryTimetables();
         KRTMod.LOGGER.info("Added temporary timetable for line {} from {} to {}", 
                          lineId, startDate, endDate);
     }
@@ -71,20 +79,44 @@ public class TimetableSystem {
     public void removeTemporaryTimetable(String lineId, LocalDate startDate, LocalDate endDate) {
         TemporaryKey key = new TemporaryKey(lineId, startDate, endDate);
         temporaryTimetables.remove(key);
+        refreshTemporaryTimetables();
         KRTMod.LOGGER.info("Removed temporary timetable for line {} from {} to {}", 
                          lineId, startDate, endDate);
     }
     
-    // 获取当前生效的时刻表（优先临时时刻表）
-    private Timetable getEffectiveTimetable(String lineId) {
+    // 重新计算当天生效的临时时刻表，并在下一个零点再次刷新
+    private synchronized void refreshTemporaryTimetables() {
         LocalDate today = LocalDate.now();
-        // 查找覆盖当前日期的临时时刻表
+        Map<String, Timetable> active = new HashMap<>();
         for (Map.Entry<TemporaryKey, Timetable> entry : temporaryTimetables.entrySet()) {
             TemporaryKey key = entry.getKey();
-            if (key.lineId.equals(lineId) && !today.isBefore(key.startDate) && !today.isAfter(key.endDate)) {
-                return entry.getValue();
+            if (!today.isBefore(key.startDate) && !today.isAfter(key.endDate)) {
+                active.putIfAbsent(key.lineId, entry.getValue());
             }
         }
+        activeTemporaryTimetables.keySet().retainAll(active.keySet());
+        activeTemporaryTimetables.putAll(active);
+        activeDate = today;
+        
+        if (nextActivationTimer != null) {
+            nextActivationTimer.cancel();
+            nextActivationTimer = null;
+        }
+        if (!temporaryTimetables.isEmpty()) {
+            long millisToMidnight = Duration.between(LocalDateTime.now(), today.plusDays(1).atStartOfDay()).toMillis();
+            nextActivationTimer = TickScheduler.getInstance(world).scheduleMillis(millisToMidnight, this::refreshTemporaryTimetables);
+        }
+    }
+    
+    // 获取当前生效的时刻表（优先临时时刻表）
+    private Timetable getEffectiveTimetable(String lineId) {
+        if (!temporaryTimetables.isEmpty() && !LocalDate.now().equals(activeDate)) {
+            refreshTemporaryTimetables();
+        }
+        Timetable temporary = activeTemporaryTimetables.get(lineId);
+        if (temporary != null) {
+            return temporary;
+        }
         // 无临时时刻表则返回默认
         return timetables.get(lineId);
     }
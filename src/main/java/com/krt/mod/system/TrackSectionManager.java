@@ -1,11 +1,13 @@
 package com.krt.mod.system;
 
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
 import com.krt.mod.block.TrackBlock;
 import com.krt.mod.block.SwitchTrackBlock;
 
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -16,7 +18,8 @@ public class TrackSectionManager {
     private static final Map<World, TrackSectionManager> INSTANCES = new HashMap<>();
     private final World world;
     private final Map<String, TrackSection> sections = new HashMap<>();
-    private final Set<BlockPos> trackPositions = new HashSet<>();
+    // 已划入区段的轨道位置（堆外打包存储）
+    private final PackedPositionSet trackPositions = new PackedPositionSet();
 
     private TrackSectionManager(World world) {
         this.world = world;
@@ -33,15 +36,23 @@ public class TrackSectionManager {
      * 创建新的轨道区段
      */
     public void createSection(String sectionId, String sectionName, List<BlockPos> positions) {
+        long[] packed = new long[positions.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = positions.get(i).asLong();
+        }
+        createSection(sectionId, sectionName, packed);
+    }
+
+    private void createSection(String sectionId, String sectionName, long[] positions) {
         // 检查位置是否都是轨道方块
-        for (BlockPos pos : positions) {
-            if (!(world.getBlockState(pos).getBlock() instanceof TrackBlock || 
-                 world.getBlockState(pos).getBlock() instanceof SwitchTrackBlock)) {
-                LogSystem.error("创建区段失败: 位置 " + pos + " 不是轨道方块");
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (long packed : positions) {
+            if (!isTrackBlock(pos.set(packed))) {
+                LogSystem.error("创建区段失败: 位置 " + pos.toImmutable() + " 不是轨道方块");
                 return;
             }
-            trackPositions.add(pos);
         }
+        trackPositions.addAll(positions);
         
         TrackSection section = new TrackSection(sectionId, sectionName, positions);
         sections.put(sectionId, section);
@@ -67,34 +78,13 @@ public class TrackSectionManager {
         trackPositions.addAll(lineInfo.getTracks());
         
         // 使用并查集算法识别连通的轨道区段
-        Map<BlockPos, BlockPos> parentMap = new HashMap<>();
-        
-        // 初始化每个轨道位置的父节点为自己
-        for (BlockPos pos : trackPositions) {
-            parentMap.put(pos, pos);
-        }
-        
-        // 检查每个轨道位置的相邻轨道，构建连通区域
-        for (BlockPos pos : trackPositions) {
-            for (BlockPos neighbor : getAdjacentTracks(pos)) {
-                if (trackPositions.contains(neighbor)) {
-                    union(pos, neighbor, parentMap);
-                }
-            }
-        }
-        
-        // 按连通区域分组
-        Map<BlockPos, List<BlockPos>> connectedComponents = new HashMap<>();
-        for (BlockPos pos : trackPositions) {
-            BlockPos root = find(pos, parentMap);
-            connectedComponents.computeIfAbsent(root, k -> new ArrayList<>()).add(pos);
-        }
+        List<long[]> connectedComponents = groupConnectedTracks(trackPositions, this::isTrackBlock);
         
         // 为每个连通区域创建区段
         int sectionIndex = 1;
-        for (List<BlockPos> component : connectedComponents.values()) {
+        for (long[] component : connectedComponents) {
             // 只处理较大的连通区域（至少5个轨道方块）
-            if (component.size() >= 5) {
+            if (component.length >= 5) {
                 String sectionId = lineId + "_sec_" + sectionIndex;
                 String sectionName = lineInfo.getLineName() + "区段" + sectionIndex;
                 createSection(sectionId, sectionName, component);
@@ -159,9 +149,7 @@ public class TrackSectionManager {
             if (!hasValidTracks) {
                 iterator.remove();
                 // 从trackPositions中移除该区段的所有位置
-                for (BlockPos pos : section.getPositions()) {
-                    trackPositions.remove(pos);
-                }
+                section.positions.forEachLong(trackPositions::removeLong);
                 cleanedCount++;
             }
         }
@@ -198,51 +186,92 @@ public class TrackSectionManager {
     }
 
     /**
-     * 获取相邻的轨道方块
+     * 将轨道位置按六向相邻关系划分为连通区域
+     * 并查集以集合的槽位下标为节点，不为每个位置创建对象
+     * @param positions 参与划分的轨道位置
+     * @param isTrack 判断相邻位置是否仍为轨道方块
+     * @return 每个连通区域的打包位置
      */
-    private List<BlockPos> getAdjacentTracks(BlockPos pos) {
-        List<BlockPos> adjacent = new ArrayList<>();
+    static List<long[]> groupConnectedTracks(PackedPositionSet positions, Predicate<BlockPos> isTrack) {
+        int slotCount = positions.getSlotCount() + 1;
+        int[] parent = new int[slotCount];
+        boolean[] occupied = new boolean[slotCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            parent[slot] = slot;
+            occupied[slot] = positions.getSlot(slot) != 0 || (slot == slotCount - 1 && positions.containsLong(0));
+        }
         
-        // 检查上下左右前后六个方向
-        for (int dx = -1; dx <= 1; dx++) {
-            for (int dy = -1; dy <= 1; dy++) {
-                for (int dz = -1; dz <= 1; dz++) {
-                    // 排除自己和对角线方向
-                    if ((dx == 0 && dy == 0 && dz == 0) || 
-                        (Math.abs(dx) + Math.abs(dy) + Math.abs(dz)) > 1) {
-                        continue;
-                    }
-                    
-                    BlockPos neighbor = pos.add(dx, dy, dz);
-                    if (world.getBlockState(neighbor).getBlock() instanceof TrackBlock || 
-                        world.getBlockState(neighbor).getBlock() instanceof SwitchTrackBlock) {
-                        adjacent.add(neighbor);
-                    }
+        // 检查每个轨道位置的相邻轨道，构建连通区域
+        BlockPos.Mutable neighborPos = new BlockPos.Mutable();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!occupied[slot]) {
+                continue;
+            }
+            long pos = positions.getSlot(slot);
+            for (Direction direction : Direction.values()) {
+                long neighbor = BlockPos.offset(pos, direction);
+                int neighborSlot = positions.slotOf(neighbor);
+                if (neighborSlot >= 0 && isTrack.test(neighborPos.set(neighbor))) {
+                    union(slot, neighborSlot, parent);
                 }
             }
         }
         
-        return adjacent;
+        // 按连通区域分组：先统计每个根的大小，再填充数组
+        int[] componentOf = new int[slotCount];
+        int[] componentSizes = new int[slotCount];
+        int componentCount = 0;
+        Arrays.fill(componentOf, -1);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (occupied[slot]) {
+                int root = find(slot, parent);
+                if (componentOf[root] < 0) {
+                    componentOf[root] = componentCount++;
+                }
+                componentSizes[componentOf[root]]++;
+            }
+        }
+        List<long[]> components = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            components.add(new long[componentSizes[i]]);
+        }
+        int[] filled = new int[componentCount];
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (occupied[slot]) {
+                int component = componentOf[find(slot, parent)];
+                components.get(component)[filled[component]++] = positions.getSlot(slot);
+            }
+        }
+        return components;
+    }
+    
+    /**
+     * 检查指定位置是否为轨道方块
+     */
+    private boolean isTrackBlock(BlockPos pos) {
+        return world.getBlockState(pos).getBlock() instanceof TrackBlock || 
+               world.getBlockState(pos).getBlock() instanceof SwitchTrackBlock;
     }
 
     /**
-     * 并查集查找操作
+     * 并查集查找操作（路径减半）
      */
-    private BlockPos find(BlockPos pos, Map<BlockPos, BlockPos> parentMap) {
-        if (!parentMap.get(pos).equals(pos)) {
-            parentMap.put(pos, find(parentMap.get(pos), parentMap));
+    private static int find(int node, int[] parent) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
         }
-        return parentMap.get(pos);
+        return node;
     }
 
     /**
      * 并查集合并操作
      */
-    private void union(BlockPos pos1, BlockPos pos2, Map<BlockPos, BlockPos> parentMap) {
-        BlockPos root1 = find(pos1, parentMap);
-        BlockPos root2 = find(pos2, parentMap);
-        if (!root1.equals(root2)) {
-            parentMap.put(root2, root1);
+    private static void union(int a, int b, int[] parent) {
+        int rootA = find(a, parent);
+        int rootB = find(b, parent);
+        if (rootA != rootB) {
+            parent[rootB] = rootA;
         }
     }
 
@@ -253,7 +282,7 @@ public class TrackSectionManager {
     public static class TrackSection {
         private final String sectionId;
         private final String sectionName;
-        private final Set<BlockPos> positions;
+        private final PackedPositionSet positions;
         private boolean occupied = false;
         private String occupyingTrainId = "";
         private long occupancyStartTime = 0;
@@ -261,7 +290,14 @@ public class TrackSectionManager {
         public TrackSection(String sectionId, String sectionName, List<BlockPos> positions) {
             this.sectionId = sectionId;
             this.sectionName = sectionName;
-            this.positions = new HashSet<>(positions);
+            this.positions = new PackedPositionSet(positions);
+        }
+
+        TrackSection(String sectionId, String sectionName, long[] positions) {
+            this.sectionId = sectionId;
+            this.sectionName = sectionName;
+            this.positions = new PackedPositionSet(positions.length);
+            this.positions.addAll(positions);
         }
         
         /**
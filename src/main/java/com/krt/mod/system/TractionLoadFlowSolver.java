@@ -0,0 +1,466 @@
+package com.krt.mod.system;
+
+import java.util.*;
+
+/**
+ * 直流牵引潮流计算
+ * 将牵引变电所（电压源串联内阻）和列车（恒功率负载）组成稀疏电阻网络：
+ * 列车与两侧最近的变电所、相邻变电所之间按馈线距离计算电阻。
+ * 节点电压方程用Jacobi预条件共轭梯度法求解，以上次结果作为初值，
+ * 恒功率负载的电流按上一轮电压迭代修正。
+ */
+public class TractionLoadFlowSolver {
+    // 馈线（接触网/第三轨+回流轨）单位长度电阻（欧姆/方块，1方块按1米计）
+    public static final double FEEDER_RESISTANCE_PER_BLOCK = 0.00004;
+    // 变电所内阻（欧姆）
+    public static final double SUBSTATION_INTERNAL_RESISTANCE = 0.015;
+    // 变电所最大供电距离（方块）
+    public static final double MAX_FEED_DISTANCE = 4000;
+    // 每列车连接的变电所数量（两侧供电）
+    private static final int FEEDS_PER_TRAIN = 2;
+    // 每个变电所与相邻变电所的馈线连接数量
+    private static final int TIES_PER_SUBSTATION = 2;
+    // 恒功率负载计算的最低电压比例，防止电压塌陷时电流发散
+    private static final double MIN_LOAD_VOLTAGE_RATIO = 0.3;
+
+    private static final int MAX_LOAD_ITERATIONS = 6;
+    private static final int MAX_CG_ITERATIONS = 200;
+    private static final double CG_TOLERANCE = 1e-8;
+    // 负载迭代的收敛阈值（伏）
+    private static final double VOLTAGE_TOLERANCE = 0.05;
+    // 列车不在任何变电所供电范围内时的供电变电所键
+    public static final long NO_FEEDER = Long.MIN_VALUE;
+
+    // 输入
+    private final Map<Long, Substation> substations = new LinkedHashMap<>();
+    private final Map<String, TrainLoad> trains = new LinkedHashMap<>();
+    private long inputStamp = 0;
+
+    // 求解工作区（按需扩容，避免每次求解分配）
+    private int nodeCount = 0;
+    private int[] rowStart = new int[1];
+    private int[] columns = new int[0];
+    private double[] values = new double[0];
+    private double[] diagonal = new double[0];
+    private double[] rhs = new double[0];
+    private double[] voltage = new double[0];
+    private double[] residual = new double[0];
+    private double[] direction = new double[0];
+    private double[] preconditioned = new double[0];
+    private double[] product = new double[0];
+    private double[] previous = new double[0];
+    private double[] nominal = new double[0];
+    private double[] demand = new double[0];
+
+    // 边列表（无向，求解时展开为对称CSR矩阵）
+    private int edgeCount = 0;
+    private int[] edgeFrom = new int[0];
+    private int[] edgeTo = new int[0];
+    private double[] edgeConductance = new double[0];
+
+    // 统计
+    private int lastLoadIterations = 0;
+    private int lastCgIterations = 0;
+    private long lastSolveNanos = 0;
+
+    /**
+     * 开始新一轮输入，之后未再设置的变电所和列车会在求解时移除
+     */
+    public void beginUpdate() {
+        inputStamp++;
+    }
+
+    // 设置牵引变电所（空载电压为额定电压）
+    public void setSubstation(long key, double x, double y, double z, double nominalVoltage) {
+        Substation substation = substations.computeIfAbsent(key, Substation::new);
+        if (substation.stamp == 0) {
+            substation.voltage = nominalVoltage;
+        }
+        substation.x = x;
+        substation.y = y;
+        substation.z = z;
+        substation.nominalVoltage = nominalVoltage;
+        substation.stamp = inputStamp;
+    }
+
+    // 设置列车负载（瓦），再生制动时为负值
+    public void setTrainLoad(String trainId, double x, double y, double z, double powerWatts) {
+        TrainLoad train = trains.computeIfAbsent(trainId, id -> new TrainLoad());
+        train.x = x;
+        train.y = y;
+        train.z = z;
+        train.power = powerWatts;
+        train.stamp = inputStamp;
+    }
+
+    /**
+     * 求解节点电压
+     * @return 负载迭代次数
+     */
+    public int solve() {
+        long start = System.nanoTime();
+        substations.values().removeIf(s -> s.stamp != inputStamp);
+        trains.values().removeIf(t -> t.stamp != inputStamp);
+
+        Substation[] subs = substations.values().toArray(new Substation[0]);
+        TrainLoad[] loads = trains.values().toArray(new TrainLoad[0]);
+        int subCount = subs.length;
+        ensureCapacity(subCount + loads.length);
+
+        // 节点编号：变电所在前，已连接的列车在后；初值取上次结果
+        nodeCount = 0;
+        edgeCount = 0;
+        for (Substation sub : subs) {
+            sub.index = nodeCount;
+            nominal[nodeCount] = sub.nominalVoltage;
+            demand[nodeCount] = 0;
+            voltage[nodeCount] = sub.voltage;
+            nodeCount++;
+        }
+        buildSubstationTies(subs);
+        for (TrainLoad train : loads) {
+            train.index = -1;
+            train.nominalVoltage = 0;
+            train.feederKey = NO_FEEDER;
+            if (subCount > 0) {
+                connectTrain(train, subs);
+            }
+        }
+
+        int iterations = 0;
+        lastCgIterations = 0;
+        if (nodeCount > 0) {
+            buildMatrix();
+            for (iterations = 1; iterations <= MAX_LOAD_ITERATIONS; iterations++) {
+                // 按当前电压计算恒功率负载电流
+                for (int i = 0; i < nodeCount; i++) {
+                    double injection = i < subCount ? nominal[i] / SUBSTATION_INTERNAL_RESISTANCE : 0;
+                    if (demand[i] != 0) {
+                        double v = Math.max(voltage[i], nominal[i] * MIN_LOAD_VOLTAGE_RATIO);
+                        injection -= demand[i] / v;
+                    }
+                    rhs[i] = injection;
+                }
+                double maxChange = conjugateGradient();
+                if (maxChange < VOLTAGE_TOLERANCE) {
+                    break;
+                }
+            }
+            iterations = Math.min(iterations, MAX_LOAD_ITERATIONS);
+        }
+
+        // 写回结果作为下次求解的初值
+        for (Substation sub : subs) {
+            sub.voltage = voltage[sub.index];
+        }
+        for (TrainLoad train : loads) {
+            train.voltage = train.index >= 0 ? voltage[train.index] : 0;
+        }
+        lastLoadIterations = iterations;
+        lastSolveNanos = System.nanoTime() - start;
+        return iterations;
+    }
+
+    // 相邻变电所之间的馈线连接
+    private void buildSubstationTies(Substation[] subs) {
+        int[] nearest = new int[TIES_PER_SUBSTATION];
+        double[] nearestDistance = new double[TIES_PER_SUBSTATION];
+        for (int i = 0; i < subs.length; i++) {
+            int found = findNearest(subs, subs[i].x, subs[i].y, subs[i].z, i, nearest, nearestDistance);
+            for (int k = 0; k < found; k++) {
+                int j = nearest[k];
+                // 每对变电所只连接一次
+                if (j > i || !isNearest(subs, j, i)) {
+                    addEdge(subs[i].index, subs[j].index, feederConductance(nearestDistance[k]));
+                }
+            }
+        }
+    }
+
+    private boolean isNearest(Substation[] subs, int from, int target) {
+        int[] nearest = new int[TIES_PER_SUBSTATION];
+        double[] distance = new double[TIES_PER_SUBSTATION];
+        int found = findNearest(subs, subs[from].x, subs[from].y, subs[from].z, from, nearest, distance);
+        for (int k = 0; k < found; k++) {
+            if (nearest[k] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 列车连接到供电范围内最近的变电所
+    private void connectTrain(TrainLoad train, Substation[] subs) {
+        int[] nearest = new int[FEEDS_PER_TRAIN];
+        double[] nearestDistance = new double[FEEDS_PER_TRAIN];
+        int found = findNearest(subs, train.x, train.y, train.z, -1, nearest, nearestDistance);
+        if (found == 0) {
+            return;
+        }
+        train.index = nodeCount;
+        train.nominalVoltage = subs[nearest[0]].nominalVoltage;
+        train.feederKey = subs[nearest[0]].key;
+        nominal[nodeCount] = train.nominalVoltage;
+        demand[nodeCount] = train.power;
+        voltage[nodeCount] = train.voltage > 0 ? train.voltage : train.nominalVoltage;
+        nodeCount++;
+        for (int k = 0; k < found; k++) {
+            addEdge(train.index, subs[nearest[k]].index, feederConductance(nearestDistance[k]));
+        }
+    }
+
+    // 查找供电范围内最近的若干变电所，返回找到的数量
+    private int findNearest(Substation[] subs, double x, double y, double z, int exclude,
+                            int[] nearest, double[] nearestDistance) {
+        int found = 0;
+        double maxSq = MAX_FEED_DISTANCE * MAX_FEED_DISTANCE;
+        for (int i = 0; i < subs.length; i++) {
+            if (i == exclude) {
+                continue;
+            }
+            double dx = subs[i].x - x;
+            double dy = subs[i].y - y;
+            double dz = subs[i].z - z;
+            double distSq = dx * dx + dy * dy + dz * dz;
+            if (distSq > maxSq || (found == nearest.length && distSq >= nearestDistance[found - 1])) {
+                continue;
+            }
+            // 插入排序维护最近的k个
+            int pos = found < nearest.length ? found++ : found - 1;
+            while (pos > 0 && nearestDistance[pos - 1] > distSq) {
+                nearest[pos] = nearest[pos - 1];
+                nearestDistance[pos] = nearestDistance[pos - 1];
+                pos--;
+            }
+            nearest[pos] = i;
+            nearestDistance[pos] = distSq;
+        }
+        for (int k = 0; k < found; k++) {
+            nearestDistance[k] = Math.sqrt(nearestDistance[k]);
+        }
+        return found;
+    }
+
+    private static double feederConductance(double distance) {
+        // 距离极近时按1方块计算，避免电导过大导致矩阵病态
+        return 1.0 / (Math.max(1.0, distance) * FEEDER_RESISTANCE_PER_BLOCK);
+    }
+
+    private void addEdge(int from, int to, double conductance) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = Math.max(16, edgeCount * 2);
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeConductance = Arrays.copyOf(edgeConductance, capacity);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        edgeConductance[edgeCount] = conductance;
+        edgeCount++;
+    }
+
+    // 由边列表生成节点导纳矩阵（CSR，对角线单独存放）
+    private void buildMatrix() {
+        int subCount = substations.size();
+        if (rowStart.length < nodeCount + 1) {
+            rowStart = new int[nodeCount + 1];
+        }
+        Arrays.fill(rowStart, 0, nodeCount + 1, 0);
+        for (int i = 0; i < nodeCount; i++) {
+            diagonal[i] = i < subCount ? 1.0 / SUBSTATION_INTERNAL_RESISTANCE : 0;
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            rowStart[edgeFrom[e] + 1]++;
+            rowStart[edgeTo[e] + 1]++;
+            diagonal[edgeFrom[e]] += edgeConductance[e];
+            diagonal[edgeTo[e]] += edgeConductance[e];
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            rowStart[i + 1] += rowStart[i];
+        }
+        int nonZeros = rowStart[nodeCount];
+        if (columns.length < nonZeros) {
+            columns = new int[nonZeros * 2];
+            values = new double[nonZeros * 2];
+        }
+        int[] fill = Arrays.copyOf(rowStart, nodeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int a = edgeFrom[e];
+            int b = edgeTo[e];
+            columns[fill[a]] = b;
+            values[fill[a]++] = -edgeConductance[e];
+            columns[fill[b]] = a;
+            values[fill[b]++] = -edgeConductance[e];
+        }
+    }
+
+    // 矩阵向量乘 product = G * x
+    private void multiply(double[] x) {
+        for (int i = 0; i < nodeCount; i++) {
+            double sum = diagonal[i] * x[i];
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                sum += values[k] * x[columns[k]];
+            }
+            product[i] = sum;
+        }
+    }
+
+    /**
+     * Jacobi预条件共轭梯度法，从当前电压出发求解 G * V = rhs
+     * @return 本次电压的最大变化量
+     */
+    private double conjugateGradient() {
+        int n = nodeCount;
+        multiply(voltage);
+        double rhsNorm = 0;
+        double rz = 0;
+        for (int i = 0; i < n; i++) {
+            residual[i] = rhs[i] - product[i];
+            preconditioned[i] = residual[i] / diagonal[i];
+            direction[i] = preconditioned[i];
+            rz += residual[i] * preconditioned[i];
+            rhsNorm += rhs[i] * rhs[i];
+        }
+        double threshold = CG_TOLERANCE * CG_TOLERANCE * Math.max(rhsNorm, 1e-30);
+
+        System.arraycopy(voltage, 0, previous, 0, n);
+        for (int iteration = 0; iteration < MAX_CG_ITERATIONS; iteration++) {
+            double residualNorm = 0;
+            for (int i = 0; i < n; i++) {
+                residualNorm += residual[i] * residual[i];
+            }
+            if (residualNorm <= threshold) {
+                break;
+            }
+            lastCgIterations++;
+            multiply(direction);
+            double pAp = 0;
+            for (int i = 0; i < n; i++) {
+                pAp += direction[i] * product[i];
+            }
+            if (pAp <= 0) {
+                break;
+            }
+            double alpha = rz / pAp;
+            double rzNext = 0;
+            for (int i = 0; i < n; i++) {
+                voltage[i] += alpha * direction[i];
+                residual[i] -= alpha * product[i];
+                preconditioned[i] = residual[i] / diagonal[i];
+                rzNext += residual[i] * preconditioned[i];
+            }
+            double beta = rzNext / rz;
+            rz = rzNext;
+            for (int i = 0; i < n; i++) {
+                direction[i] = preconditioned[i] + beta * direction[i];
+            }
+        }
+        double maxChange = 0;
+        for (int i = 0; i < n; i++) {
+            maxChange = Math.max(maxChange, Math.abs(voltage[i] - previous[i]));
+        }
+        return maxChange;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (diagonal.length >= nodes) {
+            return;
+        }
+        int capacity = Math.max(16, nodes * 2);
+        diagonal = new double[capacity];
+        rhs = new double[capacity];
+        voltage = new double[capacity];
+        residual = new double[capacity];
+        direction = new double[capacity];
+        preconditioned = new double[capacity];
+        product = new double[capacity];
+        previous = new double[capacity];
+        nominal = new double[capacity];
+        demand = new double[capacity];
+    }
+
+    // 获取列车受电弓/集电靴处电压（伏），不在供电范围内时为0
+    public double getTrainVoltage(String trainId) {
+        TrainLoad train = trains.get(trainId);
+        return train == null ? 0 : train.voltage;
+    }
+
+    // 获取列车电压与额定电压之比，不在供电范围内时为0
+    public double getTrainVoltageRatio(String trainId) {
+        TrainLoad train = trains.get(trainId);
+        if (train == null || train.nominalVoltage <= 0) {
+            return 0;
+        }
+        return train.voltage / train.nominalVoltage;
+    }
+
+    // 获取列车的主供电变电所（最近的变电所）键，不在供电范围内时为NO_FEEDER
+    public long getTrainFeeder(String trainId) {
+        TrainLoad train = trains.get(trainId);
+        return train == null ? NO_FEEDER : train.feederKey;
+    }
+
+    // 获取变电所母线电压（伏）
+    public double getSubstationVoltage(long key) {
+        Substation substation = substations.get(key);
+        return substation == null ? 0 : substation.voltage;
+    }
+
+    // 获取变电所输出电流（安）
+    public double getSubstationCurrent(long key) {
+        Substation substation = substations.get(key);
+        if (substation == null) {
+            return 0;
+        }
+        return (substation.nominalVoltage - substation.voltage) / SUBSTATION_INTERNAL_RESISTANCE;
+    }
+
+    public int getSubstationCount() {
+        return substations.size();
+    }
+
+    public int getTrainCount() {
+        return trains.size();
+    }
+
+    public int getLastLoadIterations() {
+        return lastLoadIterations;
+    }
+
+    public int getLastCgIterations() {
+        return lastCgIterations;
+    }
+
+    public long getLastSolveNanos() {
+        return lastSolveNanos;
+    }
+
+    // 牵引变电所
+    private static class Substation {
+        private final long key;
+        private double x;
+        private double y;
+        private double z;
+        private double nominalVoltage;
+        private double voltage;
+        private long stamp = 0;
+        private int index;
+
+        Substation(long key) {
+            this.key = key;
+        }
+    }
+
+    // 列车负载
+    private static class TrainLoad {
+        private double x;
+        private double y;
+        private double z;
+        private double power;
+        private double nominalVoltage;
+        private double voltage = 0;
+        private long feederKey = NO_FEEDER;
+        private long stamp;
+        private int index = -1;
+    }
+}
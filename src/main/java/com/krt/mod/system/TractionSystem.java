@@ -26,6 +26,12 @@ public class TractionSystem {
     private int maxTemperature = 120; // 最高温度
     private boolean powerRegenerationEnabled = true; // 能量回收功能
     private double health = 100.0;
+    private double lineVoltageRatio = 1.0; // 网压与额定电压之比（由供电系统潮流计算给出）
+    
+    // 网压不低于额定值的该比例时可发挥全部牵引力
+    private static final double FULL_POWER_VOLTAGE_RATIO = 0.8;
+    // 网压低于额定值的该比例时切除牵引
+    private static final double CUTOFF_VOLTAGE_RATIO = 0.6;
     
     /**
      * 创建牵引系统
@@ -59,6 +65,9 @@ public class TractionSystem {
             dcPower = powerSystem.provideTractionPower(car.getConsist(), (int)power);
         }
         
+        // 网压过低时按比例限制牵引功率
+        dcPower = (int) (dcPower * getPowerLimitFactor());
+        
         this.powerInput = dcPower;
         
         // 通过逆变器转换为交流电
@@ -72,6 +81,19 @@ public class TractionSystem {
         car.setSpeed(car.getSpeed() + speedIncrement);
     }
     
+    /**
+     * 根据网压计算牵引功率限制系数（0-1）
+     */
+    public double getPowerLimitFactor() {
+        if (lineVoltageRatio >= FULL_POWER_VOLTAGE_RATIO) {
+            return 1.0;
+        }
+        if (lineVoltageRatio <= CUTOFF_VOLTAGE_RATIO) {
+            return 0.0;
+        }
+        return (lineVoltageRatio - CUTOFF_VOLTAGE_RATIO) / (FULL_POWER_VOLTAGE_RATIO - CUTOFF_VOLTAGE_RATIO);
+    }
+    
     /**
      * 将直流电转换为交流电
      */
@@ -300,6 +322,14 @@ public class TractionSystem {
         this.powerRegenerationEnabled = powerRegenerationEnabled;
     }
     
+    public double getLineVoltageRatio() {
+        return lineVoltageRatio;
+    }
+    
+    public void setLineVoltageRatio(double lineVoltageRatio) {
+        this.lineVoltageRatio = lineVoltageRatio;
+    }
+    
     public double getEfficiency() {
         return efficiency;
     }
@@ -41,6 +41,7 @@ public class TrainControlSystem {
     private boolean isBraking = false;
     private double targetSpeed = 0.0;
     private double maxSpeed = 80.0; // 默认最大速度80km/h
+    private static final double MAX_REVERSE_SPEED = 20.0; // 后退最大速度20km/h（驾驶台后退档）
     private TrainControlMode controlMode = TrainControlMode.ATO;
     
     // 加速度相关参数（单位：m/s²）
@@ -1805,7 +1806,13 @@ private void applySmoothStartup() {
 
     // 设置目标速度
     public void setTargetSpeed(double speed) {
-        this.targetSpeed = Math.min(speed, maxSpeed);
+        // 网络传入的目标速度同样经过这里，前进不超过最大速度，后退（负值）不超过后退限速
+        this.targetSpeed = Math.max(-Math.min(MAX_REVERSE_SPEED, maxSpeed), Math.min(speed, maxSpeed));
+    }
+
+    // 获取目标速度
+    public double getTargetSpeed() {
+        return targetSpeed;
     }
 
     // 设置控制模式
@@ -1952,9 +1959,7 @@ private void applySmoothStartup() {
     // 设置最大速度
     public void setMaxSpeed(double maxSpeed) {
         this.maxSpeed = maxSpeed;
-        if (this.targetSpeed > maxSpeed) {
-            this.targetSpeed = maxSpeed;
-        }
+        setTargetSpeed(this.targetSpeed);
     }
 
     // 控制模式枚举
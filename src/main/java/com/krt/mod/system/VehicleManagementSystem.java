@@ -2,9 +2,14 @@ package com.krt.mod.system;
 
 import com.krt.mod.entity.TrainCar;
 import com.krt.mod.entity.TrainConsist;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.world.World;
@@ -343,6 +348,56 @@ public class VehicleManagementSystem {
         );
     }
     
+    /**
+     * 在服务器线程上复制车队状态的快照
+     * 只复制字段，不做序列化，序列化和写盘由 FleetPersistence 在后台线程完成
+     */
+    public FleetSnapshot snapshotFleet() {
+        List<TrainConsist.Snapshot> consistSnapshots = new ArrayList<>(consists.size());
+        for (TrainConsist consist : consists.values()) {
+            consistSnapshots.add(consist.snapshot());
+        }
+        // 未编入编组的车辆单独保存
+        List<TrainCar.Snapshot> looseCars = new ArrayList<>();
+        for (TrainCar car : cars.values()) {
+            if (car.getConsist() == null) {
+                looseCars.add(car.snapshot());
+            }
+        }
+        return new FleetSnapshot(nextCarId, nextConsistId, consistSnapshots, looseCars);
+    }
+    
+    /**
+     * 从车队存档恢复所有编组和车辆，替换当前内容
+     */
+    public void restoreFleet(NbtCompound nbt) {
+        cars.clear();
+        consists.clear();
+        
+        NbtList consistList = nbt.getList("consists", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < consistList.size(); i++) {
+            registerConsist(TrainConsist.fromNbt(consistList.getCompound(i)));
+        }
+        NbtList carList = nbt.getList("cars", NbtElement.COMPOUND_TYPE);
+        for (int i = 0; i < carList.size(); i++) {
+            TrainCar car = TrainCar.fromNbt(carList.getCompound(i));
+            cars.put(car.getCarId(), car);
+        }
+        
+        nextCarId = Math.max(nextCarId, nbt.getInt("nextCarId"));
+        nextConsistId = Math.max(nextConsistId, nbt.getInt("nextConsistId"));
+    }
+    
+    /**
+     * 登记已有的编组及其车辆（如从旧版实体数据恢复的编组）
+     */
+    public void registerConsist(TrainConsist consist) {
+        consists.put(consist.getConsistId(), consist);
+        for (TrainCar car : consist.getCars()) {
+            cars.put(car.getCarId(), car);
+        }
+    }
+    
     // Getters and setters
     public Map<String, TrainCar> getCars() {
         return new HashMap<>(cars);
@@ -371,4 +426,42 @@ public class VehicleManagementSystem {
     public World getWorld() {
         return world;
     }
+    
+    /**
+     * 车队状态快照
+     */
+    public static class FleetSnapshot {
+        private final int nextCarId;
+        private final int nextConsistId;
+        private final List<TrainConsist.Snapshot> consists;
+        private final List<TrainCar.Snapshot> looseCars;
+        
+        private FleetSnapshot(int nextCarId, int nextConsistId, List<TrainConsist.Snapshot> consists, List<TrainCar.Snapshot> looseCars) {
+            this.nextCarId = nextCarId;
+            this.nextConsistId = nextConsistId;
+            this.consists = consists;
+            this.looseCars = looseCars;
+        }
+        
+        public int getConsistCount() {
+            return consists.size();
+        }
+        
+        public NbtCompound toNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putInt("nextCarId", nextCarId);
+            nbt.putInt("nextConsistId", nextConsistId);
+            NbtList consistList = new NbtList();
+            for (TrainConsist.Snapshot consist : consists) {
+                consistList.add(consist.toNbt());
+            }
+            nbt.put("consists", consistList);
+            NbtList carList = new NbtList();
+            for (TrainCar.Snapshot car : looseCars) {
+                carList.add(car.toNbt());
+            }
+            nbt.put("cars", carList);
+            return nbt;
+        }
+    }
 }
\ No newline at end of file
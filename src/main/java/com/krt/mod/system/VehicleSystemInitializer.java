@@ -48,8 +48,8 @@ public class VehicleSystemInitializer implements ModInitializer {
             return;
         }
         
-        // 初始化供电系统
-        powerSupplySystem = new PowerSupplySystem(world);
+        // 初始化供电系统（与方块实体使用同一个世界供电系统实例）
+        powerSupplySystem = PowerSupplySystemManager.getForWorld(world);
         
         // 初始化车辆管理系统
         vehicleManagementSystem = VehicleManagementSystem.getInstance(world);
@@ -90,12 +90,7 @@ public class VehicleSystemInitializer implements ModInitializer {
         // 优化更新频率
         long ticks = server.getTicks();
         
-        // 供电系统 - 每2tick更新一次
-        if (powerSupplySystem != null && ticks % 2 == 0) {
-            PerformanceMonitor.getInstance().startSystemExecution("PowerSupplySystem");
-            powerSupplySystem.update();
-            PerformanceMonitor.getInstance().endSystemExecution("PowerSupplySystem");
-        }
+        // 供电系统由 PowerSupplySystemManager 在各世界tick中更新
         
         // 车辆管理系统 - 每tick更新（关键系统）
         if (vehicleManagementSystem != null) {
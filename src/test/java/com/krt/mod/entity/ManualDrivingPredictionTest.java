@@ -0,0 +1,122 @@
+package com.krt.mod.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManualDrivingPredictionTest {
+
+    private static final float YAW = 30.0F;
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void testStep_ShouldLimitAccelerationAndBraking() {
+        ManualDrivingModel model = new ManualDrivingModel();
+        model.setLimits(1.0, 2.0);
+        model.step(60.0, false, YAW);
+        assertEquals(1.0 * 3.6 * ManualDrivingModel.TICK_SECONDS, model.getSpeed(), EPSILON, "Acceleration should be limited per tick");
+
+        model.setSpeed(30.0);
+        model.step(0.0, false, YAW);
+        assertEquals(30.0 - 2.0 * 3.6 * ManualDrivingModel.TICK_SECONDS, model.getSpeed(), EPSILON, "Braking should use the deceleration limit");
+
+        model.setSpeed(0.1);
+        model.step(60.0, true, YAW);
+        assertEquals(0.0, model.getSpeed(), EPSILON, "Emergency braking should stop the train");
+    }
+
+    @Test
+    void testSpeedAlongHeading_ShouldKeepDirectionInKmh() {
+        // 54 km/h = 15 m/s，每刻沿车头朝向前进0.75格
+        double radians = Math.toRadians(YAW);
+        double deltaX = -Math.sin(radians) * 0.75;
+        double deltaZ = Math.cos(radians) * 0.75;
+        assertEquals(54.0, ManualDrivingModel.speedAlongHeading(deltaX, deltaZ, YAW), EPSILON);
+        assertEquals(-54.0, ManualDrivingModel.speedAlongHeading(-deltaX, -deltaZ, YAW), EPSILON, "Moving backwards should give a negative speed");
+        assertEquals(0.0, ManualDrivingModel.speedAlongHeading(deltaZ, -deltaX, YAW), EPSILON, "Sideways movement should not count");
+    }
+
+    @Test
+    void testSwitchToManual_ShouldContinueFromCurrentVelocity() {
+        // 列车以54 km/h后退时切换到手动驾驶，服务器和客户端都从最近一刻的位移确定初始速度
+        double radians = Math.toRadians(YAW);
+        double deltaX = Math.sin(radians) * 0.75;
+        double deltaZ = -Math.cos(radians) * 0.75;
+        double seed = ManualDrivingModel.speedAlongHeading(deltaX, deltaZ, YAW);
+        ManualDrivingPrediction prediction = new ManualDrivingPrediction(0, 64, 0, seed, 1);
+        ManualDrivingModel server = new ManualDrivingModel();
+        server.setPosition(0, 64, 0);
+        server.setSpeed(seed);
+
+        // 保持原速时不应先制动，列车继续按原方向移动
+        ManualDrivingModel.Input input = prediction.predict(-54.0, false, YAW);
+        assertEquals(-54.0, prediction.getSpeed(), EPSILON, "Holding the current speed should not brake");
+        assertEquals(deltaX, prediction.getModel().getX(), EPSILON);
+        assertEquals(deltaZ, prediction.getModel().getZ(), EPSILON);
+
+        // 目标速度为零时从后退速度减速，而不是先反向
+        prediction.predict(0.0, false, YAW);
+        assertEquals(-54.0 + ManualDrivingModel.DEFAULT_DECELERATION * 3.6 * ManualDrivingModel.TICK_SECONDS,
+                prediction.getSpeed(), EPSILON);
+
+        // 两端初始状态一致，服务器确认后没有修正偏差
+        server.step(input.getTargetSpeed(), false, YAW);
+        double shownX = prediction.getX();
+        prediction.reconcile(input.getSequence(), server.getX(), server.getY(), server.getZ(), server.getSpeed(),
+                server.getAcceleration(), server.getDeceleration(), YAW);
+        assertEquals(shownX, prediction.getModel().getX(), EPSILON, "Matching seeds should need no correction");
+    }
+
+    @Test
+    void testReconcile_ShouldMatchServerAfterReplayingPendingInputs() {
+        int latency = 6;
+        ManualDrivingPrediction prediction = new ManualDrivingPrediction(0, 64, 0, 0, 1);
+        ManualDrivingModel server = new ManualDrivingModel();
+        server.setPosition(0, 64, 0);
+        server.setLimits(1.2, 1.3);
+        Deque<ManualDrivingModel.Input> inFlight = new ArrayDeque<>();
+
+        for (int tick = 0; tick < 200; tick++) {
+            double target = tick < 120 ? 60.0 : -20.0;
+            inFlight.addLast(prediction.predict(target, false, YAW));
+            if (inFlight.size() > latency) {
+                // 服务器延迟若干刻后处理输入并回传状态
+                ManualDrivingModel.Input input = inFlight.removeFirst();
+                server.step(input.getTargetSpeed(), false, YAW);
+                prediction.reconcile(input.getSequence(), server.getX(), server.getY(), server.getZ(), server.getSpeed(),
+                        server.getAcceleration(), server.getDeceleration(), YAW);
+                assertEquals(latency, prediction.getPendingCount(), "Only unacknowledged inputs should be kept");
+            }
+        }
+
+        // 服务器处理完剩余输入后，预测状态与服务器一致
+        while (!inFlight.isEmpty()) {
+            ManualDrivingModel.Input input = inFlight.removeFirst();
+            server.step(input.getTargetSpeed(), false, YAW);
+        }
+        assertEquals(server.getSpeed(), prediction.getModel().getSpeed(), EPSILON);
+        assertEquals(server.getX(), prediction.getModel().getX(), EPSILON);
+        assertEquals(server.getZ(), prediction.getModel().getZ(), EPSILON);
+    }
+
+    @Test
+    void testReconcile_ShouldSmoothServerCorrection() {
+        ManualDrivingPrediction prediction = new ManualDrivingPrediction(0, 64, 0, 30.0, 1);
+        ManualDrivingModel.Input input = prediction.predict(30.0, false, YAW);
+        double shownX = prediction.getX();
+
+        // 服务器位置与预测相差1格
+        ManualDrivingModel model = prediction.getModel();
+        prediction.reconcile(input.getSequence(), model.getX() + 1.0, model.getY(), model.getZ(), model.getSpeed(),
+                model.getAcceleration(), model.getDeceleration(), YAW);
+        assertEquals(shownX, prediction.getX(), EPSILON, "Displayed position should not jump on correction");
+
+        for (int i = 0; i < 20; i++) {
+            prediction.predict(30.0, false, YAW);
+        }
+        assertEquals(prediction.getModel().getX(), prediction.getX(), 1e-3, "Correction should decay over a few ticks");
+    }
+}
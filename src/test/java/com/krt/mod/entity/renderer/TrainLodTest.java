@@ -0,0 +1,55 @@
+package com.krt.mod.entity.renderer;
+
+import com.krt.mod.entity.TrainCar;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrainLodTest {
+
+    private static final double FOV = 70.0;
+    private static final int SCREEN_HEIGHT = 1080;
+
+    @Test
+    void testSelect_ShouldFollowProjectedSize() {
+        assertEquals(TrainLod.FULL, TrainLod.select(200));
+        assertEquals(TrainLod.FULL, TrainLod.select(TrainLod.FULL_MIN_PIXELS));
+        assertEquals(TrainLod.BOX, TrainLod.select(TrainLod.FULL_MIN_PIXELS - 0.1));
+        assertEquals(TrainLod.IMPOSTOR, TrainLod.select(TrainLod.BOX_MIN_PIXELS - 0.1));
+        assertEquals(TrainLod.CULLED, TrainLod.select(TrainLod.IMPOSTOR_MIN_PIXELS - 0.1));
+    }
+
+    @Test
+    void testProjectedPixels_ShouldShrinkWithDistance() {
+        double near = TrainLod.projectedPixels(4, 10, FOV, SCREEN_HEIGHT);
+        double far = TrainLod.projectedPixels(4, 100, FOV, SCREEN_HEIGHT);
+        assertEquals(near / 10, far, 1e-9, "Projected size should be inversely proportional to distance");
+        assertTrue(Double.isInfinite(TrainLod.projectedPixels(4, 2, FOV, SCREEN_HEIGHT)), "Camera inside the bounding sphere should select full detail");
+    }
+
+    @Test
+    void testLodByDistance_ShouldDegradeMonotonically() {
+        CarMeshCache cache = new CarMeshCache(3.0F, 3.0F, 7.0F);
+        TrainLod previous = TrainLod.FULL;
+        for (int distance = 1; distance <= 8192; distance *= 2) {
+            TrainLod lod = TrainLod.select(TrainLod.projectedPixels(cache.getRadius(), distance, FOV, SCREEN_HEIGHT));
+            assertTrue(lod.ordinal() >= previous.ordinal(), "Detail should never increase with distance");
+            previous = lod;
+        }
+        assertEquals(TrainLod.CULLED, previous, "Very distant cars should not be drawn");
+    }
+
+    @Test
+    void testMeshCache_ShouldBuildOncePerTypeAndLevel() {
+        CarMeshCache cache = new CarMeshCache(3.0F, 3.0F, 7.0F);
+        CarMeshCache.CarMesh full = cache.get(TrainCar.CarType.HEAD_CAR, TrainLod.FULL);
+        assertSame(full, cache.get(TrainCar.CarType.HEAD_CAR, TrainLod.FULL), "Mesh should be cached");
+        assertNotSame(full, cache.get(TrainCar.CarType.MIDDLE_CAR, TrainLod.FULL), "Each car type has its own mesh");
+
+        int box = cache.get(TrainCar.CarType.HEAD_CAR, TrainLod.BOX).getQuadCount();
+        int impostor = cache.get(TrainCar.CarType.HEAD_CAR, TrainLod.IMPOSTOR).getQuadCount();
+        assertTrue(full.getQuadCount() > box && box > impostor, "Lower detail levels should have fewer quads");
+        assertEquals(0, cache.get(TrainCar.CarType.HEAD_CAR, TrainLod.CULLED).getVertexCount());
+        assertEquals(full.getVertexCount() * CarMeshCache.CarMesh.STRIDE, full.getVertices().length);
+    }
+}
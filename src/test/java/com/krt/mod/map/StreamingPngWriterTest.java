@@ -0,0 +1,132 @@
+package com.krt.mod.map;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingPngWriterTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+    private static final int STRIP_ROWS = 32;
+
+    @Test
+    void testEncode_ShouldDecodeMultiStripImage() throws IOException {
+        int[] pixels = createPixels();
+        File file = File.createTempFile("krt_png", ".png");
+        file.deleteOnExit();
+        try (StreamingPngWriter writer = StreamingPngWriter.create(file, WIDTH, HEIGHT)) {
+            for (int row = 0; row < HEIGHT; row += STRIP_ROWS) {
+                writer.writeStrip(encodeStrip(pixels, row));
+            }
+            writer.finish();
+        }
+
+        BufferedImage image = ImageIO.read(file);
+        assertNotNull(image, "Encoded file should be a readable PNG");
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(pixels[y * WIDTH + x] & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF, "Pixel mismatch at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void testCombineAdler_ShouldMatchAdler32OverWholeData() {
+        Random random = new Random(42);
+        byte[] data = new byte[200_000];
+        random.nextBytes(data);
+        // 包含空的后一段和超过 65521 字节的后一段
+        for (int split : new int[]{0, 1, 1000, 65521, 100_000, data.length}) {
+            Adler32 first = new Adler32();
+            first.update(data, 0, split);
+            Adler32 second = new Adler32();
+            second.update(data, split, data.length - split);
+            Adler32 whole = new Adler32();
+            whole.update(data);
+            assertEquals(whole.getValue(), StreamingPngWriter.combineAdler(first.getValue(), second.getValue(), data.length - split),
+                    "Combined checksum should match for split at " + split);
+        }
+    }
+
+    @Test
+    void testResume_ShouldProduceSameFileAsUninterruptedExport() throws IOException {
+        int[] pixels = createPixels();
+        File expected = File.createTempFile("krt_png", ".png");
+        File resumed = File.createTempFile("krt_png", ".png");
+        expected.deleteOnExit();
+        resumed.deleteOnExit();
+        try (StreamingPngWriter writer = StreamingPngWriter.create(expected, WIDTH, HEIGHT)) {
+            for (int row = 0; row < HEIGHT; row += STRIP_ROWS) {
+                writer.writeStrip(encodeStrip(pixels, row));
+            }
+            writer.finish();
+        }
+
+        // 写完两个条带后保存进度，之后又写了一个条带时中断
+        StreamingPngWriter.Checkpoint checkpoint;
+        try (StreamingPngWriter writer = StreamingPngWriter.create(resumed, WIDTH, HEIGHT)) {
+            writer.writeStrip(encodeStrip(pixels, 0));
+            writer.writeStrip(encodeStrip(pixels, STRIP_ROWS));
+            checkpoint = writer.checkpoint();
+            writer.writeStrip(encodeStrip(pixels, STRIP_ROWS * 2));
+        }
+        assertEquals(STRIP_ROWS * 2, checkpoint.getRowsWritten());
+
+        try (StreamingPngWriter writer = StreamingPngWriter.resume(resumed, HEIGHT, checkpoint)) {
+            for (int row = checkpoint.getRowsWritten(); row < HEIGHT; row += STRIP_ROWS) {
+                writer.writeStrip(encodeStrip(pixels, row));
+            }
+            writer.finish();
+        }
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(resumed.toPath()),
+                "Resumed export should be byte-identical to an uninterrupted one");
+    }
+
+    @Test
+    void testWriteStrip_ShouldRejectRowsBeyondHeight() throws IOException {
+        File file = File.createTempFile("krt_png", ".png");
+        file.deleteOnExit();
+        try (StreamingPngWriter writer = StreamingPngWriter.create(file, WIDTH, 10)) {
+            assertThrows(IOException.class, writer::finish, "Unfinished image should not be closed");
+            assertThrows(IOException.class, () -> writer.writeStrip(StreamingPngWriter.encodeStrip(new int[WIDTH * 11], WIDTH, 11)));
+        }
+    }
+
+    // 渐变、纯色块和噪声混合，使各行选择不同的过滤方式
+    private static int[] createPixels() {
+        Random random = new Random(7);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int color;
+                if (x < WIDTH / 3) {
+                    color = (x * 255 / WIDTH) << 16 | (y * 255 / HEIGHT) << 8 | 0x40;
+                } else if (x < WIDTH * 2 / 3) {
+                    color = (y / 16) % 2 == 0 ? 0x3366CC : 0xCC6633;
+                } else {
+                    color = random.nextInt(0x1000000);
+                }
+                pixels[y * WIDTH + x] = 0xFF000000 | color;
+            }
+        }
+        return pixels;
+    }
+
+    private static StreamingPngWriter.EncodedStrip encodeStrip(int[] pixels, int firstRow) {
+        int rows = Math.min(STRIP_ROWS, HEIGHT - firstRow);
+        int[] strip = Arrays.copyOfRange(pixels, firstRow * WIDTH, (firstRow + rows) * WIDTH);
+        return StreamingPngWriter.encodeStrip(strip, WIDTH, rows);
+    }
+}
@@ -0,0 +1,139 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedPositionSetTest {
+
+    @Test
+    void testIteratorRemove_ShouldVisitWrappedClusterOnce() {
+        // 理想槽位都是表尾的位置，插入后从表尾绕回表头形成探测链
+        PackedPositionSet set = new PackedPositionSet();
+        int slotCount = set.getSlotCount();
+        List<Long> cluster = findPackedWithHomeSlot(slotCount - 1, 5);
+        List<Long> atHead = findPackedWithHomeSlot(0, 2);
+        List<Long> all = new ArrayList<>(cluster);
+        all.addAll(atHead);
+        for (long packed : all) {
+            set.addLong(packed);
+        }
+        assertEquals(slotCount, set.getSlotCount(), "Cluster should fit without resizing");
+
+        // 删除表尾元素时，表头的元素经反向移位绕回到已遍历的表尾
+        Set<Long> visited = new HashSet<>();
+        Iterator<BlockPos> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            long packed = iterator.next().asLong();
+            assertTrue(visited.add(packed), "Each position should be visited once");
+            if (cluster.contains(packed)) {
+                iterator.remove();
+            }
+        }
+        assertEquals(new HashSet<>(all), visited);
+        assertEquals(atHead.size(), set.size());
+        for (long packed : atHead) {
+            assertTrue(set.containsLong(packed), "Remaining positions should still be found after shifting");
+        }
+        for (long packed : cluster) {
+            assertFalse(set.containsLong(packed));
+        }
+    }
+
+    @Test
+    void testZeroKey_ShouldBeStoredSeparately() {
+        PackedPositionSet set = new PackedPositionSet();
+        assertTrue(set.add(BlockPos.ORIGIN));
+        assertFalse(set.add(BlockPos.ORIGIN));
+        set.add(new BlockPos(1, 2, 3));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(BlockPos.ORIGIN));
+        assertEquals(Set.of(BlockPos.ORIGIN, new BlockPos(1, 2, 3)), new HashSet<>(set));
+
+        Iterator<BlockPos> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().equals(BlockPos.ORIGIN)) {
+                iterator.remove();
+            }
+        }
+        assertFalse(set.contains(BlockPos.ORIGIN));
+        assertEquals(1, set.size());
+        assertFalse(set.removeLong(0));
+    }
+
+    @Test
+    void testResize_ShouldKeepAllPositions() {
+        PackedPositionSet set = new PackedPositionSet();
+        int slots = set.getSlotCount();
+        for (int i = 0; i < 10000; i++) {
+            set.add(new BlockPos(i % 100 - 50, 64 + i / 1000, i / 100));
+        }
+        assertEquals(10000, set.size());
+        assertTrue(set.getSlotCount() > slots, "Table should grow with the set");
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(set.contains(new BlockPos(i % 100 - 50, 64 + i / 1000, i / 100)));
+        }
+        assertEquals(10000, set.toLongArray().length);
+    }
+
+    @Test
+    void testBulkRemove_ShouldMatchHashSet() {
+        Random random = new Random(42);
+        PackedPositionSet set = new PackedPositionSet();
+        Set<BlockPos> expected = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            BlockPos pos = new BlockPos(random.nextInt(200) - 100, random.nextInt(16), random.nextInt(200) - 100);
+            set.add(pos);
+            expected.add(pos);
+        }
+        set.add(BlockPos.ORIGIN);
+        expected.add(BlockPos.ORIGIN);
+
+        // removeIf、retainAll、removeAll 都经过迭代器删除
+        assertEquals(expected.removeIf(pos -> pos.getX() % 3 == 0), set.removeIf(pos -> pos.getX() % 3 == 0));
+        assertEquals(expected, new HashSet<>(set));
+
+        List<BlockPos> keep = new ArrayList<>(expected).subList(0, expected.size() / 2);
+        set.retainAll(new HashSet<>(keep));
+        expected.retainAll(new HashSet<>(keep));
+        assertEquals(expected, new HashSet<>(set));
+
+        List<BlockPos> drop = new ArrayList<>(expected).subList(0, expected.size() / 3);
+        set.removeAll(new HashSet<>(drop));
+        expected.removeAll(new HashSet<>(drop));
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected, new HashSet<>(set));
+        for (BlockPos pos : expected) {
+            assertTrue(set.contains(pos));
+        }
+    }
+
+    @Test
+    void testIteratorRemove_ShouldRequireNext() {
+        PackedPositionSet set = new PackedPositionSet();
+        set.add(new BlockPos(1, 1, 1));
+        Iterator<BlockPos> iterator = set.iterator();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        iterator.next();
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+        assertTrue(set.isEmpty());
+    }
+
+    // 在空表中查找理想槽位为指定下标的打包位置
+    private static List<Long> findPackedWithHomeSlot(int slot, int count) {
+        List<Long> result = new ArrayList<>();
+        for (int x = 1; result.size() < count; x++) {
+            PackedPositionSet probe = new PackedPositionSet();
+            long packed = BlockPos.asLong(x, 64, 0);
+            probe.addLong(packed);
+            if (probe.slotOf(packed) == slot) {
+                result.add(packed);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionCodecTest {
+
+    @Test
+    void testRoundTrip_ShouldKeepNegativeAndFarApartPositions() {
+        long[] positions = {
+                BlockPos.asLong(0, 64, 0),
+                BlockPos.asLong(-1, -64, -1),
+                BlockPos.asLong(-30000000, 319, 29999999),
+                BlockPos.asLong(29999999, -2048, -30000000),
+                BlockPos.asLong(12, 2047, -7),
+                BlockPos.asLong(13, 2047, -7)
+        };
+        Arrays.sort(positions);
+        assertArrayEquals(positions, PositionCodec.decode(PositionCodec.encode(positions), positions.length));
+    }
+
+    @Test
+    void testRoundTrip_ShouldMatchRandomPositions() {
+        Random random = new Random(42);
+        long[] positions = new long[1000];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = BlockPos.asLong(random.nextInt(60000000) - 30000000, random.nextInt(4096) - 2048,
+                    random.nextInt(60000000) - 30000000);
+        }
+        Arrays.sort(positions);
+        assertArrayEquals(positions, PositionCodec.decode(PositionCodec.encode(positions), positions.length));
+    }
+
+    @Test
+    void testEncode_ShouldUseThreeBytesPerStepAlongAxis() {
+        long[] positions = new long[100];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = BlockPos.asLong(-50 + i, 64, -20);
+        }
+        Arrays.sort(positions);
+        byte[] data = PositionCodec.encode(positions);
+        // 第一个位置相对原点，其余每个位置三个方向的差值各占1字节
+        assertTrue(data.length <= 8 + (positions.length - 1) * 3, "Consecutive track should encode compactly");
+        assertArrayEquals(positions, PositionCodec.decode(data, positions.length));
+    }
+
+    @Test
+    void testDecode_ShouldRejectCountNotMatchingData() {
+        long[] positions = {BlockPos.asLong(1, 2, 3), BlockPos.asLong(4, 5, 6)};
+        byte[] data = PositionCodec.encode(positions);
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(data, -1));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(data, Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(data, 1), "Unread trailing bytes should be rejected");
+        assertThrows(IllegalArgumentException.class, () -> PositionCodec.decode(Arrays.copyOf(data, data.length - 1), 2));
+    }
+}
@@ -0,0 +1,77 @@
+package com.krt.mod.system;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RegenerativeEnergyLedgerTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final long SECTION_A = 1L;
+    private static final long SECTION_B = 2L;
+
+    @Test
+    void testSettle_ShouldReuseRegenerationWithinSameSection() {
+        RegenerativeEnergyLedger ledger = new RegenerativeEnergyLedger();
+        Map<String, Long> sections = new HashMap<>();
+        sections.put("braking", SECTION_A);
+        sections.put("motoring", SECTION_A);
+        sections.put("other", SECTION_B);
+
+        ledger.report("braking", 0, 1000);
+        ledger.report("motoring", 600, 0);
+        ledger.report("other", 500, 0);
+        ledger.settle(2.0, sections::get, null);
+
+        // 同一区段内600W被牵引列车使用，剩余400W没有储能装置时由制动电阻消耗
+        RegenerativeEnergyLedger.SectionEnergy a = ledger.getSection(SECTION_A);
+        assertEquals(2000, a.getTotalRegenerated(), EPSILON);
+        assertEquals(1200, a.getTotalReused(), EPSILON);
+        assertEquals(800, a.getTotalDissipated(), EPSILON);
+        assertEquals(0, a.getTotalDrawn(), EPSILON);
+
+        // 其他区段的再生能量不能跨区段使用
+        RegenerativeEnergyLedger.SectionEnergy b = ledger.getSection(SECTION_B);
+        assertEquals(0, b.getTotalReused(), EPSILON);
+        assertEquals(1000, b.getTotalDrawn(), EPSILON);
+    }
+
+    @Test
+    void testSettle_ShouldStoreSurplusUpToSinkCapacity() {
+        RegenerativeEnergyLedger ledger = new RegenerativeEnergyLedger();
+        ledger.report("braking", 0, 1000);
+        ledger.settle(1.0, trainId -> SECTION_A, (sectionKey, joules) -> Math.min(joules, 300));
+
+        RegenerativeEnergyLedger.SectionEnergy section = ledger.getSection(SECTION_A);
+        assertEquals(300, section.getTotalStored(), EPSILON);
+        assertEquals(700, section.getTotalDissipated(), EPSILON);
+        assertEquals(0.3, section.getRecoveryRate(), EPSILON);
+    }
+
+    @Test
+    void testSettle_ShouldClearReportsBetweenPeriods() {
+        RegenerativeEnergyLedger ledger = new RegenerativeEnergyLedger();
+        ledger.report("braking", 0, 1000);
+        ledger.settle(1.0, trainId -> SECTION_A, null);
+
+        // 下一周期没有上报，区段功率归零而累计值保持不变
+        ledger.settle(1.0, trainId -> SECTION_A, null);
+        RegenerativeEnergyLedger.SectionEnergy section = ledger.getSection(SECTION_A);
+        assertEquals(0, section.getRegenPower(), EPSILON);
+        assertEquals(0, section.getTrainCount());
+        assertEquals(1000, section.getTotalRegenerated(), EPSILON);
+    }
+
+    @Test
+    void testSettle_ShouldDissipateOffGridRegeneration() {
+        RegenerativeEnergyLedger ledger = new RegenerativeEnergyLedger();
+        ledger.report("braking", 0, 500);
+        ledger.settle(2.0, trainId -> RegenerativeEnergyLedger.NO_SECTION, (sectionKey, joules) -> joules);
+
+        assertEquals(1000, ledger.getOffGridDissipated(), EPSILON);
+        assertTrue(ledger.getSections().isEmpty(), "Off-grid trains should not create feeder sections");
+    }
+}
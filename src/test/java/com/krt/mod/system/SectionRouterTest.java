@@ -0,0 +1,72 @@
+package com.krt.mod.system;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SectionRouterTest {
+
+    private BlockSectionManagement management;
+
+    @BeforeEach
+    void setUp() {
+        management = BlockSectionManagement.getInstance(mock(World.class));
+        // 两条并行进路：A -> B -> D（B较短）和 A -> C -> D（C较长）
+        management.createBlockSection("line", "A", new BlockPos(0, 64, 0), new BlockPos(10, 64, 0));
+        management.createBlockSection("line", "B", new BlockPos(10, 64, 0), new BlockPos(20, 64, 0));
+        management.createBlockSection("line", "C", new BlockPos(10, 64, 0), new BlockPos(30, 64, 0));
+        management.createBlockSection("line", "D", new BlockPos(30, 64, 0), new BlockPos(40, 64, 0));
+        management.addBlockSectionConnection("A", "B");
+        management.addBlockSectionConnection("A", "C");
+        management.addBlockSectionConnection("B", "D");
+        management.addBlockSectionConnection("C", "D");
+    }
+
+    @Test
+    void testSetSpeedLimit_ShouldInvalidateCachedRoutes() {
+        assertEquals(List.of("A", "B", "D"), sectionIds(management.findShortestRoute("A", "D", "train")));
+
+        // 降低B的限速后，经过C的进路用时更短，缓存的进路不能再被使用
+        long version = management.getTopologyVersion();
+        management.getBlockSection("B").setSpeedLimit(1.0);
+        assertTrue(management.getTopologyVersion() > version, "Changing a speed limit should bump the topology version");
+        assertEquals(List.of("A", "C", "D"), sectionIds(management.findShortestRoute("A", "D", "train")));
+    }
+
+    @Test
+    void testSetSpeedLimit_ShouldKeepCacheWhenUnchanged() {
+        management.findShortestRoute("A", "D", "train");
+        long version = management.getTopologyVersion();
+        BlockSectionManagement.BlockSection section = management.getBlockSection("B");
+        section.setSpeedLimit(section.getSpeedLimit());
+        assertEquals(version, management.getTopologyVersion(), "Setting the same speed limit should keep cached routes");
+    }
+
+    @Test
+    void testRegenerateLine_ShouldDetachRemovedSections() {
+        BlockSectionManagement.BlockSection removed = management.getBlockSection("B");
+        management.generateBlockSectionsForLine("line", List.of(new BlockPos(0, 64, 0), new BlockPos(5, 64, 0)));
+        long version = management.getTopologyVersion();
+
+        // 已移除的区间不再影响新拓扑的进路缓存
+        removed.setSpeedLimit(5.0);
+        assertEquals(version, management.getTopologyVersion());
+        assertNull(management.findShortestRoute("A", "D", "train"));
+    }
+
+    private static List<String> sectionIds(SectionRouter.Route route) {
+        assertNotNull(route, "A route should exist");
+        List<String> ids = new ArrayList<>();
+        for (BlockSectionManagement.BlockSection section : route.getSections()) {
+            ids.add(section.getId());
+        }
+        return ids;
+    }
+}
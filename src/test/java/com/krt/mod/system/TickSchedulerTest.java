@@ -0,0 +1,76 @@
+package com.krt.mod.system;
+
+import net.minecraft.world.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TickSchedulerTest {
+
+    private TickScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // 每个测试使用新的模拟世界，保证调度器从第0刻开始
+        scheduler = TickScheduler.getInstance(mock(World.class));
+    }
+
+    private void advance(long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            scheduler.tick();
+        }
+    }
+
+    @Test
+    void testSchedule_ShouldRunOnDeadlineTick() {
+        List<Long> fired = new ArrayList<>();
+        scheduler.schedule(1, () -> fired.add(scheduler.getCurrentTick()));
+        scheduler.schedule(63, () -> fired.add(scheduler.getCurrentTick()));
+        scheduler.schedule(64, () -> fired.add(scheduler.getCurrentTick()));
+        scheduler.schedule(5000, () -> fired.add(scheduler.getCurrentTick()));
+
+        advance(6000);
+
+        assertEquals(List.of(1L, 63L, 64L, 5000L), fired, "Tasks should run exactly on their deadline tick");
+        assertEquals(0, scheduler.getScheduledCount(), "No tasks should remain in the wheel");
+    }
+
+    @Test
+    void testCancel_ShouldSkipTask() {
+        List<Long> fired = new ArrayList<>();
+        TickScheduler.TimerHandle handle = scheduler.schedule(100, () -> fired.add(scheduler.getCurrentTick()));
+
+        advance(50);
+        handle.cancel();
+        advance(100);
+
+        assertTrue(fired.isEmpty(), "Cancelled task should not run");
+        assertFalse(handle.isPending(), "Cancelled handle should not be pending");
+        assertFalse(handle.isDone(), "Cancelled handle should not be done");
+    }
+
+    @Test
+    void testScheduleFromTask_ShouldRunOnFollowingTicks() {
+        List<Long> fired = new ArrayList<>();
+        scheduler.schedule(10, () -> scheduler.schedule(10, () -> fired.add(scheduler.getCurrentTick())));
+
+        advance(30);
+
+        assertEquals(List.of(20L), fired, "Task scheduled from a task should be offset from the current tick");
+    }
+
+    @Test
+    void testScheduleMillis_ShouldRoundUpToTicks() {
+        TickScheduler.TimerHandle handle = scheduler.scheduleMillis(2000, () -> {});
+
+        advance(39);
+        assertTrue(handle.isPending(), "2000ms task should still be pending after 39 ticks");
+        advance(1);
+        assertTrue(handle.isDone(), "2000ms task should run on tick 40");
+    }
+}